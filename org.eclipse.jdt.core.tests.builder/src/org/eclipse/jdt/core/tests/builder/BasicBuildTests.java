@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,11 +15,17 @@
  *******************************************************************************/
 package org.eclipse.jdt.core.tests.builder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Hashtable;
 
 import junit.framework.*;
 
 import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
@@ -29,6 +35,9 @@ import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
 import org.eclipse.jdt.core.tests.util.Util;
 import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.builder.JavaBuilder;
+import org.eclipse.jdt.internal.core.builder.ReferenceCollection;
+import org.eclipse.jdt.internal.core.builder.State;
 
 /**
  * Basic tests of the image builder.
@@ -637,4 +646,58 @@ public class BasicBuildTests extends BuilderTests {
 				"Problem : The type java.lang.Object cannot be resolved. It is indirectly referenced from required .class files [ resource : </Project/src/X.java> range : <0,1> category : <10> severity : <2>]"
 			);
 	}
+
+	private State writeAndReadState(IProject project, State state) throws IOException, CoreException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		JavaBuilder.writeState(state, out);
+		out.close();
+		return JavaBuilder.readState(project, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	private void assertStateReferences(State state) {
+		ReferenceCollection references = state.getReferenceCollection("src/p/A.java"); //$NON-NLS-1$
+		assertNotNull("Missing references of A", references); //$NON-NLS-1$
+		char[][] simpleNames = ReferenceCollection.internSimpleNames(new char[][] {"B".toCharArray()}, false); //$NON-NLS-1$
+		assertTrue("A should reference B", references.includes(simpleNames[0])); //$NON-NLS-1$
+		char[][] definedTypeNames = state.getDefinedTypeNamesFor("src/p/A.java"); //$NON-NLS-1$
+		assertNotNull("Missing defined types of A.java", definedTypeNames); //$NON-NLS-1$
+		assertEquals("Unexpected number of types defined in A.java", 2, definedTypeNames.length); //$NON-NLS-1$
+		assertNotNull("Missing references of B", state.getReferenceCollection("src/p/B.java")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull("Unexpected defined types of B.java", state.getDefinedTypeNamesFor("src/p/B.java")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * Ensures that the references of a saved build state are read back, and that a state read from disk
+	 * can be saved again whether its references were used or not.
+	 */
+	public void testWriteAndReadState() throws IOException, CoreException {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+		env.addClass(root, "p", "A", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p;\n" + //$NON-NLS-1$
+			"public class A {\n" + //$NON-NLS-1$
+			"	B b;\n" + //$NON-NLS-1$
+			"}\n" + //$NON-NLS-1$
+			"class A2 {}\n" //$NON-NLS-1$
+			);
+		env.addClass(root, "p", "B", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p;\n" + //$NON-NLS-1$
+			"public class B {}\n" //$NON-NLS-1$
+			);
+		fullBuild(projectPath);
+		expectingNoProblems();
+
+		IProject project = env.getProject(projectPath);
+		State state = (State) JavaModelManager.getJavaModelManager().getLastBuiltState(project, null);
+		State read = writeAndReadState(project, state);
+		State copied = writeAndReadState(project, read); // no reference of the read state was used
+		copied.getReferenceCollection("src/p/B.java"); //$NON-NLS-1$
+		State mixed = writeAndReadState(project, copied); // only the references of B were used
+		assertStateReferences(mixed);
+		assertStateReferences(copied);
+	}
 }
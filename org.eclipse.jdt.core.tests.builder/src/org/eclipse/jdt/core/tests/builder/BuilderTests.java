@@ -545,6 +545,7 @@ public class BuilderTests extends TestCase {
 			Bug530366Test.class,
 			Bug531382Test.class,
 			LeakTestsBefore9.class,
+			ParallelBuildTests.class,
 		};
 		List<Class<?>> list = new ArrayList<>(Arrays.asList(classes));
 		if (matchesCompliance(F_1_5)) {
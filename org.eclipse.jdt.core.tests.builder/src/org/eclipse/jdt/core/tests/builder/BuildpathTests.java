@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -467,6 +467,93 @@ public void testChangeZIPArchive2() throws Exception {
 	env.removeProject(projectPath);
 }
 
+/*
+ * Ensures that replacing an internal ZIP archive only recompiles the dependents of the types whose ABI changed,
+ * once the ABI of the archive is known
+ */
+public void testChangeZIPArchive3() throws Exception {
+	IPath projectPath = env.addProject("Project");
+	env.addExternalJars(projectPath, Util.getJavaClassLibs());
+	String internalLib = env.getProject("Project").getLocation().toOSString() + File.separator + "internalLib.abc";
+	String[] pathsAndContents = new String[] {
+		"p/X.java",
+		"package p;\n" +
+		"public class X {\n" +
+		"  public void foo() {\n" +
+		"  }\n" +
+		"}",
+		"p/W.java",
+		"package p;\n" +
+		"public class W {\n" +
+		"}"
+	};
+	org.eclipse.jdt.core.tests.util.Util.createJar(pathsAndContents, internalLib, "1.4");
+	env.getProject(projectPath).refreshLocal(IResource.DEPTH_INFINITE, null);
+	env.addEntry(projectPath, JavaCore.newLibraryEntry(new Path("/Project/internalLib.abc"), null, null));
+
+	IPath root = env.getPackageFragmentRootPath(projectPath, ""); //$NON-NLS-1$
+	env.setOutputFolder(projectPath, "");
+
+	env.addClass(root, "q", "Y",
+		"package q;\n"+
+		"public class Y {\n" +
+		"  void bar(p.X x) {\n" +
+		"    x.foo();\n" +
+		"  }\n" +
+		"}"
+	);
+	env.addClass(root, "q", "Z",
+		"package q;\n"+
+		"public class Z {\n" +
+		"  p.W w;\n" +
+		"}"
+	);
+
+	fullBuild(projectPath);
+	expectingNoProblems();
+
+	// the first change is not tracked since the previous ABI of the archive is unknown
+	pathsAndContents[1] =
+		"package p;\n" +
+		"public class X {\n" +
+		"  public void foo() {\n" +
+		"    System.out.println();\n" +
+		"  }\n" +
+		"}";
+	org.eclipse.jdt.core.tests.util.Util.createJar(pathsAndContents, internalLib, "1.4");
+	env.getProject(projectPath).refreshLocal(IResource.DEPTH_INFINITE, null);
+	incrementalBuild(projectPath);
+	expectingNoProblems();
+
+	// an implementation change does not change the ABI
+	pathsAndContents[1] =
+		"package p;\n" +
+		"public class X {\n" +
+		"  public void foo() {\n" +
+		"  }\n" +
+		"  private void baz() {\n" +
+		"  }\n" +
+		"}";
+	org.eclipse.jdt.core.tests.util.Util.createJar(pathsAndContents, internalLib, "1.4");
+	env.getProject(projectPath).refreshLocal(IResource.DEPTH_INFINITE, null);
+	incrementalBuild(projectPath);
+	expectingCompiledClasses(new String[0]);
+
+	pathsAndContents[1] =
+		"package p;\n" +
+		"public class X {\n" +
+		"}";
+	org.eclipse.jdt.core.tests.util.Util.createJar(pathsAndContents, internalLib, "1.4");
+	env.getProject(projectPath).refreshLocal(IResource.DEPTH_INFINITE, null);
+	incrementalBuild(projectPath);
+	expectingCompiledClasses(new String[] {"q.Y"});
+	expectingProblemsFor(
+		new Path("/Project/q/Y.java"),
+		"Problem : The method foo() is undefined for the type X [ resource : </Project/q/Y.java> range : <54,57> category : <50> severity : <2>]"
+	);
+	env.removeProject(projectPath);
+}
+
 /*
  * Ensures that changing an external jar and refreshing the projects triggers a rebuild
  * (regression test for bug 50207 Compile errors fixed by 'refresh' do not reset problem list or package explorer error states)
@@ -526,6 +613,117 @@ public void testExternalJarChange() throws JavaModelException, IOException {
 	env.removeProject(projectPath);
 }
 
+/*
+ * Replaces the given external jar, and refreshes it in the given project.
+ */
+private void replaceExternalJar(String externalJar, String[] pathsAndContents, IJavaProject project) throws IOException, JavaModelException {
+	File jarFile = new File(externalJar);
+	long lastModified = jarFile.lastModified();
+	Util.createJar(pathsAndContents, new HashMap<String, String>(), externalJar);
+	// the jar must not look unchanged when it is replaced within the resolution of the file time stamps
+	if (jarFile.lastModified() <= lastModified)
+		jarFile.setLastModified(lastModified + 1000);
+	project.getJavaModel().refreshExternalArchives(new IJavaElement[] {project}, null);
+}
+
+/*
+ * Ensures that replacing an external jar only recompiles the dependents of the types whose ABI changed,
+ * once the ABI of the jar is known, and that the jar is recorded when its ABI did not change
+ */
+public void testExternalJarChange2() throws JavaModelException, IOException {
+	IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+	env.addExternalJars(projectPath, Util.getJavaClassLibs());
+	IPath root = env.getPackageFragmentRootPath(projectPath, ""); //$NON-NLS-1$
+	IPath classTest = env.addClass(root, "p", "X", //$NON-NLS-1$ //$NON-NLS-2$
+		"package p;\n"+ //$NON-NLS-1$
+		"public class X {\n" + //$NON-NLS-1$
+		"  void foo() {\n" + //$NON-NLS-1$
+		"    new q.Y().bar();\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"}" //$NON-NLS-1$
+	);
+	env.addClass(root, "p", "Z", //$NON-NLS-1$ //$NON-NLS-2$
+		"package p;\n"+ //$NON-NLS-1$
+		"public class Z {\n" + //$NON-NLS-1$
+		"  q.W w;\n" + //$NON-NLS-1$
+		"}" //$NON-NLS-1$
+	);
+	String externalJar = Util.getOutputDirectory() + File.separator + "test2.jar"; //$NON-NLS-1$
+	String[] pathsAndContents = new String[] {
+		"q/Y.java", //$NON-NLS-1$
+		"package q;\n" + //$NON-NLS-1$
+		"public class Y {\n" + //$NON-NLS-1$
+		"  public void bar() {\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"}", //$NON-NLS-1$
+		"q/W.java", //$NON-NLS-1$
+		"package q;\n" + //$NON-NLS-1$
+		"public class W {\n" + //$NON-NLS-1$
+		"}" //$NON-NLS-1$
+	};
+	Util.createJar(pathsAndContents, new HashMap<String, String>(), externalJar);
+	env.addExternalJar(projectPath, externalJar);
+	IJavaProject project = JavaCore.create(ResourcesPlugin.getWorkspace().getRoot().getProject("Project")); //$NON-NLS-1$
+
+	fullBuild();
+	expectingNoProblems();
+
+	// the first change is not tracked since the previous ABI of the jar is unknown
+	pathsAndContents[1] =
+		"package q;\n" + //$NON-NLS-1$
+		"public class Y {\n" + //$NON-NLS-1$
+		"  public void bar() {\n" + //$NON-NLS-1$
+		"    System.out.println();\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"}"; //$NON-NLS-1$
+	replaceExternalJar(externalJar, pathsAndContents, project);
+	incrementalBuild();
+	expectingNoProblems();
+
+	// an implementation change does not change the ABI, nothing is compiled but the new jar is recorded
+	pathsAndContents[1] =
+		"package q;\n" + //$NON-NLS-1$
+		"public class Y {\n" + //$NON-NLS-1$
+		"  public void bar() {\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"  private void baz() {\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"}"; //$NON-NLS-1$
+	replaceExternalJar(externalJar, pathsAndContents, project);
+	incrementalBuild();
+	expectingCompiledClasses(new String[0]);
+	expectingNoProblems();
+
+	// so is the next one, whose previous jar is the one recorded by the previous build
+	pathsAndContents[1] =
+		"package q;\n" + //$NON-NLS-1$
+		"public class Y {\n" + //$NON-NLS-1$
+		"  public void bar() {\n" + //$NON-NLS-1$
+		"    baz();\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"  private void baz() {\n" + //$NON-NLS-1$
+		"  }\n" + //$NON-NLS-1$
+		"}"; //$NON-NLS-1$
+	replaceExternalJar(externalJar, pathsAndContents, project);
+	incrementalBuild();
+	expectingCompiledClasses(new String[0]);
+	expectingNoProblems();
+
+	// an ABI change only recompiles the dependents of the changed type
+	pathsAndContents[1] =
+		"package q;\n" + //$NON-NLS-1$
+		"public class Y {\n" + //$NON-NLS-1$
+		"}"; //$NON-NLS-1$
+	replaceExternalJar(externalJar, pathsAndContents, project);
+	incrementalBuild();
+	expectingCompiledClasses(new String[] {"p.X"}); //$NON-NLS-1$
+	expectingProblemsFor(
+		classTest,
+		"Problem : The method bar() is undefined for the type Y [ resource : </Project/p/X.java> range : <57,60> category : <50> severity : <2>]" //$NON-NLS-1$
+	);
+	env.removeProject(projectPath);
+}
+
 public void testMissingBuilder() throws JavaModelException {
 	IPath project1Path = env.addProject("P1"); //$NON-NLS-1$
 	env.addExternalJars(project1Path, Util.getJavaClassLibs());
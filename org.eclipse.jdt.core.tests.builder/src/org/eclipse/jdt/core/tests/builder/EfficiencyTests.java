@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -100,6 +100,72 @@ public class EfficiencyTests extends BuilderTests {
 		expectingCompilingOrder(new String[] { "/Project/src/p1/Indicted.java", "/Project/src/p2/Collaborator.java" });
 	}
 
+	public void testEfficiencyAfterRemoval() throws JavaModelException {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		fullBuild(projectPath);
+
+		// remove old package fragment root so that names don't collide
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		env.addClass(root, "p1", "Indicted", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p1;\n"+ //$NON-NLS-1$
+			"public abstract class Indicted {\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		env.addClass(root, "p2", "Collaborator", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"import p1.*;\n"+ //$NON-NLS-1$
+			"public class Collaborator extends Indicted{\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		env.addClass(root, "p2", "Bystander", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"public class Bystander {\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		fullBuild(projectPath);
+
+		env.addClass(root, "p1", "Indicted", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p1;\n"+ //$NON-NLS-1$
+			"public abstract class Indicted {\n"+ //$NON-NLS-1$
+			"   public abstract void foo();\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		incrementalBuild(projectPath);
+
+		expectingCompiledClasses(new String[]{"p2.Collaborator", "p1.Indicted"}); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// the dependents found by the next builds must follow the removed and added types
+		env.removeClass(env.getPackagePath(root, "p2"), "Collaborator"); //$NON-NLS-1$ //$NON-NLS-2$
+		env.addClass(root, "p2", "Witness", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"import p1.*;\n"+ //$NON-NLS-1$
+			"public abstract class Witness extends Indicted{\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		incrementalBuild(projectPath);
+
+		env.addClass(root, "p1", "Indicted", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p1;\n"+ //$NON-NLS-1$
+			"public abstract class Indicted {\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		incrementalBuild(projectPath);
+
+		expectingCompiledClasses(new String[]{"p2.Witness", "p1.Indicted"}); //$NON-NLS-1$ //$NON-NLS-2$
+		expectingNoProblems();
+	}
+
 	public void testMethodAddition() throws JavaModelException {
 
 		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
@@ -152,6 +218,70 @@ public class EfficiencyTests extends BuilderTests {
 		expectingCompilingOrder(new String[] { "/Project/src/p1/X.java", "/Project/src/p2/Y.java" });
 	}
 
+	public void testMemberChange() throws JavaModelException {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		fullBuild(projectPath);
+
+		// remove old package fragment root so that names don't collide
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		env.addClass(root, "p1", "X", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p1;\n"+ //$NON-NLS-1$
+			"public class X {\n"+ //$NON-NLS-1$
+			"	public void foo() {}\n" + //$NON-NLS-1$
+			"	public void bar() {}\n" + //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		env.addClass(root, "p2", "Caller", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"public class Caller {\n"+ //$NON-NLS-1$
+			"	void m(p1.X x) { x.foo(); }\n" + //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		env.addClass(root, "p2", "Bystander", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"public class Bystander {\n"+ //$NON-NLS-1$
+			"	void m(p1.X x) { x.bar(); }\n" + //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		env.addClass(root, "p2", "Sub", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"public class Sub extends p1.X {\n"+ //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		env.addClass(root, "p2", "SubSub", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p2;\n"+ //$NON-NLS-1$
+			"public class SubSub extends Sub {\n"+ //$NON-NLS-1$
+			"	p1.X x;\n" + //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		fullBuild(projectPath);
+
+		env.addClass(root, "p1", "X", //$NON-NLS-1$ //$NON-NLS-2$
+			"package p1;\n"+ //$NON-NLS-1$
+			"public class X {\n"+ //$NON-NLS-1$
+			"	public void foo() {}\n" + //$NON-NLS-1$
+			"	public void foo(String s) {}\n" + //$NON-NLS-1$
+			"	public void bar() {}\n" + //$NON-NLS-1$
+			"}\n" //$NON-NLS-1$
+			);
+
+		incrementalBuild(projectPath);
+
+		// only the units naming the changed method and the subtypes are recompiled
+		expectingCompiledClasses(new String[]{"p1.X", "p2.Caller", "p2.Sub", "p2.SubSub"}); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		expectingNoProblems();
+	}
+
 	public void testLocalTypeAddition() throws JavaModelException {
 
 		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.builder;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.core.builder.JavaBuilder;
+
+import junit.framework.Test;
+
+/**
+ * Tests that the Java projects built in parallel (see {@link JavaBuilder#PARALLEL_BUILDS_PROPERTY})
+ * have the same class files and problems as when they are built one at a time.
+ */
+public class ParallelBuildTests extends BuilderTests {
+	private static final int PROJECTS = 6;
+	private static final int CONCURRENT_BUILDS = 4;
+
+	private IPath[] projectPaths;
+
+	public ParallelBuildTests(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return buildTestSuite(ParallelBuildTests.class);
+	}
+
+	/*
+	 * P0 is required by the independent projects P1 to P4, and P5 requires P1 and P2.
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.projectPaths = new IPath[PROJECTS];
+		for (int i = 0; i < PROJECTS; i++) {
+			IPath projectPath = this.projectPaths[i] = env.addProject("P" + i);
+			env.addExternalJars(projectPath, Util.getJavaClassLibs());
+			env.removePackageFragmentRoot(projectPath, "");
+			IPath root = env.addPackageFragmentRoot(projectPath, "src");
+			env.setOutputFolder(projectPath, "bin");
+			if (i == 0) {
+				env.addClass(root, "p0", "Base",
+					"package p0;\n" +
+					"public class Base {\n" +
+					"	public int value() { return 0; }\n" +
+					"	public static class Nested {}\n" +
+					"}\n"
+					);
+			} else if (i < PROJECTS - 1) {
+				env.addRequiredProject(projectPath, this.projectPaths[0]);
+				for (int j = 0; j < 10; j++) {
+					env.addClass(root, "p" + i, "X" + j,
+						"package p" + i + ";\n" +
+						"public class X" + j + " extends p0.Base {\n" +
+						"	public int value() { return super.value() + " + j + "; }\n" +
+						"	Object nested = new Nested();\n" +
+						(j == i ? "	Unknown unknown;\n" : "") +
+						"}\n"
+						);
+				}
+			} else {
+				env.addRequiredProject(projectPath, this.projectPaths[0]);
+				env.addRequiredProject(projectPath, this.projectPaths[1]);
+				env.addRequiredProject(projectPath, this.projectPaths[2]);
+				env.addClass(root, "p" + i, "Y",
+					"package p" + i + ";\n" +
+					"public class Y {\n" +
+					"	int value = new p1.X0().value() + new p2.X0().value();\n" +
+					"}\n"
+					);
+			}
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (int i = 0; i < PROJECTS; i++)
+			env.removeProject(this.projectPaths[i]);
+		super.tearDown();
+	}
+
+	/*
+	 * Answers the class files of all the projects, with the problems of the workspace.
+	 */
+	private String getBuildResults() throws CoreException {
+		StringBuffer buffer = new StringBuffer();
+		Map<String, byte[]> classFiles = new TreeMap<>();
+		for (int i = 0; i < PROJECTS; i++) {
+			IContainer output = env.getWorkspace().getRoot().getFolder(env.getOutputLocation(this.projectPaths[i]));
+			collectClassFiles(output, classFiles);
+		}
+		for (Map.Entry<String, byte[]> entry : classFiles.entrySet()) {
+			buffer.append(entry.getKey()).append(' ').append(entry.getValue().length).append(' ');
+			buffer.append(Arrays.hashCode(entry.getValue())).append('\n');
+		}
+		Problem[] problems = env.getProblems();
+		Arrays.sort(problems);
+		for (int i = 0; i < problems.length; i++)
+			buffer.append(problems[i]).append('\n');
+		return buffer.toString();
+	}
+
+	private void collectClassFiles(IContainer container, Map<String, byte[]> classFiles) throws CoreException {
+		IResource[] members = container.members();
+		for (int i = 0; i < members.length; i++) {
+			IResource member = members[i];
+			if (member instanceof IContainer) {
+				collectClassFiles((IContainer) member, classFiles);
+			} else if ("class".equals(member.getFileExtension())) {
+				classFiles.put(member.getFullPath().toString(),
+					org.eclipse.jdt.internal.core.util.Util.getResourceContentsAsByteArray((IFile) member));
+			}
+		}
+	}
+
+	/*
+	 * Runs the given build with the parallel builds enabled, and answers its results.
+	 */
+	private String buildInParallel(Runnable build) throws CoreException {
+		boolean parallelBuilds = JavaBuilder.PARALLEL_BUILDS;
+		IWorkspaceDescription description = env.getWorkspace().getDescription();
+		int maxConcurrentBuilds = description.getMaxConcurrentBuilds();
+		JavaBuilder.PARALLEL_BUILDS = true;
+		description.setMaxConcurrentBuilds(CONCURRENT_BUILDS);
+		env.getWorkspace().setDescription(description);
+		try {
+			build.run();
+			env.waitForAutoBuild();
+		} finally {
+			description.setMaxConcurrentBuilds(maxConcurrentBuilds);
+			env.getWorkspace().setDescription(description);
+			JavaBuilder.PARALLEL_BUILDS = parallelBuilds;
+		}
+		return getBuildResults();
+	}
+
+	private String buildSerially(Runnable build) throws CoreException {
+		boolean parallelBuilds = JavaBuilder.PARALLEL_BUILDS;
+		JavaBuilder.PARALLEL_BUILDS = false;
+		try {
+			build.run();
+			env.waitForAutoBuild();
+		} finally {
+			JavaBuilder.PARALLEL_BUILDS = parallelBuilds;
+		}
+		return getBuildResults();
+	}
+
+	public void testFullBuild() throws CoreException {
+		env.waitForManualRefresh();
+		String expected = buildSerially(() -> env.fullBuild());
+		assertTrue("Missing problem", expected.indexOf("Unknown cannot be resolved to a type") != -1);
+		assertTrue("Missing class file", expected.indexOf("/P5/bin/p5/Y.class") != -1);
+
+		env.cleanBuild();
+		env.waitForAutoBuild();
+		assertEquals("Unexpected results of the parallel build", expected, buildInParallel(() -> env.fullBuild()));
+	}
+
+	/*
+	 * A structural change of the required project is propagated to all the dependent projects built in parallel.
+	 */
+	public void testIncrementalBuild() throws CoreException {
+		env.waitForManualRefresh();
+		buildSerially(() -> env.fullBuild());
+		IPath root = this.projectPaths[0].append("src");
+		Runnable change = () -> env.addClass(root, "p0", "Base",
+			"package p0;\n" +
+			"public class Base {\n" +
+			"	public int value() { return 0; }\n" +
+			"	public int other() { return 1; }\n" +
+			"}\n"
+			);
+		env.waitForManualRefresh();
+		change.run();
+		String expected = buildSerially(() -> env.incrementalBuild());
+		assertTrue("Missing problem", expected.indexOf("Nested cannot be resolved to a type") != -1);
+
+		env.waitForManualRefresh();
+		env.addClass(root, "p0", "Base",
+			"package p0;\n" +
+			"public class Base {\n" +
+			"	public int value() { return 0; }\n" +
+			"	public static class Nested {}\n" +
+			"}\n"
+			);
+		buildSerially(() -> env.incrementalBuild());
+		env.waitForManualRefresh();
+		change.run();
+		assertEquals("Unexpected results of the parallel build", expected, buildInParallel(() -> env.incrementalBuild()));
+	}
+}
@@ -46,6 +46,7 @@ import java.io.PrintWriter;
 import java.text.MessageFormat;
 import java.util.Iterator;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import javax.lang.model.SourceVersion;
 
@@ -61,6 +62,7 @@ import org.eclipse.jdt.internal.compiler.batch.FileSystem;
 import org.eclipse.jdt.internal.compiler.batch.Main;
 import org.eclipse.jdt.internal.compiler.batch.FileSystem.Classpath;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.UnitStats;
 import org.eclipse.jdt.internal.compiler.lookup.TypeConstants;
 import org.eclipse.jdt.internal.compiler.util.ManifestAnalyzer;
 
@@ -623,6 +625,9 @@ public void test012(){
         "                       created); this option can be overridden per source\n" +
         "                       directory\n" +
         "    -d none            generate no .class files\n" +
+        "    -cacheDir <dir>    reuse the .class files and problems of the units whose\n" +
+        "                       source, options and dependencies did not change since\n" +
+        "                       they were compiled with this cache directory\n" +
         "    -encoding <enc>    specify default encoding for all source files. Each\n" + 
         "                       file/directory can override it when suffixed with\n" + 
         "                       ''[''<enc>'']'' (e.g. X.java[utf8]).\n" + 
@@ -738,6 +743,9 @@ public void test012(){
         "    -referenceInfo     compute reference info\n" +
         "    -progress          show progress (only in -log mode)\n" +
         "    -time              display speed information \n" +
+        "    -time:detail       display speed information for each compilation phase\n" +
+        "    -time:json <file>  write detailed speed information for each compilation\n" +
+        "                       unit into the given JSON file\n" +
         "    -noExit            do not call System.exit(n) at end of compilation (n==0\n" +
         "                       if no error)\n" +
         "    -repeat <n>        repeat compilation process <n> times for perf analysis\n" +
@@ -13139,4 +13147,236 @@ public void testBug531579() throws Exception {
 		"",
 		false);
 }
+// -cacheDir reuses the results of unchanged units, but recompiles the units depending on a changed one
+public void testCacheDir() {
+	String commandLine = "\"" + OUTPUT_DIR +  File.separator + "src/p/X.java\""
+		+ " \"" + OUTPUT_DIR +  File.separator + "src/p/Y.java\""
+		+ " -1.8 -proc:none"
+		+ " -cacheDir \"" + OUTPUT_DIR + File.separator + "cache\""
+		+ " -d \"" + OUTPUT_DIR + File.separator + "bin\" ";
+	String yWarning =
+		"----------\n" +
+		"1. WARNING in ---OUTPUT_DIR_PLACEHOLDER---/src/p/Y.java (at line 3)\n" +
+		"	private int unused;\n" +
+		"	            ^^^^^^\n" +
+		"The value of the field Y.unused is not used\n" +
+		"----------\n" +
+		"1 problem (1 warning)\n";
+	String[] files = new String[] {
+		"src/p/X.java",
+		"package p;\n" +
+		"public class X {\n" +
+		"	void bar() {\n" +
+		"		new Y().foo();\n" +
+		"	}\n" +
+		"}\n",
+		"src/p/Y.java",
+		"package p;\n" +
+		"public class Y {\n" +
+		"	private int unused;\n" +
+		"	public void foo() {}\n" +
+		"}\n"
+	};
+	this.runTest(true, files, commandLine, "", yWarning, true, null);
+	assertTrue("Missing class file", new File(OUTPUT_DIR + File.separator + "bin/p/X.class").exists());
+	// same sources: the problems are replayed from the cache
+	this.runTest(true, files, commandLine, "", yWarning, false, null);
+	assertTrue("Missing class file", new File(OUTPUT_DIR + File.separator + "bin/p/X.class").exists());
+	// Y changes structurally: X must be compiled again even though its source did not change
+	this.runTest(
+		false,
+		new String[] {
+			"src/p/Y.java",
+			"package p;\n" +
+			"public class Y {\n" +
+			"}\n"
+		},
+		commandLine,
+		"",
+		"----------\n" +
+		"1. ERROR in ---OUTPUT_DIR_PLACEHOLDER---/src/p/X.java (at line 4)\n" +
+		"	new Y().foo();\n" +
+		"	        ^^^\n" +
+		"The method foo() is undefined for the type Y\n" +
+		"----------\n" +
+		"1 problem (1 error)\n",
+		false,
+		null);
+}
+// a unit taken from the cache is compiled again when a new type of its package shadows an imported one
+public void testCacheDirShadowedType() {
+	String commandLine = " -1.8 -proc:none"
+		+ " -cacheDir \"" + OUTPUT_DIR + File.separator + "cache\""
+		+ " -d \"" + OUTPUT_DIR + File.separator + "bin\" ";
+	String xPath = "\"" + OUTPUT_DIR +  File.separator + "src/p/X.java\"";
+	String[] files = new String[] {
+		"src/p/X.java",
+		"package p;\n" +
+		"import java.util.*;\n" +
+		"public class X {\n" +
+		"	int count(List<String> names) {\n" +
+		"		return names.size();\n" +
+		"	}\n" +
+		"}\n"
+	};
+	String expectedError =
+		"----------\n" +
+		"1. ERROR in ---OUTPUT_DIR_PLACEHOLDER---/src/p/X.java (at line 5)\n" +
+		"	return names.size();\n" +
+		"	             ^^^^\n" +
+		"The method size() is undefined for the type List<String>\n" +
+		"----------\n" +
+		"1 problem (1 error)\n";
+	this.runConformTest(files, xPath + commandLine, "", "", true);
+	// p.List is compiled along with X
+	String[] list = new String[] {
+		"src/p/List.java",
+		"package p;\n" +
+		"public class List<T> {\n" +
+		"}\n"
+	};
+	this.runNegativeTest(list, xPath + " \"" + OUTPUT_DIR +  File.separator + "src/p/List.java\"" + commandLine, "", expectedError, false);
+	// p.List is found on the source path
+	this.runConformTest(files, xPath + commandLine, "", "", true);
+	this.runNegativeTest(
+		list,
+		xPath + " -sourcepath \"" + OUTPUT_DIR + File.separator + "src\"" + commandLine,
+		"",
+		expectedError,
+		false);
+}
+// the jars shared between compilations are read again when they change on disk
+public void testChangedJar() throws IOException {
+	new File(LIB_DIR).mkdirs();
+	String libPath = LIB_DIR + File.separator + "changed.jar";
+	String commandLine = "\"" + OUTPUT_DIR +  File.separator + "src/X.java\""
+		+ " -cp \"" + libPath + "\""
+		+ " -1.5 -proc:none"
+		+ " -d \"" + OUTPUT_DIR + File.separator + "bin\" ";
+	String[] files = new String[] {
+		"src/X.java",
+		"public class X {\n" +
+		"	void bar(p.A a) {\n" +
+		"		a.foo();\n" +
+		"	}\n" +
+		"}\n"
+	};
+	try {
+		Util.createJar(
+			new String[] {
+				"p/A.java",
+				"package p;\n" +
+				"public class A {\n" +
+				"	public void foo() {}\n" +
+				"}\n"
+			},
+			null,
+			libPath,
+			JavaCore.VERSION_1_5);
+		this.runConformTest(files, commandLine, "", "", true);
+		Util.createJar(
+			new String[] {
+				"p/A.java",
+				"package p;\n" +
+				"public class A {\n" +
+				"}\n"
+			},
+			null,
+			libPath,
+			JavaCore.VERSION_1_5);
+		this.runNegativeTest(
+			files,
+			commandLine,
+			"",
+			"----------\n" +
+			"1. ERROR in ---OUTPUT_DIR_PLACEHOLDER---/src/X.java (at line 3)\n" +
+			"	a.foo();\n" +
+			"	  ^^^\n" +
+			"The method foo() is undefined for the type A\n" +
+			"----------\n" +
+			"1 problem (1 error)\n",
+			false);
+	} finally {
+		new File(libPath).delete();
+	}
+}
+// the problems found while resolving units diet parsed on worker threads are reported against their own unit
+public void testParallelDietParseProblems() {
+	// the problems reported while building the type bindings, which is done while worker threads still parse other units
+	int unitCount = 200;
+	String[] files = new String[2 * unitCount];
+	StringBuffer commandLine = new StringBuffer();
+	StringBuffer expectedErrors = new StringBuffer();
+	for (int i = 0; i < unitCount; i++) {
+		String typeName = "Y" + i;
+		StringBuffer source = new StringBuffer("package p;\npublic class ").append(typeName).append(" {\n");
+		for (int j = 0; j < 50; j++)
+			source.append("	int field").append(j).append(" = ").append(j).append(";\n");
+		files[2 * i] = "src/p/X" + i + ".java";
+		files[2 * i + 1] = source.append("}\n").toString();
+		commandLine.append('"').append(OUTPUT_DIR).append(File.separator).append(files[2 * i]).append("\" ");
+		expectedErrors.append("----------\n")
+			.append(i + 1).append(". ERROR in ---OUTPUT_DIR_PLACEHOLDER---/src/p/X").append(i).append(".java (at line 2)\n")
+			.append("	public class ").append(typeName).append(" {\n")
+			.append("	             ");
+		for (int j = 0; j < typeName.length(); j++)
+			expectedErrors.append('^');
+		expectedErrors.append('\n')
+			.append("The public type ").append(typeName).append(" must be defined in its own file\n")
+			.append("----------\n");
+	}
+	expectedErrors.append(unitCount).append(" problems (").append(unitCount).append(" errors)\n");
+	commandLine.append("-1.5 -proc:none -d none");
+	String useSingleThread = System.getProperty("jdt.compiler.useSingleThread");
+	System.setProperty("jdt.compiler.useSingleThread", "false");
+	try {
+		this.runNegativeTest(files, commandLine.toString(), "", expectedErrors.toString(), true);
+	} finally {
+		if (useSingleThread == null)
+			System.clearProperty("jdt.compiler.useSingleThread");
+		else
+			System.setProperty("jdt.compiler.useSingleThread", useSingleThread);
+	}
+}
+// -time:json writes the times and counters of each repetition, and of each of its units
+public void testTimeJson() {
+	String reportFileName = OUTPUT_DIR + File.separator + "stats.json";
+	this.runTest(true,
+		new String[] {
+			"X.java",
+			"import java.util.*;\n" +
+			"public class X {\n" +
+			"	List<String> list = Arrays.asList(\"a\", \"b\");\n" +
+			"	Y y;\n" +
+			"}\n",
+			"Y.java",
+			"public class Y {\n" +
+			"}\n"
+		},
+		"\"" + OUTPUT_DIR + File.separator + "X.java\""
+		+ " \"" + OUTPUT_DIR + File.separator + "Y.java\""
+		+ " -1.8 -proc:none -repeat 2 -time:json \"" + reportFileName + "\" -d \"" + OUTPUT_DIR + "\"",
+		new SubstringMatcher("[compiled "),
+		EMPTY_STRING_MATCHER,
+		true);
+	String report = Util.fileContent(reportFileName);
+	assertTrue("Unexpected report:\n" + report, report.startsWith("{\n\t\"repetitions\": [\n\t\t{\"elapsedTime\": "));
+	assertTrue("Unexpected report:\n" + report, report.endsWith("}\n\t\t\t]\n\t\t}\n\t]\n}\n"));
+	assertEquals("Unexpected repetitions", 2, report.split("\"elapsedTime\": ").length - 1);
+	assertEquals("Unexpected units", 4, report.split("\"file\": ").length - 1);
+
+	// -time:json measures the allocations of each unit if the VM can measure them
+	boolean allocationsMeasured = UnitStats.enableAllocationMeasurement();
+	String unitPattern = "\\{\"file\": \"[^\"]*%s\\.java\", \"lineCount\": %d, \"parseTime\": \\d+, \"resolveTime\": \\d+, "
+		+ "\"analyzeTime\": \\d+, \"generateTime\": \\d+, \"allocatedBytes\": (-?\\d+), \"analyzeAllocatedBytes\": -?\\d+, "
+		+ "\"inferenceContexts\": (\\d+), ";
+	java.util.regex.Matcher x = Pattern.compile(String.format(unitPattern, "X", 5)).matcher(report);
+	assertTrue("Missing unit X:\n" + report, x.find());
+	assertEquals("Unexpected allocations of X", allocationsMeasured, Long.parseLong(x.group(1)) > 0);
+	assertTrue("No inference context for X", Integer.parseInt(x.group(2)) > 0);
+	assertTrue("Missing second repetition of X:\n" + report, x.find());
+	java.util.regex.Matcher y = Pattern.compile(String.format(unitPattern, "Y", 2)).matcher(report);
+	assertTrue("Missing unit Y:\n" + report, y.find());
+	assertEquals("Unexpected inference contexts of Y", 0, Integer.parseInt(y.group(2)));
+}
 }
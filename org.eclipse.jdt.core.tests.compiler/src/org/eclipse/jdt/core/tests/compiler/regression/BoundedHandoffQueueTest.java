@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.compiler.regression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.util.BoundedHandoffQueue;
+
+import junit.framework.Test;
+
+/**
+ * Tests the hand over of elements from a producer thread to a consumer thread through a {@link BoundedHandoffQueue}.
+ */
+@SuppressWarnings({ "rawtypes" })
+public class BoundedHandoffQueueTest extends AbstractRegressionTest {
+
+static final long TIMEOUT = 30000;
+
+public BoundedHandoffQueueTest(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildUniqueComplianceTestSuite(testClass(), ClassFileConstants.JDK1_8);
+}
+public static Class testClass() {
+	return BoundedHandoffQueueTest.class;
+}
+/*
+ * Runs the given runnable on a new thread, recording its failure.
+ */
+static class Worker extends Thread {
+	final Runnable runnable;
+	final CountDownLatch started = new CountDownLatch(1);
+	volatile Throwable failure;
+	Worker(String name, Runnable runnable) {
+		super(name);
+		this.runnable = runnable;
+		setDaemon(true);
+	}
+	@Override
+	public void run() {
+		this.started.countDown();
+		try {
+			this.runnable.run();
+		} catch (Throwable t) {
+			this.failure = t;
+		}
+	}
+	Worker startWorker() throws InterruptedException {
+		start();
+		assertTrue("Thread not started", this.started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		return this;
+	}
+	void assertCompleted() throws InterruptedException {
+		join(TIMEOUT);
+		assertFalse(getName() + " not completed", isAlive());
+		if (this.failure != null) {
+			AssertionError error = new AssertionError(getName() + " failed");
+			error.initCause(this.failure);
+			throw error;
+		}
+	}
+}
+/*
+ * Waits until the given thread parks.
+ */
+private static void waitUntilParked(Thread thread) throws InterruptedException {
+	long start = System.currentTimeMillis();
+	while (thread.getState() != Thread.State.TIMED_WAITING && thread.getState() != Thread.State.WAITING) {
+		assertTrue(thread.getName() + " not parked", thread.isAlive() && System.currentTimeMillis() - start < TIMEOUT);
+		Thread.sleep(1);
+	}
+}
+public void testInvalidCapacity() {
+	try {
+		new BoundedHandoffQueue<String>(0);
+		fail("Capacity of 0 accepted");
+	} catch (IllegalArgumentException e) {
+		// expected
+	}
+}
+// the elements are taken in the order they were added, through the wrap around of the slots
+public void testOrder() {
+	BoundedHandoffQueue<Integer> queue = new BoundedHandoffQueue<>(3);
+	int next = 0;
+	for (int i = 0; i < 10; i++) {
+		assertTrue("Not added", queue.put(Integer.valueOf(2 * i)));
+		assertTrue("Not added", queue.put(Integer.valueOf(2 * i + 1)));
+		assertEquals("Unexpected size", 2, queue.size());
+		assertEquals("Unexpected element", next++, queue.take().intValue());
+		assertEquals("Unexpected element", next++, queue.take().intValue());
+		assertEquals("Unexpected size", 0, queue.size());
+	}
+	assertEquals("Unexpected capacity", 3, queue.capacity());
+	assertEquals("Unexpected max occupancy", 2, queue.maxOccupancy());
+	assertEquals("Unexpected average occupancy", 1.5, queue.averageOccupancy(), 0);
+	assertEquals("Unexpected put count", 20, queue.putCount());
+	assertEquals("Unexpected producer stalls", 0, queue.producerStalls());
+	assertEquals("Unexpected consumer stalls", 0, queue.consumerStalls());
+}
+public void testNullElement() {
+	BoundedHandoffQueue<String> queue = new BoundedHandoffQueue<>(1);
+	try {
+		queue.put(null);
+		fail("Null element added");
+	} catch (NullPointerException e) {
+		// expected
+	}
+	assertEquals("Unexpected size", 0, queue.size());
+}
+// the remaining elements are taken after the queue is closed, then take answers null
+public void testClose() {
+	BoundedHandoffQueue<String> queue = new BoundedHandoffQueue<>(4);
+	queue.put("a");
+	queue.put("b");
+	queue.close();
+	assertTrue("Not closed", queue.isClosed());
+	assertFalse("Added to a closed queue", queue.put("c"));
+	assertEquals("a", queue.take());
+	assertEquals("b", queue.take());
+	assertNull("Unexpected element", queue.take());
+	assertNull("Unexpected element", queue.take());
+}
+// the producer waits while the queue is full, until the consumer frees a slot
+public void testPutBlocksWhenFull() throws InterruptedException {
+	BoundedHandoffQueue<String> queue = new BoundedHandoffQueue<>(2);
+	queue.put("a");
+	queue.put("b");
+	CountDownLatch added = new CountDownLatch(1);
+	Worker producer = new Worker("Producer", () -> {
+		assertTrue("Not added", queue.put("c"));
+		added.countDown();
+	}).startWorker();
+	waitUntilParked(producer);
+	assertEquals("Added to a full queue", 1, added.getCount());
+	assertEquals("Unexpected size", 2, queue.size());
+	assertEquals("a", queue.take());
+	assertTrue("Not added once a slot was freed", added.await(TIMEOUT, TimeUnit.MILLISECONDS));
+	producer.assertCompleted();
+	assertEquals("b", queue.take());
+	assertEquals("c", queue.take());
+	assertEquals("Unexpected producer stalls", 1, queue.producerStalls());
+	assertEquals("Unexpected max occupancy", 2, queue.maxOccupancy());
+}
+// the consumer waits while the queue is empty, until an element is added
+public void testTakeBlocksWhenEmpty() throws InterruptedException {
+	BoundedHandoffQueue<String> queue = new BoundedHandoffQueue<>(2);
+	List<String> taken = new ArrayList<>();
+	Worker consumer = new Worker("Consumer", () -> {
+		taken.add(queue.take());
+	}).startWorker();
+	waitUntilParked(consumer);
+	assertTrue("Taken from an empty queue", consumer.isAlive());
+	queue.put("a");
+	consumer.assertCompleted();
+	assertEquals("Unexpected elements", "[a]", taken.toString());
+	assertEquals("Unexpected consumer stalls", 1, queue.consumerStalls());
+}
+// closing the queue wakes up the waiting producer and consumer
+public void testCloseWakesUpWaitingThreads() throws InterruptedException {
+	BoundedHandoffQueue<String> empty = new BoundedHandoffQueue<>(1);
+	Worker consumer = new Worker("Consumer", () -> {
+		assertNull("Unexpected element", empty.take());
+	}).startWorker();
+	BoundedHandoffQueue<String> full = new BoundedHandoffQueue<>(1);
+	full.put("a");
+	Worker producer = new Worker("Producer", () -> {
+		assertFalse("Added to a closed queue", full.put("b"));
+	}).startWorker();
+	waitUntilParked(consumer);
+	waitUntilParked(producer);
+	empty.close();
+	full.close();
+	consumer.assertCompleted();
+	producer.assertCompleted();
+	assertEquals("a", full.take());
+	assertNull("Unexpected element", full.take());
+}
+/*
+ * Hands numbers over through a chain of queues, each one between a pair of threads, the middle threads being
+ * the consumer of a queue and the producer of the next one. All the numbers must come out of the chain,
+ * in order, whatever the capacities.
+ */
+public void testStress() throws InterruptedException {
+	int count = 200000;
+	int[] capacities = {1, 2, 5, 12, 64};
+	List<BoundedHandoffQueue<Integer>> queues = new ArrayList<>();
+	for (int i = 0; i < capacities.length; i++)
+		queues.add(new BoundedHandoffQueue<>(capacities[i]));
+	List<Worker> workers = new ArrayList<>();
+	workers.add(new Worker("Producer", () -> {
+		BoundedHandoffQueue<Integer> queue = queues.get(0);
+		for (int i = 0; i < count; i++)
+			assertTrue("Not added", queue.put(Integer.valueOf(i)));
+		queue.close();
+	}));
+	for (int i = 1; i < capacities.length; i++) {
+		BoundedHandoffQueue<Integer> in = queues.get(i - 1);
+		BoundedHandoffQueue<Integer> out = queues.get(i);
+		workers.add(new Worker("Relay " + i, () -> {
+			Integer element;
+			while ((element = in.take()) != null)
+				assertTrue("Not added", out.put(element));
+			out.close();
+		}));
+	}
+	long[] sum = new long[1];
+	workers.add(new Worker("Consumer", () -> {
+		BoundedHandoffQueue<Integer> queue = queues.get(capacities.length - 1);
+		int expected = 0;
+		Integer element;
+		while ((element = queue.take()) != null) {
+			assertEquals("Unexpected element", expected++, element.intValue());
+			sum[0] += element.intValue();
+		}
+		assertEquals("Missing elements", count, expected);
+	}));
+	for (Worker worker : workers)
+		worker.startWorker();
+	for (Worker worker : workers)
+		worker.assertCompleted();
+	assertEquals("Unexpected sum", (long) count * (count - 1) / 2, sum[0]);
+	for (int i = 0; i < capacities.length; i++) {
+		BoundedHandoffQueue<Integer> queue = queues.get(i);
+		assertEquals("Unexpected size", 0, queue.size());
+		assertEquals("Unexpected put count", count, queue.putCount());
+		assertTrue("Unexpected max occupancy", queue.maxOccupancy() >= 1 && queue.maxOccupancy() <= capacities[i]);
+		assertTrue("Unexpected average occupancy", queue.averageOccupancy() >= 1 && queue.averageOccupancy() <= capacities[i]);
+	}
+}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.compiler.regression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.impl.CompilerStats;
+
+import junit.framework.Test;
+
+/**
+ * Tests the number of steps taken by the type inference of Java 8 (JLS 18): the budget limiting the steps
+ * of an outermost inference, and the reuse of the results of standalone invocations of the same shape.
+ */
+@SuppressWarnings({ "rawtypes" })
+public class InferenceStepsTest extends AbstractRegressionTest {
+
+static final String BUDGET_EXCEEDED = "Problem detected during type inference: exceeded the budget of ";
+
+public InferenceStepsTest(String name) {
+	super(name);
+}
+public static Class testClass() {
+	return InferenceStepsTest.class;
+}
+public static Test suite() {
+	return buildMinimalComplianceTestSuite(testClass(), F_1_8);
+}
+/*
+ * Compiles the given files with the given inference budget, answering the problems found, each one followed
+ * by the source it was reported against.
+ */
+private List<String> compile(String[] testFiles, long inferenceStepBudget) {
+	List<String> problems = new ArrayList<>();
+	compile(testFiles, inferenceStepBudget, problems);
+	return problems;
+}
+/*
+ * Compiles the given files with the given inference budget, collecting the problems found, and answers the
+ * statistics of the compilation.
+ */
+private CompilerStats compile(String[] testFiles, long inferenceStepBudget, List<String> problems) {
+	CompilerOptions compilerOptions = new CompilerOptions(getCompilerOptions());
+	compilerOptions.inferenceStepBudget = inferenceStepBudget;
+	ICompilerRequestor requestor = new ICompilerRequestor() {
+		@Override
+		public void acceptResult(CompilationResult result) {
+			CategorizedProblem[] allProblems = result.getAllProblems();
+			if (allProblems == null)
+				return;
+			String source = new String(result.compilationUnit.getContents());
+			for (int i = 0; i < allProblems.length; i++) {
+				CategorizedProblem problem = allProblems[i];
+				problems.add(problem.getMessage() + " at " + source.substring(problem.getSourceStart(), problem.getSourceEnd() + 1));
+			}
+		}
+	};
+	INameEnvironment nameEnvironment = getNameEnvironment(new String[0], null);
+	try {
+		Compiler compiler = new Compiler(nameEnvironment, getErrorHandlingPolicy(), compilerOptions, requestor, getProblemFactory());
+		compiler.compile(getCompilationUnits(testFiles));
+		return compiler.stats;
+	} finally {
+		nameEnvironment.cleanup();
+	}
+}
+private void assertBudgetExceeded(List<String> problems, long inferenceStepBudget, String invocation) {
+	String expected = BUDGET_EXCEEDED + inferenceStepBudget + " steps at " + invocation;
+	assertTrue("Missing " + expected + " in " + problems, problems.contains(expected));
+}
+/*
+ * The inference of the outermost invocation exceeds its budget.
+ */
+public void testBudgetExceeded() {
+	String[] testFiles = new String[] {
+		"X.java",
+		"import java.util.*;\n" +
+		"public class X {\n" +
+		"	static <T> List<T> wrap(T t) { return null; }\n" +
+		"	List<List<String>> m() {\n" +
+		"		return wrap(wrap(\"a\"));\n" +
+		"	}\n" +
+		"}\n"
+	};
+	assertEquals("Unexpected problems without budget", "[]", compile(testFiles, 0).toString());
+	assertBudgetExceeded(compile(testFiles, 1), 1, "wrap(wrap(\"a\"))");
+}
+/*
+ * The inference of the outermost invocation exceeds its budget while reducing the method reference, which swallows
+ * the failure of its own inference: the outermost invocation must still report why it failed.
+ */
+public void testBudgetExceededInNestedInference() {
+	String[] testFiles = new String[] {
+		"X.java",
+		"import java.util.*;\n" +
+		"import java.util.function.*;\n" +
+		"public class X {\n" +
+		"	static <T> List<T> wrap(T t) { return null; }\n" +
+		"	static <T, R> R apply(Function<T, R> f, T t) { return null; }\n" +
+		"	List<String> m() {\n" +
+		"		return apply(X::wrap, \"a\");\n" +
+		"	}\n" +
+		"}\n"
+	};
+	assertEquals("Unexpected problems without budget", "[]", compile(testFiles, 0).toString());
+	assertBudgetExceeded(compile(testFiles, 20), 20, "apply(X::wrap, \"a\")");
+}
+/*
+ * The budget is read for each compilation.
+ */
+public void testBudgetPerCompilation() {
+	String[] testFiles = new String[] {
+		"X.java",
+		"import java.util.*;\n" +
+		"public class X {\n" +
+		"	static <T> List<T> wrap(T t) { return null; }\n" +
+		"	List<List<String>> m() {\n" +
+		"		return wrap(wrap(\"a\"));\n" +
+		"	}\n" +
+		"}\n"
+	};
+	assertBudgetExceeded(compile(testFiles, 2), 2, "wrap(wrap(\"a\"))");
+	assertEquals("Unexpected problems with a large budget", "[]", compile(testFiles, 100000).toString());
+	assertBudgetExceeded(compile(testFiles, 3), 3, "wrap(wrap(\"a\"))");
+}
+/*
+ * The second standalone invocation of the same shape, even in another unit, reuses the result of the first one
+ * and takes no inference step.
+ */
+public void testInferenceResultReused() {
+	String x =
+		"import java.util.*;\n" +
+		"public class X {\n" +
+		"	int m(List<String> list) {\n" +
+		"		return Collections.max(list).length();\n" +
+		"	}\n" +
+		"}\n";
+	String y =
+		"import java.util.*;\n" +
+		"public class Y {\n" +
+		"	boolean m(List<String> strings) {\n" +
+		"		return Collections.max(strings).isEmpty();\n" +
+		"	}\n" +
+		"}\n";
+	List<String> problems = new ArrayList<>();
+	CompilerStats once = compile(new String[] { "X.java", x }, 0, problems);
+	CompilerStats twice = compile(new String[] { "X.java", x, "Y.java", y }, 0, problems);
+	assertEquals("Unexpected problems", "[]", problems.toString());
+	assertEquals("Unexpected reused results", 0, once.inferenceCacheHits);
+	assertEquals("Unexpected reused results", 1, twice.inferenceCacheHits);
+	assertTrue("No inference steps", once.inferenceSteps > 0);
+	assertEquals("Unexpected inference steps", once.inferenceSteps, twice.inferenceSteps);
+}
+/*
+ * The result of a poly invocation depends on its context, it is not reused.
+ */
+public void testInferenceResultOfPolyInvocationNotReused() {
+	String[] testFiles = new String[] {
+		"X.java",
+		"import java.util.*;\n" +
+		"public class X {\n" +
+		"	String m(List<String> list) {\n" +
+		"		String first = Collections.max(list);\n" +
+		"		CharSequence second = Collections.max(list);\n" +
+		"		String third = Collections.max(list);\n" +
+		"		return first + second + third;\n" +
+		"	}\n" +
+		"}\n"
+	};
+	List<String> problems = new ArrayList<>();
+	CompilerStats stats = compile(testFiles, 0, problems);
+	assertEquals("Unexpected problems", "[]", problems.toString());
+	assertEquals("Unexpected reused results", 0, stats.inferenceCacheHits);
+}
+}
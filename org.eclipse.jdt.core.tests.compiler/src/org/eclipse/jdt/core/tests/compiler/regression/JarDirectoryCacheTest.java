@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.compiler.regression;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.util.JarDirectoryCache;
+
+import junit.framework.Test;
+
+/**
+ * Tests the class file readers shared by the jars of a {@link JarDirectoryCache}.
+ */
+@SuppressWarnings({ "rawtypes" })
+public class JarDirectoryCacheTest extends AbstractRegressionTest {
+
+static final long MB = 1024 * 1024;
+
+public JarDirectoryCacheTest(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildUniqueComplianceTestSuite(testClass(), ClassFileConstants.JDK1_8);
+}
+public static Class testClass() {
+	return JarDirectoryCacheTest.class;
+}
+@Override
+protected void tearDown() throws Exception {
+	Util.flushDirectoryContent(new File(OUTPUT_DIR));
+	super.tearDown();
+}
+private File createJar(String name, String... pathsAndContents) throws IOException {
+	new File(OUTPUT_DIR).mkdirs();
+	String jarPath = OUTPUT_DIR + File.separator + name;
+	Util.createJar(pathsAndContents, jarPath, "1.8");
+	return new File(jarPath);
+}
+private static boolean hasMethod(ClassFileReader reader, String selector) {
+	for (int i = 0; i < reader.getMethods().length; i++) {
+		if (selector.equals(new String(reader.getMethods()[i].getSelector())))
+			return true;
+	}
+	return false;
+}
+// the users of a jar share the readers of its class files
+public void testSharedReaders() throws Exception {
+	File file = createJar("shared.jar",
+		"p/X.java",
+		"package p;\n" +
+		"public class X {}\n");
+	JarDirectoryCache cache = new JarDirectoryCache(MB, 4);
+	JarDirectoryCache.SharedJar first = cache.acquire(file);
+	JarDirectoryCache.SharedJar second = cache.acquire(file);
+	try {
+		assertSame("Same jar", first, second);
+		ClassFileReader reader = first.getClassFileReader("p/X.class", null);
+		assertNotNull("No reader", reader);
+		assertEquals("p/X", new String(reader.getName()));
+		assertTrue("No footprint", cache.getClassFilesFootprint() > 0);
+		assertSame("Reader not shared", reader, second.getClassFileReader("p/X.class", null));
+		assertNull("Unexpected reader", second.getClassFileReader("p/Y.class", null));
+	} finally {
+		cache.release(second);
+		cache.release(first);
+	}
+	// released jars keep their readers until they are flushed
+	JarDirectoryCache.SharedJar third = cache.acquire(file);
+	try {
+		assertSame("Jar not kept", first, third);
+	} finally {
+		cache.release(third);
+	}
+	cache.flush();
+	assertEquals("Readers not dropped", 0, cache.getClassFilesFootprint());
+}
+// a jar read as another module gives a private copy, which does not replace the shared reader
+public void testModuleNameCopy() throws Exception {
+	File file = createJar("modules.jar",
+		"p/X.java",
+		"package p;\n" +
+		"public class X {}\n");
+	JarDirectoryCache cache = new JarDirectoryCache(MB, 4);
+	JarDirectoryCache.SharedJar jar = cache.acquire(file);
+	try {
+		ClassFileReader first = jar.getClassFileReader("p/X.class", "first".toCharArray());
+		assertEquals("first", new String(first.moduleName));
+		long footprint = cache.getClassFilesFootprint();
+		ClassFileReader second = jar.getClassFileReader("p/X.class", "second".toCharArray());
+		assertNotSame("Reader of another module shared", first, second);
+		assertEquals("second", new String(second.moduleName));
+		assertEquals("first", new String(first.moduleName));
+		assertEquals("Copy counted", footprint, cache.getClassFilesFootprint());
+		assertNotSame("Copy shared", second, jar.getClassFileReader("p/X.class", "second".toCharArray()));
+		assertSame("Shared reader replaced", first, jar.getClassFileReader("p/X.class", "first".toCharArray()));
+	} finally {
+		cache.release(jar);
+	}
+}
+// a jar whose time stamp changed is read again, while its current users keep the previous readers
+public void testChangedTimeStamp() throws Exception {
+	File file = createJar("changed.jar",
+		"p/X.java",
+		"package p;\n" +
+		"public class X {\n" +
+		"	public void foo() {}\n" +
+		"}\n");
+	long lastModified = file.lastModified();
+	JarDirectoryCache cache = new JarDirectoryCache(MB, 4);
+	JarDirectoryCache.SharedJar jar = cache.acquire(file);
+	ClassFileReader reader;
+	try {
+		reader = jar.getClassFileReader("p/X.class", null);
+		assertTrue("No foo()", hasMethod(reader, "foo"));
+	} finally {
+		cache.release(jar);
+	}
+	createJar("changed.jar",
+		"p/X.java",
+		"package p;\n" +
+		"public class X {\n" +
+		"	public void bar() {}\n" +
+		"}\n");
+	file.setLastModified(lastModified + 10000);
+	JarDirectoryCache.SharedJar changedJar = cache.acquire(file);
+	try {
+		assertNotSame("Changed jar not read again", jar, changedJar);
+		assertEquals("Previous readers still counted", 0, cache.getClassFilesFootprint());
+		ClassFileReader changedReader = changedJar.getClassFileReader("p/X.class", null);
+		assertNotSame("Previous reader shared", reader, changedReader);
+		assertTrue("No bar()", hasMethod(changedReader, "bar"));
+		assertFalse("Previous foo()", hasMethod(changedReader, "foo"));
+		assertTrue("No foo()", hasMethod(reader, "foo"));
+		assertSame("Reader not shared", changedReader, changedJar.getClassFileReader("p/X.class", null));
+		assertTrue("No footprint", cache.getClassFilesFootprint() > 0);
+	} finally {
+		cache.release(changedJar);
+	}
+}
+// the readers of all the jars fit in the size of the cache
+public void testFootprintBound() throws Exception {
+	StringBuffer body = new StringBuffer();
+	for (int i = 0; i < 100; i++)
+		body.append("	public int method").append(i).append("(String name) { return name.length() + ").append(i).append("; }\n");
+	File[] files = new File[4];
+	for (int i = 0; i < files.length; i++) {
+		files[i] = createJar("bound" + i + ".jar",
+			"p/X.java",
+			"package p;\n" +
+			"public class X {\n" +
+			body +
+			"}\n");
+	}
+	JarDirectoryCache probe = new JarDirectoryCache(MB, 4);
+	JarDirectoryCache.SharedJar jar = probe.acquire(files[0]);
+	try {
+		jar.getClassFileReader("p/X.class", null);
+	} finally {
+		probe.release(jar);
+	}
+	long readerFootprint = probe.getClassFilesFootprint();
+	assertTrue("No footprint", readerFootprint > 0);
+	// room for the readers of two jars, not for their directories
+	long maxFootprint = 2 * readerFootprint + readerFootprint / 2;
+	JarDirectoryCache cache = new JarDirectoryCache(maxFootprint, 4);
+	JarDirectoryCache.SharedJar[] jars = new JarDirectoryCache.SharedJar[files.length];
+	try {
+		int shared = 0;
+		for (int i = 0; i < files.length; i++) {
+			jars[i] = cache.acquire(files[i]);
+			ClassFileReader reader = jars[i].getClassFileReader("p/X.class", null);
+			if (reader == jars[i].getClassFileReader("p/X.class", null))
+				shared++;
+			assertTrue("Footprint exceeded", cache.getClassFilesFootprint() <= maxFootprint);
+		}
+		assertEquals("Shared readers", 2, shared);
+		assertEquals(2 * readerFootprint, cache.getClassFilesFootprint());
+	} finally {
+		for (int i = 0; i < jars.length; i++) {
+			if (jars[i] != null)
+				cache.release(jars[i]);
+		}
+	}
+	cache.flush();
+	assertEquals("Readers not dropped", 0, cache.getClassFilesFootprint());
+}
+}
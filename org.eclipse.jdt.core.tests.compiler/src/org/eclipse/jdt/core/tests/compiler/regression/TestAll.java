@@ -87,6 +87,8 @@ public static Test suite() {
 	standardTests.add(LineNumberAttributeTest.class);
 	standardTests.add(ProgrammingProblemsTest.class);
 	standardTests.add(ManifestAnalyzerTest.class);
+	standardTests.add(JarDirectoryCacheTest.class);
+	standardTests.add(BoundedHandoffQueueTest.class);
 	standardTests.add(InitializationTests.class);
 	standardTests.add(ResourceLeakTests.class);
 	standardTests.add(PackageBindingTest.class);
@@ -154,6 +156,7 @@ public static Test suite() {
 	since_1_8.add(ClassFileReaderTest_1_8.class);
 	since_1_8.add(RepeatableAnnotationTest.class);
 	since_1_8.add(GenericsRegressionTest_1_8.class);
+	since_1_8.add(InferenceStepsTest.class);
 	since_1_8.add(Unicode18Test.class);
 	since_1_8.add(LambdaShapeTests.class);
 
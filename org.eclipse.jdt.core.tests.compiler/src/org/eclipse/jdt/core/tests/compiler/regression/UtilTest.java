@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -14,6 +14,8 @@
 package org.eclipse.jdt.core.tests.compiler.regression;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 //import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.eclipse.core.runtime.CoreException;
@@ -742,6 +744,39 @@ public void test73b() { // previous test cases but with 3.3 behavior
 	// Verify that there were no unexpected results
     assertTrue(this.camelCaseErrors.toString(), this.camelCaseErrors.length()==0);
 }
+/*
+ * Reading a file through NIO gives the same contents as reading it through a stream, whatever its size.
+ */
+public void testGetFileCharContentNIO() throws IOException {
+	StringBuffer large = new StringBuffer();
+	for (int i = 0; i < 20000; i++)
+		large.append("int f").append(i).append(" = \u00e9t\u00e9 + \u65e5\u672c;\n");
+	String[] contents = {
+		"",
+		"class X {}\n",
+		"\ufeffclass X { String s = \"\u00e9t\u00e9\"; }\n",
+		large.toString(),
+		"\ufeff" + large,
+	};
+	String[] encodings = { "UTF-8", "ISO-8859-1", "UTF-16", "ISO-2022-JP", null };
+	File file = new File(OUTPUT_DIR, "UtilTest.java");
+	new File(OUTPUT_DIR).mkdirs();
+	try {
+		for (int i = 0; i < contents.length; i++) {
+			for (int j = 0; j < encodings.length; j++) {
+				String encoding = encodings[j];
+				try (FileOutputStream stream = new FileOutputStream(file)) {
+					stream.write(encoding == null ? contents[i].getBytes() : contents[i].getBytes(encoding));
+				}
+				assertEquals("Unexpected contents " + i + " in " + encoding,
+					new String(org.eclipse.jdt.internal.compiler.util.Util.getFileCharContent(file, encoding)),
+					new String(org.eclipse.jdt.internal.compiler.util.Util.getFileCharContentNIO(file, encoding)));
+			}
+		}
+	} finally {
+		file.delete();
+	}
+}
 public static Class testClass() {
 	return UtilTest.class;
 }
@@ -169,6 +169,7 @@ private static Class[] getAllTestClasses() {
 
 		// Owverflowing cache tests
 		OverflowingCacheTests.class,
+		JavaModelCacheTests.class,
 
 		// Working copy owner tests
 		WorkingCopyOwnerTests.class,
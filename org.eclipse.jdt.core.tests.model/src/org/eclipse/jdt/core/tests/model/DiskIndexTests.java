@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.tests.junit.extension.TestCase;
+import org.eclipse.jdt.internal.core.index.DiskIndex;
+import org.eclipse.jdt.internal.core.index.EntryResult;
+import org.eclipse.jdt.internal.core.index.FileIndexLocation;
+import org.eclipse.jdt.internal.core.index.Index;
+
+/**
+ * Tests that the queries of an index file read through a memory mapped buffer (see {@link DiskIndex#MAP_INDEX_FILES})
+ * answer the same results as the queries of the index before it was saved, and as the queries which read the
+ * index file through streams.
+ */
+public class DiskIndexTests extends TestCase {
+	private final static char[] REF = "ref".toCharArray();
+	private final static char[] DECL = "decl".toCharArray();
+	private final static char[] LEGACY = "legacy".toCharArray();
+	private final static String[] DECLARATIONS = {"Foo", "foo", "FooBar", "FBar", "bar", "B\u00e4r", "\u65e5\u672c", "\u65e5"};
+
+	private File indexFile;
+
+public DiskIndexTests(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildTestSuite(DiskIndexTests.class);
+}
+@Override
+protected void setUp() throws Exception {
+	super.setUp();
+	this.indexFile = File.createTempFile("diskIndex", ".index");
+	this.indexFile.delete();
+}
+@Override
+protected void tearDown() throws Exception {
+	this.indexFile.delete();
+	super.tearDown();
+}
+/*
+ * Adds the entries of the "ref" category, whose words are in one document, a few documents, or more documents
+ * than the arrays of document numbers in-lined in the category table, and of the "decl" category, whose words
+ * differ in case or are not ASCII.
+ */
+private Index createIndex() throws IOException {
+	Index index = new Index(new FileIndexLocation(this.indexFile), "/P", false);
+	for (int i = 0; i < 300; i++) {
+		String document = "p/X" + i + ".java";
+		index.addIndexEntry(REF, "common".toCharArray(), document);
+		index.addIndexEntry(REF, ("w" + i).toCharArray(), document);
+		if (i < 3)
+			index.addIndexEntry(REF, "few".toCharArray(), document);
+	}
+	for (int i = 0; i < DECLARATIONS.length; i++)
+		index.addIndexEntry(DECL, DECLARATIONS[i].toCharArray(), "p/X" + i + ".java");
+	return index;
+}
+private Index readIndex(boolean mapIndexFiles) throws IOException {
+	boolean mapped = DiskIndex.MAP_INDEX_FILES;
+	DiskIndex.MAP_INDEX_FILES = mapIndexFiles;
+	try {
+		Index index = new Index(new FileIndexLocation(this.indexFile), "/P", true);
+		// the file is mapped by the first query
+		query(index, new char[][] {REF}, "common".toCharArray(), SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+		return index;
+	} finally {
+		DiskIndex.MAP_INDEX_FILES = mapped;
+	}
+}
+private void save(Index index) throws IOException {
+	index.monitor.enterWrite();
+	try {
+		index.save();
+	} finally {
+		index.monitor.exitWrite();
+	}
+}
+/*
+ * Answers the words matching the given key, with the names of their documents.
+ * The read lock of the index is not held, so that an index which was not saved is not merged by the query.
+ */
+private String query(Index index, char[][] categories, char[] key, int matchRule) throws IOException {
+	index.startQuery();
+	try {
+		EntryResult[] results = index.query(categories, key, matchRule);
+		if (results == null)
+			return "";
+		String[] lines = new String[results.length];
+		for (int i = 0; i < results.length; i++) {
+			String[] names = results[i].getDocumentNames(index);
+			Arrays.sort(names);
+			lines[i] = new String(results[i].getWord()) + " " + Arrays.toString(names);
+		}
+		Arrays.sort(lines);
+		StringBuffer buffer = new StringBuffer();
+		for (int i = 0; i < lines.length; i++)
+			buffer.append(lines[i]).append('\n');
+		return buffer.toString();
+	} finally {
+		index.stopQuery();
+	}
+}
+/*
+ * Answers the results of the queries with all the match rules the mapped file handles differently.
+ */
+private String queryAll(Index index, boolean allWords) throws IOException {
+	StringBuffer buffer = new StringBuffer();
+	int exact = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+	int prefix = SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE;
+	buffer.append(query(index, new char[][] {REF}, "few".toCharArray(), exact));
+	buffer.append(query(index, new char[][] {REF}, "missing".toCharArray(), exact));
+	buffer.append(query(index, new char[][] {REF}, "w29".toCharArray(), exact));
+	buffer.append(query(index, new char[][] {REF}, "w29".toCharArray(), prefix));
+	buffer.append(query(index, new char[][] {REF}, "W1".toCharArray(), SearchPattern.R_PREFIX_MATCH));
+	buffer.append(query(index, new char[][] {REF}, "w*7".toCharArray(), SearchPattern.R_PATTERN_MATCH));
+	buffer.append(query(index, new char[][] {REF}, "w2[0-9]5".toCharArray(), SearchPattern.R_REGEXP_MATCH));
+	buffer.append(query(index, new char[][] {DECL}, "Foo".toCharArray(), prefix));
+	buffer.append(query(index, new char[][] {DECL}, "foo".toCharArray(), SearchPattern.R_EXACT_MATCH));
+	buffer.append(query(index, new char[][] {DECL}, "FB".toCharArray(), SearchPattern.R_CAMELCASE_MATCH));
+	buffer.append(query(index, new char[][] {DECL}, "B\u00e4r".toCharArray(), exact));
+	buffer.append(query(index, new char[][] {DECL}, "\u65e5".toCharArray(), prefix));
+	buffer.append(query(index, new char[][] {DECL, REF}, "bar".toCharArray(), exact));
+	if (allWords)
+		buffer.append(query(index, new char[][] {DECL, REF}, null, exact));
+	return buffer.toString();
+}
+private String queryLegacy(Index index, String[] sortedWords) throws IOException {
+	int exact = SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE;
+	return
+		query(index, new char[][] {LEGACY}, sortedWords[0].toCharArray(), exact) +
+		query(index, new char[][] {LEGACY}, sortedWords[sortedWords.length - 1].toCharArray(), exact) +
+		query(index, new char[][] {LEGACY}, sortedWords[17].toCharArray(), exact) +
+		query(index, new char[][] {LEGACY}, "legacyB".toCharArray(), SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE) +
+		query(index, new char[][] {LEGACY}, "legacyb".toCharArray(), SearchPattern.R_PREFIX_MATCH) +
+		query(index, new char[][] {LEGACY}, null, exact);
+}
+/*
+ * Reverses the order of the words of the given category table, as the category tables were written before
+ * their words were sorted. The words of the table must be ASCII and each in a single document.
+ */
+private void unsortCategoryTable(String[] sortedWords) throws IOException {
+	byte[] bytes = Files.readAllBytes(this.indexFile.toPath());
+	byte[] start = new byte[6 + sortedWords[0].length()];
+	int count = sortedWords.length;
+	start[0] = (byte) (count >>> 24);
+	start[1] = (byte) (count >>> 16);
+	start[2] = (byte) (count >>> 8);
+	start[3] = (byte) count;
+	start[5] = (byte) sortedWords[0].length();
+	System.arraycopy(sortedWords[0].getBytes("US-ASCII"), 0, start, 6, sortedWords[0].length());
+	int offset = -1;
+	search: for (int i = 0; i <= bytes.length - start.length; i++) {
+		for (int j = 0; j < start.length; j++) {
+			if (bytes[i + j] != start[j])
+				continue search;
+		}
+		assertEquals("Category table found twice", -1, offset);
+		offset = i;
+	}
+	assertTrue("Category table not found", offset >= 0);
+
+	List<byte[]> entries = new ArrayList<>();
+	int position = offset + 4;
+	for (int i = 0; i < count; i++) {
+		int length = 2 + (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF)) + 4; // single document
+		entries.add(Arrays.copyOfRange(bytes, position, position + length));
+		position += length;
+	}
+	position = offset + 4;
+	for (int i = count - 1; i >= 0; i--) {
+		byte[] entry = entries.get(i);
+		System.arraycopy(entry, 0, bytes, position, entry.length);
+		position += entry.length;
+	}
+	Files.write(this.indexFile.toPath(), bytes);
+}
+/*
+ * Binary searches the words of the mapped category tables, and decodes their document numbers in place.
+ */
+public void testMappedQueries() throws IOException {
+	if (!DiskIndex.MAP_INDEX_FILES)
+		return; // no mapping on this platform
+	Index index = createIndex();
+	String expected = queryAll(index, true);
+	assertTrue("Missing in-lined document numbers", expected.indexOf("few [p/X0.java, p/X1.java, p/X2.java]\n") != -1);
+	assertTrue("Missing large array of document numbers", expected.indexOf("common [p/X0.java, p/X1.java, p/X10.java, p/X100.java") != -1);
+	save(index);
+	assertEquals("Unexpected results of the mapped file", expected, queryAll(readIndex(true), true));
+}
+/*
+ * The mapping outlives the index file, which shows that the queries do not read it through streams.
+ */
+public void testMappedQueriesOfDeletedFile() throws IOException {
+	if (!DiskIndex.MAP_INDEX_FILES)
+		return; // no mapping on this platform
+	Index index = createIndex();
+	String expected = queryAll(index, false);
+	save(index);
+	index = readIndex(true);
+	assertTrue("Index file not deleted", this.indexFile.delete());
+	assertEquals("Unexpected results of the mapped file", expected, queryAll(index, false));
+}
+/*
+ * The index files are read through streams when the mapping is off, as for the indexes in jar files.
+ */
+public void testUnmappedQueries() throws IOException {
+	Index index = createIndex();
+	String expected = queryAll(index, true);
+	save(index);
+	assertEquals("Unexpected results of the unmapped file", expected, queryAll(readIndex(false), true));
+}
+/*
+ * The words of the category tables written before they were sorted are sorted in memory by the first query.
+ */
+public void testUnsortedCategoryTable() throws IOException {
+	String[] words = new String[50];
+	Index index = new Index(new FileIndexLocation(this.indexFile), "/P", false);
+	for (int i = 0; i < words.length; i++) {
+		words[i] = "legacy" + (char) ('A' + i % 26) + i;
+		index.addIndexEntry(LEGACY, words[i].toCharArray(), "p/X" + i + ".java");
+	}
+	Arrays.sort(words);
+	String expected = queryLegacy(index, words);
+	assertTrue("Missing word", expected.startsWith(words[0] + " ["));
+	save(index);
+	unsortCategoryTable(words);
+
+	for (int i = 0; i < 2; i++) {
+		index = readIndex(i == 0);
+		assertEquals("Unexpected results of the unsorted category table" + (i == 0 ? " (mapped)" : ""), expected, queryLegacy(index, words));
+	}
+}
+}
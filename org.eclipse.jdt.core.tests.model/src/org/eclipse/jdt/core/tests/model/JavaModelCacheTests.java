@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import junit.framework.Test;
+
+import org.eclipse.jdt.core.tests.junit.extension.TestCase;
+import org.eclipse.jdt.internal.core.JavaModelCache;
+import org.eclipse.jdt.internal.core.ShardedElementCache;
+
+/**
+ * Tests the space limits of the {@link JavaModelCache}: their budget, and how they shrink when the heap is
+ * nearly full and grow back when it is not.
+ */
+public class JavaModelCacheTests extends TestCase {
+
+	/*
+	 * Exposes the space limits of the caches.
+	 */
+	static class TestCache extends JavaModelCache {
+		int rootLimit() {
+			assertCacheLimit(getRootSpaceLimit(), this.rootCache);
+			return getRootSpaceLimit();
+		}
+		int pkgLimit() {
+			assertCacheLimit(getPkgSpaceLimit(), this.pkgCache);
+			return getPkgSpaceLimit();
+		}
+		int openableLimit() {
+			assertCacheLimit(getOpenableSpaceLimit(), this.openableCache);
+			return getOpenableSpaceLimit();
+		}
+		/*
+		 * The limit of each shard is its share of the limit of the cache, rounded up.
+		 */
+		private void assertCacheLimit(int limit, ShardedElementCache<?> cache) {
+			int shardLimit = cache.getSpaceLimit() / cache.getShardCount();
+			assertEquals("Unexpected shard limit", (limit + cache.getShardCount() - 1) / cache.getShardCount(), shardLimit);
+		}
+		double factor() {
+			return this.spaceLimitFactor;
+		}
+		@Override
+		protected void reduceSpaceLimits() {
+			super.reduceSpaceLimits();
+		}
+		@Override
+		protected void restoreSpaceLimits() {
+			this.lastMemoryCheck = 0; // don't wait for the next check
+			super.restoreSpaceLimits();
+		}
+		void restoreSpaceLimitsNow() {
+			super.restoreSpaceLimits();
+		}
+		@Override
+		protected void startMemoryMonitoring(Object lock) {
+			super.startMemoryMonitoring(lock);
+		}
+		@Override
+		protected void stopMemoryMonitoring() {
+			super.stopMemoryMonitoring();
+		}
+	}
+
+public JavaModelCacheTests(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildTestSuite(JavaModelCacheTests.class);
+}
+private TestCache newCache(String budget) {
+	String previous = System.getProperty(JavaModelCache.BUDGET_PROPERTY);
+	try {
+		if (budget == null)
+			System.clearProperty(JavaModelCache.BUDGET_PROPERTY);
+		else
+			System.setProperty(JavaModelCache.BUDGET_PROPERTY, budget);
+		return new TestCache();
+	} finally {
+		if (previous == null)
+			System.clearProperty(JavaModelCache.BUDGET_PROPERTY);
+		else
+			System.setProperty(JavaModelCache.BUDGET_PROPERTY, previous);
+	}
+}
+/*
+ * Answers the heap pool whose collection usage the cache monitors.
+ */
+private MemoryPoolMXBean getHeapPool() {
+	MemoryPoolMXBean pool = null;
+	for (MemoryPoolMXBean candidate : ManagementFactory.getMemoryPoolMXBeans()) {
+		if (candidate.getType() == MemoryType.HEAP && candidate.isCollectionUsageThresholdSupported()) {
+			long max = candidate.getUsage().getMax();
+			if (max > 0 && (pool == null || max > pool.getUsage().getMax()))
+				pool = candidate;
+		}
+	}
+	return pool;
+}
+/*
+ * The space limits are proportional to the budget, a percentage of the maximum heap.
+ */
+public void testBudget() {
+	TestCache defaultCache = newCache(null);
+	TestCache doubleCache = newCache(Double.toString(JavaModelCache.DEFAULT_BUDGET * 2));
+	assertEquals("Unexpected root limit", defaultCache.rootLimit() * 2, doubleCache.rootLimit(), 1);
+	assertEquals("Unexpected package limit", defaultCache.pkgLimit() * 2, doubleCache.pkgLimit(), 1);
+	assertEquals("Unexpected openable limit", defaultCache.openableLimit() * 2, doubleCache.openableLimit(), 1);
+	TestCache halfCache = newCache(Double.toString(JavaModelCache.DEFAULT_BUDGET / 2));
+	assertEquals("Unexpected openable limit", defaultCache.openableLimit() / 2, halfCache.openableLimit(), 1);
+}
+/*
+ * Invalid budgets are ignored.
+ */
+public void testInvalidBudget() {
+	TestCache defaultCache = newCache(null);
+	String[] budgets = {"", "abc", "0", "-1", "100.5", "NaN"};
+	for (int i = 0; i < budgets.length; i++) {
+		TestCache cache = newCache(budgets[i]);
+		assertEquals("Unexpected root limit for budget '" + budgets[i] + "'", defaultCache.rootLimit(), cache.rootLimit());
+		assertEquals("Unexpected openable limit for budget '" + budgets[i] + "'", defaultCache.openableLimit(), cache.openableLimit());
+	}
+	TestCache wholeHeapCache = newCache("100");
+	assertTrue("Budget of 100% ignored", wholeHeapCache.openableLimit() > defaultCache.openableLimit());
+}
+/*
+ * The space limits are halved each time the heap is nearly full, down to an eighth of their default.
+ */
+public void testReduceSpaceLimits() {
+	TestCache cache = newCache("50");
+	int rootLimit = cache.rootLimit();
+	int openableLimit = cache.openableLimit();
+	cache.reduceSpaceLimits();
+	assertEquals("Unexpected factor", 0.5, cache.factor(), 0);
+	assertEquals("Unexpected root limit", rootLimit / 2, cache.rootLimit(), 1);
+	assertEquals("Unexpected openable limit", openableLimit / 2, cache.openableLimit(), 1);
+	for (int i = 0; i < 5; i++)
+		cache.reduceSpaceLimits();
+	assertEquals("Unexpected minimal factor", 0.125, cache.factor(), 0);
+	assertEquals("Unexpected minimal openable limit", openableLimit / 8, cache.openableLimit(), 1);
+}
+/*
+ * The space limits are doubled back to their default once the heap is no longer nearly full,
+ * and not before the next check of the heap.
+ */
+public void testRestoreSpaceLimits() {
+	TestCache cache = newCache("50");
+	int rootLimit = cache.rootLimit();
+	int openableLimit = cache.openableLimit();
+	cache.reduceSpaceLimits();
+	cache.reduceSpaceLimits();
+	cache.restoreSpaceLimitsNow();
+	assertEquals("Restored before the next check", 0.25, cache.factor(), 0);
+
+	// without memory monitoring, the heap is considered not full
+	cache.restoreSpaceLimits();
+	assertEquals("Unexpected factor", 0.5, cache.factor(), 0);
+	assertEquals("Unexpected openable limit", openableLimit / 2, cache.openableLimit(), 1);
+	cache.restoreSpaceLimits();
+	cache.restoreSpaceLimits();
+	assertEquals("Unexpected factor", 1, cache.factor(), 0);
+	assertEquals("Unexpected root limit", rootLimit, cache.rootLimit());
+	assertEquals("Unexpected openable limit", openableLimit, cache.openableLimit());
+}
+/*
+ * The collection usage threshold of the heap, which applies to the whole VM, is restored when the monitoring stops.
+ */
+public void testMemoryMonitoringThreshold() {
+	MemoryPoolMXBean pool = getHeapPool();
+	if (pool == null)
+		return; // no memory monitoring on this VM
+	long threshold = pool.getCollectionUsageThreshold();
+	try {
+		pool.setCollectionUsageThreshold(0);
+		TestCache cache = newCache(null);
+		cache.startMemoryMonitoring(new Object());
+		try {
+			assertTrue("No threshold set", pool.getCollectionUsageThreshold() > 0);
+		} finally {
+			cache.stopMemoryMonitoring();
+		}
+		assertEquals("Threshold not restored", 0, pool.getCollectionUsageThreshold());
+
+		// a threshold set by someone else is kept
+		pool.setCollectionUsageThreshold(pool.getUsage().getMax() / 2);
+		cache.startMemoryMonitoring(new Object());
+		cache.stopMemoryMonitoring();
+		assertEquals("Threshold changed", pool.getUsage().getMax() / 2, pool.getCollectionUsageThreshold());
+	} finally {
+		pool.setCollectionUsageThreshold(threshold);
+	}
+}
+}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.search.*;
+import org.eclipse.jdt.core.tests.model.AbstractJavaSearchTests.JavaSearchResultCollector;
+import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.search.IndexQueryRequestor;
+import org.eclipse.jdt.internal.core.search.PatternSearchJob;
+import org.eclipse.jdt.internal.core.search.matching.MatchLocator;
+
+/**
+ * Tests that the searches run on several threads find the same matches, in the same order, as the
+ * searches run on the searching thread only: the indexes queried in parallel by {@link PatternSearchJob},
+ * and the possible matches located in parallel by {@link MatchLocator}.
+ */
+public class JavaSearchParallelTests extends ModifyingResourceTests implements IJavaSearchConstants {
+	// enough projects for their indexes to be queried concurrently
+	private final static int PROJECTS = 6;
+	private final static int THREADS = 4;
+
+public JavaSearchParallelTests(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildModelTestSuite(JavaSearchParallelTests.class);
+}
+@Override
+public void setUpSuite() throws Exception {
+	super.setUpSuite();
+	for (int i = 0; i < PROJECTS; i++) {
+		createJavaProject("P" + i, new String[] {""}, new String[] {"JCL_LIB"}, i == 0 ? new String[0] : new String[] {"/P0"}, "");
+		createFolder("/P" + i + "/p");
+		createFile(
+			"/P" + i + "/p/X.java",
+			"package p;\n" +
+			"public class X {\n" +
+			"	protected String name;\n" +
+			"	public void foo(String s) {\n" +
+			"		this.name = s;\n" +
+			"	}\n" +
+			"}"
+		);
+		createFile(
+			"/P" + i + "/p/Y" + i + ".java",
+			"package p;\n" +
+			"public class Y" + i + " extends X {\n" +
+			"	public void foo(String s) {\n" +
+			"		super.foo(s);\n" +
+			"		java.lang.String copy = this.name;\n" +
+			"		foo(copy);\n" +
+			"	}\n" +
+			"	public void bar(Object o) {\n" +
+			"		new X().foo(o.toString());\n" +
+			"	}\n" +
+			"}"
+		);
+		if (i == 0) {
+			createFolder("/P0/q");
+			createFile(
+				"/P0/q/Base.java",
+				"package q;\n" +
+				"public class Base {\n" +
+				"	public void foo(String s) {\n" +
+				"	}\n" +
+				"}"
+			);
+		} else {
+			createFile(
+				"/P" + i + "/p/Z" + i + ".java",
+				"package p;\n" +
+				"public class Z" + i + " extends q.Base {\n" +
+				"	public void foo(String s) {\n" +
+				"		super.foo(s);\n" +
+				"	}\n" +
+				"	void bar(q.Base base, Z" + i + " z) {\n" +
+				"		base.foo(\"base\");\n" +
+				"		z.foo(\"z\");\n" +
+				"		new X().foo(\"x\");\n" +
+				"	}\n" +
+				"}"
+			);
+		}
+	}
+	waitUntilIndexesReady();
+}
+@Override
+public void tearDownSuite() throws Exception {
+	for (int i = 0; i < PROJECTS; i++)
+		deleteProject("P" + i);
+	super.tearDownSuite();
+}
+/*
+ * Answers the index matches of the given pattern in the workspace, found with the given number of threads.
+ */
+private List<String> queryIndexes(SearchPattern pattern, int threads) {
+	final List<String> matches = new ArrayList<>();
+	IndexQueryRequestor requestor = new IndexQueryRequestor() {
+		@Override
+		public boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant participant, AccessRuleSet access) {
+			matches.add(indexRecord == null ? documentPath : documentPath + " " + indexRecord);
+			return true;
+		}
+	};
+	int queryThreads = PatternSearchJob.QUERY_THREADS;
+	PatternSearchJob.QUERY_THREADS = threads;
+	try {
+		JavaModelManager.getIndexManager().performConcurrentJob(
+			new PatternSearchJob(pattern, SearchEngine.getDefaultSearchParticipant(), SearchEngine.createWorkspaceScope(), requestor),
+			WAIT_UNTIL_READY_TO_SEARCH,
+			null);
+	} finally {
+		PatternSearchJob.QUERY_THREADS = queryThreads;
+	}
+	return matches;
+}
+/*
+ * Answers the matches of the given pattern in the workspace, found with the given number of threads
+ * querying the indexes.
+ */
+private String search(SearchPattern pattern, int threads) throws CoreException {
+	int queryThreads = PatternSearchJob.QUERY_THREADS;
+	PatternSearchJob.QUERY_THREADS = threads;
+	try {
+		return search(pattern);
+	} finally {
+		PatternSearchJob.QUERY_THREADS = queryThreads;
+	}
+}
+/*
+ * Answers the matches of the given pattern in the workspace, found with the given number of threads
+ * locating the possible matches.
+ */
+private String locate(SearchPattern pattern, int threads) throws CoreException {
+	int locateThreads = MatchLocator.LOCATE_THREADS;
+	MatchLocator.LOCATE_THREADS = threads;
+	try {
+		return search(pattern);
+	} finally {
+		MatchLocator.LOCATE_THREADS = locateThreads;
+	}
+}
+private String search(SearchPattern pattern) throws CoreException {
+	JavaSearchResultCollector collector = new JavaSearchResultCollector();
+	collector.showProject();
+	collector.showAccuracy(true);
+	new SearchEngine().search(
+		pattern,
+		new SearchParticipant[] {SearchEngine.getDefaultSearchParticipant()},
+		SearchEngine.createWorkspaceScope(),
+		collector,
+		null);
+	return collector.toString();
+}
+private void assertSameIndexMatches(SearchPattern pattern) {
+
+	List<String> expected = queryIndexes(pattern, 1);
+	assertTrue("No index match", expected.size() >= PROJECTS);
+	assertEquals("Unexpected index matches with " + THREADS + " threads", expected, queryIndexes(pattern, THREADS));
+}
+private void assertSameMatches(SearchPattern pattern) throws CoreException {
+	String expected = search(pattern, 1);
+	assertTrue("No match", expected.length() > 0);
+	assertEquals("Unexpected matches with " + THREADS + " threads", expected, search(pattern, THREADS));
+}
+private void assertSameLocatedMatches(SearchPattern pattern) throws CoreException {
+	String expected = locate(pattern, 1);
+	assertTrue("No match", expected.length() > 0);
+	assertEquals("Unexpected matches located with " + THREADS + " threads", expected, locate(pattern, THREADS));
+}
+/*
+ * The records of the index matches handed over in batches are not overwritten by the next index entries.
+ */
+public void testMethodDeclarations() throws CoreException {
+	SearchPattern pattern = SearchPattern.createPattern("foo", METHOD, DECLARATIONS, SearchPattern.R_EXACT_MATCH);
+	assertSameIndexMatches(pattern);
+	assertSameMatches(pattern);
+}
+public void testTypeDeclarations() throws CoreException {
+	SearchPattern pattern = SearchPattern.createPattern("*", TYPE, DECLARATIONS, SearchPattern.R_PATTERN_MATCH);
+	assertSameIndexMatches(pattern);
+	assertSameMatches(pattern);
+}
+/*
+ * A qualified type reference queries each segment of its qualification in turn, on all the indexes at once.
+ */
+public void testQualifiedTypeReferences() throws CoreException {
+	SearchPattern pattern = SearchPattern.createPattern("java.lang.String", TYPE, REFERENCES, SearchPattern.R_EXACT_MATCH);
+	assertSameIndexMatches(pattern);
+	assertSameMatches(pattern);
+}
+@SuppressWarnings("deprecation")
+public void testAndPattern() throws CoreException {
+	SearchPattern pattern = SearchPattern.createAndPattern(
+		SearchPattern.createPattern("foo", METHOD, REFERENCES, SearchPattern.R_EXACT_MATCH),
+		SearchPattern.createPattern("name", FIELD, REFERENCES, SearchPattern.R_EXACT_MATCH));
+	assertSameIndexMatches(pattern);
+}
+public void testOrPattern() throws CoreException {
+	SearchPattern pattern = SearchPattern.createOrPattern(
+		SearchPattern.createPattern("X", TYPE, DECLARATIONS, SearchPattern.R_EXACT_MATCH),
+		SearchPattern.createPattern("foo", METHOD, ALL_OCCURRENCES, SearchPattern.R_EXACT_MATCH));
+	assertSameIndexMatches(pattern);
+	assertSameMatches(pattern);
+}
+public void testLocateMethodReferences() throws CoreException {
+	assertSameLocatedMatches(SearchPattern.createPattern("foo", METHOD, REFERENCES, SearchPattern.R_EXACT_MATCH));
+}
+/*
+ * The polymorphic search state computed by the searching thread is copied to the locators of each slice.
+ */
+public void testLocatePolymorphicMethodReferences() throws CoreException {
+	IMethod method = getCompilationUnit("/P0/q/Base.java").getType("Base").getMethod("foo", new String[] {"QString;"});
+	SearchPattern pattern = SearchPattern.createPattern(method, REFERENCES);
+	String expected = locate(pattern, 1);
+	assertTrue("No match in a subclass", expected.indexOf("p.Z1") != -1);
+	assertEquals("Unexpected matches located with " + THREADS + " threads", expected, locate(pattern, THREADS));
+}
+/*
+ * The pool locating the slices follows the changes of the number of threads.
+ */
+public void testLocateWithAnotherThreadCount() throws CoreException {
+	SearchPattern pattern = SearchPattern.createPattern("foo", METHOD, REFERENCES, SearchPattern.R_EXACT_MATCH);
+	String expected = locate(pattern, 1);
+	assertEquals("Unexpected matches located with " + THREADS + " threads", expected, locate(pattern, THREADS));
+	assertEquals("Unexpected matches located with 2 threads", expected, locate(pattern, 2));
+	assertEquals("Unexpected matches located with " + THREADS + " threads", expected, locate(pattern, THREADS));
+}
+public void testLocateTypeReferences() throws CoreException {
+	assertSameLocatedMatches(SearchPattern.createPattern("q.Base", TYPE, REFERENCES, SearchPattern.R_EXACT_MATCH));
+}
+/*
+ * The nodes located by an And pattern match all its patterns.
+ */
+@SuppressWarnings("deprecation")
+public void testLocateAndPattern() throws CoreException {
+	assertSameLocatedMatches(SearchPattern.createAndPattern(
+		SearchPattern.createPattern("foo", METHOD, REFERENCES, SearchPattern.R_EXACT_MATCH),
+		SearchPattern.createPattern("f*", METHOD, REFERENCES, SearchPattern.R_PATTERN_MATCH)));
+}
+public void testLocateOrPattern() throws CoreException {
+	assertSameLocatedMatches(SearchPattern.createOrPattern(
+		SearchPattern.createPattern("X", TYPE, REFERENCES, SearchPattern.R_EXACT_MATCH),
+		SearchPattern.createPattern("foo", METHOD, ALL_OCCURRENCES, SearchPattern.R_EXACT_MATCH)));
+}
+}
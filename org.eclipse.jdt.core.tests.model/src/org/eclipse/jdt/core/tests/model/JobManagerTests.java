@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.tests.junit.extension.TestCase;
+import org.eclipse.jdt.internal.core.search.processing.IJob;
+import org.eclipse.jdt.internal.core.search.processing.JobManager;
+
+/**
+ * Tests the jobs executed by a {@link JobManager} with several indexing threads: the jobs of a container
+ * are executed one at a time and in the order they were requested, while the jobs of different containers
+ * are executed concurrently.
+ */
+public class JobManagerTests extends TestCase {
+	private final static int THREADS = 4;
+	private final static long TIMEOUT = 30000;
+
+	private int indexingThreads;
+	private TestJobManager manager;
+
+	/*
+	 * Keys the jobs by their container, as the index manager does, and records how they are executed.
+	 */
+	static class TestJobManager extends JobManager {
+		final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		final Set<Object> busyKeys = new HashSet<>();
+		final Map<Object, Integer> lastSequences = new HashMap<>();
+		int running;
+		int maxRunning;
+		boolean aloneRunning;
+
+		@Override
+		public String processName() {
+			return "Test job manager";
+		}
+		@Override
+		protected Object getJobKey(IJob job) {
+			return ((TestJob) job).containerPath;
+		}
+		synchronized void started(TestJob job) {
+			this.running++;
+			this.maxRunning = Math.max(this.maxRunning, this.running);
+			if (this.aloneRunning)
+				this.failures.add(job + " executed with a job which must be executed alone");
+			if (job.containerPath == null) {
+				if (this.running != 1)
+					this.failures.add(job + " not executed alone");
+				this.aloneRunning = true;
+				return;
+			}
+			if (!this.busyKeys.add(job.containerPath))
+				this.failures.add(job + " executed with another job of " + job.containerPath);
+			Integer last = this.lastSequences.put(job.containerPath, Integer.valueOf(job.sequence));
+			if (last != null && last.intValue() > job.sequence)
+				this.failures.add(job + " executed after job " + last + " of " + job.containerPath);
+		}
+		synchronized void finished(TestJob job) {
+			this.running--;
+			if (job.containerPath == null)
+				this.aloneRunning = false;
+			else
+				this.busyKeys.remove(job.containerPath);
+		}
+	}
+	static class TestJob implements IJob {
+		final TestJobManager manager;
+		final String containerPath;
+		final int sequence;
+		final long duration;
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch resume;
+
+		TestJob(TestJobManager manager, String containerPath, int sequence, long duration) {
+			this.manager = manager;
+			this.containerPath = containerPath;
+			this.sequence = sequence;
+			this.duration = duration;
+		}
+		@Override
+		public boolean belongsTo(String jobFamily) {
+			return false;
+		}
+		@Override
+		public void cancel() {
+			// not cancelled
+		}
+		@Override
+		public void ensureReadyToRun() {
+			// always ready
+		}
+		@Override
+		public boolean execute(IProgressMonitor progress) {
+			this.manager.started(this);
+			try {
+				this.started.countDown();
+				if (this.resume != null)
+					this.resume.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				if (this.duration > 0)
+					Thread.sleep(this.duration);
+			} catch (InterruptedException e) {
+				// stop
+			} finally {
+				this.manager.finished(this);
+			}
+			return true;
+		}
+		@Override
+		public String getJobFamily() {
+			return "test";
+		}
+		@Override
+		public boolean waitNeeded() {
+			return false;
+		}
+		@Override
+		public String toString() {
+			return this.containerPath + "#" + this.sequence;
+		}
+	}
+
+public JobManagerTests(String name) {
+	super(name);
+}
+public static Test suite() {
+	return buildTestSuite(JobManagerTests.class);
+}
+@Override
+protected void setUp() throws Exception {
+	super.setUp();
+	this.indexingThreads = JobManager.INDEXING_THREADS;
+	JobManager.INDEXING_THREADS = THREADS;
+	this.manager = new TestJobManager();
+	this.manager.reset();
+}
+@Override
+protected void tearDown() throws Exception {
+	this.manager.shutdown();
+	JobManager.INDEXING_THREADS = this.indexingThreads;
+	super.tearDown();
+}
+private void waitUntilCompleted(long jobs) throws InterruptedException {
+	long start = System.currentTimeMillis();
+	while (this.manager.completedJobsCount() < jobs || this.manager.awaitingJobsCount() > 0) {
+		if (System.currentTimeMillis() - start > TIMEOUT)
+			fail("Jobs not completed: " + this.manager);
+		Thread.sleep(10);
+	}
+}
+private void assertNoFailure() {
+	assertEquals("Unexpected failures", Collections.EMPTY_LIST, this.manager.failures);
+}
+/*
+ * The jobs of a container are executed one at a time, in the order they were requested.
+ */
+public void testJobsOfContainer() throws InterruptedException {
+	int jobs = 0;
+	for (int i = 0; i < 20; i++) {
+		for (int j = 0; j < 5; j++)
+			this.manager.request(new TestJob(this.manager, "/P" + (i * j % 3), jobs++, (i + j) % 3));
+	}
+	waitUntilCompleted(jobs);
+	assertNoFailure();
+	assertEquals("Unexpected completed jobs", jobs, this.manager.completedJobsCount());
+	assertEquals("Unexpected executing jobs", 0, this.manager.executingJobsCount());
+}
+/*
+ * The jobs of different containers are executed concurrently, unless a job must be executed alone.
+ */
+public void testJobsOfDifferentContainers() throws InterruptedException {
+	CountDownLatch resume = new CountDownLatch(1);
+	TestJob[] blocked = new TestJob[THREADS];
+	for (int i = 0; i < THREADS; i++) {
+		blocked[i] = new TestJob(this.manager, "/P" + i, i, 0);
+		blocked[i].resume = resume;
+		this.manager.request(blocked[i]);
+	}
+	TestJob next = new TestJob(this.manager, "/P0", THREADS, 0);
+	this.manager.request(next);
+	TestJob alone = new TestJob(this.manager, null, THREADS + 1, 0);
+	this.manager.request(alone);
+	TestJob last = new TestJob(this.manager, "/P" + THREADS, THREADS + 2, 0);
+	this.manager.request(last);
+	try {
+		for (int i = 0; i < THREADS; i++)
+			assertTrue("Job of /P" + i + " not started", blocked[i].started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals("Unexpected executing jobs", THREADS, this.manager.executingJobsCount());
+		assertFalse("Job started before the previous job of its container completed", next.started.await(100, TimeUnit.MILLISECONDS));
+		assertEquals("Unexpected awaiting jobs", THREADS + 3, this.manager.awaitingJobsCount());
+		assertEquals("Unexpected completed jobs", 0, this.manager.completedJobsCount());
+	} finally {
+		resume.countDown();
+	}
+	waitUntilCompleted(THREADS + 3);
+	assertNoFailure();
+	assertEquals("Unexpected concurrency", THREADS, this.manager.maxRunning);
+}
+/*
+ * A job which must be executed alone waits for the jobs before it, and the jobs after it wait for it.
+ */
+public void testJobExecutedAlone() throws InterruptedException {
+	int jobs = 0;
+	for (int i = 0; i < 10; i++) {
+		for (int j = 0; j < THREADS; j++)
+			this.manager.request(new TestJob(this.manager, "/P" + j, jobs++, 2));
+		this.manager.request(new TestJob(this.manager, null, jobs++, 2));
+	}
+	waitUntilCompleted(jobs);
+	assertNoFailure();
+	assertTrue("Jobs not executed concurrently", this.manager.maxRunning > 1);
+}
+public void testStatistics() throws InterruptedException {
+	assertEquals("Unexpected completed jobs", 0, this.manager.completedJobsCount());
+	assertEquals("Unexpected jobs per second", 0.0, this.manager.jobsPerSecond(), 0.0);
+	this.manager.disable();
+	int jobs = 50;
+	try {
+		for (int i = 0; i < jobs; i++)
+			this.manager.request(new TestJob(this.manager, "/P" + (i % 5), i, 1));
+		assertEquals("Unexpected max awaiting jobs", jobs, this.manager.maxAwaitingJobsCount());
+		assertEquals("Unexpected executing jobs", 0, this.manager.executingJobsCount());
+	} finally {
+		this.manager.enable();
+	}
+	waitUntilCompleted(jobs);
+	assertNoFailure();
+	assertEquals("Unexpected completed jobs", jobs, this.manager.completedJobsCount());
+	assertEquals("Unexpected executing jobs", 0, this.manager.executingJobsCount());
+	assertEquals("Unexpected max awaiting jobs", jobs, this.manager.maxAwaitingJobsCount());
+	double jobsPerSecond = this.manager.jobsPerSecond();
+	assertTrue("Unexpected jobs per second " + jobsPerSecond, jobsPerSecond > 0);
+	// the time without executing jobs does not count
+	Thread.sleep(200);
+	assertEquals("Jobs per second decreased while idle", jobsPerSecond, this.manager.jobsPerSecond(), 0.0);
+
+	this.manager.request(new TestJob(this.manager, "/P0", jobs, 0));
+	waitUntilCompleted(jobs + 1);
+	assertEquals("Unexpected completed jobs", jobs + 1, this.manager.completedJobsCount());
+	assertEquals("Unexpected max awaiting jobs", jobs, this.manager.maxAwaitingJobsCount());
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -16,6 +16,8 @@ package org.eclipse.jdt.core.tests.model;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -185,6 +187,11 @@ public class OverflowingCacheTests extends ModifyingResourceTests {
 		 */
 		public ElementCache<OverflowingTestOpenable> cache;
 
+		/**
+		 * The sharded cache this element is stored in, if not stored in an element cache
+		 */
+		public ShardedElementCache<OverflowingTestOpenable> shardedCache;
+
 		/**
 		 * Constructs a new openable, with unsaved changes as specified,
 		 * that lives in the given cache, and opens it.
@@ -204,7 +211,10 @@ public class OverflowingCacheTests extends ModifyingResourceTests {
 		public void close() {
 			// Closes this element and removes if from the cache.
 			this.isOpen = false;
-			this.cache.remove(this);
+			if (this.cache != null)
+				this.cache.remove(this);
+			else
+				this.shardedCache.remove(this);
 		}
 
 		public boolean equals(Object o) {
@@ -270,6 +280,24 @@ public class OverflowingCacheTests extends ModifyingResourceTests {
 		}
 	}
 
+	/**
+	 * An openable living in a sharded element cache, with the given hash code.
+	 * A hash code below 2^16 puts the element in the shard given by its low bits.
+	 */
+	public class ShardedTestOpenable extends OverflowingTestOpenable {
+		private final int hash;
+
+		public ShardedTestOpenable(OverflowingTestBuffer buffer, ShardedElementCache<OverflowingTestOpenable> cache, int hash) {
+			super(buffer, null);
+			this.shardedCache = cache;
+			this.hash = hash;
+		}
+
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
 	public static Test suite() {
 		return buildModelTestSuite(OverflowingCacheTests.class);
 	}
@@ -692,6 +720,215 @@ public class OverflowingCacheTests extends ModifyingResourceTests {
 		assertEquals("overflow space incorrect (after flush)", 0, actualOverflow);
 	}
 
+	/**
+	 * Creates a sharded element cache of size 500 with 4 shards, inserts 100 elements
+	 * and ensures that they are all found, and that the lookups are counted.
+	 */
+	public void testShardedElementCache() {
+		int spaceLimit = 500;
+		int entryCount = 100;
+
+		ShardedElementCache<OverflowingTestOpenable> cache = new ShardedElementCache<>(spaceLimit, 4, null);
+		assertEquals("shard count incorrect", 4, cache.getShardCount());
+		assertEquals("space limit incorrect", spaceLimit, cache.getSpaceLimit());
+
+		OverflowingTestOpenable[] openables = new OverflowingTestOpenable[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			openables[i] = new OverflowingTestOpenable(new OverflowingTestBuffer(false, null), null);
+			cache.put(openables[i], new MockInfo(i));
+		}
+		assertEquals("current space incorrect", entryCount, cache.getCurrentSpace());
+
+		for (int i = 0; i < entryCount; i++) {
+			assertEquals("wrong value (" + i + ")", new MockInfo(i), cache.get(openables[i]));
+			assertSame("wrong key (" + i + ")", openables[i], cache.getKey(openables[i]));
+		}
+		assertEquals("hit count incorrect", entryCount, cache.getHitCount());
+		assertEquals("miss count incorrect", 0, cache.getMissCount());
+
+		cache.remove(openables[0]);
+		assertNull("entry should not be present", cache.get(openables[0]));
+		assertNull("entry should not be present", cache.peek(openables[0]));
+		assertEquals("current space incorrect (after remove)", entryCount - 1, cache.getCurrentSpace());
+		assertEquals("hit count incorrect (after remove)", entryCount, cache.getHitCount());
+		assertEquals("miss count incorrect (after remove)", 1, cache.getMissCount());
+	}
+
+	/**
+	 * Creates a sharded element cache of size 500 with 4 shards, and inserts 200 elements
+	 * in the first shard, nine of every ten having unsaved changes, and 10 elements in the
+	 * second shard. Ensures that the first shard overflows on its own: the elements with
+	 * unsaved changes stay open, and the elements of the second shard are not closed.
+	 *
+	 * @see #hasUnsavedChanges(int)
+	 */
+	public void testShardedElementCacheOverflow() {
+		int spaceLimit = 500;
+		int entryCount = 200;
+		int otherCount = 10;
+
+		ShardedElementCache<OverflowingTestOpenable> cache = new ShardedElementCache<>(spaceLimit, 4, null);
+		OverflowingTestOpenable[] others = new OverflowingTestOpenable[otherCount];
+		for (int i = 0; i < otherCount; i++) {
+			others[i] = new ShardedTestOpenable(new OverflowingTestBuffer(false, null), cache, 4 * i + 1);
+			cache.put(others[i], new MockInfo(entryCount + i));
+		}
+		OverflowingTestOpenable[] openables = new OverflowingTestOpenable[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			openables[i] = new ShardedTestOpenable(new OverflowingTestBuffer(hasUnsavedChanges(i), null), cache, 4 * i);
+			cache.put(openables[i], new MockInfo(i));
+		}
+
+		assertEquals("space limit incorrect", spaceLimit, cache.getSpaceLimit());
+		int unsaved = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (hasUnsavedChanges(i)) {
+				unsaved++;
+				assertTrue("element with unsaved changes should be open (" + i + ")", openables[i].isOpen());
+				assertEquals("wrong value (" + i + ")", new MockInfo(i), cache.peek(openables[i]));
+			}
+		}
+		assertTrue("first shard should overflow", unsaved > spaceLimit / 4);
+		for (int i = 0; i < otherCount; i++) {
+			assertTrue("element of the second shard should be open (" + i + ")", others[i].isOpen());
+			assertEquals("wrong value in the second shard (" + i + ")", new MockInfo(entryCount + i), cache.peek(others[i]));
+		}
+		int open = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (openables[i].isOpen()) open++;
+		}
+		assertEquals("current space incorrect", open + otherCount, cache.getCurrentSpace());
+
+		// the first shard shrinks back once the elements are saved
+		for (int i = 0; i < entryCount; i++) {
+			openables[i].save(null, false);
+		}
+		cache.put(new ShardedTestOpenable(new OverflowingTestBuffer(false, null), cache, 4 * entryCount), new MockInfo(entryCount + otherCount));
+		assertTrue("first shard should be back within its limit", cache.getCurrentSpace() - otherCount <= spaceLimit / 4);
+		for (int i = 0; i < otherCount; i++) {
+			assertTrue("element of the second shard should still be open (" + i + ")", others[i].isOpen());
+		}
+	}
+
+	/**
+	 * Creates a sharded element cache of size 500 with 4 shards, and inserts 300 elements
+	 * in the first shard. Ensures that the elements removed to make room were closed, that
+	 * the elements left are open, and that the least recently used elements of the shard are
+	 * the ones removed.
+	 */
+	public void testShardedElementCacheClosesEvicted() {
+		int spaceLimit = 500;
+		int shardLimit = spaceLimit / 4;
+		int entryCount = 300;
+
+		ShardedElementCache<OverflowingTestOpenable> cache = new ShardedElementCache<>(spaceLimit, 4, null);
+		OverflowingTestOpenable[] openables = new OverflowingTestOpenable[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			if (i == shardLimit) {
+				// the first element becomes the most recently used one before the shard is full
+				assertEquals("wrong value (0)", new MockInfo(0), cache.get(openables[0]));
+			}
+			openables[i] = new ShardedTestOpenable(new OverflowingTestBuffer(false, null), cache, 4 * i);
+			cache.put(openables[i], new MockInfo(i));
+			if (i == shardLimit) {
+				assertTrue("most recently used element should not be closed", openables[0].isOpen());
+				assertFalse("least recently used element should be closed", openables[1].isOpen());
+			}
+		}
+
+		int open = 0;
+		for (int i = 0; i < entryCount; i++) {
+			JavaElementInfo value = cache.peek(openables[i]);
+			if (openables[i].isOpen()) {
+				open++;
+				assertEquals("wrong value (" + i + ")", new MockInfo(i), value);
+			} else {
+				assertNull("closed element should not be present (" + i + ")", value);
+			}
+		}
+		assertTrue("elements should be closed", open < entryCount);
+		assertTrue("last element should be open", openables[entryCount - 1].isOpen());
+		assertTrue("shard should be within its limit", open <= shardLimit);
+		assertEquals("current space incorrect", open, cache.getCurrentSpace());
+	}
+
+	/**
+	 * Creates a sharded element cache of size 500 with 4 shards, in which a thread inserts
+	 * 5000 elements while other threads look up elements. Ensures that the elements with unsaved
+	 * changes are always found, that the others are either found with their own value or
+	 * not found, and that all the lookups are counted.
+	 */
+	public void testShardedElementCacheConcurrentLookups() throws InterruptedException {
+		int spaceLimit = 500;
+		int entryCount = 5000;
+		int pinnedCount = 20;
+		int readerCount = 3;
+
+		ShardedElementCache<OverflowingTestOpenable> cache = new ShardedElementCache<>(spaceLimit, 4, null);
+		OverflowingTestOpenable[] pinned = new OverflowingTestOpenable[pinnedCount];
+		for (int i = 0; i < pinnedCount; i++) {
+			pinned[i] = new ShardedTestOpenable(new OverflowingTestBuffer(true, null), cache, i);
+			cache.put(pinned[i], new MockInfo(-1 - i));
+		}
+		OverflowingTestOpenable[] openables = new OverflowingTestOpenable[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			openables[i] = new ShardedTestOpenable(new OverflowingTestBuffer(false, null), cache, pinnedCount + i);
+		}
+
+		AtomicBoolean filling = new AtomicBoolean(true);
+		AtomicLong lookups = new AtomicLong();
+		Throwable[] failures = new Throwable[readerCount];
+		Thread[] readers = new Thread[readerCount];
+		for (int r = 0; r < readerCount; r++) {
+			int reader = r;
+			readers[r] = new Thread(() -> {
+				try {
+					long count = 0;
+					for (int n = 0; filling.get() || n < 1000; n++) {
+						int p = n % pinnedCount;
+						assertEquals("wrong pinned value (" + p + ")", new MockInfo(-1 - p), cache.get(pinned[p]));
+						int i = (n * 31 + reader) % entryCount;
+						JavaElementInfo value = cache.get(openables[i]);
+						if (value != null)
+							assertEquals("wrong value (" + i + ")", new MockInfo(i), value);
+						count += 2;
+					}
+					lookups.addAndGet(count);
+				} catch (Throwable t) {
+					failures[reader] = t;
+				}
+			}, "Reader " + r);
+			readers[r].start();
+		}
+		try {
+			for (int i = 0; i < entryCount; i++) {
+				cache.put(openables[i], new MockInfo(i));
+			}
+		} finally {
+			filling.set(false);
+		}
+		for (int r = 0; r < readerCount; r++) {
+			readers[r].join(30000);
+			assertFalse("reader not completed (" + r + ")", readers[r].isAlive());
+			if (failures[r] != null) {
+				AssertionError error = new AssertionError("reader failed (" + r + ")");
+				error.initCause(failures[r]);
+				throw error;
+			}
+		}
+
+		for (int i = 0; i < pinnedCount; i++) {
+			assertTrue("pinned element should be open (" + i + ")", pinned[i].isOpen());
+		}
+		int open = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (openables[i].isOpen()) open++;
+		}
+		assertEquals("current space incorrect", pinnedCount + open, cache.getCurrentSpace());
+		assertTrue("cache should be within its limit", cache.getCurrentSpace() <= spaceLimit);
+		assertEquals("lookup count incorrect", lookups.get(), cache.getHitCount() + cache.getMissCount());
+	}
+
 	static class MockInfo extends JavaElementInfo {
 		private final int index;
 
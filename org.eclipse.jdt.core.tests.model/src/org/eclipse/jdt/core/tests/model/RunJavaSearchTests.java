@@ -67,7 +67,10 @@ public class RunJavaSearchTests extends junit.framework.TestCase {
 		allClasses.add(JavaSearchBugs9Tests.class);
 		allClasses.add(JavaSearchBugs10Tests.class);
 		allClasses.add(JavaSearchMultipleProjectsTests.class);
+		allClasses.add(JavaSearchParallelTests.class);
 		allClasses.add(SearchTests.class);
+		allClasses.add(JobManagerTests.class);
+		allClasses.add(DiskIndexTests.class);
 		allClasses.add(JavaSearchScopeTests.class);
 		allClasses.add(MatchingRegionsTest.class);
 		allClasses.add(JavaIndexTests.class);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2017 QNX Software Systems and others.
+ * Copyright (c) 2005, 2019 QNX Software Systems and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -16,6 +16,8 @@
 package org.eclipse.jdt.core.tests.nd;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Random;
 
 import org.eclipse.core.runtime.CoreException;
@@ -143,6 +145,157 @@ public class DatabaseTest extends BaseTestCase {
 		assertEquals(mem2, mem1);
 	}
 
+	public void testChunkCacheSegments() throws Exception {
+		ChunkCache cache = new ChunkCache(Database.CHUNK_SIZE * 256L, 4);
+		assertEquals(4, cache.getSegmentCount());
+		assertEquals(Database.CHUNK_SIZE * 256L, cache.getMaxSize());
+
+		Database database = new Database(DatabaseTestUtil.getTempDbName(getName()), cache,
+				DatabaseTestUtil.CURRENT_VERSION, false);
+		try {
+			database.setExclusiveLock();
+			long[] records = new long[1024];
+			for (int i = 0; i < records.length; i++) {
+				records[i] = database.malloc(Database.MAX_SINGLE_BLOCK_MALLOC_SIZE, Database.POOL_MISC);
+				database.putInt(records[i], i);
+				if (i % 64 == 63) {
+					database.flush();
+				}
+			}
+			database.flush();
+
+			cache.resetCounters();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, database.getInt(records[i]));
+			}
+			assertTrue(cache.getMissCount() > 0);
+			assertTrue(cache.getEvictionCount() > 0);
+
+			long hits = cache.getHitCount();
+			for (int i = records.length - 16; i < records.length; i++) {
+				assertEquals(i, database.getInt(records[i]));
+			}
+			assertEquals(hits + 16, cache.getHitCount());
+			assertTrue(cache.getHitRate() > 0);
+		} finally {
+			DatabaseTestUtil.deleteDatabase(database);
+		}
+	}
+
+	/*
+	 * Creates a database whose chunks do not all fit in its cache, with the index of each record at its start.
+	 */
+	private Database createDatabase(ChunkCache cache, long[] records) throws Exception {
+		Database database = new Database(DatabaseTestUtil.getTempDbName(getName()), cache,
+				DatabaseTestUtil.CURRENT_VERSION, false);
+		database.setExclusiveLock();
+		for (int i = 0; i < records.length; i++) {
+			records[i] = database.malloc(Database.MAX_SINGLE_BLOCK_MALLOC_SIZE, Database.POOL_MISC);
+			database.putInt(records[i], i);
+			if (i % 64 == 63) {
+				database.flush();
+			}
+		}
+		database.flush();
+		return database;
+	}
+
+	private static int readIntFromFile(Database database, long offset) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(database.getLocation(), "r")) {
+			file.seek(offset);
+			return file.readInt();
+		}
+	}
+
+	public void testMappedReads() throws Exception {
+		if (!Database.MAP_DATABASE_FILE) {
+			return; // mapping is off on this platform
+		}
+		ChunkCache cache = new ChunkCache(Database.CHUNK_SIZE * 256L, 4);
+		long[] records = new long[1024];
+		Database database = createDatabase(cache, records);
+		try {
+			database.resetCacheCounters();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, database.getInt(records[i]));
+			}
+			assertTrue(database.getCacheMisses() > 0);
+			assertEquals(database.getCacheMisses(), database.getMappedReads());
+		} finally {
+			DatabaseTestUtil.deleteDatabase(database);
+		}
+	}
+
+	/*
+	 * A mapped chunk is copied when it is dirtied, so the file only changes when the chunk is flushed.
+	 */
+	public void testMappedChunkCopiedOnWrite() throws Exception {
+		if (!Database.MAP_DATABASE_FILE) {
+			return; // mapping is off on this platform
+		}
+		ChunkCache cache = new ChunkCache(Database.CHUNK_SIZE * 256L, 4);
+		long[] records = new long[1024];
+		Database database = createDatabase(cache, records);
+		try {
+			database.resetCacheCounters();
+			assertEquals(0, database.getInt(records[0]));
+			assertEquals(1, database.getMappedReads());
+
+			database.putInt(records[0], -1);
+			assertEquals(-1, database.getInt(records[0]));
+			assertEquals(0, readIntFromFile(database, records[0]));
+			// the chunk of the next record is still read from the unchanged mapped region
+			assertEquals(1, database.getInt(records[1]));
+
+			database.flush();
+			assertEquals(-1, readIntFromFile(database, records[0]));
+			// evict the chunk, and read it again from the mapped region
+			for (int i = 2; i < records.length; i++) {
+				assertEquals(i, database.getInt(records[i]));
+			}
+			database.resetCacheCounters();
+			assertEquals(-1, database.getInt(records[0]));
+			assertEquals(1, database.getMappedReads());
+		} finally {
+			DatabaseTestUtil.deleteDatabase(database);
+		}
+	}
+
+	/*
+	 * Without mapping, the chunks are read through the file channel.
+	 */
+	public void testUnmappedReads() throws Exception {
+		boolean mapDatabaseFile = Database.MAP_DATABASE_FILE;
+		Database.MAP_DATABASE_FILE = false;
+		ChunkCache cache = new ChunkCache(Database.CHUNK_SIZE * 256L, 4);
+		long[] records = new long[1024];
+		Database database;
+		try {
+			database = createDatabase(cache, records);
+		} finally {
+			Database.MAP_DATABASE_FILE = mapDatabaseFile;
+		}
+		try {
+			database.resetCacheCounters();
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(i, database.getInt(records[i]));
+			}
+			assertTrue(database.getCacheMisses() > 0);
+			assertEquals(0, database.getMappedReads());
+
+			database.putInt(records[0], -1);
+			database.flush();
+			assertEquals(-1, readIntFromFile(database, records[0]));
+			for (int i = 1; i < records.length; i++) {
+				assertEquals(i, database.getInt(records[i]));
+			}
+			assertEquals(-1, database.getInt(records[0]));
+			assertEquals(0, database.getMappedReads());
+		} finally {
+			DatabaseTestUtil.deleteDatabase(database);
+		}
+	}
+
 	private static class FindVisitor implements IBTreeVisitor {
 		private Database db;
 		private String key;
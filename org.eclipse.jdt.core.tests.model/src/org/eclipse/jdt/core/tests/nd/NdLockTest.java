@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.nd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.tests.nd.util.BaseTestCase;
+import org.eclipse.jdt.internal.core.nd.IReader;
+import org.eclipse.jdt.internal.core.nd.Nd;
+import org.eclipse.jdt.internal.core.nd.db.Database;
+
+import junit.framework.Test;
+
+/**
+ * Tests for the optimistic read lock of {@link Nd}, used concurrently with its write lock.
+ */
+public class NdLockTest extends BaseTestCase {
+	private static final int READERS = 4;
+	private static final int WRITES = 500;
+	// records in distinct chunks, which a writer always sets to the same value
+	private static final int RECORDS = 8;
+
+	private Nd nd;
+	private Database db;
+	private long[] records;
+
+	public static Test suite() {
+		return BaseTestCase.suite(NdLockTest.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.nd = DatabaseTestUtil.createWithoutNodeRegistry(getName());
+		this.db = this.nd.getDB();
+		this.records = new long[RECORDS];
+		this.nd.acquireWriteLock(null);
+		try {
+			for (int i = 0; i < RECORDS; i++) {
+				this.records[i] = this.db.malloc(Database.MAX_SINGLE_BLOCK_MALLOC_SIZE, Database.POOL_MISC);
+			}
+		} finally {
+			this.nd.releaseWriteLock(0, true);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.db.setExclusiveLock();
+		DatabaseTestUtil.deleteDatabase(this.db);
+		this.db = null;
+		super.tearDown();
+	}
+
+	private void write(int value, boolean flush) {
+		this.nd.acquireWriteLock(null);
+		try {
+			for (int i = 0; i < RECORDS; i++) {
+				this.db.putInt(this.records[i], value);
+			}
+		} finally {
+			this.nd.releaseWriteLock(0, flush);
+		}
+	}
+
+	/**
+	 * Optimistic readers must never see the records of a write only partially written, nor go back to
+	 * the values of an earlier write.
+	 */
+	public void testOptimisticReadersDuringWrites() throws Exception {
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		final CountDownLatch writesDone = new CountDownLatch(1);
+		final int[] reads = new int[READERS];
+		Thread[] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			final int reader = r;
+			readers[r] = new Thread("Optimistic reader " + r) {
+				@Override
+				public void run() {
+					try {
+						int last = 0;
+						do {
+							try (IReader lock = NdLockTest.this.nd.acquireOptimisticReadLock()) {
+								NdLockTest.this.db.assertLocked();
+								int value = NdLockTest.this.db.getInt(NdLockTest.this.records[0]);
+								for (int i = 1; i < RECORDS; i++) {
+									assertEquals("Torn write seen by record " + i, value,
+											NdLockTest.this.db.getInt(NdLockTest.this.records[i]));
+								}
+								assertTrue("Read " + value + " after " + last, value >= last);
+								last = value;
+							}
+							reads[reader]++;
+						} while (writesDone.getCount() != 0);
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			};
+			readers[r].start();
+		}
+		try {
+			for (int i = 1; i <= WRITES; i++) {
+				write(i, i % 50 == 0);
+			}
+		} finally {
+			writesDone.countDown();
+			for (int r = 0; r < READERS; r++) {
+				readers[r].join(TimeUnit.SECONDS.toMillis(INDEXER_TIMEOUT_SEC));
+			}
+		}
+		if (!failures.isEmpty()) {
+			throw new AssertionError(failures.size() + " readers failed", failures.get(0));
+		}
+		for (int r = 0; r < READERS; r++) {
+			assertFalse("Reader " + r + " did not finish", readers[r].isAlive());
+			assertTrue("Reader " + r + " did not read", reads[r] > 0);
+		}
+		try (IReader lock = this.nd.acquireOptimisticReadLock()) {
+			assertEquals(WRITES, this.db.getInt(this.records[RECORDS - 1]));
+		}
+	}
+
+	/**
+	 * A writer must wait for the optimistic readers to leave, which keep reading the values before the write.
+	 */
+	public void testWriterWaitsForOptimisticReaders() throws Exception {
+		final CountDownLatch writerStarted = new CountDownLatch(1);
+		final CountDownLatch written = new CountDownLatch(1);
+		Thread writer;
+		try (IReader lock = this.nd.acquireOptimisticReadLock()) {
+			writer = new Thread("Writer") {
+				@Override
+				public void run() {
+					writerStarted.countDown();
+					write(42, false);
+					written.countDown();
+				}
+			};
+			writer.start();
+			assertTrue(writerStarted.await(INDEXER_TIMEOUT_SEC, TimeUnit.SECONDS));
+			assertFalse("The writer did not wait for the optimistic reader", written.await(200, TimeUnit.MILLISECONDS));
+			assertEquals(0, this.db.getInt(this.records[0]));
+		}
+		assertTrue("The writer was not woken up", written.await(INDEXER_TIMEOUT_SEC, TimeUnit.SECONDS));
+		writer.join();
+		try (IReader lock = this.nd.acquireOptimisticReadLock()) {
+			assertEquals(42, this.db.getInt(this.records[0]));
+		}
+	}
+
+	/**
+	 * The optimistic readers of other threads must not let a thread without a lock access the database.
+	 */
+	public void testAssertLockedWithOptimisticReaders() throws Exception {
+		final CountDownLatch reading = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread reader = new Thread("Optimistic reader") {
+			@Override
+			public void run() {
+				try (IReader lock = NdLockTest.this.nd.acquireOptimisticReadLock()) {
+					NdLockTest.this.db.assertLocked();
+					reading.countDown();
+					done.await();
+				} catch (Throwable e) {
+					failures.add(e);
+					reading.countDown();
+				}
+			}
+		};
+		reader.start();
+		try {
+			assertTrue(reading.await(INDEXER_TIMEOUT_SEC, TimeUnit.SECONDS));
+			try {
+				this.db.assertLocked();
+				fail("The database should not be locked for this thread");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		} finally {
+			done.countDown();
+			reader.join();
+		}
+		assertTrue(failures.toString(), failures.isEmpty());
+		try (IReader lock = this.nd.acquireOptimisticReadLock()) {
+			this.db.assertLocked();
+		}
+		try {
+			this.db.assertLocked();
+			fail("The database should not be locked after the optimistic reader left");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015, 2016 Google, Inc and others.
+ * Copyright (c) 2015, 2019 Google, Inc and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -38,6 +38,7 @@ public static Class[] getAllTestClasses() {
 		IndexerTest.class,
 		InheritenceTests.class,
 		LargeBlockTest.class,
+		NdLockTest.class,
 		SearchKeyTests.class
 	};
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -57,7 +57,11 @@ public class AllPerformanceTests extends junit.framework.TestCase {
 	 */
 	public static Class[] getAdditionalTestClasses() {
 		return new Class[] {
-			SecondaryTypesPerformanceTest.class
+			SecondaryTypesPerformanceTest.class,
+			ProcessingPipelinePerformanceTest.class,
+			TypeSystemPerformanceTest.class,
+			InferencePerformanceTest.class,
+			FlowAnalysisPerformanceTest.class
 		};
 	}
 
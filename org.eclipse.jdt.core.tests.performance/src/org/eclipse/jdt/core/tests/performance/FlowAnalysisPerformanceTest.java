@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.performance;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.ICompilerStatsListener;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.impl.UnitStats;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Measures the compilation of large generated methods, whose flow analysis tracks more variables than fit in
+ * the bits of a long, and reports the bytes allocated by their flow analysis (see {@link UnitStats#analyzeAllocatedBytes}).
+ */
+public class FlowAnalysisPerformanceTest extends PerformanceTestCase {
+
+	private static final int ITERATIONS = 10;
+	private static final int LOCALS = 150; // locals of the parser method
+	private static final int CASES = 300; // cases of the switch statements
+	private static final int FIELDS = 200; // fields of the message class
+
+	public static Test suite() {
+		return new TestSuite(FlowAnalysisPerformanceTest.class);
+	}
+
+	/*
+	 * A parser like method: a loop over a switch of CASES cases, which assign and check for null LOCALS locals.
+	 */
+	static String largeParser() {
+		StringBuffer source = new StringBuffer(
+			"package flow;\n" + //$NON-NLS-1$
+			"public class LargeParser {\n" + //$NON-NLS-1$
+			"	int parse(int[] tokens, Object[] values) {\n"); //$NON-NLS-1$
+		for (int i = 0; i < LOCALS; i++)
+			source.append("\t\tObject v").append(i).append(" = null;\n\t\tint n").append(i).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		source.append(
+			"		int result = 0;\n" + //$NON-NLS-1$
+			"		for (int i = 0; i < tokens.length; i++) {\n" + //$NON-NLS-1$
+			"			switch (tokens[i]) {\n"); //$NON-NLS-1$
+		for (int i = 0; i < CASES; i++) {
+			String v = "v" + (i % LOCALS), n = "n" + (i * 7 % LOCALS); //$NON-NLS-1$ //$NON-NLS-2$
+			source.append("\t\t\t\tcase ").append(i).append(":\n") //$NON-NLS-1$ //$NON-NLS-2$
+				.append("\t\t\t\t\tif (values[i] == null)\n\t\t\t\t\t\t").append(v).append(" = null;\n") //$NON-NLS-1$ //$NON-NLS-2$
+				.append("\t\t\t\t\telse if (values[i] instanceof String)\n\t\t\t\t\t\t").append(v).append(" = values[i];\n") //$NON-NLS-1$ //$NON-NLS-2$
+				.append("\t\t\t\t\telse\n\t\t\t\t\t\t").append(v).append(" = values[i].toString();\n") //$NON-NLS-1$ //$NON-NLS-2$
+				.append("\t\t\t\t\tif (").append(v).append(" != null)\n\t\t\t\t\t\tresult += ").append(v).append(".hashCode();\n") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				.append("\t\t\t\t\ttry {\n\t\t\t\t\t\t").append(n).append(" = tokens[i + 1] / ").append(i + 1).append(";\n") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				.append("\t\t\t\t\t} catch (RuntimeException e) {\n\t\t\t\t\t\t").append(n).append(" = -1;\n\t\t\t\t\t}\n") //$NON-NLS-1$ //$NON-NLS-2$
+				.append("\t\t\t\t\tresult += ").append(n).append(";\n\t\t\t\t\tbreak;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		source.append(
+			"				default:\n" + //$NON-NLS-1$
+			"					return -1;\n" + //$NON-NLS-1$
+			"			}\n" + //$NON-NLS-1$
+			"		}\n" + //$NON-NLS-1$
+			"		return result;\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"); //$NON-NLS-1$
+		return source.toString();
+	}
+
+	/*
+	 * A constructor like the ones generated by protobuf, parsing the FIELDS fields of a message in a loop over a
+	 * switch of CASES cases, inside a try statement.
+	 */
+	static String largeMessage() {
+		StringBuffer source = new StringBuffer(
+			"package flow;\n" + //$NON-NLS-1$
+			"public class LargeMessage {\n" + //$NON-NLS-1$
+			"	private int bitField0_;\n"); //$NON-NLS-1$
+		for (int i = 0; i < FIELDS; i++)
+			source.append("\tprivate ").append(i % 2 == 0 ? "Object" : "int").append(" f").append(i).append("_;\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		source.append(
+			"	LargeMessage(int[] input, Object[] values) {\n" + //$NON-NLS-1$
+			"		int pos = 0;\n" + //$NON-NLS-1$
+			"		boolean done = false;\n" + //$NON-NLS-1$
+			"		try {\n" + //$NON-NLS-1$
+			"			while (!done) {\n" + //$NON-NLS-1$
+			"				int tag = input[pos++];\n" + //$NON-NLS-1$
+			"				switch (tag) {\n" + //$NON-NLS-1$
+			"					case 0:\n" + //$NON-NLS-1$
+			"						done = true;\n" + //$NON-NLS-1$
+			"						break;\n"); //$NON-NLS-1$
+		for (int i = 0; i < CASES; i++) {
+			int field = i % FIELDS;
+			source.append("\t\t\t\t\tcase ").append(8 * (i + 1) + 2).append(": {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			if (field % 2 == 0) {
+				source.append("\t\t\t\t\t\tObject value = values[pos++];\n") //$NON-NLS-1$
+					.append("\t\t\t\t\t\tif (value == null)\n\t\t\t\t\t\t\tthrow new IllegalArgumentException();\n") //$NON-NLS-1$
+					.append("\t\t\t\t\t\tf").append(field).append("_ = value;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			} else {
+				source.append("\t\t\t\t\t\tint value = input[pos++];\n") //$NON-NLS-1$
+					.append("\t\t\t\t\t\tf").append(field).append("_ = value < 0 ? 0 : value;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			source.append("\t\t\t\t\t\tbitField0_ |= ").append(1 << (i % 31)).append(";\n\t\t\t\t\t\tbreak;\n\t\t\t\t\t}\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		source.append(
+			"					default:\n" + //$NON-NLS-1$
+			"						if (tag < 0)\n" + //$NON-NLS-1$
+			"							done = true;\n" + //$NON-NLS-1$
+			"						break;\n" + //$NON-NLS-1$
+			"				}\n" + //$NON-NLS-1$
+			"			}\n" + //$NON-NLS-1$
+			"		} catch (RuntimeException e) {\n" + //$NON-NLS-1$
+			"			throw new IllegalStateException(e);\n" + //$NON-NLS-1$
+			"		} finally {\n" + //$NON-NLS-1$
+			"			this.bitField0_ &= ~1;\n" + //$NON-NLS-1$
+			"		}\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"); //$NON-NLS-1$
+		return source.toString();
+	}
+
+	/*
+	 * Compiles units with a compiler of its own, collecting whether they have errors and the bytes allocated
+	 * by their flow analysis.
+	 */
+	static class FlowAnalysis implements ICompilerRequestor, ICompilerStatsListener {
+		private final FileSystem nameEnvironment = new FileSystem(Util.getJavaClassLibs(), null, null);
+		private final Compiler compiler;
+		boolean hasErrors;
+		long analyzeAllocatedBytes; // -1 if the VM cannot measure it
+
+		FlowAnalysis() {
+			Map<String, String> settings = new HashMap<>();
+			settings.put(CompilerOptions.OPTION_Compliance, CompilerOptions.VERSION_1_8);
+			settings.put(CompilerOptions.OPTION_Source, CompilerOptions.VERSION_1_8);
+			settings.put(CompilerOptions.OPTION_TargetPlatform, CompilerOptions.VERSION_1_8);
+			this.compiler = new Compiler(this.nameEnvironment, DefaultErrorHandlingPolicies.proceedWithAllProblems(),
+					new CompilerOptions(settings), this, new DefaultProblemFactory(Locale.getDefault()));
+			this.compiler.statsListener = this;
+			UnitStats.enableAllocationMeasurement();
+		}
+
+		void compile(String fileName, char[] contents) {
+			try {
+				// the compiler clears the array of units to compile
+				this.compiler.compile(new ICompilationUnit[] {new CompilationUnit(contents, fileName, null)});
+			} finally {
+				this.nameEnvironment.cleanup();
+			}
+		}
+
+		@Override
+		public void acceptResult(CompilationResult result) {
+			if (result.hasErrors())
+				this.hasErrors = true;
+		}
+
+		@Override
+		public void unitProcessed(UnitStats stats) {
+			if (this.analyzeAllocatedBytes >= 0)
+				this.analyzeAllocatedBytes = stats.analyzeAllocatedBytes < 0 ? -1 : this.analyzeAllocatedBytes + stats.analyzeAllocatedBytes;
+		}
+	}
+
+	/*
+	 * Compiles the given source ITERATIONS times after a warmup, checking that it has no error, and reports the
+	 * least number of bytes allocated by its flow analysis.
+	 */
+	private void compile(String typeName, String source) {
+		String fileName = "flow/" + typeName + ".java"; //$NON-NLS-1$ //$NON-NLS-2$
+		char[] contents = source.toCharArray();
+		FlowAnalysis warmup = new FlowAnalysis();
+		warmup.compile(fileName, contents);
+		assertFalse("Unexpected compile errors in " + typeName, warmup.hasErrors); //$NON-NLS-1$
+		long allocated = warmup.analyzeAllocatedBytes;
+		for (int i = 0; i < ITERATIONS; i++) {
+			runGc();
+			FlowAnalysis analysis = new FlowAnalysis();
+			startMeasuring();
+			analysis.compile(fileName, contents);
+			stopMeasuring();
+			allocated = Math.min(allocated, analysis.analyzeAllocatedBytes);
+		}
+		commitMeasurements();
+		assertPerformance();
+		if (allocated >= 0)
+			System.out.println(typeName + ": " + (allocated >> 10) + " KB allocated by the flow analysis"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testLargeParser() {
+		compile("LargeParser", largeParser()); //$NON-NLS-1$
+	}
+
+	public void testLargeMessage() {
+		compile("LargeMessage", largeMessage()); //$NON-NLS-1$
+	}
+
+	private static void runGc() {
+		for (int i = 0; i < 2; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -737,6 +737,68 @@ public void testPerfReconcile() throws CoreException {
 
 }
 
+/*
+ * Types a statement in the middle of a method of the given working copy, reconciling it after each character.
+ */
+private void typeStatement(ICompilationUnit workingCopy, int astLevel, boolean forceProblemDetection) throws JavaModelException {
+	IMethod[] methods = workingCopy.findPrimaryType().getMethods();
+	IMethod method = methods[methods.length / 2];
+	String source = workingCopy.getSource();
+	int position = source.indexOf('{', method.getNameRange().getOffset()) + 1;
+	assertTrue("No body", position > 0 && position < method.getSourceRange().getOffset() + method.getSourceRange().getLength());
+	String typed = "int typed = 0;";
+	for (int i = 0, length = typed.length(); i < length; i++) {
+		workingCopy.getBuffer().replace(position + i, 0, typed.substring(i, i + 1));
+		workingCopy.reconcile(astLevel, forceProblemDetection, null, null);
+	}
+}
+
+/*
+ * Measures the reconciles of an editor while a statement is typed: each reconcile detects problems and builds an AST.
+ */
+public void testPerfReconcileTyping() throws CoreException {
+	tagAsSummary("Reconcile editor typing", false); // do NOT put in fingerprint
+
+	// Wait for indexing end
+	AbstractJavaModelTests.waitUntilIndexesReady();
+
+	ICompilationUnit workingCopy = null;
+	try {
+		final ProblemRequestor requestor = new ProblemRequestor();
+		WorkingCopyOwner owner = new WorkingCopyOwner() {
+			public IProblemRequestor getProblemRequestor(ICompilationUnit cu) {
+				return requestor;
+			}
+		};
+		workingCopy = PARSER_WORKING_COPY.getWorkingCopy(owner, null);
+		String contents = workingCopy.getSource();
+
+		// Warm up
+		typeStatement(workingCopy, JLS3_INTERNAL, true);
+		workingCopy.getBuffer().setContents(contents);
+		workingCopy.reconcile(JLS3_INTERNAL, true, null, null);
+
+		// Measures
+		resetCounters();
+		for (int i=0; i<MEASURES_COUNT; i++) {
+			runGc();
+			startMeasuring();
+			typeStatement(workingCopy, JLS3_INTERNAL, true);
+			stopMeasuring();
+			workingCopy.getBuffer().setContents(contents);
+			workingCopy.reconcile(JLS3_INTERNAL, true, null, null);
+		}
+	}
+	finally {
+		if (workingCopy != null)
+			workingCopy.discardWorkingCopy();
+	}
+
+	// Commit
+	commitMeasurements();
+	assertPerformance();
+}
+
 /*
  * Ensures that the performance of reconcile on a big CU when there are syntax errors is acceptable.
  * (regression test for bug 135083 RangeUtil#isInInterval(...) takes significant amount of time while editing)
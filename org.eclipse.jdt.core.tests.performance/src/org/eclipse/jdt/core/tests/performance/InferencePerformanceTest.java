@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.performance;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.compiler.batch.Main;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Measures the batch compilation of pathological cases for the type inference of Java 8 (JLS 18): long fluent
+ * chains of generic methods, deeply nested generic invocations and lambdas, and heavily overloaded generic methods.
+ * Each case is a single compilation unit, whose inference dominates the compilation time.
+ */
+public class InferencePerformanceTest extends PerformanceTestCase {
+
+	private static final int ITERATIONS = 10;
+	private static final int DEPTH = 12; // length of the chains, depth of the nestings
+
+	public static Test suite() {
+		return new TestSuite(InferencePerformanceTest.class);
+	}
+
+	/*
+	 * A builder with a recursive self type, whose generic methods take lambdas, chained DEPTH times.
+	 */
+	static String builderChain() {
+		StringBuffer chain = new StringBuffer("of(\"start\")"); //$NON-NLS-1$
+		for (int i = 0; i < DEPTH; i++) {
+			chain.append("\n\t\t\t.map(s -> s + ").append(i).append(')'); //$NON-NLS-1$
+			chain.append("\n\t\t\t.with(s -> s.length())"); //$NON-NLS-1$
+			chain.append("\n\t\t\t.combine(of(").append(i).append("L), (s, l) -> s + l)"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return "package inference;\n" + //$NON-NLS-1$
+			"import java.util.function.*;\n" + //$NON-NLS-1$
+			"public class BuilderChain {\n" + //$NON-NLS-1$
+			"	static class Builder<B extends Builder<B, T>, T> {\n" + //$NON-NLS-1$
+			"		<R> Builder<?, R> map(Function<? super T, ? extends R> f) { return null; }\n" + //$NON-NLS-1$
+			"		B with(Consumer<? super T> c) { return null; }\n" + //$NON-NLS-1$
+			"		<U, R> Builder<?, R> combine(Builder<?, U> other, BiFunction<? super T, ? super U, ? extends R> f) { return null; }\n" + //$NON-NLS-1$
+			"		T build() { return null; }\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	static <T> Builder<?, T> of(T value) { return null; }\n" + //$NON-NLS-1$
+			"	String chain() {\n" + //$NON-NLS-1$
+			"		return " + chain + "\n\t\t\t.build();\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"; //$NON-NLS-1$
+	}
+
+	/*
+	 * Generic invocations nested DEPTH times, each one being a poly expression whose target is the enclosing one.
+	 */
+	static String nestedInvocations() {
+		StringBuffer nested = new StringBuffer("\"leaf\""); //$NON-NLS-1$
+		StringBuffer type = new StringBuffer("String"); //$NON-NLS-1$
+		for (int i = 0; i < DEPTH; i++) {
+			switch (i % 3) {
+				case 0 :
+					nested.insert(0, "wrap(").append(')'); //$NON-NLS-1$
+					type.insert(0, "List<").append('>'); //$NON-NLS-1$
+					break;
+				case 1 :
+					nested.insert(0, "pair(").append(", Optional.empty())"); //$NON-NLS-1$ //$NON-NLS-2$
+					type.insert(0, "Map<").append(", Optional<Integer>>"); //$NON-NLS-1$ //$NON-NLS-2$
+					break;
+				default :
+					nested.insert(0, "Optional.of(").append(')'); //$NON-NLS-1$
+					type.insert(0, "Optional<").append('>'); //$NON-NLS-1$
+					break;
+			}
+		}
+		return "package inference;\n" + //$NON-NLS-1$
+			"import java.util.*;\n" + //$NON-NLS-1$
+			"public class NestedInvocations {\n" + //$NON-NLS-1$
+			"	static <T> List<T> wrap(T value) { return null; }\n" + //$NON-NLS-1$
+			"	static <K, V> Map<K, V> pair(K key, V value) { return null; }\n" + //$NON-NLS-1$
+			"	" + type + " nested() {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"		return " + nested + ";\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"; //$NON-NLS-1$
+	}
+
+	/*
+	 * Collectors nested DEPTH / 3 times in a stream pipeline.
+	 */
+	static String nestedCollectors() {
+		int levels = DEPTH / 3;
+		StringBuffer collector = new StringBuffer("Collectors.reducing(0, Item::weight, Integer::sum)"); //$NON-NLS-1$
+		StringBuffer type = new StringBuffer("Integer"); //$NON-NLS-1$
+		for (int i = 0; i < levels; i++) {
+			collector.insert(0, "Collectors.groupingBy(it -> it.key(" + i + "), TreeMap::new, ").append(')'); //$NON-NLS-1$ //$NON-NLS-2$
+			type.insert(0, "TreeMap<String, ").append('>'); //$NON-NLS-1$
+		}
+		return "package inference;\n" + //$NON-NLS-1$
+			"import java.util.*;\n" + //$NON-NLS-1$
+			"import java.util.stream.*;\n" + //$NON-NLS-1$
+			"public class NestedCollectors {\n" + //$NON-NLS-1$
+			"	interface Item { String key(int level); int weight(); }\n" + //$NON-NLS-1$
+			"	" + type + " group(List<Item> items) {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"		return items.stream()\n" + //$NON-NLS-1$
+			"			.filter(Objects::nonNull)\n" + //$NON-NLS-1$
+			"			.sorted(Comparator.comparing((Item it) -> it.key(0)).thenComparingInt(Item::weight))\n" + //$NON-NLS-1$
+			"			.collect(" + collector + ");\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"; //$NON-NLS-1$
+	}
+
+	/*
+	 * A fluent assertion library with self types and many overloads of its entry point, chained DEPTH times.
+	 */
+	static String assertionChain() {
+		StringBuffer chain = new StringBuffer("assertThat(people)"); //$NON-NLS-1$
+		for (int i = 0; i < DEPTH; i++) {
+			chain.append("\n\t\t\t.isNotNull()"); //$NON-NLS-1$
+			chain.append("\n\t\t\t.extracting(p -> p.friends())"); //$NON-NLS-1$
+			chain.append("\n\t\t\t.flatExtracting(p -> p)"); //$NON-NLS-1$
+			chain.append("\n\t\t\t.contains(people.get(").append(i).append("))"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return "package inference;\n" + //$NON-NLS-1$
+			"import java.util.*;\n" + //$NON-NLS-1$
+			"import java.util.function.*;\n" + //$NON-NLS-1$
+			"import java.util.stream.*;\n" + //$NON-NLS-1$
+			"public class AssertionChain {\n" + //$NON-NLS-1$
+			"	interface Person { List<Person> friends(); }\n" + //$NON-NLS-1$
+			"	static class AbstractAssert<SELF extends AbstractAssert<SELF, ACTUAL>, ACTUAL> {\n" + //$NON-NLS-1$
+			"		SELF isNotNull() { return null; }\n" + //$NON-NLS-1$
+			"		SELF isEqualTo(Object expected) { return null; }\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	static class ObjectAssert<A> extends AbstractAssert<ObjectAssert<A>, A> {\n" + //$NON-NLS-1$
+			"		<R> ObjectAssert<R> extracting(Function<? super A, ? extends R> extractor) { return null; }\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	static class ComparableAssert<A extends Comparable<? super A>> extends AbstractAssert<ComparableAssert<A>, A> {}\n" + //$NON-NLS-1$
+			"	static class IterableAssert<E> extends AbstractAssert<IterableAssert<E>, Iterable<? extends E>> {\n" + //$NON-NLS-1$
+			"		<R> ListAssert<R> extracting(Function<? super E, ? extends R> extractor) { return null; }\n" + //$NON-NLS-1$
+			"		@SafeVarargs final IterableAssert<E> contains(E... values) { return this; }\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	static class ListAssert<E> extends AbstractAssert<ListAssert<E>, List<? extends E>> {\n" + //$NON-NLS-1$
+			"		<R> ListAssert<R> extracting(Function<? super E, ? extends R> extractor) { return null; }\n" + //$NON-NLS-1$
+			"		<R> ListAssert<R> flatExtracting(Function<? super E, ? extends Collection<? extends R>> extractor) { return null; }\n" + //$NON-NLS-1$
+			"		@SafeVarargs final ListAssert<E> contains(E... values) { return this; }\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	static class MapAssert<K, V> extends AbstractAssert<MapAssert<K, V>, Map<K, V>> {}\n" + //$NON-NLS-1$
+			"	static class OptionalAssert<V> extends AbstractAssert<OptionalAssert<V>, Optional<V>> {}\n" + //$NON-NLS-1$
+			"	static <T> ObjectAssert<T> assertThat(T actual) { return null; }\n" + //$NON-NLS-1$
+			"	static <T extends Comparable<? super T>> ComparableAssert<T> assertThat(T actual) { return null; }\n" + //$NON-NLS-1$
+			"	static <E> IterableAssert<E> assertThat(Iterable<? extends E> actual) { return null; }\n" + //$NON-NLS-1$
+			"	static <E> ListAssert<E> assertThat(List<? extends E> actual) { return null; }\n" + //$NON-NLS-1$
+			"	static <E> ListAssert<E> assertThat(Stream<? extends E> actual) { return null; }\n" + //$NON-NLS-1$
+			"	static <K, V> MapAssert<K, V> assertThat(Map<K, V> actual) { return null; }\n" + //$NON-NLS-1$
+			"	static <V> OptionalAssert<V> assertThat(Optional<V> actual) { return null; }\n" + //$NON-NLS-1$
+			"	void check(List<Person> people) {\n" + //$NON-NLS-1$
+			"		" + chain + ";\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"; //$NON-NLS-1$
+	}
+
+	/*
+	 * Function compositions nested DEPTH times, whose implicitly typed lambdas depend on the enclosing inference.
+	 */
+	static String nestedLambdas() {
+		StringBuffer nested = new StringBuffer("s -> s.trim()"); //$NON-NLS-1$
+		for (int i = 0; i < DEPTH; i++) {
+			if (i % 2 == 0)
+				nested.insert(0, "compose(").append(", s -> s + ").append(i).append(')'); //$NON-NLS-1$ //$NON-NLS-2$
+			else
+				nested.insert(0, "compose(s -> s.substring(" + i + "), ").append(')'); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return "package inference;\n" + //$NON-NLS-1$
+			"import java.util.function.*;\n" + //$NON-NLS-1$
+			"public class NestedLambdas {\n" + //$NON-NLS-1$
+			"	static <A, B, C> Function<A, C> compose(Function<? super A, ? extends B> f, Function<? super B, ? extends C> g) { return null; }\n" + //$NON-NLS-1$
+			"	Function<String, String> composed() {\n" + //$NON-NLS-1$
+			"		return " + nested + ";\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"; //$NON-NLS-1$
+	}
+
+	/*
+	 * Compiles the given source ITERATIONS times after a warmup, checking that it has no error.
+	 */
+	private void compile(String typeName, String source) throws IOException {
+		File sourceFolder = new File(Util.getOutputDirectory(), "inference"); //$NON-NLS-1$
+		try {
+			File packageFolder = new File(sourceFolder, "inference"); //$NON-NLS-1$
+			packageFolder.mkdirs();
+			File sourceFile = new File(packageFolder, typeName + ".java"); //$NON-NLS-1$
+			Util.createFile(sourceFile.getPath(), source);
+			String[] arguments = new String[] {"-1.8", "-proc:none", "-nowarn", "-d", "none", sourceFile.getPath()}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			Main warmup = new Main(new NullPrintWriter(), new NullPrintWriter(), false/*systemExit*/, null/*options*/, null/*progress*/);
+			warmup.compile(arguments);
+			assertEquals("Unexpected compile errors in " + typeName, 0, warmup.globalErrorsCount); //$NON-NLS-1$
+			for (int i = 0; i < ITERATIONS; i++) {
+				runGc();
+				Main main = new Main(new NullPrintWriter(), new NullPrintWriter(), false/*systemExit*/, null/*options*/, null/*progress*/);
+				startMeasuring();
+				main.compile(arguments);
+				stopMeasuring();
+			}
+			commitMeasurements();
+			assertPerformance();
+		} finally {
+			Util.delete(sourceFolder);
+		}
+	}
+
+	public void testBuilderChain() throws IOException {
+		compile("BuilderChain", builderChain()); //$NON-NLS-1$
+	}
+
+	public void testNestedInvocations() throws IOException {
+		compile("NestedInvocations", nestedInvocations()); //$NON-NLS-1$
+	}
+
+	public void testNestedCollectors() throws IOException {
+		compile("NestedCollectors", nestedCollectors()); //$NON-NLS-1$
+	}
+
+	public void testAssertionChain() throws IOException {
+		compile("AssertionChain", assertionChain()); //$NON-NLS-1$
+	}
+
+	public void testNestedLambdas() throws IOException {
+		compile("NestedLambdas", nestedLambdas()); //$NON-NLS-1$
+	}
+
+	private static void runGc() {
+		for (int i = 0; i < 2; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.performance;
+
+import org.eclipse.jdt.internal.compiler.ProcessTaskManager;
+import org.eclipse.jdt.internal.compiler.util.BoundedHandoffQueue;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Compares the hand-off of processed units between the compiler processing thread and the writing thread,
+ * using either the lock-free {@link BoundedHandoffQueue} or the synchronized wait/notify ring which
+ * {@link ProcessTaskManager} used before.
+ */
+public class ProcessingPipelinePerformanceTest extends PerformanceTestCase {
+
+	private static final int ELEMENTS = 1000000;
+	private static final int ITERATIONS = 10;
+	private static final int WORK = 50; // simulated work per unit, on both sides of the pipeline
+
+	/*
+	 * The former ProcessTaskManager queue, kept as the reference implementation.
+	 */
+	static class SynchronizedRing {
+		Object[] units = new Object[ProcessTaskManager.PROCESSED_QUEUE_SIZE];
+		int currentIndex, availableIndex, sleepCount;
+		boolean closed;
+
+		synchronized void put(Object element) {
+			while (this.units[this.availableIndex] != null) {
+				this.sleepCount = 1;
+				try {
+					wait(250);
+				} catch (InterruptedException ignore) {
+					// ignore
+				}
+				this.sleepCount = 0;
+			}
+			this.units[this.availableIndex++] = element;
+			if (this.availableIndex >= this.units.length)
+				this.availableIndex = 0;
+			if (this.sleepCount <= -1)
+				notify();
+		}
+
+		Object take() {
+			Object next = null;
+			boolean yield = false;
+			synchronized (this) {
+				next = this.units[this.currentIndex];
+				if (next == null) {
+					do {
+						if (this.closed) return null;
+						this.sleepCount = -1;
+						try {
+							wait(100);
+						} catch (InterruptedException ignore) {
+							// ignore
+						}
+						this.sleepCount = 0;
+						next = this.units[this.currentIndex];
+					} while (next == null);
+				}
+				this.units[this.currentIndex++] = null;
+				if (this.currentIndex >= this.units.length)
+					this.currentIndex = 0;
+				if (this.sleepCount >= 1 && ++this.sleepCount > 4) {
+					notify();
+					yield = this.sleepCount > 8;
+				}
+			}
+			if (yield)
+				Thread.yield();
+			return next;
+		}
+
+		synchronized void close() {
+			this.closed = true;
+			notifyAll();
+		}
+	}
+
+	static volatile int sink;
+
+	public static Test suite() {
+		return new TestSuite(ProcessingPipelinePerformanceTest.class);
+	}
+
+	static void work() {
+		int value = sink;
+		for (int i = 0; i < WORK; i++)
+			value = value * 31 + i;
+		sink = value;
+	}
+
+	public void testSynchronizedRing() throws InterruptedException {
+		final Object element = new Object();
+		for (int i = 0; i < ITERATIONS; i++) {
+			final SynchronizedRing ring = new SynchronizedRing();
+			Thread producer = new Thread(() -> {
+				for (int j = 0; j < ELEMENTS; j++) {
+					work();
+					ring.put(element);
+				}
+				ring.close();
+			});
+			startMeasuring();
+			producer.start();
+			int count = 0;
+			while (ring.take() != null) {
+				work();
+				count++;
+			}
+			stopMeasuring();
+			producer.join();
+			assertEquals("Unexpected number of elements", ELEMENTS, count);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testBoundedHandoffQueue() throws InterruptedException {
+		final Object element = new Object();
+		for (int i = 0; i < ITERATIONS; i++) {
+			final BoundedHandoffQueue<Object> queue = new BoundedHandoffQueue<>(ProcessTaskManager.PROCESSED_QUEUE_SIZE);
+			Thread producer = new Thread(() -> {
+				for (int j = 0; j < ELEMENTS; j++) {
+					work();
+					queue.put(element);
+				}
+				queue.close();
+			});
+			startMeasuring();
+			producer.start();
+			int count = 0;
+			while (queue.take() != null) {
+				work();
+				count++;
+			}
+			stopMeasuring();
+			producer.join();
+			assertEquals("Unexpected number of elements", ELEMENTS, count);
+			assertEquals("Unexpected occupancy", 0, queue.size());
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.core.tests.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.core.tests.util.Util;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ast.Wildcard;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.batch.Main;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.lookup.Binding;
+import org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment;
+import org.eclipse.jdt.internal.compiler.lookup.ReferenceBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeSystem;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Measures the interning of derived types (parameterized, wildcard, array, raw and intersection types) by the
+ * {@link TypeSystem}, from a single thread and from several threads sharing a lookup environment, and the batch
+ * compilation of sources using streams and collectors, which intern many of them.
+ */
+public class TypeSystemPerformanceTest extends PerformanceTestCase {
+
+	private static final int ITERATIONS = 10;
+	private static final int ROUNDS = 200; // interning of all the derived types per iteration
+	private static final int THREADS = 4;
+	private static final int UNITS = 100; // compilation units of the compiled sources
+
+	private static final String[] GENERIC_TYPES = {
+		"java.lang.Comparable", //$NON-NLS-1$
+		"java.lang.Iterable", //$NON-NLS-1$
+		"java.util.Collection", //$NON-NLS-1$
+		"java.util.List", //$NON-NLS-1$
+		"java.util.Set", //$NON-NLS-1$
+		"java.util.Map", //$NON-NLS-1$
+		"java.util.Optional", //$NON-NLS-1$
+		"java.util.Comparator", //$NON-NLS-1$
+		"java.util.function.Function", //$NON-NLS-1$
+		"java.util.function.BiFunction", //$NON-NLS-1$
+		"java.util.function.Supplier", //$NON-NLS-1$
+		"java.util.function.BinaryOperator", //$NON-NLS-1$
+		"java.util.stream.Stream", //$NON-NLS-1$
+		"java.util.stream.Collector" //$NON-NLS-1$
+	};
+	private static final String[] ARGUMENT_TYPES = {
+		"java.lang.Object", //$NON-NLS-1$
+		"java.lang.String", //$NON-NLS-1$
+		"java.lang.Number", //$NON-NLS-1$
+		"java.lang.Integer", //$NON-NLS-1$
+		"java.lang.Long", //$NON-NLS-1$
+		"java.lang.Double", //$NON-NLS-1$
+		"java.lang.CharSequence" //$NON-NLS-1$
+	};
+	private static final int KINDS = 6; // derived types interned per generic type and argument type
+
+	static class Interning {
+		final LookupEnvironment environment;
+		final ReferenceBinding[] genericTypes = new ReferenceBinding[GENERIC_TYPES.length];
+		final ReferenceBinding[] argumentTypes = new ReferenceBinding[ARGUMENT_TYPES.length];
+		final ReferenceBinding comparableType;
+
+		Interning() {
+			Map<String, String> settings = new HashMap<>();
+			settings.put(CompilerOptions.OPTION_Compliance, CompilerOptions.VERSION_1_8);
+			settings.put(CompilerOptions.OPTION_Source, CompilerOptions.VERSION_1_8);
+			settings.put(CompilerOptions.OPTION_TargetPlatform, CompilerOptions.VERSION_1_8);
+			Compiler compiler = new Compiler(new FileSystem(Util.getJavaClassLibs(), null, null),
+					DefaultErrorHandlingPolicies.proceedWithAllProblems(), new CompilerOptions(settings),
+					result -> { /* nothing to compile */ }, new DefaultProblemFactory(Locale.getDefault()));
+			this.environment = compiler.lookupEnvironment;
+			// binary types are created from a single thread, only the derived types are interned concurrently
+			for (int i = 0; i < GENERIC_TYPES.length; i++)
+				this.genericTypes[i] = getType(GENERIC_TYPES[i]);
+			for (int i = 0; i < ARGUMENT_TYPES.length; i++)
+				this.argumentTypes[i] = getType(ARGUMENT_TYPES[i]);
+			this.comparableType = this.genericTypes[0];
+		}
+
+		private ReferenceBinding getType(String name) {
+			ReferenceBinding type = this.environment.getType(CharOperation.splitOn('.', name.toCharArray()));
+			assertNotNull("Missing type " + name, type); //$NON-NLS-1$
+			return type;
+		}
+
+		/*
+		 * Interns all the derived types, starting with the given generic type, and answers them.
+		 */
+		TypeBinding[] intern(int start) {
+			LookupEnvironment env = this.environment;
+			int genericLength = this.genericTypes.length, argumentLength = this.argumentTypes.length;
+			TypeBinding[] result = new TypeBinding[genericLength * argumentLength * KINDS];
+			for (int i = 0; i < genericLength; i++) {
+				int genericIndex = (start + i) % genericLength;
+				ReferenceBinding genericType = this.genericTypes[genericIndex];
+				int arity = genericType.typeVariables().length;
+				for (int j = 0; j < argumentLength; j++) {
+					ReferenceBinding argumentType = this.argumentTypes[j];
+					TypeBinding[] arguments = new TypeBinding[arity];
+					TypeBinding[] wildcards = new TypeBinding[arity];
+					for (int k = 0; k < arity; k++) {
+						arguments[k] = argumentType;
+						wildcards[k] = env.createWildcard(genericType, k, argumentType, null, k % 2 == 0 ? Wildcard.EXTENDS : Wildcard.SUPER);
+					}
+					ReferenceBinding parameterizedType = env.createParameterizedType(genericType, arguments, null);
+					int slot = (genericIndex * argumentLength + j) * KINDS;
+					result[slot] = parameterizedType;
+					result[slot + 1] = env.createParameterizedType(genericType, wildcards, null);
+					result[slot + 2] = env.createArrayType(parameterizedType, 1);
+					result[slot + 3] = env.createArrayType(argumentType, 1 + genericIndex % 3);
+					result[slot + 4] = env.createRawType(genericType, null);
+					result[slot + 5] = env.createIntersectionType18(new ReferenceBinding[] {
+							argumentType, env.createParameterizedType(this.comparableType, new TypeBinding[] {argumentType}, null)});
+				}
+			}
+			return result;
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(TypeSystemPerformanceTest.class);
+	}
+
+	/*
+	 * Interns the derived types from the given number of threads sharing a new lookup environment, each thread starting
+	 * with a different generic type, and checks that all the threads got the same types.
+	 */
+	private void intern(int threadCount) throws InterruptedException {
+		for (int i = 0; i < ITERATIONS; i++) {
+			final Interning interning = new Interning();
+			final TypeBinding[][] results = new TypeBinding[threadCount][];
+			final Throwable[] failures = new Throwable[threadCount];
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread[] threads = new Thread[threadCount];
+			for (int j = 0; j < threadCount; j++) {
+				final int index = j;
+				threads[j] = new Thread(() -> {
+					try {
+						start.await();
+						results[index] = interning.intern(index * 3);
+						for (int r = 1; r < ROUNDS; r++)
+							interning.intern(index * 3 + r);
+					} catch (Throwable t) {
+						failures[index] = t;
+					}
+				}, "Interning #" + j); //$NON-NLS-1$
+				threads[j].start();
+			}
+			runGc();
+			startMeasuring();
+			start.countDown();
+			for (int j = 0; j < threadCount; j++)
+				threads[j].join();
+			stopMeasuring();
+			for (int j = 0; j < threadCount; j++) {
+				if (failures[j] != null)
+					throw new AssertionError("Interning failed in thread #" + j, failures[j]); //$NON-NLS-1$
+				for (int k = 0, length = results[0].length; k < length; k++) {
+					assertNotNull("Missing type " + k, results[j][k]); //$NON-NLS-1$
+					assertSame("Type " + k + " not unique: " + results[0][k].debugName(), results[0][k], results[j][k]); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+			assertEquals("Unexpected kind", Binding.PARAMETERIZED_TYPE, results[0][0].kind()); //$NON-NLS-1$
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	public void testInternDerivedTypes() throws InterruptedException {
+		intern(1);
+	}
+
+	public void testInternDerivedTypesConcurrently() throws InterruptedException {
+		intern(THREADS);
+	}
+
+	private static String streamsSource(int index) {
+		String item = "Item" + index; //$NON-NLS-1$
+		return "package streams;\n" + //$NON-NLS-1$
+			"import java.util.*;\n" + //$NON-NLS-1$
+			"import java.util.function.*;\n" + //$NON-NLS-1$
+			"import java.util.stream.*;\n" + //$NON-NLS-1$
+			"public class X" + index + " {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	static class " + item + "<T extends Comparable<? super T>> {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"		T key; String name; int weight; List<Double> values;\n" + //$NON-NLS-1$
+			"		T getKey() { return this.key; }\n" + //$NON-NLS-1$
+			"		String getName() { return this.name; }\n" + //$NON-NLS-1$
+			"		int getWeight() { return this.weight; }\n" + //$NON-NLS-1$
+			"		List<Double> getValues() { return this.values; }\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	Map<String, List<Integer>> group(List<" + item + "<String>> items) {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"		return items.stream().collect(Collectors.groupingBy(" + item + "::getName, TreeMap::new, Collectors.mapping(" + item + "::getWeight, Collectors.toList())));\n" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"	}\n" + //$NON-NLS-1$
+			"	Map<Boolean, Map<String, Long>> partition(Stream<" + item + "<Integer>> items) {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"		return items.collect(Collectors.partitioningBy(it -> it.getWeight() > " + index + ", Collectors.groupingBy(it -> it.getName().toUpperCase(), Collectors.counting())));\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"	Optional<" + item + "<String>> best(Collection<? extends " + item + "<String>> items) {\n" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"		return items.stream().filter(Objects::nonNull).map(it -> (" + item + "<String>) it)\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"			.max(Comparator.comparing(" + item + "<String>::getKey).thenComparing(" + item + "::getWeight, Comparator.reverseOrder()));\n" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"	}\n" + //$NON-NLS-1$
+			"	<K extends Comparable<? super K>, V> SortedMap<K, Set<V>> invert(Map<V, ? extends Collection<K>> map) {\n" + //$NON-NLS-1$
+			"		return map.entrySet().stream()\n" + //$NON-NLS-1$
+			"			.flatMap(e -> e.getValue().stream().map(k -> new AbstractMap.SimpleEntry<>(k, e.getKey())))\n" + //$NON-NLS-1$
+			"			.collect(Collectors.groupingBy(Map.Entry::getKey, TreeMap::new, Collectors.mapping(Map.Entry::getValue, Collectors.toCollection(LinkedHashSet::new))));\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	<T, R> Function<List<T>, List<R>> lift(Function<? super T, ? extends R> f) {\n" + //$NON-NLS-1$
+			"		return list -> list.stream().map(f).collect(Collectors.toList());\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"	Map<String, Optional<" + item + "<String>>> heaviest(List<" + item + "<String>> items) {\n" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"		return items.stream().collect(Collectors.groupingBy(" + item + "::getName, Collectors.maxBy(Comparator.comparingInt(" + item + "::getWeight))));\n" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"	}\n" + //$NON-NLS-1$
+			"	Map<Integer, Double> average(List<" + item + "<String>> items) {\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"		return items.stream().collect(Collectors.groupingBy(" + item + "::getWeight, Collectors.averagingDouble(it -> it.getValues().stream().reduce(0d, Double::sum))));\n" + //$NON-NLS-1$ //$NON-NLS-2$
+			"	}\n" + //$NON-NLS-1$
+			"	Supplier<Stream<Map.Entry<String, Integer>>> entries(Map<String, Integer> map) {\n" + //$NON-NLS-1$
+			"		return () -> map.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));\n" + //$NON-NLS-1$
+			"	}\n" + //$NON-NLS-1$
+			"}\n"; //$NON-NLS-1$
+	}
+
+	/*
+	 * Compiles sources using streams and collectors, whose type inference interns many parameterized types and wildcards.
+	 */
+	public void testCompileStreamsAndCollectors() throws IOException {
+		File sourceFolder = new File(Util.getOutputDirectory(), "typesystem"); //$NON-NLS-1$
+		try {
+			File packageFolder = new File(sourceFolder, "streams"); //$NON-NLS-1$
+			packageFolder.mkdirs();
+			for (int i = 0; i < UNITS; i++)
+				Util.createFile(new File(packageFolder, "X" + i + ".java").getPath(), streamsSource(i)); //$NON-NLS-1$ //$NON-NLS-2$
+			String[] arguments = new String[] {"-1.8", "-proc:none", "-nowarn", "-d", "none", sourceFolder.getPath()}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			Main warmup = new Main(new NullPrintWriter(), new NullPrintWriter(), false/*systemExit*/, null/*options*/, null/*progress*/);
+			warmup.compile(arguments);
+			assertEquals("Unexpected compile errors", 0, warmup.globalErrorsCount); //$NON-NLS-1$
+			for (int i = 0; i < ITERATIONS; i++) {
+				runGc();
+				Main main = new Main(new NullPrintWriter(), new NullPrintWriter(), false/*systemExit*/, null/*options*/, null/*progress*/);
+				startMeasuring();
+				main.compile(arguments);
+				stopMeasuring();
+			}
+			commitMeasurements();
+			assertPerformance();
+		} finally {
+			Util.delete(sourceFolder);
+		}
+	}
+
+	private static void runGc() {
+		for (int i = 0; i < 2; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -41,6 +41,7 @@ import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 import org.eclipse.jdt.internal.compiler.env.IBinaryType;
 import org.eclipse.jdt.internal.compiler.lookup.TypeConstants;
 import org.eclipse.jdt.internal.compiler.lookup.BinaryTypeBinding.ExternalAnnotationStatus;
+import org.eclipse.jdt.internal.compiler.util.JarDirectoryCache;
 import org.eclipse.jdt.internal.compiler.util.ManifestAnalyzer;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 import org.eclipse.jdt.internal.compiler.util.Util;
@@ -52,6 +53,7 @@ protected File file;
 protected ZipFile zipFile;
 protected ZipFile annotationZipFile;
 protected boolean closeZipFileAtEnd;
+protected JarDirectoryCache.SharedJar sharedJar; // when the zip file is owned by the shared jar cache
 protected Set<String> packageCache;
 protected List<String> annotationPaths;
 
@@ -108,6 +110,15 @@ public List<Classpath> fetchLinkedJars(FileSystem.ClasspathSectionProblemReporte
 		}
 	}
 }
+/*
+ * Answers the reader of the given class file, shared with the other users of the jar when the zip file is
+ * owned by the shared jar cache (see JarDirectoryCache.SharedJar#getClassFileReader(String, char[])).
+ */
+ClassFileReader readClassFile(String entryName, char[] modName) throws ClassFormatException, IOException {
+	if (this.sharedJar != null)
+		return this.sharedJar.getClassFileReader(entryName, modName);
+	return ClassFileReader.read(this.zipFile, entryName);
+}
 @Override
 public NameEnvironmentAnswer findClass(char[] typeName, String qualifiedPackageName, String moduleName, String qualifiedBinaryFileName) {
 	return findClass(typeName, qualifiedPackageName, moduleName, qualifiedBinaryFileName, false);
@@ -118,9 +129,9 @@ public NameEnvironmentAnswer findClass(char[] typeName, String qualifiedPackageN
 		return null; // most common case
 
 	try {
-		IBinaryType reader = ClassFileReader.read(this.zipFile, qualifiedBinaryFileName);
+		char[] modName = this.module == null ? null : this.module.name();
+		IBinaryType reader = readClassFile(qualifiedBinaryFileName, modName);
 		if (reader != null) {
-			char[] modName = this.module == null ? null : this.module.name();
 			if (reader instanceof ClassFileReader) {
 				ClassFileReader classReader = (ClassFileReader) reader;
 				if (classReader.moduleName == null)
@@ -167,23 +178,34 @@ public char[][][] findTypeNames(final String qualifiedPackageName, String module
 		return null; // most common case
 	final char[] packageArray = qualifiedPackageName.toCharArray();
 	final ArrayList answers = new ArrayList();
-	nextEntry : for (Enumeration e = this.zipFile.entries(); e.hasMoreElements(); ) {
-		String fileName = ((ZipEntry) e.nextElement()).getName();
+	if (this.sharedJar != null) {
+		if (qualifiedPackageName.length() > 0) {
+			char[][] packageNames = CharOperation.splitOn('/', packageArray);
+			for (String fileName : this.sharedJar.getDirectory().getFileNames(qualifiedPackageName)) {
+				int indexOfDot = fileName.lastIndexOf('.');
+				if (indexOfDot != -1)
+					answers.add(CharOperation.arrayConcat(packageNames, fileName.substring(0, indexOfDot).toCharArray()));
+			}
+		}
+	} else {
+		nextEntry : for (Enumeration e = this.zipFile.entries(); e.hasMoreElements(); ) {
+			String fileName = ((ZipEntry) e.nextElement()).getName();
 
-		// add the package name & all of its parent packages
-		int last = fileName.lastIndexOf('/');
-		if (last > 0) {
-			// extract the package name
-			String packageName = fileName.substring(0, last);
-			if (!qualifiedPackageName.equals(packageName))
-				continue nextEntry;
-			int indexOfDot = fileName.lastIndexOf('.');
-			if (indexOfDot != -1) {
-				String typeName = fileName.substring(last + 1, indexOfDot);
-				answers.add(
-					CharOperation.arrayConcat(
-						CharOperation.splitOn('/', packageArray),
-						typeName.toCharArray()));
+			// add the package name & all of its parent packages
+			int last = fileName.lastIndexOf('/');
+			if (last > 0) {
+				// extract the package name
+				String packageName = fileName.substring(0, last);
+				if (!qualifiedPackageName.equals(packageName))
+					continue nextEntry;
+				int indexOfDot = fileName.lastIndexOf('.');
+				if (indexOfDot != -1) {
+					String typeName = fileName.substring(last + 1, indexOfDot);
+					answers.add(
+						CharOperation.arrayConcat(
+							CharOperation.splitOn('/', packageArray),
+							typeName.toCharArray()));
+				}
 			}
 		}
 	}
@@ -199,7 +221,12 @@ public char[][][] findTypeNames(final String qualifiedPackageName, String module
 @Override
 public void initialize() throws IOException {
 	if (this.zipFile == null) {
-		this.zipFile = new ZipFile(this.file);
+		if (this.closeZipFileAtEnd) {
+			this.sharedJar = JarDirectoryCache.getDefault().acquire(this.file);
+			this.zipFile = this.sharedJar.getZipFile();
+		} else {
+			this.zipFile = new ZipFile(this.file);
+		}
 	}
 }
 void acceptModule(ClassFileReader reader) {
@@ -236,6 +263,10 @@ public synchronized char[][] getModulesDeclaringPackage(String qualifiedPackageN
 	if (this.packageCache != null)
 		return singletonModuleNameIf(this.packageCache.contains(qualifiedPackageName));
 
+	if (this.sharedJar != null) {
+		this.packageCache = this.sharedJar.getDirectory().getPackageNames();
+		return singletonModuleNameIf(this.packageCache.contains(qualifiedPackageName));
+	}
 	this.packageCache = new HashSet<>(41);
 	this.packageCache.add(Util.EMPTY_STRING);
 	
@@ -247,6 +278,13 @@ public synchronized char[][] getModulesDeclaringPackage(String qualifiedPackageN
 }
 @Override
 public boolean hasCompilationUnit(String qualifiedPackageName, String moduleName) {
+	if (this.sharedJar != null) {
+		for (String fileName : this.sharedJar.getDirectory().getFileNames(qualifiedPackageName)) {
+			if (fileName.toLowerCase().endsWith(SUFFIX_STRING_class))
+				return true;
+		}
+		return false;
+	}
 	qualifiedPackageName += '/';
 	for (Enumeration<? extends ZipEntry> e = this.zipFile.entries(); e.hasMoreElements(); ) {
 		String fileName = e.nextElement().getName();
@@ -264,7 +302,11 @@ public boolean hasCompilationUnit(String qualifiedPackageName, String moduleName
 public void reset() {
 	super.reset();
 	if (this.closeZipFileAtEnd) {
-		if (this.zipFile != null) {
+		if (this.sharedJar != null) {
+			JarDirectoryCache.getDefault().release(this.sharedJar);
+			this.sharedJar = null;
+			this.zipFile = null;
+		} else if (this.zipFile != null) {
 			try {
 				this.zipFile.close();
 			} catch(IOException e) {
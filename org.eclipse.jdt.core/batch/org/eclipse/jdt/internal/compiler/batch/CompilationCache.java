@@ -0,0 +1,708 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
+import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IModuleAwareNameEnvironment.LookupStrategy;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.CompilerStats;
+import org.eclipse.jdt.internal.compiler.lookup.ModuleBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeConstants;
+import org.eclipse.jdt.internal.compiler.parser.Parser;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemReporter;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+import org.eclipse.jdt.internal.compiler.util.Messages;
+import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
+import org.eclipse.jdt.internal.compiler.util.Util;
+
+/**
+ * The persistent compilation cache of the batch compiler, kept in the directory given by
+ * <code>-cacheDir &lt;dir&gt;</code>.
+ * <p>
+ * Each compilation unit is keyed by a digest of its source, of its file name and of the compiler options.
+ * The entry stored under that key holds the class files (shared by content in the <code>objects</code> folder)
+ * and problems of the unit, along with how each name it referenced was resolved: to a type of another unit of
+ * the compilation or to a binary type (both by structural hash, see
+ * {@link ClassFileReader#getStructuralHash(org.eclipse.jdt.internal.compiler.env.IBinaryType)}), to a source type
+ * of the source path (by content), or to nothing. As a type appearing in a referenced package under a referenced
+ * simple name may shadow the type the name resolved to (e.g. a new <code>p/List</code> hiding <code>java.util.List</code>
+ * from a unit of <code>p</code> importing <code>java.util.*</code>), the entry also holds a digest of the types found
+ * for these pairs of names which the unit did not reference.
+ * <p>
+ * A unit whose entry exists and whose references still resolve the same way is not compiled: the other units see
+ * its stored class files as binary types. The units which changed are compiled in rounds, as the incremental
+ * builder does: when the structure of a compiled unit differs from what the units compiled against it assumed,
+ * those are compiled in the next round. Once done, the problems and class files of all units are output in order,
+ * the class files being copied from the cache.
+ * <p>
+ * Units which have errors are never stored, and the cache is not used when annotations are processed or modules
+ * are compiled.
+ */
+public class CompilationCache implements ICompilerRequestor {
+
+	private static final int VERSION = 2;
+	private static final int MAX_ROUNDS = 5; // then compile all the remaining units together
+	private static final String ENTRIES = "entries"; //$NON-NLS-1$
+	private static final String OBJECTS = "objects"; //$NON-NLS-1$
+
+	static class Entry {
+		String[] typeNames; // constant pool names of all the types of the unit
+		boolean[] topLevel;
+		String[] objects; // digests of the class files of the types
+		String structure; // digest of the structure of the types visible from other units
+		String[] references; // qualified names, then simple names from simpleNamesStart
+		int simpleNamesStart;
+		String[] resolutions;
+		String shadowingTypes; // digest of the unreferenced types named by a referenced package and simple name
+		CategorizedProblem[] problems;
+		boolean hasErrors;
+		boolean stored;
+	}
+
+	private final Main main;
+	private final ICompilerRequestor requestor;
+	private final File entriesFolder;
+	private final File objectsFolder;
+	private final String fingerprint;
+
+	private boolean enabled;
+	private CompilationUnit[] units;
+	private String[] keys;
+	private Entry[] entries;
+	private Map<String, Integer> unitIndexes;
+	private Map<String, Integer> unitTypes; // top-level type names to unit indexes
+	private Map<String, String> resolutions = new HashMap<>(); // outside of the units
+	// types of the units which are not compiled in the current round
+	Map<String, File> binaryTypes = new HashMap<>();
+	Set<String> binaryPackages = new HashSet<>();
+
+public CompilationCache(Main main, String directory) {
+	this.main = main;
+	this.requestor = main.getBatchRequestor();
+	File folder = new File(directory);
+	this.entriesFolder = new File(folder, ENTRIES);
+	this.objectsFolder = new File(folder, OBJECTS);
+	StringBuilder buffer = new StringBuilder();
+	buffer.append(VERSION).append('\n').append(main.bind("compiler.version")).append('\n'); //$NON-NLS-1$
+	for (Map.Entry<String, String> option : new TreeMap<>(main.options).entrySet())
+		buffer.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+	buffer.append(main.annotationsFromClasspath).append(main.annotationPaths);
+	this.fingerprint = buffer.toString();
+}
+
+/**
+ * Create the name environment of the compilation, which also answers the types of the units which are not
+ * compiled in the current round.
+ */
+public FileSystem createEnvironment(FileSystem.Classpath[] paths, String[] initialFileNames,
+		boolean annotationsFromClasspath, Set<String> limitedModules) {
+	return new FileSystem(paths, initialFileNames, annotationsFromClasspath, limitedModules) {
+		@Override
+		public NameEnvironmentAnswer findType(char[][] compoundName, char[] moduleName) {
+			NameEnvironmentAnswer answer = findBinaryType(compoundName, moduleName);
+			return answer != null ? answer : super.findType(compoundName, moduleName);
+		}
+		@Override
+		public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName, char[] moduleName) {
+			NameEnvironmentAnswer answer = findBinaryType(CharOperation.arrayConcat(packageName, typeName), moduleName);
+			return answer != null ? answer : super.findType(typeName, packageName, moduleName);
+		}
+		@Override
+		public char[][] getModulesDeclaringPackage(char[][] parentPackageName, char[] packageName, char[] moduleName) {
+			char[][] modules = super.getModulesDeclaringPackage(parentPackageName, packageName, moduleName);
+			if (modules == null && LookupStrategy.get(moduleName) != LookupStrategy.Named
+					&& CompilationCache.this.binaryPackages.contains(new String(CharOperation.concatWith(parentPackageName, packageName, '/'))))
+				return new char[][] { ModuleBinding.UNNAMED };
+			return modules;
+		}
+	};
+}
+
+NameEnvironmentAnswer findBinaryType(char[][] compoundName, char[] moduleName) {
+	if (this.binaryTypes.isEmpty() || LookupStrategy.get(moduleName) == LookupStrategy.Named)
+		return null;
+	File file = this.binaryTypes.get(new String(CharOperation.concatWith(compoundName, '/')));
+	if (file == null)
+		return null;
+	try {
+		return new NameEnvironmentAnswer(ClassFileReader.read(file), null);
+	} catch (ClassFormatException | IOException e) {
+		return null;
+	}
+}
+
+/**
+ * Compile the units which changed since they were stored, then output the problems and class files of all units.
+ */
+public void compile(CompilationUnit[] compilationUnits, FileSystem environment) {
+	Compiler compiler = this.main.batchCompiler;
+	this.units = compilationUnits;
+	this.enabled = !this.main.compilerOptions.processAnnotations;
+	int length = compilationUnits.length;
+	for (int i = 0; this.enabled && i < length; i++) {
+		if (compilationUnits[i].module != null
+				|| CharOperation.endsWith(compilationUnits[i].getFileName(), TypeConstants.MODULE_INFO_FILE_NAME))
+			this.enabled = false;
+	}
+	if (!this.enabled) {
+		compiler.compile(compilationUnits);
+		return;
+	}
+
+	long startTime = System.currentTimeMillis();
+	this.keys = new String[length];
+	this.entries = new Entry[length];
+	this.unitIndexes = new HashMap<>(length);
+	this.unitTypes = new HashMap<>();
+	boolean[] compile = new boolean[length];
+	boolean found = false;
+	for (int i = 0; i < length; i++) {
+		CompilationUnit unit = compilationUnits[i];
+		this.keys[i] = computeKey(unit);
+		this.unitIndexes.put(new String(unit.getFileName()), Integer.valueOf(i));
+		Entry entry = this.entries[i] = readEntry(this.keys[i], unit.getFileName());
+		if (entry == null) {
+			compile[i] = true;
+		} else {
+			found = true;
+			for (int t = 0; t < entry.typeNames.length; t++)
+				if (entry.topLevel[t])
+					this.unitTypes.put(entry.typeNames[t], Integer.valueOf(i));
+		}
+	}
+	if (found) {
+		// the units which changed may declare other types than they did
+		Parser parser = new Parser(new ProblemReporter(DefaultErrorHandlingPolicies.proceedWithAllProblems(),
+				this.main.compilerOptions, this.main.getProblemFactory()), false);
+		for (int i = 0; i < length; i++) {
+			if (compile[i])
+				recordDeclaredTypes(i, parser);
+		}
+		// references to units which are compiled are checked once their structure is known
+		for (int i = 0; i < length; i++) {
+			if (!compile[i] && !isConsistent(this.entries[i], environment, null))
+				compile[i] = true;
+		}
+	}
+
+	for (int round = 1; ; round++) {
+		List<CompilationUnit> roundUnits = new ArrayList<>();
+		this.binaryTypes.clear();
+		this.binaryPackages.clear();
+		for (int i = 0; i < length; i++) {
+			if (round > MAX_ROUNDS && this.entries[i] != null && !this.entries[i].stored)
+				compile[i] = true; // compiled in a previous round
+			if (compile[i])
+				roundUnits.add(compilationUnits[i]);
+			else if (this.entries[i] != null)
+				recordBinaryTypes(this.entries[i]);
+		}
+		if (roundUnits.isEmpty())
+			break;
+		compiler.compile(roundUnits.toArray(new CompilationUnit[roundUnits.size()]));
+		for (int i = 0; i < length; i++) {
+			if (compile[i] && this.entries[i] != null && !this.entries[i].stored)
+				resolveReferences(this.entries[i], environment);
+		}
+		// compile the units which assumed another structure for the units just compiled
+		boolean[] compiled = compile;
+		compile = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			if (!compiled[i] && this.entries[i] != null && !isConsistent(this.entries[i], environment, compiled))
+				compile[i] = true;
+		}
+	}
+	this.binaryTypes.clear();
+	this.binaryPackages.clear();
+
+	for (int i = 0; i < length; i++) {
+		Entry entry = this.entries[i];
+		if (entry == null) continue;
+		output(i);
+		if (!entry.stored && !entry.hasErrors) {
+			try {
+				writeEntry(this.keys[i], entry);
+			} catch (IOException e) {
+				// the unit will be compiled again next time
+			}
+		}
+	}
+	CompilerStats stats = compiler.stats;
+	stats.startTime = startTime;
+	stats.endTime = System.currentTimeMillis();
+}
+
+@Override
+public void acceptResult(CompilationResult result) {
+	if (!this.enabled) {
+		this.requestor.acceptResult(result);
+		return;
+	}
+	Integer index = this.unitIndexes.get(new String(result.getFileName()));
+	ClassFile[] classFiles = result.getClassFiles();
+	try {
+		if (index == null) return;
+		int length = classFiles.length;
+		Entry entry = new Entry();
+		entry.typeNames = new String[length];
+		entry.topLevel = new boolean[length];
+		entry.objects = new String[length];
+		String[] structures = new String[length];
+		for (int i = 0; i < length; i++) {
+			byte[] bytes = classFiles[i].getBytes();
+			entry.typeNames[i] = new String(classFiles[i].fileName());
+			entry.topLevel[i] = classFiles[i].enclosingClassFile == null;
+			if (entry.topLevel[i])
+				this.unitTypes.put(entry.typeNames[i], index);
+			entry.objects[i] = writeObject(bytes);
+			ClassFileReader reader = new ClassFileReader(bytes, classFiles[i].fileName());
+			if (!reader.isLocal() && !reader.isAnonymous())
+				structures[i] = entry.typeNames[i] + ':' + toHex(ClassFileReader.getStructuralHash(reader));
+		}
+		entry.structure = digest(structures);
+		entry.hasErrors = result.hasErrors();
+		entry.problems = result.getAllProblems();
+		if (entry.problems == null)
+			entry.problems = new CategorizedProblem[0];
+		char[][][] qualifiedReferences = result.qualifiedReferences;
+		char[][] simpleNameReferences = result.simpleNameReferences;
+		if (qualifiedReferences == null || simpleNameReferences == null) {
+			entry.hasErrors = true; // cannot be verified, do not store
+			entry.references = CharOperation.NO_STRINGS;
+		} else {
+			entry.simpleNamesStart = qualifiedReferences.length;
+			entry.references = new String[qualifiedReferences.length + simpleNameReferences.length];
+			int r = 0;
+			for (char[][] reference : qualifiedReferences)
+				entry.references[r++] = new String(CharOperation.concatWith(reference, '/'));
+			for (char[] reference : simpleNameReferences)
+				entry.references[r++] = new String(reference); // possibly a type of the default package
+		}
+		this.entries[index.intValue()] = entry;
+	} catch (IOException e) {
+		throw new UncheckedIOException(e);
+	} catch (ClassFormatException e) {
+		throw new IllegalStateException(e); // generated by the compiler
+	} finally {
+		this.main.batchCompiler.lookupEnvironment.releaseClassFiles(classFiles);
+	}
+}
+
+private void recordDeclaredTypes(int index, Parser parser) {
+	CompilationResult result = new CompilationResult(this.units[index], index, this.units.length, this.main.compilerOptions.maxProblemsPerUnit);
+	CompilationUnitDeclaration unitDeclaration = parser.dietParse(this.units[index], result);
+	if (unitDeclaration.types != null) {
+		char[] packageName = unitDeclaration.currentPackage == null
+				? CharOperation.NO_CHAR
+				: CharOperation.concatWith(unitDeclaration.currentPackage.tokens, '/');
+		for (TypeDeclaration type : unitDeclaration.types)
+			this.unitTypes.put(new String(CharOperation.concat(packageName, type.name, '/')), Integer.valueOf(index));
+	}
+}
+
+private void recordBinaryTypes(Entry entry) {
+	for (int t = 0; t < entry.typeNames.length; t++) {
+		String typeName = entry.typeNames[t];
+		this.binaryTypes.put(typeName, new File(this.objectsFolder, entry.objects[t]));
+		int separator = typeName.lastIndexOf('/');
+		while (separator > 0 && this.binaryPackages.add(typeName.substring(0, separator)))
+			separator = typeName.lastIndexOf('/', separator - 1);
+	}
+}
+
+/*
+ * Answer whether the references of the given entry still resolve as recorded. References to the units
+ * being compiled are only checked when <code>compiled</code> is given, and then only for these units.
+ */
+private boolean isConsistent(Entry entry, FileSystem environment, boolean[] compiled) {
+	for (int r = 0; r < entry.references.length; r++) {
+		String reference = entry.references[r];
+		int unit = getDeclaringUnit(reference);
+		if (unit >= 0) {
+			if (compiled == null ? this.entries[unit] == null : !compiled[unit])
+				continue; // will be checked once compiled
+			if (this.entries[unit] == null || !entry.resolutions[r].equals('U' + this.entries[unit].structure))
+				return false;
+		} else if (compiled == null && !entry.resolutions[r].equals(resolve(reference, environment))) {
+			return false;
+		}
+	}
+	return compiled != null || entry.shadowingTypes.equals(digestShadowingTypes(entry, environment));
+}
+
+private void resolveReferences(Entry entry, FileSystem environment) {
+	entry.resolutions = new String[entry.references.length];
+	for (int r = 0; r < entry.references.length; r++) {
+		String reference = entry.references[r];
+		int unit = getDeclaringUnit(reference);
+		entry.resolutions[r] = unit >= 0
+				? 'U' + this.entries[unit].structure
+				: resolve(reference, environment);
+	}
+	entry.shadowingTypes = digestShadowingTypes(entry, environment);
+}
+
+/*
+ * Answer a digest of the types named by a package and a simple name referenced by the given entry, which the
+ * entry does not reference itself. These are the types which ReferenceCollection.includes() would consider
+ * as possibly affecting the unit, and which did not exist (or were not seen) when it was compiled. The package
+ * of the unit counts as referenced.
+ */
+private String digestShadowingTypes(Entry entry, FileSystem environment) {
+	String[] references = entry.references;
+	Set<String> packageNames = new HashSet<>();
+	for (int t = 0; t < entry.typeNames.length; t++) {
+		int separator = entry.typeNames[t].lastIndexOf('/');
+		if (entry.topLevel[t] && separator > 0)
+			packageNames.add(entry.typeNames[t].substring(0, separator));
+	}
+	for (int q = 0; q < entry.simpleNamesStart; q++) {
+		// the qualified references name packages and types, whose member types are part of their structure
+		if (getDeclaringUnit(references[q]) < 0 && resolve(references[q], environment).charAt(0) == 'N')
+			packageNames.add(references[q]);
+	}
+	Set<String> referenced = new HashSet<>(Arrays.asList(references));
+	List<String> found = new ArrayList<>();
+	for (String packageName : packageNames) {
+		for (int s = entry.simpleNamesStart; s < references.length; s++) {
+			String typeName = packageName + '/' + references[s];
+			if (referenced.contains(typeName))
+				continue;
+			if (this.unitTypes.containsKey(typeName) || resolve(typeName, environment).charAt(0) != 'N')
+				found.add(typeName);
+		}
+	}
+	return digest(found.toArray(new String[found.size()]));
+}
+
+/*
+ * Answer the unit declaring the given type name or its enclosing type, or -1.
+ */
+private int getDeclaringUnit(String name) {
+	int end = name.length();
+	while (end > 0) {
+		Integer unit = this.unitTypes.get(end == name.length() ? name : name.substring(0, end));
+		if (unit != null)
+			return unit.intValue();
+		end = name.lastIndexOf('/', end - 1);
+	}
+	return -1;
+}
+
+/*
+ * Resolve the given name against the name environment: to the structure of a binary type, the contents of
+ * a source type, or to nothing.
+ */
+private String resolve(String name, FileSystem environment) {
+	String resolution = this.resolutions.get(name);
+	if (resolution == null) {
+		char[][] compoundName = CharOperation.splitOn('/', name.toCharArray());
+		NameEnvironmentAnswer answer = environment.findType(compoundName, ModuleBinding.ANY);
+		int enclosing = name.lastIndexOf('/');
+		if (answer == null && enclosing > 0 && resolve(name.substring(0, enclosing), environment).charAt(0) == 'B') {
+			// member type of a binary type
+			String binaryName = findBinaryName(name.substring(0, enclosing), environment) + '$' + name.substring(enclosing + 1);
+			answer = environment.findType(CharOperation.splitOn('/', binaryName.toCharArray()), ModuleBinding.ANY);
+		}
+		if (answer != null && answer.isBinaryType()) {
+			resolution = 'B' + toHex(ClassFileReader.getStructuralHash(answer.getBinaryType()));
+		} else if (answer != null && answer.isCompilationUnit()) {
+			resolution = 'S' + digest(answer.getCompilationUnit().getContents());
+		} else {
+			resolution = "N"; //$NON-NLS-1$
+		}
+		this.resolutions.put(name, resolution);
+	}
+	return resolution;
+}
+
+private String findBinaryName(String name, FileSystem environment) {
+	if (environment.findType(CharOperation.splitOn('/', name.toCharArray()), ModuleBinding.ANY) != null)
+		return name;
+	int enclosing = name.lastIndexOf('/');
+	return findBinaryName(name.substring(0, enclosing), environment) + '$' + name.substring(enclosing + 1);
+}
+
+private void output(int index) {
+	CompilationUnit unit = this.units[index];
+	Entry entry = this.entries[index];
+	Main.Logger logger = this.main.logger;
+	CompilationResult result = new CompilationResult(unit, index, this.units.length, this.main.compilerOptions.maxProblemsPerUnit);
+	logger.startLoggingSource(result);
+	if (entry.problems.length > 0)
+		logger.logProblems(entry.problems, unit.getContents(), this.main);
+
+	String destinationPath = null;
+	boolean generateClasspathStructure = false;
+	if (entry.hasErrors && !this.main.proceedOnError) {
+		// no class files
+	} else if (unit.destinationPath == null) {
+		if (this.main.destinationPath == null) {
+			destinationPath = this.main.extractDestinationPathFromSourceFile(result);
+		} else if (this.main.destinationPath != Main.NONE) {
+			destinationPath = this.main.destinationPath;
+			generateClasspathStructure = true;
+		}
+	} else if (unit.destinationPath != Main.NONE) {
+		destinationPath = unit.destinationPath;
+		generateClasspathStructure = true;
+	}
+	if (destinationPath != null) {
+		for (int t = 0; t < entry.typeNames.length; t++) {
+			String relativeName = (entry.typeNames[t] + SuffixConstants.SUFFIX_STRING_class).replace('/', File.separatorChar);
+			try {
+				if (this.main.compilerOptions.verbose)
+					this.main.out.println(
+						Messages.bind(
+							Messages.compilation_write,
+							new String[] {
+								String.valueOf(this.main.exportedClassFilesCounter+1),
+								relativeName
+							}));
+				Util.copyToDisk(generateClasspathStructure, destinationPath, relativeName, new File(this.objectsFolder, entry.objects[t]));
+				logger.logClassFile(generateClasspathStructure, destinationPath, relativeName);
+				this.main.exportedClassFilesCounter++;
+			} catch (IOException e) {
+				logger.logNoClassFileCreated(destinationPath, relativeName, e);
+			}
+		}
+	}
+	logger.endLoggingSource();
+}
+
+private String computeKey(CompilationUnit unit) {
+	MessageDigest digest = newDigest();
+	try {
+		digest.update(this.fingerprint.getBytes(Util.UTF_8));
+		digest.update(new String(unit.getFileName()).getBytes(Util.UTF_8));
+	} catch (UnsupportedEncodingException e) {
+		// UTF-8 is always supported
+	}
+	digest.update((byte) (unit.ignoreOptionalProblems() ? 1 : 0));
+	update(digest, unit.getContents());
+	return toHex(digest.digest());
+}
+
+private Entry readEntry(String key, char[] fileName) {
+	File file = new File(this.entriesFolder, key);
+	if (!file.isFile())
+		return null;
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+		if (in.readInt() != VERSION)
+			return null;
+		Entry entry = new Entry();
+		entry.stored = true;
+		int length = in.readInt();
+		entry.typeNames = new String[length];
+		entry.topLevel = new boolean[length];
+		entry.objects = new String[length];
+		for (int i = 0; i < length; i++) {
+			entry.typeNames[i] = in.readUTF();
+			entry.topLevel[i] = in.readBoolean();
+			entry.objects[i] = in.readUTF();
+			if (!new File(this.objectsFolder, entry.objects[i]).isFile())
+				return null;
+		}
+		entry.structure = in.readUTF();
+		length = in.readInt();
+		entry.simpleNamesStart = in.readInt();
+		entry.references = new String[length];
+		entry.resolutions = new String[length];
+		for (int i = 0; i < length; i++) {
+			entry.references[i] = in.readUTF();
+			entry.resolutions[i] = in.readUTF();
+		}
+		entry.shadowingTypes = in.readUTF();
+		length = in.readInt();
+		entry.problems = new CategorizedProblem[length];
+		for (int i = 0; i < length; i++) {
+			String message = in.readUTF();
+			int id = in.readInt();
+			int severity = in.readInt();
+			String[] arguments = new String[in.readInt()];
+			for (int a = 0; a < arguments.length; a++)
+				arguments[a] = in.readUTF();
+			entry.problems[i] = new DefaultProblem(fileName, message, id, arguments, severity,
+					in.readInt(), in.readInt(), in.readInt(), in.readInt());
+		}
+		return entry;
+	} catch (IOException e) {
+		return null;
+	}
+}
+
+private void writeEntry(String key, Entry entry) throws IOException {
+	File temp = createTempFile(this.entriesFolder);
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+		out.writeInt(VERSION);
+		out.writeInt(entry.typeNames.length);
+		for (int i = 0; i < entry.typeNames.length; i++) {
+			out.writeUTF(entry.typeNames[i]);
+			out.writeBoolean(entry.topLevel[i]);
+			out.writeUTF(entry.objects[i]);
+		}
+		out.writeUTF(entry.structure);
+		out.writeInt(entry.references.length);
+		out.writeInt(entry.simpleNamesStart);
+		for (int i = 0; i < entry.references.length; i++) {
+			out.writeUTF(entry.references[i]);
+			out.writeUTF(entry.resolutions[i]);
+		}
+		out.writeUTF(entry.shadowingTypes);
+		out.writeInt(entry.problems.length);
+		for (CategorizedProblem problem : entry.problems) {
+			out.writeUTF(problem.getMessage());
+			out.writeInt(problem.getID());
+			int severity;
+			int column = 0;
+			if (problem instanceof DefaultProblem) {
+				severity = ((DefaultProblem) problem).severity;
+				column = ((DefaultProblem) problem).getSourceColumnNumber();
+			} else {
+				severity = problem.isError() ? ProblemSeverities.Error
+						: problem.isWarning() ? ProblemSeverities.Warning : ProblemSeverities.Info;
+			}
+			out.writeInt(severity);
+			String[] arguments = problem.getArguments();
+			out.writeInt(arguments == null ? 0 : arguments.length);
+			if (arguments != null)
+				for (String argument : arguments)
+					out.writeUTF(argument == null ? "" : argument); //$NON-NLS-1$
+			out.writeInt(problem.getSourceStart());
+			out.writeInt(problem.getSourceEnd());
+			out.writeInt(problem.getSourceLineNumber());
+			out.writeInt(column);
+		}
+	} catch (IOException e) {
+		temp.delete();
+		throw e;
+	}
+	moveTo(temp, new File(this.entriesFolder, key));
+}
+
+private String writeObject(byte[] bytes) throws IOException {
+	String name = toHex(newDigest().digest(bytes));
+	File file = new File(this.objectsFolder, name);
+	if (!file.isFile()) {
+		File temp = createTempFile(this.objectsFolder);
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			out.write(bytes);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		moveTo(temp, file);
+	}
+	return name;
+}
+
+private static File createTempFile(File folder) throws IOException {
+	if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory())
+		throw new IOException("Cannot create " + folder); //$NON-NLS-1$
+	return File.createTempFile("tmp", null, folder); //$NON-NLS-1$
+}
+
+private static void moveTo(File temp, File target) throws IOException {
+	// compilations sharing the cache only ever see complete files
+	try {
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch (IOException e) {
+		temp.delete();
+		throw e;
+	}
+}
+
+private static MessageDigest newDigest() {
+	try {
+		return MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+	} catch (NoSuchAlgorithmException e) {
+		// required from every Java platform
+		throw new IllegalStateException(e);
+	}
+}
+
+private static String digest(char[] contents) {
+	MessageDigest digest = newDigest();
+	update(digest, contents);
+	return toHex(digest.digest());
+}
+
+private static String digest(String[] values) {
+	MessageDigest digest = newDigest();
+	String[] sorted = values.clone();
+	Arrays.sort(sorted, (s1, s2) -> s1 == null ? (s2 == null ? 0 : -1) : s2 == null ? 1 : s1.compareTo(s2));
+	for (String value : sorted) {
+		if (value != null)
+			update(digest, value.toCharArray());
+	}
+	return toHex(digest.digest());
+}
+
+private static void update(MessageDigest digest, char[] contents) {
+	if (contents == null) return;
+	byte[] buffer = new byte[Math.min(contents.length, 4096) * 2];
+	for (int start = 0; start < contents.length; start += buffer.length / 2) {
+		int end = Math.min(contents.length, start + buffer.length / 2);
+		int b = 0;
+		for (int i = start; i < end; i++) {
+			buffer[b++] = (byte) (contents[i] >> 8);
+			buffer[b++] = (byte) contents[i];
+		}
+		digest.update(buffer, 0, b);
+	}
+}
+
+private static String toHex(byte[] bytes) {
+	char[] hex = new char[bytes.length * 2];
+	for (int i = 0; i < bytes.length; i++) {
+		hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+		hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+	}
+	return new String(hex);
+}
+}
@@ -40,6 +40,9 @@ public class CompilationUnit implements ICompilationUnit {
 	private boolean ignoreOptionalProblems;
 	private ModuleBinding moduleBinding;
 
+	// temporary code to allow source files to be read through NIO, with a buffer and a decoder reused by the reading thread
+	static final boolean USE_NIO_READING = "true".equals(System.getProperty("jdt.compiler.useNIOReading")); //$NON-NLS-1$ //$NON-NLS-2$
+
 public CompilationUnit(char[] contents, String fileName, String encoding) {
 	this(contents, fileName, encoding, null);
 }
@@ -84,7 +87,10 @@ public char[] getContents() {
 
 	// otherwise retrieve it
 	try {
-		return Util.getFileCharContent(new File(new String(this.fileName)), this.encoding);
+		File file = new File(new String(this.fileName));
+		return USE_NIO_READING
+			? Util.getFileCharContentNIO(file, this.encoding)
+			: Util.getFileCharContent(file, this.encoding);
 	} catch (IOException e) {
 		this.contents = CharOperation.NO_CHAR; // assume no source if asked again
 		throw new AbortCompilationUnit(null, e, this.encoding);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -98,6 +98,7 @@ import org.eclipse.jdt.internal.compiler.env.IModule.IPackageExport;
 import org.eclipse.jdt.internal.compiler.env.IUpdatableModule.UpdateKind;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
 import org.eclipse.jdt.internal.compiler.impl.CompilerStats;
+import org.eclipse.jdt.internal.compiler.impl.UnitStats;
 import org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment;
 import org.eclipse.jdt.internal.compiler.lookup.ModuleBinding;
 import org.eclipse.jdt.internal.compiler.lookup.PackageBinding;
@@ -111,6 +112,7 @@ import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
 import org.eclipse.jdt.internal.compiler.util.GenericXMLWriter;
 import org.eclipse.jdt.internal.compiler.util.HashtableOfInt;
 import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.compiler.util.JarDirectoryCache;
 import org.eclipse.jdt.internal.compiler.util.Messages;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 import org.eclipse.jdt.internal.compiler.util.Util;
@@ -716,6 +718,22 @@ public class Main implements ProblemSeverities, SuffixConstants {
 		/**
 		 *
 		 */
+		public void logTimeReportError(String path, IOException e) {
+			if ((this.tagBits & Logger.XML) != 0) {
+				this.parameters.put(Logger.MESSAGE, this.main.bind("output.cannotWriteTimeReport", //$NON-NLS-1$
+					new String[] {
+						path,
+						e.getMessage()
+					}));
+				printTag(Logger.ERROR_TAG, this.parameters, true, true);
+			}
+			this.printlnErr(this.main.bind("output.cannotWriteTimeReport", //$NON-NLS-1$
+				new String[] {
+					path,
+					e.getMessage()
+				}));
+		}
+
 		public void logNoClassFileCreated(String outputDir, String relativeFileName, IOException e) {
 			if ((this.tagBits & Logger.XML) != 0) {
 				this.parameters.put(Logger.MESSAGE, this.main.bind("output.noClassFileCreated", //$NON-NLS-1$
@@ -1044,6 +1062,26 @@ public class Main implements ProblemSeverities, SuffixConstants {
 								String.valueOf(compilerStats.generateTime),
 								String.valueOf(((int) (compilerStats.generateTime * 1000.0 / time)) / 10.0),
 							}));
+				printlnOut(
+						this.main.bind("compile.detailedCounts", //$NON-NLS-1$
+							new String[] {
+								String.valueOf(compilerStats.inferenceContextCount),
+								String.valueOf(compilerStats.typeCacheHits),
+								String.valueOf(compilerStats.typeCacheMisses),
+								String.valueOf(compilerStats.inferenceSteps),
+								String.valueOf(compilerStats.inferenceCacheHits),
+							}));
+				if (compilerStats.processedQueueSize > 0) {
+					printlnOut(
+							this.main.bind("compile.pipelineStats", //$NON-NLS-1$
+								new String[] {
+									String.valueOf(compilerStats.processedQueueSize),
+									String.valueOf(compilerStats.processedQueueMaxOccupancy),
+									String.valueOf(compilerStats.processingStalls),
+									String.valueOf(compilerStats.writingStalls),
+									String.valueOf(((int) (compilerStats.processedQueueAverageOccupancy * 10.0)) / 10.0),
+								}));
+				}
 			}
 		}
 
@@ -1434,6 +1472,9 @@ public class Main implements ProblemSeverities, SuffixConstants {
 
 	public int timing = TIMING_DISABLED;
 	public CompilerStats[] compilerStats;
+	public StatsReport statsReport; // -time:json
+	public String cacheDirectory; // -cacheDir
+	public CompilationCache compilationCache;
 	public boolean verbose = false;
 	private String[] expandedCommandLine;
 
@@ -1770,6 +1811,13 @@ public boolean compile(String[] argv) {
 			if (this.compilerStats != null) {
 				this.logger.logAverage();
 			}
+			if (this.statsReport != null) {
+				try {
+					this.statsReport.write();
+				} catch (IOException e) {
+					this.logger.logTimeReportError(this.statsReport.getPath(), e);
+				}
+			}
 			if (this.showProgress) this.logger.printNewLine();
 		}
 		if (this.systemExitWhenFinished) {
@@ -1798,6 +1846,8 @@ public boolean compile(String[] argv) {
 		this.logger.close();
 		if (this.progress != null)
 			this.progress.done();
+		// the jars stay shared with the compilations still running in this VM, but are not kept open
+		JarDirectoryCache.getDefault().closeIdleFiles();
 	}
 	if (this.globalErrorsCount == 0 && (this.progress == null || !this.progress.isCanceled()))
 		return true;
@@ -1842,6 +1892,8 @@ public void configure(String[] argv) {
 	final int INSIDE_ADD_MODULES = 29;
 	final int INSIDE_RELEASE = 30;
 	final int INSIDE_LIMIT_MODULES = 31;
+	final int INSIDE_TIME_REPORT = 32;
+	final int INSIDE_CACHE_DIRECTORY = 33;
 
 	final int DEFAULT = 0;
 	ArrayList<String> bootclasspaths = new ArrayList<>(DEFAULT_SIZE_CLASSPATH);
@@ -2208,6 +2260,10 @@ public void configure(String[] argv) {
 					mode = INSIDE_CLASSPATH_start;
 					continue;
 				}
+				if (currentArg.equals("-cacheDir")) { //$NON-NLS-1$
+					mode = INSIDE_CACHE_DIRECTORY;
+					continue;
+				}
 				if (currentArg.equals("-bootclasspath")) {//$NON-NLS-1$
 					if (bootclasspaths.size() > 0) {
 						StringBuffer errorMessage = new StringBuffer();
@@ -2334,6 +2390,11 @@ public void configure(String[] argv) {
 					this.timing = TIMING_ENABLED|TIMING_DETAILED;
 					continue;
 				}
+				if (currentArg.equals("-time:json")) { //$NON-NLS-1$
+					mode = INSIDE_TIME_REPORT;
+					this.timing = TIMING_ENABLED|TIMING_DETAILED;
+					continue;
+				}
 				if (currentArg.equals("-version") //$NON-NLS-1$
 						|| currentArg.equals("-v")) { //$NON-NLS-1$
 					this.logger.logVersion(true);
@@ -2753,6 +2814,17 @@ public void configure(String[] argv) {
 				this.log = currentArg;
 				mode = DEFAULT;
 				continue;
+			case INSIDE_TIME_REPORT :
+				this.statsReport = new StatsReport(currentArg);
+				mode = DEFAULT;
+				continue;
+			case INSIDE_CACHE_DIRECTORY :
+				File cacheFolder = new File(currentArg);
+				if (!cacheFolder.isDirectory() && !cacheFolder.mkdirs())
+					throw new IllegalArgumentException(this.bind("configure.invalidCacheDirectory", currentArg)); //$NON-NLS-1$
+				this.cacheDirectory = currentArg;
+				mode = DEFAULT;
+				continue;
 			case INSIDE_REPETITION :
 				try {
 					this.maxRepetition = Integer.parseInt(currentArg);
@@ -3480,9 +3552,10 @@ public File getJavaHome() {
 }
 
 public FileSystem getLibraryAccess() {
-	FileSystem nameEnvironment = new FileSystem(this.checkedClasspaths, this.filenames, 
-					this.annotationsFromClasspath && CompilerOptions.ENABLED.equals(this.options.get(CompilerOptions.OPTION_AnnotationBasedNullAnalysis)),
-					this.limitedModules);
+	boolean externalAnnotations = this.annotationsFromClasspath && CompilerOptions.ENABLED.equals(this.options.get(CompilerOptions.OPTION_AnnotationBasedNullAnalysis));
+	FileSystem nameEnvironment = this.compilationCache != null
+			? this.compilationCache.createEnvironment(this.checkedClasspaths, this.filenames, externalAnnotations, this.limitedModules)
+			: new FileSystem(this.checkedClasspaths, this.filenames, externalAnnotations, this.limitedModules);
 	nameEnvironment.module = this.module;
 	processAddonModuleOptions(nameEnvironment);
 	return nameEnvironment;
@@ -4675,6 +4748,8 @@ public void outputClassFiles(CompilationResult unitResult) {
 public void performCompilation() {
 	this.startTime = System.currentTimeMillis();
 
+	if (this.cacheDirectory != null && this.compilationCache == null)
+		this.compilationCache = new CompilationCache(this, this.cacheDirectory);
 	FileSystem environment = getLibraryAccess();
 	try {
 		this.compilerOptions = new CompilerOptions(this.options);
@@ -4685,7 +4760,7 @@ public void performCompilation() {
 						environment,
 						getHandlingPolicy(),
 						this.compilerOptions,
-						getBatchRequestor(),
+						this.compilationCache != null ? this.compilationCache : getBatchRequestor(),
 						getProblemFactory(),
 						this.out,
 						this.progress);
@@ -4693,6 +4768,11 @@ public void performCompilation() {
 		// temporary code to allow the compiler to revert to a single thread
 		String setting = System.getProperty("jdt.compiler.useSingleThread"); //$NON-NLS-1$
 		this.batchCompiler.useSingleThread = setting != null && setting.equals("true"); //$NON-NLS-1$
+		if (this.statsReport != null) {
+			UnitStats.enableAllocationMeasurement();
+			this.statsReport.startRepetition(this.batchCompiler.stats);
+			this.batchCompiler.statsListener = this.statsReport;
+		}
 
 		if (this.compilerOptions.complianceLevel >= ClassFileConstants.JDK1_6
 				&& this.compilerOptions.processAnnotations) {
@@ -4712,10 +4792,14 @@ public void performCompilation() {
 
 		// set the non-externally configurable options.
 		this.compilerOptions.verbose = this.verbose;
-		this.compilerOptions.produceReferenceInfo = this.produceRefInfo;
+		// the compilation cache records the references of each unit
+		this.compilerOptions.produceReferenceInfo = this.produceRefInfo || this.compilationCache != null;
 		try {
 			this.logger.startLoggingSources();
-			this.batchCompiler.compile(getCompilationUnits());
+			if (this.compilationCache != null)
+				this.compilationCache.compile(getCompilationUnits(), environment);
+			else
+				this.batchCompiler.compile(getCompilationUnits());
 		} finally {
 			this.logger.endLoggingSources();
 		}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.batch;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.internal.compiler.ICompilerStatsListener;
+import org.eclipse.jdt.internal.compiler.impl.CompilerStats;
+import org.eclipse.jdt.internal.compiler.impl.UnitStats;
+import org.eclipse.jdt.internal.compiler.util.Util;
+
+/**
+ * Collects the statistics of each compilation run of the batch compiler, as requested by
+ * <code>-time:json &lt;file&gt;</code>, and writes them as a JSON document.
+ * <p>
+ * The document holds one entry per repetition, with the overall times (in ms) and counters of
+ * the compiler, followed by the times (in ns) and counters of each processed unit.
+ */
+public class StatsReport implements ICompilerStatsListener {
+
+	static class Repetition {
+		CompilerStats stats;
+		List<UnitStats> units = new ArrayList<>();
+	}
+
+	private final String path;
+	private final List<Repetition> repetitions = new ArrayList<>();
+	private Repetition current;
+
+public StatsReport(String path) {
+	this.path = path;
+}
+
+public String getPath() {
+	return this.path;
+}
+
+/**
+ * Starts collecting the statistics of a new compilation run.
+ */
+public void startRepetition(CompilerStats stats) {
+	this.current = new Repetition();
+	this.current.stats = stats;
+	this.repetitions.add(this.current);
+}
+
+@Override
+public synchronized void unitProcessed(UnitStats stats) {
+	if (this.current != null)
+		this.current.units.add(stats);
+}
+
+public void write() throws IOException {
+	try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.path), Util.UTF_8))) {
+		writer.write("{\n\t\"repetitions\": ["); //$NON-NLS-1$
+		for (int i = 0, length = this.repetitions.size(); i < length; i++) {
+			Repetition repetition = this.repetitions.get(i);
+			CompilerStats stats = repetition.stats;
+			writer.write(i == 0 ? "\n\t\t{" : ",\n\t\t{"); //$NON-NLS-1$ //$NON-NLS-2$
+			writeField(writer, "elapsedTime", stats.elapsedTime(), true); //$NON-NLS-1$
+			writeField(writer, "lineCount", stats.lineCount, false); //$NON-NLS-1$
+			writeField(writer, "parseTime", stats.parseTime, false); //$NON-NLS-1$
+			writeField(writer, "resolveTime", stats.resolveTime, false); //$NON-NLS-1$
+			writeField(writer, "analyzeTime", stats.analyzeTime, false); //$NON-NLS-1$
+			writeField(writer, "generateTime", stats.generateTime, false); //$NON-NLS-1$
+			writeField(writer, "inferenceContexts", stats.inferenceContextCount, false); //$NON-NLS-1$
+			writeField(writer, "inferenceSteps", stats.inferenceSteps, false); //$NON-NLS-1$
+			writeField(writer, "inferenceCacheHits", stats.inferenceCacheHits, false); //$NON-NLS-1$
+			writeField(writer, "typeCacheHits", stats.typeCacheHits, false); //$NON-NLS-1$
+			writeField(writer, "typeCacheMisses", stats.typeCacheMisses, false); //$NON-NLS-1$
+			writer.write(",\n\t\t\t\"units\": ["); //$NON-NLS-1$
+			for (int j = 0, unitCount = repetition.units.size(); j < unitCount; j++) {
+				UnitStats unit = repetition.units.get(j);
+				writer.write(j == 0 ? "\n\t\t\t\t{" : ",\n\t\t\t\t{"); //$NON-NLS-1$ //$NON-NLS-2$
+				writer.write("\"file\": "); //$NON-NLS-1$
+				writeString(writer, unit.fileName == null ? "" : new String(unit.fileName)); //$NON-NLS-1$
+				writeField(writer, "lineCount", unit.lineCount, false); //$NON-NLS-1$
+				writeField(writer, "parseTime", unit.parseTime, false); //$NON-NLS-1$
+				writeField(writer, "resolveTime", unit.resolveTime, false); //$NON-NLS-1$
+				writeField(writer, "analyzeTime", unit.analyzeTime, false); //$NON-NLS-1$
+				writeField(writer, "generateTime", unit.generateTime, false); //$NON-NLS-1$
+				writeField(writer, "allocatedBytes", unit.allocatedBytes, false); //$NON-NLS-1$
+				writeField(writer, "analyzeAllocatedBytes", unit.analyzeAllocatedBytes, false); //$NON-NLS-1$
+				writeField(writer, "inferenceContexts", unit.inferenceContexts, false); //$NON-NLS-1$
+				writeField(writer, "inferenceSteps", unit.inferenceSteps, false); //$NON-NLS-1$
+				if (unit.costliestInference != null) {
+					writer.write(", \"costliestInference\": "); //$NON-NLS-1$
+					writeString(writer, unit.costliestInference);
+					writeField(writer, "costliestInferenceSteps", unit.costliestInferenceSteps, false); //$NON-NLS-1$
+				}
+				writeField(writer, "typeCacheHits", unit.typeCacheHits, false); //$NON-NLS-1$
+				writeField(writer, "typeCacheMisses", unit.typeCacheMisses, false); //$NON-NLS-1$
+				writer.write('}');
+			}
+			writer.write("\n\t\t\t]\n\t\t}"); //$NON-NLS-1$
+		}
+		writer.write("\n\t]\n}\n"); //$NON-NLS-1$
+	}
+}
+
+private static void writeField(Writer writer, String name, long value, boolean first) throws IOException {
+	if (!first)
+		writer.write(", "); //$NON-NLS-1$
+	writeString(writer, name);
+	writer.write(": "); //$NON-NLS-1$
+	writer.write(String.valueOf(value));
+}
+
+private static void writeString(Writer writer, String value) throws IOException {
+	writer.write('"');
+	for (int i = 0, length = value.length(); i < length; i++) {
+		char c = value.charAt(i);
+		switch (c) {
+			case '"' :
+			case '\\' :
+				writer.write('\\');
+				writer.write(c);
+				break;
+			case '\n' :
+				writer.write("\\n"); //$NON-NLS-1$
+				break;
+			case '\r' :
+				writer.write("\\r"); //$NON-NLS-1$
+				break;
+			case '\t' :
+				writer.write("\\t"); //$NON-NLS-1$
+				break;
+			default :
+				if (c < 0x20) {
+					String hex = Integer.toHexString(c);
+					writer.write("\\u"); //$NON-NLS-1$
+					for (int j = hex.length(); j < 4; j++)
+						writer.write('0');
+					writer.write(hex);
+				} else {
+					writer.write(c);
+				}
+		}
+	}
+	writer.write('"');
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -58,6 +58,7 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 	public int annotationProcessorStartIndex = 0;
 	public ReferenceBinding[] referenceBindings;
 	public boolean useSingleThread = true; // by default the compiler will not use worker threads to read/process/write
+	public ICompilerStatsListener statsListener; // when set, detailed statistics are collected for each processed unit
 
 	// number of initial units parsed at once (-1: none)
 
@@ -649,8 +650,24 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		} finally {
 			if (processingTask != null) {
 				processingTask.shutdown();
+				BoundedHandoffQueue<CompilationUnitDeclaration> processedUnits = processingTask.getProcessedUnits();
+				this.stats.processedQueueSize = processedUnits.capacity();
+				this.stats.processedQueueMaxOccupancy = Math.max(this.stats.processedQueueMaxOccupancy, processedUnits.maxOccupancy());
+				long unitsCount = this.stats.processedUnitsCount + processedUnits.putCount();
+				if (unitsCount > 0) {
+					this.stats.processedQueueAverageOccupancy = (this.stats.processedQueueAverageOccupancy * this.stats.processedUnitsCount
+							+ processedUnits.averageOccupancy() * processedUnits.putCount()) / unitsCount;
+					this.stats.processedUnitsCount = unitsCount;
+				}
+				this.stats.processingStalls += processedUnits.producerStalls();
+				this.stats.writingStalls += processedUnits.consumerStalls();
 				processingTask = null;
 			}
+			this.stats.inferenceContextCount = this.lookupEnvironment.inferenceContextCount;
+			this.stats.inferenceSteps = this.lookupEnvironment.inferenceSteps;
+			this.stats.inferenceCacheHits = this.lookupEnvironment.inferenceCacheHits;
+			this.stats.typeCacheHits = this.lookupEnvironment.typeCacheHits;
+			this.stats.typeCacheMisses = this.lookupEnvironment.typeCacheMisses;
 			reset();
 			this.annotationProcessorStartIndex  = 0;
 			this.stats.endTime = System.currentTimeMillis();
@@ -809,13 +826,39 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		this.parser = new Parser(this.problemReporter, this.options.parseLiteralExpressionsAsConstants);
 	}
 
+	/**
+	 * Answer a new parser equivalent to this.parser, but with its own problem reporter so that it can be
+	 * used to diet parse units on a worker thread. Answer null if the parser of this compiler is specialized
+	 * and cannot be replicated, in which case all units are parsed on the compiler thread.
+	 */
+	public Parser createWorkerParser() {
+		if (this.parser.getClass() != Parser.class)
+			return null;
+		ProblemReporter reporter = new ProblemReporter(this.problemReporter.policy, this.options, this.problemReporter.problemFactory);
+		return new Parser(reporter, this.options.parseLiteralExpressionsAsConstants);
+	}
+
 	/**
 	 * Add the initial set of compilation units into the loop
 	 *  ->  build compilation unit declarations, their bindings and record their results.
 	 */
 	protected void internalBeginToCompile(ICompilationUnit[] sourceUnits, int maxUnits) {
-		if (!this.useSingleThread && maxUnits >= ReadManager.THRESHOLD)
+		ParseTaskManager parsingTask = null;
+		if (!this.useSingleThread && this.totalUnits >= this.parseThreshold) // only diet parsing can be done ahead of time
+			parsingTask = ParseTaskManager.newManager(this, sourceUnits, maxUnits);
+		if (parsingTask == null && !this.useSingleThread && maxUnits >= ReadManager.THRESHOLD)
 			this.parser.readManager = new ReadManager(sourceUnits, maxUnits);
+		try {
+			internalBeginToCompile(sourceUnits, maxUnits, parsingTask);
+		} finally {
+			if (parsingTask != null)
+				parsingTask.shutdown();
+		}
+		// binding resolution
+		this.lookupEnvironment.completeTypeBindings();
+	}
+
+	private void internalBeginToCompile(ICompilationUnit[] sourceUnits, int maxUnits, ParseTaskManager parsingTask) {
 
 		// Switch the current policy and compilation result for this unit to the requested one.
 		for (int i = 0; i < maxUnits; i++) {
@@ -832,11 +875,15 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 				}
 				// diet parsing for large collection of units
 				CompilationUnitDeclaration parsedUnit;
-				unitResult = new CompilationResult(sourceUnits[i], i, maxUnits, this.options.maxProblemsPerUnit);
 				long parseStart = System.currentTimeMillis();
-				if (this.totalUnits < this.parseThreshold) {
+				if (parsingTask != null) {
+					unitResult = parsingTask.getCompilationResult(i);
+					parsedUnit = parsingTask.getParsedUnit(i); // already diet parsed by a worker thread
+				} else if (this.totalUnits < this.parseThreshold) {
+					unitResult = new CompilationResult(sourceUnits[i], i, maxUnits, this.options.maxProblemsPerUnit);
 					parsedUnit = this.parser.parse(sourceUnits[i], unitResult);
 				} else {
+					unitResult = new CompilationResult(sourceUnits[i], i, maxUnits, this.options.maxProblemsPerUnit);
 					parsedUnit = this.parser.dietParse(sourceUnits[i], unitResult);
 				}
 				long resolveStart = System.currentTimeMillis();
@@ -864,8 +911,6 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 			this.parser.readManager.shutdown();
 			this.parser.readManager = null;
 		}
-		// binding resolution
-		this.lookupEnvironment.completeTypeBindings();
 	}
 
 	/**
@@ -873,12 +918,14 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 	 */
 	public void process(CompilationUnitDeclaration unit, int i) {
 		this.lookupEnvironment.unitBeingCompleted = unit;
+		UnitStats unitStats = this.statsListener == null ? null : startUnitStats(unit, i);
 		long parseStart = System.currentTimeMillis();
 
 		this.parser.getMethodBodies(unit);
 
 		long resolveStart = System.currentTimeMillis();
 		this.stats.parseTime += resolveStart - parseStart;
+		if (unitStats != null) unitStats.parseTime = endPhase();
 
 		// fault in fields & methods
 		if (unit.scope != null)
@@ -893,12 +940,21 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 
 		long analyzeStart = System.currentTimeMillis();
 		this.stats.resolveTime += analyzeStart - resolveStart;
+		if (unitStats != null) unitStats.resolveTime = endPhase();
+		long analyzeAllocated = unitStats == null ? -1 : UnitStats.currentThreadAllocatedBytes();
 		
 		//No need of analysis or generation of code if statements are not required		
 		if (!this.options.ignoreMethodBodies) unit.analyseCode(); // flow analysis
 
 		long generateStart = System.currentTimeMillis();
 		this.stats.analyzeTime += generateStart - analyzeStart;
+		if (unitStats != null) {
+			unitStats.analyzeTime = endPhase();
+			if (analyzeAllocated >= 0) {
+				long allocated = UnitStats.currentThreadAllocatedBytes();
+				unitStats.analyzeAllocatedBytes = allocated >= 0 ? allocated - analyzeAllocated : -1;
+			}
+		}
 	
 		if (!this.options.ignoreMethodBodies) unit.generateCode(); // code generation
 		
@@ -910,6 +966,10 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		unit.finalizeProblems();
 
 		this.stats.generateTime += System.currentTimeMillis() - generateStart;
+		if (unitStats != null) {
+			unitStats.generateTime = endPhase();
+			endUnitStats(unit, unitStats);
+		}
 
 		// refresh the total number of units known at this stage
 		unit.compilationResult.totalUnitsKnown = this.totalUnits;
@@ -917,6 +977,50 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		this.lookupEnvironment.unitBeingCompleted = null;
 	}
 
+	private long phaseStart; // only used while collecting unit stats
+
+	private UnitStats startUnitStats(CompilationUnitDeclaration unit, int i) {
+		UnitStats unitStats = new UnitStats();
+		unitStats.fileName = unit.getFileName();
+		unitStats.unitIndex = i;
+		// remember the current counters, the unit stats will hold their increments
+		LookupEnvironment env = this.lookupEnvironment;
+		unitStats.inferenceContexts = env.inferenceContextCount;
+		unitStats.inferenceSteps = env.inferenceSteps;
+		env.costliestInferenceSteps = 0;
+		env.costliestInference = null;
+		unitStats.typeCacheHits = env.typeCacheHits;
+		unitStats.typeCacheMisses = env.typeCacheMisses;
+		unitStats.allocatedBytes = UnitStats.currentThreadAllocatedBytes();
+		this.phaseStart = System.nanoTime();
+		return unitStats;
+	}
+
+	private long endPhase() {
+		long now = System.nanoTime();
+		long time = now - this.phaseStart;
+		this.phaseStart = now;
+		return time;
+	}
+
+	private void endUnitStats(CompilationUnitDeclaration unit, UnitStats unitStats) {
+		LookupEnvironment env = this.lookupEnvironment;
+		unitStats.inferenceContexts = env.inferenceContextCount - unitStats.inferenceContexts;
+		unitStats.inferenceSteps = env.inferenceSteps - unitStats.inferenceSteps;
+		unitStats.costliestInference = env.costliestInference == null ? null : env.costliestInference.toString();
+		env.costliestInference = null;
+		unitStats.costliestInferenceSteps = env.costliestInferenceSteps;
+		unitStats.typeCacheHits = env.typeCacheHits - unitStats.typeCacheHits;
+		unitStats.typeCacheMisses = env.typeCacheMisses - unitStats.typeCacheMisses;
+		if (unitStats.allocatedBytes >= 0) {
+			long allocated = UnitStats.currentThreadAllocatedBytes();
+			unitStats.allocatedBytes = allocated >= 0 ? allocated - unitStats.allocatedBytes : -1;
+		}
+		int[] lineEnds = unit.compilationResult.lineSeparatorPositions;
+		unitStats.lineCount = lineEnds == null ? 0 : lineEnds.length;
+		this.statsListener.unitProcessed(unitStats);
+	}
+
 	protected void processAnnotations() {
 		int newUnitSize = 0;
 		int newClassFilesSize = 0;
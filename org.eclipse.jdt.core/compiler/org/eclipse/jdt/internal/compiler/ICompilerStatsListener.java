@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler;
+
+import org.eclipse.jdt.internal.compiler.impl.UnitStats;
+
+/**
+ * A listener which is notified with detailed statistics each time the compiler has processed a
+ * compilation unit. Collecting these statistics has a cost, so they are only computed when a
+ * listener is set on the compiler.
+ *
+ * @see Compiler#statsListener
+ */
+public interface ICompilerStatsListener {
+
+	/**
+	 * Accept the statistics of a unit which has just been processed. This is called on the thread
+	 * which processed the unit, which may not be the thread which started the compilation.
+	 */
+	void unitProcessed(UnitStats stats);
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.jdt.internal.compiler;
+
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.parser.Parser;
+
+/**
+ * Diet parses the initial set of compilation units on several worker threads, each one using its own
+ * {@link Parser} and problem reporter. Diet parsing does not touch the lookup environment, so the units
+ * can be parsed in any order; the compiler thread still consumes them in their original order so that
+ * type bindings are built, and problems are reported, exactly as in the single threaded case.
+ * <p>
+ * The workers only parse a window of units ahead of the unit the compiler thread consumes, so that a compilation
+ * which is aborted early has not parsed all its units for nothing. The window is sized from the observed speeds:
+ * while a worker parses a unit, the compiler thread consumes <code>parse time / consume time</code> units,
+ * which the window must cover on top of the unit each worker is parsing.
+ * <p>
+ * Resolution, flow analysis and code generation are not part of this stage: they share the lookup
+ * environment (and its type system) which is not thread safe.
+ */
+public class ParseTaskManager implements Runnable {
+
+	Compiler compiler;
+	ICompilationUnit[] units;
+	CompilationResult[] results;
+	CompilationUnitDeclaration[] parsedUnits;
+	Throwable[] caughtExceptions;
+	boolean[] parsed;
+	int nextUnitToParse;
+	int consumedUnits;
+	int window;
+	Thread[] parsingThreads;
+
+	// statistics used to size the window
+	long parseNanos;
+	int parseCount;
+	long consumeNanos;
+	long lastConsumed;
+
+	public static final int THRESHOLD = 10;
+	static final int MAX_THREADS = 8;
+	static final int MAX_WINDOW = 64;
+
+/**
+ * Answer a new parse task manager, or null if the units should rather be parsed on the compiler thread.
+ */
+public static ParseTaskManager newManager(Compiler compiler, ICompilationUnit[] sourceUnits, int length) {
+	if (length < THRESHOLD)
+		return null;
+	int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS);
+	if (threadCount < 2)
+		return null;
+	Parser[] parsers = new Parser[threadCount];
+	for (int i = 0; i < threadCount; i++) {
+		if ((parsers[i] = compiler.createWorkerParser()) == null)
+			return null;
+	}
+	return new ParseTaskManager(compiler, sourceUnits, length, parsers);
+}
+
+private ParseTaskManager(Compiler compiler, ICompilationUnit[] sourceUnits, int length, Parser[] parsers) {
+	this.compiler = compiler;
+	this.units = new ICompilationUnit[length];
+	System.arraycopy(sourceUnits, 0, this.units, 0, length);
+	// results are created upfront so that the compiler thread can report against them even if parsing failed
+	this.results = new CompilationResult[length];
+	for (int i = 0; i < length; i++)
+		this.results[i] = new CompilationResult(sourceUnits[i], i, length, compiler.options.maxProblemsPerUnit);
+	this.parsedUnits = new CompilationUnitDeclaration[length];
+	this.caughtExceptions = new Throwable[length];
+	this.parsed = new boolean[length];
+	this.nextUnitToParse = 0;
+	this.consumedUnits = 0;
+	this.window = 2 * parsers.length; // until the speeds are known
+
+	synchronized (this) {
+		this.parsingThreads = new Thread[parsers.length];
+		for (int i = parsers.length; --i >= 0;) {
+			this.parsingThreads[i] = new ParsingThread(parsers[i]);
+			this.parsingThreads[i].setDaemon(true);
+			this.parsingThreads[i].start();
+		}
+	}
+}
+
+class ParsingThread extends Thread {
+	Parser parser;
+	ParsingThread(Parser parser) {
+		super(ParseTaskManager.this, "Compiler Source File Parser"); //$NON-NLS-1$
+		this.parser = parser;
+	}
+}
+
+public CompilationResult getCompilationResult(int index) {
+	return this.results[index];
+}
+
+/**
+ * Answer the diet parsed unit at the given index, waiting for a worker to parse it if needed.
+ * Any exception which occurred while parsing the unit is rethrown in the compiler thread.
+ */
+public CompilationUnitDeclaration getParsedUnit(int index) throws Error {
+	ICompilationUnit sourceUnit;
+	CompilationUnitDeclaration unit;
+	Throwable exception;
+	boolean unitParsed;
+	synchronized (this) {
+		if (index > 0)
+			this.consumeNanos += System.nanoTime() - this.lastConsumed;
+		while (!(unitParsed = this.parsed[index]) && this.parsingThreads != null) {
+			try {
+				wait(250);
+			} catch (InterruptedException ignore) {
+				// ignore
+			}
+		}
+		sourceUnit = this.units[index];
+		unit = this.parsedUnits[index];
+		exception = this.caughtExceptions[index];
+		// release references to the consumed unit
+		this.units[index] = null;
+		this.parsedUnits[index] = null;
+		this.caughtExceptions[index] = null;
+		this.consumedUnits = index + 1;
+		this.window = computeWindow();
+		notifyAll(); // wake up the workers which may be waiting for the window to move
+		this.lastConsumed = System.nanoTime();
+	}
+	if (exception != null) {
+		// rethrow the caught exception from the parsingThread in the compiler thread
+		if (exception instanceof Error)
+			throw (Error) exception;
+		throw (RuntimeException) exception;
+	}
+	if (!unitParsed) // shutdown before a worker could parse the unit
+		unit = this.compiler.parser.dietParse(sourceUnit, this.results[index]);
+	else if (unit != null)
+		// the worker keeps parsing other units with its reporter, whose reference context it changes:
+		// problems of the handed over unit must go through the reporter of the compiler thread
+		unit.problemReporter = this.compiler.problemReporter;
+	return unit;
+}
+
+/*
+ * Answer how many units the workers may parse ahead of the compiler thread.
+ */
+private int computeWindow() {
+	int threadCount = this.parsingThreads == null ? 1 : this.parsingThreads.length;
+	if (this.parseCount == 0 || this.consumedUnits < 2)
+		return this.window;
+	long averageParse = this.parseNanos / this.parseCount;
+	long averageConsume = this.consumeNanos / (this.consumedUnits - 1);
+	if (averageConsume <= 0)
+		return MAX_WINDOW;
+	long ahead = (averageParse + averageConsume - 1) / averageConsume;
+	return (int) Math.min(threadCount + ahead, MAX_WINDOW);
+}
+
+@Override
+public void run() {
+	Parser parser = ((ParsingThread) Thread.currentThread()).parser;
+	while (true) {
+		int index;
+		ICompilationUnit unit;
+		synchronized (this) {
+			while (this.parsingThreads != null && this.nextUnitToParse < this.units.length
+					&& this.nextUnitToParse >= this.consumedUnits + this.window) {
+				try {
+					wait(250); // wait until the compiler thread moves the window
+				} catch (InterruptedException ignore) {
+					// ignore
+				}
+			}
+			if (this.parsingThreads == null || this.nextUnitToParse >= this.units.length)
+				return;
+			index = this.nextUnitToParse++;
+			unit = this.units[index];
+		}
+		CompilationUnitDeclaration parsedUnit = null;
+		Throwable exception = null;
+		long parseStart = System.nanoTime();
+		try {
+			parsedUnit = parser.dietParse(unit, this.results[index]);
+		} catch (Error e) {
+			exception = e;
+		} catch (RuntimeException e) {
+			exception = e;
+		}
+		long parseTime = System.nanoTime() - parseStart;
+		synchronized (this) {
+			this.parseNanos += parseTime;
+			this.parseCount++;
+			this.parsedUnits[index] = parsedUnit;
+			this.caughtExceptions[index] = exception;
+			this.parsed[index] = true;
+			notifyAll(); // wake up compiler thread which may be waiting for this unit
+		}
+	}
+}
+
+public synchronized void shutdown() {
+	this.parsingThreads = null; // mark the parse manager as shutting down so that the parsing threads stop
+	notifyAll();
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -22,12 +22,16 @@ package org.eclipse.jdt.internal.compiler.classfmt;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.function.Predicate;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.codegen.AnnotationTargetTypeConstants;
 import org.eclipse.jdt.internal.compiler.codegen.AttributeNamesConstants;
+import org.eclipse.jdt.internal.compiler.codegen.ConstantPool;
 import org.eclipse.jdt.internal.compiler.env.IBinaryAnnotation;
 import org.eclipse.jdt.internal.compiler.env.IBinaryElementValuePair;
 import org.eclipse.jdt.internal.compiler.env.IBinaryField;
@@ -976,59 +980,9 @@ public boolean hasStructuralChanges(byte[] newBytes, boolean orderRequired, bool
 	try {
 		ClassFileReader newClassFile =
 			new ClassFileReader(newBytes, this.classFileName);
-		// type level comparison
-		// modifiers
-		if (getModifiers() != newClassFile.getModifiers())
+		if (hasStructuralTypeChanges(newClassFile))
 			return true;
 
-		// only consider a portion of the tagbits which indicate a structural change for dependents
-		// e.g. @Override change has no influence outside
-		long OnlyStructuralTagBits = TagBits.AnnotationTargetMASK // different @Target status ?
-			| TagBits.AnnotationDeprecated // different @Deprecated status ?
-			| TagBits.AnnotationRetentionMASK // different @Retention status ?
-			| TagBits.HierarchyHasProblems; // different hierarchy status ?
-
-		// meta-annotations
-		if ((getTagBits() & OnlyStructuralTagBits) != (newClassFile.getTagBits() & OnlyStructuralTagBits))
-			return true;
-		// annotations
-		if (hasStructuralAnnotationChanges(getAnnotations(), newClassFile.getAnnotations()))
-			return true;
-		if (this.version >= ClassFileConstants.JDK1_8
-				&& hasStructuralTypeAnnotationChanges(getTypeAnnotations(), newClassFile.getTypeAnnotations()))
-			return true;
-
-		// generic signature
-		if (!CharOperation.equals(getGenericSignature(), newClassFile.getGenericSignature()))
-			return true;
-		// superclass
-		if (!CharOperation.equals(getSuperclassName(), newClassFile.getSuperclassName()))
-			return true;
-		// interfaces
-		char[][] newInterfacesNames = newClassFile.getInterfaceNames();
-		if (this.interfaceNames != newInterfacesNames) { // TypeConstants.NoSuperInterfaces
-			int newInterfacesLength = newInterfacesNames == null ? 0 : newInterfacesNames.length;
-			if (newInterfacesLength != this.interfacesCount)
-				return true;
-			for (int i = 0, max = this.interfacesCount; i < max; i++)
-				if (!CharOperation.equals(this.interfaceNames[i], newInterfacesNames[i]))
-					return true;
-		}
-
-		// member types
-		IBinaryNestedType[] currentMemberTypes = getMemberTypes();
-		IBinaryNestedType[] otherMemberTypes = newClassFile.getMemberTypes();
-		if (currentMemberTypes != otherMemberTypes) { // TypeConstants.NoMemberTypes
-			int currentMemberTypeLength = currentMemberTypes == null ? 0 : currentMemberTypes.length;
-			int otherMemberTypeLength = otherMemberTypes == null ? 0 : otherMemberTypes.length;
-			if (currentMemberTypeLength != otherMemberTypeLength)
-				return true;
-			for (int i = 0; i < currentMemberTypeLength; i++)
-				if (!CharOperation.equals(currentMemberTypes[i].getName(), otherMemberTypes[i].getName())
-					|| currentMemberTypes[i].getModifiers() != otherMemberTypes[i].getModifiers())
-						return true;
-		}
-
 		// fields
 		FieldInfo[] otherFieldInfos = (FieldInfo[]) newClassFile.getFields();
 		int otherFieldInfosLength = otherFieldInfos == null ? 0 : otherFieldInfos.length;
@@ -1088,30 +1042,323 @@ public boolean hasStructuralChanges(byte[] newBytes, boolean orderRequired, bool
 						return true;
 			}
 		}
+		return false;
+	} catch (ClassFormatException e) {
+		return true;
+	}
+}
+
+/*
+ * Answer whether the type itself changed structurally, ignoring its fields and methods.
+ */
+private boolean hasStructuralTypeChanges(ClassFileReader newClassFile) {
+	// type level comparison
+	// modifiers
+	if (getModifiers() != newClassFile.getModifiers())
+		return true;
 
-		// missing types
-		char[][][] missingTypes = getMissingTypeNames();
-		char[][][] newMissingTypes = newClassFile.getMissingTypeNames();
-		if (missingTypes != null) {
-			if (newMissingTypes == null) {
+	// only consider a portion of the tagbits which indicate a structural change for dependents
+	// e.g. @Override change has no influence outside
+	long OnlyStructuralTagBits = TagBits.AnnotationTargetMASK // different @Target status ?
+		| TagBits.AnnotationDeprecated // different @Deprecated status ?
+		| TagBits.AnnotationRetentionMASK // different @Retention status ?
+		| TagBits.HierarchyHasProblems; // different hierarchy status ?
+
+	// meta-annotations
+	if ((getTagBits() & OnlyStructuralTagBits) != (newClassFile.getTagBits() & OnlyStructuralTagBits))
+		return true;
+	// annotations
+	if (hasStructuralAnnotationChanges(getAnnotations(), newClassFile.getAnnotations()))
+		return true;
+	if (this.version >= ClassFileConstants.JDK1_8
+			&& hasStructuralTypeAnnotationChanges(getTypeAnnotations(), newClassFile.getTypeAnnotations()))
+		return true;
+
+	// generic signature
+	if (!CharOperation.equals(getGenericSignature(), newClassFile.getGenericSignature()))
+		return true;
+	// superclass
+	if (!CharOperation.equals(getSuperclassName(), newClassFile.getSuperclassName()))
+		return true;
+	// interfaces
+	char[][] newInterfacesNames = newClassFile.getInterfaceNames();
+	if (this.interfaceNames != newInterfacesNames) { // TypeConstants.NoSuperInterfaces
+		int newInterfacesLength = newInterfacesNames == null ? 0 : newInterfacesNames.length;
+		if (newInterfacesLength != this.interfacesCount)
+			return true;
+		for (int i = 0, max = this.interfacesCount; i < max; i++)
+			if (!CharOperation.equals(this.interfaceNames[i], newInterfacesNames[i]))
 				return true;
-			}
-			int length = missingTypes.length;
-			if (length != newMissingTypes.length) {
+	}
+
+	// member types
+	IBinaryNestedType[] currentMemberTypes = getMemberTypes();
+	IBinaryNestedType[] otherMemberTypes = newClassFile.getMemberTypes();
+	if (currentMemberTypes != otherMemberTypes) { // TypeConstants.NoMemberTypes
+		int currentMemberTypeLength = currentMemberTypes == null ? 0 : currentMemberTypes.length;
+		int otherMemberTypeLength = otherMemberTypes == null ? 0 : otherMemberTypes.length;
+		if (currentMemberTypeLength != otherMemberTypeLength)
+			return true;
+		for (int i = 0; i < currentMemberTypeLength; i++)
+			if (!CharOperation.equals(currentMemberTypes[i].getName(), otherMemberTypes[i].getName())
+				|| currentMemberTypes[i].getModifiers() != otherMemberTypes[i].getModifiers())
+					return true;
+	}
+
+	// missing types
+	char[][][] missingTypes = getMissingTypeNames();
+	char[][][] newMissingTypes = newClassFile.getMissingTypeNames();
+	if (missingTypes != null) {
+		if (newMissingTypes == null) {
+			return true;
+		}
+		int length = missingTypes.length;
+		if (length != newMissingTypes.length) {
+			return true;
+		}
+		for (int i = 0; i < length; i++) {
+			if (!CharOperation.equals(missingTypes[i], newMissingTypes[i])) {
 				return true;
 			}
-			for (int i = 0; i < length; i++) {
-				if (!CharOperation.equals(missingTypes[i], newMissingTypes[i])) {
-					return true;
+		}
+	} else if (newMissingTypes != null) {
+		return true;
+	}
+	return false;
+}
+
+/**
+ * Answer the names of the fields and methods which changed structurally between the receiver and the given
+ * class file (see {@link #hasStructuralChanges(byte[])}), ignoring the synthetic members. The constructors are
+ * answered as the source name of the type, since their callers name the type instead.
+ * <p>
+ * Answer <code>null</code> if the type itself changed structurally, or if the code depending on the members which
+ * changed does not always name them: the abstract methods of interfaces (implemented by lambda expressions), the
+ * members of annotation types and enums (used by annotations without a member name and by switch statements),
+ * and the methods called implicitly by enhanced for and try-with-resources statements.
+ * Answer an empty array if there is no structural change.
+ * </p>
+ * @param newBytes the bytes of the .class file we want to compare the receiver to
+ * @return the names of the members which changed, or <code>null</code> if dependents must be considered changed
+ */
+public char[][] getStructuralMemberChanges(byte[] newBytes) {
+	try {
+		ClassFileReader newClassFile = new ClassFileReader(newBytes, this.classFileName);
+		if (hasStructuralTypeChanges(newClassFile))
+			return null;
+
+		char[][] names = CharOperation.NO_CHAR_CHAR;
+		FieldInfo[] currentFields = this.fieldsCount == 0 ? new FieldInfo[0] : sortedCopy(this.fields, this.fieldsCount);
+		FieldInfo[] otherFields = newClassFile.fieldsCount == 0 ? new FieldInfo[0] : sortedCopy(newClassFile.fields, newClassFile.fieldsCount);
+		int index1 = 0, index2 = 0;
+		int length1 = currentFields.length, length2 = otherFields.length;
+		while (index1 < length1 || index2 < length2) {
+			FieldInfo currentField = index1 < length1 ? currentFields[index1] : null;
+			FieldInfo otherField = index2 < length2 ? otherFields[index2] : null;
+			if (currentField != null && currentField.isSynthetic()) {
+				index1++;
+			} else if (otherField != null && otherField.isSynthetic()) {
+				index2++;
+			} else {
+				int compare = currentField == null ? 1 : otherField == null ? -1 : currentField.compareTo(otherField);
+				if (compare == 0) {
+					index1++;
+					index2++;
+					if (hasStructuralFieldChanges(currentField, otherField))
+						names = addName(names, currentField.getName());
+				} else if (compare < 0) {
+					index1++;
+					names = addName(names, currentField.getName()); // removed field
+				} else {
+					index2++;
+					names = addName(names, otherField.getName()); // added field
 				}
 			}
-		} else if (newMissingTypes != null) {
-			return true;
 		}
-		return false;
+
+		boolean isInterface = (getModifiers() & ClassFileConstants.AccInterface) != 0;
+		MethodInfo[] currentMethods = this.methodsCount == 0 ? new MethodInfo[0] : sortedCopy(this.methods, this.methodsCount);
+		MethodInfo[] otherMethods = newClassFile.methodsCount == 0 ? new MethodInfo[0] : sortedCopy(newClassFile.methods, newClassFile.methodsCount);
+		index1 = index2 = 0;
+		length1 = currentMethods.length;
+		length2 = otherMethods.length;
+		while (index1 < length1 || index2 < length2) {
+			MethodInfo currentMethod = index1 < length1 ? currentMethods[index1] : null;
+			MethodInfo otherMethod = index2 < length2 ? otherMethods[index2] : null;
+			MethodInfo changedMethod;
+			if (currentMethod != null && (currentMethod.isSynthetic() || currentMethod.isClinit())) {
+				index1++;
+				continue;
+			} else if (otherMethod != null && (otherMethod.isSynthetic() || otherMethod.isClinit())) {
+				index2++;
+				continue;
+			}
+			int compare = currentMethod == null ? 1 : otherMethod == null ? -1 : currentMethod.compareTo(otherMethod);
+			if (compare == 0) {
+				index1++;
+				index2++;
+				if (!hasStructuralMethodChanges(currentMethod, otherMethod))
+					continue;
+				changedMethod = (otherMethod.getModifiers() & ClassFileConstants.AccAbstract) != 0 ? otherMethod : currentMethod;
+			} else if (compare < 0) {
+				index1++;
+				changedMethod = currentMethod; // removed method
+			} else {
+				index2++;
+				changedMethod = otherMethod; // added method
+			}
+			if (isInterface && (changedMethod.getModifiers() & ClassFileConstants.AccAbstract) != 0)
+				return null;
+			char[] selector = changedMethod.getSelector();
+			if (CharOperation.equals(selector, ConstantPool.Close)
+					|| CharOperation.equals(selector, ConstantPool.ITERATOR_NAME)
+					|| CharOperation.equals(selector, ConstantPool.HasNext)
+					|| CharOperation.equals(selector, ConstantPool.Next))
+				return null;
+			names = addName(names, changedMethod.isConstructor() ? getSourceName() : selector);
+		}
+		if (names.length > 0 && (getModifiers() & (ClassFileConstants.AccAnnotation | ClassFileConstants.AccEnum)) != 0)
+			return null;
+		return names;
 	} catch (ClassFormatException e) {
-		return true;
+		return null;
+	}
+}
+private static <T> T[] sortedCopy(T[] members, int count) {
+	T[] copy = Arrays.copyOf(members, count);
+	Arrays.sort(copy);
+	return copy;
+}
+private static char[][] addName(char[][] names, char[] name) {
+	for (int i = 0, length = names.length; i < length; i++)
+		if (CharOperation.equals(names[i], name))
+			return names;
+	return CharOperation.arrayConcat(names, name);
+}
+
+/**
+ * Answer a digest of the structure of the given binary type, covering what {@link #hasStructuralChanges(byte[])}
+ * compares, with members sorted and synthetic members excluded. Code compiled against a type does not need to be
+ * recompiled against another version of it which answers the same digest.
+ *
+ * @param binaryType the type to digest
+ * @return the SHA-1 digest of the structure of the type
+ */
+public static byte[] getStructuralHash(IBinaryType binaryType) {
+	return getStructuralHash(binaryType, false);
+}
+/**
+ * Answer a digest of the structure of the given binary type (see {@link #getStructuralHash(IBinaryType)}),
+ * optionally ignoring its private fields, methods and member types. Code outside of the type and its nest
+ * does not need to be recompiled against another version of it which answers the same digest ignoring these.
+ *
+ * @param binaryType the type to digest
+ * @param ignorePrivateMembers whether the private members of the type are left out of the digest
+ * @return the SHA-1 digest of the structure of the type
+ */
+public static byte[] getStructuralHash(IBinaryType binaryType, boolean ignorePrivateMembers) {
+	StringBuilder buffer = new StringBuilder(512);
+	buffer.append(binaryType.getName()).append(' ').append(binaryType.getModifiers());
+	long OnlyStructuralTagBits = TagBits.AnnotationTargetMASK
+		| TagBits.AnnotationDeprecated
+		| TagBits.AnnotationRetentionMASK
+		| TagBits.HierarchyHasProblems;
+	buffer.append(' ').append(binaryType.getTagBits() & OnlyStructuralTagBits);
+	appendStructure(buffer, "super", binaryType.getSuperclassName()); //$NON-NLS-1$
+	appendStructure(buffer, "generic", binaryType.getGenericSignature()); //$NON-NLS-1$
+	char[][] interfaces = binaryType.getInterfaceNames();
+	if (interfaces != null)
+		for (char[] name : interfaces)
+			appendStructure(buffer, "implements", name); //$NON-NLS-1$
+	appendAnnotations(buffer, binaryType.getAnnotations());
+	appendTypeAnnotations(buffer, binaryType.getTypeAnnotations());
+	IBinaryNestedType[] memberTypes = binaryType.getMemberTypes();
+	if (memberTypes != null)
+		for (IBinaryNestedType memberType : memberTypes)
+			if (!ignorePrivateMembers || (memberType.getModifiers() & ClassFileConstants.AccPrivate) == 0)
+				appendStructure(buffer, "member", memberType.getName()).append(' ').append(memberType.getModifiers()); //$NON-NLS-1$
+
+	IBinaryField[] fields = binaryType.getFields();
+	if (fields != null) {
+		String[] descriptions = new String[fields.length];
+		int count = 0;
+		for (IBinaryField field : fields) {
+			if ((field.getModifiers() & ClassFileConstants.AccSynthetic) != 0) continue;
+			if (ignorePrivateMembers && (field.getModifiers() & ClassFileConstants.AccPrivate) != 0) continue;
+			StringBuilder description = new StringBuilder();
+			description.append("\nfield ").append(field.getName()).append(' ').append(field.getTypeName()) //$NON-NLS-1$
+				.append(' ').append(field.getModifiers())
+				.append(' ').append(field.getTagBits() & TagBits.AnnotationDeprecated);
+			appendStructure(description, "generic", field.getGenericSignature()); //$NON-NLS-1$
+			Constant constant = field.getConstant();
+			if (constant != null && constant != Constant.NotAConstant)
+				description.append(" = ").append(constant.typeID()).append(':').append(constant.stringValue()); //$NON-NLS-1$
+			appendAnnotations(description, field.getAnnotations());
+			appendTypeAnnotations(description, field.getTypeAnnotations());
+			descriptions[count++] = description.toString();
+		}
+		appendSorted(buffer, descriptions, count);
 	}
+
+	IBinaryMethod[] methods = binaryType.getMethods();
+	if (methods != null) {
+		String[] descriptions = new String[methods.length];
+		int count = 0;
+		for (IBinaryMethod method : methods) {
+			if ((method.getModifiers() & ClassFileConstants.AccSynthetic) != 0) continue;
+			if (ignorePrivateMembers && (method.getModifiers() & ClassFileConstants.AccPrivate) != 0) continue;
+			StringBuilder description = new StringBuilder();
+			description.append("\nmethod ").append(method.getSelector()).append(method.getMethodDescriptor()) //$NON-NLS-1$
+				.append(' ').append(method.getModifiers())
+				.append(' ').append(method.getTagBits() & TagBits.AnnotationDeprecated);
+			appendStructure(description, "generic", method.getGenericSignature()); //$NON-NLS-1$
+			char[][] exceptions = method.getExceptionTypeNames();
+			if (exceptions != null)
+				for (char[] name : exceptions)
+					appendStructure(description, "throws", name); //$NON-NLS-1$
+			appendAnnotations(description, method.getAnnotations());
+			for (int i = 0, count2 = method.getAnnotatedParametersCount(); i < count2; i++) {
+				description.append(" param").append(i); //$NON-NLS-1$
+				appendAnnotations(description, method.getParameterAnnotations(i, binaryType.getFileName()));
+			}
+			appendTypeAnnotations(description, method.getTypeAnnotations());
+			descriptions[count++] = description.toString();
+		}
+		appendSorted(buffer, descriptions, count);
+	}
+
+	char[][][] missingTypes = binaryType.getMissingTypeNames();
+	if (missingTypes != null)
+		for (char[][] missingType : missingTypes)
+			appendStructure(buffer, "missing", CharOperation.concatWith(missingType, '/')); //$NON-NLS-1$
+	try {
+		return MessageDigest.getInstance("SHA-1").digest(buffer.toString().getBytes(Util.UTF_8)); //$NON-NLS-1$
+	} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+		// both are required from every Java platform
+		throw new IllegalStateException(e);
+	}
+}
+private static StringBuilder appendStructure(StringBuilder buffer, String label, char[] value) {
+	buffer.append(' ').append(label).append(' ');
+	if (value != null)
+		buffer.append(value);
+	return buffer;
+}
+private static void appendAnnotations(StringBuilder buffer, IBinaryAnnotation[] annotations) {
+	if (annotations != null)
+		for (IBinaryAnnotation annotation : annotations)
+			buffer.append(' ').append(BinaryTypeFormatter.annotationToString(annotation));
+}
+private static void appendTypeAnnotations(StringBuilder buffer, IBinaryTypeAnnotation[] annotations) {
+	if (annotations != null)
+		for (IBinaryTypeAnnotation annotation : annotations)
+			if (affectsSignature(annotation))
+				buffer.append(' ').append(BinaryTypeFormatter.annotationToString(annotation));
+}
+private static void appendSorted(StringBuilder buffer, String[] descriptions, int count) {
+	Arrays.sort(descriptions, 0, count);
+	for (int i = 0; i < count; i++)
+		buffer.append(descriptions[i]);
 }
 
 private boolean hasStructuralAnnotationChanges(IBinaryAnnotation[] currentAnnotations, IBinaryAnnotation[] otherAnnotations) {
@@ -1290,7 +1537,7 @@ private boolean hasStructuralTypeAnnotationChanges(IBinaryTypeAnnotation[] curre
 	return false;
 }
 
-private boolean affectsSignature(IBinaryTypeAnnotation typeAnnotation) {
+private static boolean affectsSignature(IBinaryTypeAnnotation typeAnnotation) {
 	if (typeAnnotation == null) return false;
 	int targetType = typeAnnotation.getTargetType();
 	if (targetType >= AnnotationTargetTypeConstants.LOCAL_VARIABLE && targetType <= AnnotationTargetTypeConstants.METHOD_REFERENCE_TYPE_ARGUMENT)
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -543,19 +543,20 @@ public void recordContinueFrom(FlowContext innerFlowContext, FlowInfo flowInfo)
 			this.finalAssignments = new Reference[5];
 			this.finalVariables = new VariableBinding[5];
 		} else {
-			if (this.assignCount == this.finalAssignments.length)
+			if (this.assignCount == this.finalAssignments.length) {
 				System.arraycopy(
 					this.finalAssignments,
 					0,
 					(this.finalAssignments = new Reference[this.assignCount * 2]),
 					0,
 					this.assignCount);
-			System.arraycopy(
-				this.finalVariables,
-				0,
-				(this.finalVariables = new VariableBinding[this.assignCount * 2]),
-				0,
-				this.assignCount);
+				System.arraycopy(
+					this.finalVariables,
+					0,
+					(this.finalVariables = new VariableBinding[this.assignCount * 2]),
+					0,
+					this.assignCount);
+			}
 		}
 		this.finalAssignments[this.assignCount] = finalAssignment;
 		this.finalVariables[this.assignCount++] = binding;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -102,6 +102,9 @@ public class UnconditionalFlowInfo extends FlowInfo {
 		// extra[INN] is iNNBit
 		// lifecycle is extra == null or else all extra[]'s are allocated
 		// arrays which have the same size
+	// the rows of extra which may be referenced by another flow info too (bit j for extra[j]):
+	// copies share the rows until either side writes them, see unshareExtra(int)
+	private int sharedExtraRows;
 
 	public int maxFieldCount; // limit between fields and locals
 
@@ -110,6 +113,11 @@ public class UnconditionalFlowInfo extends FlowInfo {
 	public static final int IN = 6;
 	public static final int INN = 7;
 
+	// masks of rows of extra, bit j for extra[j]
+	private static final int INIT_ROWS = 0x03; // definite and potential inits
+	private static final int ALL_ROWS = (1 << extraLength) - 1;
+	private static final int NULL_ROWS = ALL_ROWS & ~INIT_ROWS;
+
 /* fakeInitializedFlowInfo: For Lambda expressions tentative analysis during overload resolution. 
    We presume that any and all outer locals touched by the lambda are definitely assigned and 
    effectively final. Whether they are or not is immaterial for overload analysis (errors encountered
@@ -302,6 +310,9 @@ private FlowInfo addInfoFrom(FlowInfo inits, boolean handleInits) {
 		int i;
 		if (handleInits) {
 			// manage definite assignment info
+			if (mergeLimit > 0 || copyLimit > 0) {
+				unshareExtra(INIT_ROWS);
+			}
 			for (i = 0; i < mergeLimit; i++) {
 				this.extra[0][i] |= otherInits.extra[0][i];
 				this.extra[1][i] |= otherInits.extra[1][i];
@@ -323,6 +334,9 @@ private FlowInfo addInfoFrom(FlowInfo inits, boolean handleInits) {
 		  	copyLimit = 0;
 		  	mergeLimit = 0;
 		}
+		if (mergeLimit > 0 || copyLimit > 0) {
+			unshareExtra(NULL_ROWS);
+		}
 		for (i = 0; i < mergeLimit; i++) {
 			a1 = this.extra[1 + 1][i];
 			a2 = this.extra[2 + 1][i];
@@ -412,6 +426,7 @@ public FlowInfo addPotentialInitializationsFrom(FlowInfo inits) {
 	if (this.extra != null) {
 		if (otherInits.extra != null) {
 			// both sides have extra storage
+			unshareExtra(INIT_ROWS);
 			int i = 0, length, otherLength;
 			if ((length = this.extra[0].length) < (otherLength = otherInits.extra[0].length)) {
 				// current storage is shorter -> grow current
@@ -549,6 +564,7 @@ public UnconditionalFlowInfo addPotentialNullInfoFrom(
 			}
 		}
 		// PREMATURE skip operations for fields
+		unshareExtra(NULL_ROWS);
 		int i;
 		for (i = 0 ; i < mergeLimit ; i++) {
     		this.extra[1 + 1][i]  = (a1 = this.extra[1 + 1][i])
@@ -718,26 +734,21 @@ public FlowInfo copy() {
 	copy.tagBits = this.tagBits;
 	copy.maxFieldCount = this.maxFieldCount;
 	if (this.extra != null) {
-		int length;
+		// share the rows until either side writes them
 		copy.extra = new long[extraLength][];
-		System.arraycopy(this.extra[0], 0,
-			(copy.extra[0] = new long[length = this.extra[0].length]), 0,
-			length);
-		System.arraycopy(this.extra[1], 0,
-			(copy.extra[1] = new long[length]), 0, length);
-		if (hasNullInfo) {
-			for (int j = 2; j < 6; j++) {
-				System.arraycopy(this.extra[j], 0,
-					(copy.extra[j] = new long[length]), 0, length);
-			}
-		}
-		else {
+		System.arraycopy(this.extra, 0, copy.extra, 0, extraLength);
+		int sharedRows = ALL_ROWS;
+		if (!hasNullInfo) {
+			long[] noNullInfo = null;
 			for (int j = 2; j < 6; j++) {
-				copy.extra[j] = new long[length];
+				if (!isZero(this.extra[j])) {
+					copy.extra[j] = noNullInfo == null ? (noNullInfo = new long[this.extra[0].length]) : noNullInfo;
+					sharedRows &= ~(1 << j);
+				}
 			}
 		}
-		System.arraycopy(this.extra[IN], 0, (copy.extra[IN] = new long[length]), 0, length);
-		System.arraycopy(this.extra[INN], 0, (copy.extra[INN] = new long[length]), 0, length);
+		this.sharedExtraRows |= sharedRows;
+		copy.sharedExtraRows = ALL_ROWS; // including the rows sharing noNullInfo
 	}
 	return copy;
 }
@@ -754,6 +765,7 @@ public UnconditionalFlowInfo discardInitializationInfo() {
 	this.definiteInits =
 		this.potentialInits = 0;
 	if (this.extra != null) {
+		unshareExtra(INIT_ROWS);
 		for (int i = 0, length = this.extra[0].length; i < length; i++) {
 			this.extra[0][i] = this.extra[1][i] = 0;
 		}
@@ -786,6 +798,7 @@ public UnconditionalFlowInfo discardNonFieldInitializations() {
 	if ((vectorIndex = (limit / BitCacheSize) - 1) >= length) {
 		return this; // not enough room yet
 	}
+	unshareExtra(ALL_ROWS);
 	if (vectorIndex >= 0) {
 		// else we only have complete non field array items left
 		long mask = (1L << (limit % BitCacheSize))-1;
@@ -1213,6 +1226,7 @@ public void markAsComparedEqualToNonNull(LocalVariableBinding local) {
 					}
 				}
 			}
+			unshareExtra(NULL_ROWS);
 			// MACRO :'b,'es/nullBit\(.\)/extra[\1 + 1][vectorIndex]/gc
 			if (((mask = 1L << (position % BitCacheSize))
   				& (a1 = this.extra[1 + 1][vectorIndex])
@@ -1310,6 +1324,7 @@ public void markAsComparedEqualToNull(LocalVariableBinding local) {
 					}
 				}
 			}
+			unshareExtra(NULL_ROWS);
 			if ((mask & this.extra[1 + 1][vectorIndex]) != 0) {
   			  	if ((mask
   			  		& (~this.extra[2 + 1][vectorIndex] | this.extra[3 + 1][vectorIndex]
@@ -1364,9 +1379,11 @@ final private void markAsDefinitelyAssigned(int position) {
 					}
 				}
 			}
-			long mask;
-			this.extra[0][vectorIndex] |=
-				(mask = 1L << (position % BitCacheSize));
+			long mask = 1L << (position % BitCacheSize);
+			if ((this.extra[0][vectorIndex] & this.extra[1][vectorIndex] & mask) == 0) {
+				unshareExtra(INIT_ROWS);
+			}
+			this.extra[0][vectorIndex] |= mask;
 			this.extra[1][vectorIndex] |= mask;
 		}
 	}
@@ -1425,6 +1442,7 @@ public void markAsDefinitelyNonNull(LocalVariableBinding local) {
     				}
     			}
     		}
+    		unshareExtra(NULL_ROWS);
     		this.extra[2][vectorIndex]
     		    |= (mask = 1L << (position % BitCacheSize));
     		this.extra[4][vectorIndex] |= mask;
@@ -1483,6 +1501,7 @@ public void markAsDefinitelyNull(LocalVariableBinding local) {
     				}
     			}
     		}
+    		unshareExtra(NULL_ROWS);
     		this.extra[2][vectorIndex]
     		    |= (mask = 1L << (position % BitCacheSize));
     		this.extra[3][vectorIndex] |= mask;
@@ -1548,6 +1567,7 @@ public void markAsDefinitelyUnknown(LocalVariableBinding local) {
 					}
 				}
 			}
+			unshareExtra(NULL_ROWS);
 			this.extra[2][vectorIndex]
 			    |= (mask = 1L << (position % BitCacheSize));
 			this.extra[5][vectorIndex] |= mask;
@@ -1587,6 +1607,7 @@ public void resetNullInfo(LocalVariableBinding local) {
     			// before and for which no null bits exist.
     			return;
     		}
+    		unshareExtra(NULL_ROWS);
     		this.extra[2][vectorIndex]
     		    &= (mask = ~(1L << (position % BitCacheSize)));
     		this.extra[3][vectorIndex] &= mask;
@@ -1636,6 +1657,7 @@ public void markPotentiallyUnknownBit(LocalVariableBinding local) {
 					}
 				}
 			}
+    		unshareExtra(NULL_ROWS);
     		mask = 1L << (position % BitCacheSize);
     		isTrue((this.extra[2][vectorIndex] & mask) == 0, "Adding 'unknown' mark in unexpected state"); //$NON-NLS-1$
     		this.extra[5][vectorIndex] |= mask;
@@ -1684,6 +1706,7 @@ public void markPotentiallyNullBit(LocalVariableBinding local) {
 					}
 				}
 			}
+    		unshareExtra(NULL_ROWS);
     		mask = 1L << (position % BitCacheSize);
     		this.extra[3][vectorIndex] |= mask;
     		isTrue((this.extra[2][vectorIndex] & mask) == 0, "Adding 'potentially null' mark in unexpected state"); //$NON-NLS-1$
@@ -1732,6 +1755,7 @@ public void markPotentiallyNonNullBit(LocalVariableBinding local) {
 					}
 				}
 			}
+    		unshareExtra(NULL_ROWS);
     		mask = 1L << (position % BitCacheSize);
     		isTrue((this.extra[2][vectorIndex] & mask) == 0, "Adding 'potentially non-null' mark in unexpected state"); //$NON-NLS-1$
     		this.extra[4][vectorIndex] |= mask;
@@ -1918,6 +1942,9 @@ public UnconditionalFlowInfo mergedWith(UnconditionalFlowInfo otherInits) {
 		}
         // MACRO :'b,'es/nullBit\(.\)/extra[\1 + 1][i]/g
 		// manage definite assignment
+		if (otherInits.extra == null || this.extra[0] != otherInits.extra[0] || this.extra[1] != otherInits.extra[1]) {
+			unshareExtra(INIT_ROWS); // merging rows with themselves leaves them unchanged
+		}
 		for (i = 0; i < mergeLimit; i++) {
 	  		this.extra[0][i] &= otherInits.extra[0][i];
 	  		this.extra[1][i] |= otherInits.extra[1][i];
@@ -1940,6 +1967,9 @@ public UnconditionalFlowInfo mergedWith(UnconditionalFlowInfo otherInits) {
 		  resetLimit = 0; // no need to reset anything
 		}
 		// compose nulls
+		if (mergeLimit > 0 || copyLimit > 0 || resetLimit > 0) {
+			unshareExtra(NULL_ROWS);
+		}
 		for (i = 0; i < mergeLimit; i++) {
     		this.extra[1 + 1][i] = (a1=this.extra[1+1][i]) & (b1=otherInits.extra[1+1][i]) & (
     				((a2=this.extra[2+1][i]) & (((b2=otherInits.extra[2+1][i]) & 
@@ -2045,19 +2075,21 @@ public UnconditionalFlowInfo nullInfoLessUnconditionalCopy() {
 	copy.tagBits |= UNROOTED;
 	copy.maxFieldCount = this.maxFieldCount;
 	if (this.extra != null) {
-		int length;
+		int length = this.extra[0].length;
 		copy.extra = new long[extraLength][];
-		System.arraycopy(this.extra[0], 0,
-			(copy.extra[0] =
-				new long[length = this.extra[0].length]), 0, length);
-		System.arraycopy(this.extra[1], 0,
-			(copy.extra[1] = new long[length]), 0, length);
-		for (int j = 2; j < extraLength; j++) {
-			copy.extra[j] = new long[length];
+		// share the rows until either side writes them
+		copy.extra[0] = this.extra[0];
+		copy.extra[1] = this.extra[1];
+		this.sharedExtraRows |= INIT_ROWS;
+		long[] noNullInfo = new long[length];
+		for (int j = 2; j < 6; j++) {
+			copy.extra[j] = noNullInfo;
 		}
 		// no nullness known means: any previous nullness could shine through:
-		Arrays.fill(copy.extra[IN], -1L);
-		Arrays.fill(copy.extra[INN], -1L);
+		long[] anyNullInfo = new long[length];
+		Arrays.fill(anyNullInfo, -1L);
+		copy.extra[IN] = copy.extra[INN] = anyNullInfo;
+		copy.sharedExtraRows = ALL_ROWS;
 	}
 	return copy;
 }
@@ -2082,6 +2114,7 @@ public FlowInfo setReachMode(int reachMode) {
 			// see InitializationTest#test090 (and others)
 			this.potentialInits = 0;
 			if (this.extra != null) {
+				unshareExtra(INIT_ROWS);
 				for (int i = 0, length = this.extra[0].length;
 						i < length; i++) {
 					this.extra[1][i] = 0;
@@ -2242,6 +2275,9 @@ public UnconditionalFlowInfo mergeDefiniteInitsWith(UnconditionalFlowInfo otherI
 	// intersection of definitely assigned variables,
 	this.definiteInits &= otherInits.definiteInits;
 	if (this.extra != null) {
+		if (otherInits.extra == null || this.extra[0] != otherInits.extra[0]) {
+			unshareExtra(INIT_ROWS); // intersecting a row with itself leaves it unchanged
+		}
 		if (otherInits.extra != null) {
 			// both sides have extra storage
 			int i = 0, length, otherLength;
@@ -2296,6 +2332,7 @@ public void resetAssignmentInfo(int position) {
 			// use extra vector
 			int vectorIndex = (position / BitCacheSize) - 1;
 			if (this.extra == null || vectorIndex >= this.extra[0].length) return;	// variable doesnt exist in flow info
+			unshareExtra(INIT_ROWS);
 			long mask;
 			this.extra[0][vectorIndex] &=
 				(mask = ~(1L << (position % BitCacheSize)));
@@ -2304,11 +2341,37 @@ public void resetAssignmentInfo(int position) {
 	}
 }
 
+/*
+ * Copies those of the given rows of extra (bit j for extra[j]) which may be referenced by another flow info,
+ * before writing them.
+ */
+private void unshareExtra(int rows) {
+	int shared = this.sharedExtraRows & rows;
+	if (shared != 0) {
+		for (int j = 0; j < extraLength; j++) {
+			if ((shared & (1 << j)) != 0) {
+				this.extra[j] = this.extra[j].clone();
+			}
+		}
+		this.sharedExtraRows &= ~shared;
+	}
+}
+
+private static boolean isZero(long[] row) {
+	for (int i = 0; i < row.length; i++) {
+		if (row[i] != 0) {
+			return false;
+		}
+	}
+	return true;
+}
+
 private void createExtraSpace(int length) {
 	this.extra = new long[extraLength][];
 	for (int j = 0; j < extraLength; j++) {
 		this.extra[j] = new long[length];
 	}
+	this.sharedExtraRows = 0;
 	if ((this.tagBits & UNROOTED) != 0) {
 		Arrays.fill(this.extra[IN], -1L);
 		Arrays.fill(this.extra[INN], -1L);
@@ -469,6 +469,9 @@ public class CompilerOptions {
 	public boolean generateClassFiles;
 	/** Indicate if method bodies should be ignored */
 	public boolean ignoreMethodBodies;
+	/** Not directly configurable: maximal number of pairs of type bounds which the type inference of an outermost
+	 * invocation may compare (JLS 18.3), or 0 for no limit. Defaults to the system property <code>jdt.compiler.inferenceBudget</code>. */
+	public long inferenceStepBudget;
 	/** Raise null related warnings for variables tainted inside an assert statement (java 1.4 and above)*/
 	public boolean includeNullInfoFromAsserts;
 	/** Controls whether forced generic type problems get reported  */
@@ -1545,6 +1548,9 @@ public class CompilerOptions {
 		
 		// ignore method bodies
 		this.ignoreMethodBodies = false;
+
+		// no limit to the type inference unless set for this VM
+		this.inferenceStepBudget = Long.getLong("jdt.compiler.inferenceBudget", 0).longValue(); //$NON-NLS-1$
 		
 		this.ignoreSourceFolderWarningOption = false;
 		
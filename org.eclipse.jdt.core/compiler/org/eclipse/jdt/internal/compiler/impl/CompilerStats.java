@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -27,6 +27,21 @@ public class CompilerStats implements Comparable {
 	public long analyzeTime;
 	public long generateTime;
 
+	// lookup environment
+	public long inferenceContextCount;
+	public long inferenceSteps;
+	public long inferenceCacheHits;
+	public long typeCacheHits;
+	public long typeCacheMisses;
+
+	// processing pipeline (only when processing and writing run on separate threads)
+	public int processedQueueSize;
+	public int processedQueueMaxOccupancy;
+	public double processedQueueAverageOccupancy; // sampled each time a unit is added
+	public long processedUnitsCount;
+	public int processingStalls; // processing thread waiting for the writing thread
+	public int writingStalls; // writing thread waiting for the processing thread
+
 /**
  * Returns the total elapsed time (between start and end)
  * @return the time spent between start and end
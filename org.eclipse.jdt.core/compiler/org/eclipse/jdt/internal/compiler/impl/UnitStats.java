@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Statistics about the processing of one compilation unit, i.e. everything which happens
+ * once the unit has been diet parsed and its type bindings built: parsing of the method bodies,
+ * resolution, flow analysis and code generation.
+ * <p>
+ * Times are in nanoseconds. Counters are the number of events which occurred while the unit was
+ * being processed, including work done on behalf of other units (e.g. completing binary types).
+ */
+public class UnitStats {
+
+	public char[] fileName;
+	public int unitIndex;
+	public int lineCount;
+
+	// compile phases
+	public long parseTime;
+	public long resolveTime;
+	public long analyzeTime;
+	public long generateTime;
+
+	/** Bytes allocated by the processing thread, or -1 if they are not measured (see {@link #enableAllocationMeasurement()}). */
+	public long allocatedBytes = -1;
+	/** Bytes allocated by the flow analysis of the unit, or -1 if they are not measured. */
+	public long analyzeAllocatedBytes = -1;
+	/** Number of inference contexts (JLS 18) created. */
+	public int inferenceContexts;
+	/** Number of pairs of type bounds compared by incorporation (JLS 18.3). */
+	public long inferenceSteps;
+	/** Source of the invocation whose outermost inference took the most steps, or <code>null</code>. */
+	public String costliestInference;
+	/** Number of steps taken by the inference of {@link #costliestInference}. */
+	public long costliestInferenceSteps;
+	/** Number of type lookups answered by the lookup environment from its bindings. */
+	public int typeCacheHits;
+	/** Number of type lookups which had to ask the name environment. */
+	public int typeCacheMisses;
+
+	private static Object ThreadBean;
+	private static volatile Method GetThreadAllocatedBytes; // set after ThreadBean
+	private static boolean AllocationMeasurementRequested;
+
+/**
+ * Enables the measure of the bytes allocated by each thread, which applies to the whole VM, so that
+ * {@link #currentThreadAllocatedBytes()} can answer them. Only called when detailed statistics are
+ * requested, since the measure slows down allocations on some VMs.
+ *
+ * @return whether the allocations can be measured
+ */
+public static synchronized boolean enableAllocationMeasurement() {
+	if (!AllocationMeasurementRequested) {
+		AllocationMeasurementRequested = true;
+		try {
+			// com.sun.management.ThreadMXBean is not available on all VMs
+			Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean"); //$NON-NLS-1$
+			Object bean = ManagementFactory.getThreadMXBean();
+			if (beanClass.isInstance(bean)
+					&& ((Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean)).booleanValue()) { //$NON-NLS-1$
+				if (!((Boolean) beanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(bean)).booleanValue()) //$NON-NLS-1$
+					beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, Boolean.TRUE); //$NON-NLS-1$
+				ThreadBean = bean;
+				GetThreadAllocatedBytes = beanClass.getMethod("getThreadAllocatedBytes", long.class); //$NON-NLS-1$
+			}
+		} catch (Exception | LinkageError e) {
+			// allocations will not be measured
+		}
+	}
+	return GetThreadAllocatedBytes != null;
+}
+
+/**
+ * Returns the number of bytes allocated so far by the current thread, or -1 if it cannot be measured
+ * or {@link #enableAllocationMeasurement()} was not called.
+ */
+public static long currentThreadAllocatedBytes() {
+	Method getThreadAllocatedBytes = GetThreadAllocatedBytes;
+	if (getThreadAllocatedBytes != null) {
+		try {
+			return ((Long) getThreadAllocatedBytes.invoke(ThreadBean, Long.valueOf(Thread.currentThread().getId()))).longValue();
+		} catch (Exception e) {
+			GetThreadAllocatedBytes = null; // do not try again
+		}
+	}
+	return -1;
+}
+
+/**
+ * Returns the total time spent processing the unit.
+ */
+public long elapsedTime() {
+	return this.parseTime + this.resolveTime + this.analyzeTime + this.generateTime;
+}
+
+@Override
+public String toString() {
+	return "UnitStats [" + (this.fileName == null ? "" : new String(this.fileName)) //$NON-NLS-1$ //$NON-NLS-2$
+		+ ", elapsed=" + elapsedTime() + "ns, allocated=" + this.allocatedBytes //$NON-NLS-1$ //$NON-NLS-2$
+		+ ", inferenceContexts=" + this.inferenceContexts + ", inferenceSteps=" + this.inferenceSteps + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2018 IBM Corporation and others.
+ * Copyright (c) 2013, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -26,7 +26,8 @@ import org.eclipse.jdt.internal.compiler.util.Util;
  	
    ATS is AnnotatableTypeSystem and not AnnotatedTypeSystem, various methods may actually return unannotated types if the input arguments do not specify any annotations 
    and component types of the composite type being constructed are themselves also unannotated. We rely on the master type table maintained by TypeSystem and use 
-   getDerivedTypes() and cacheDerivedType() to get/put.
+   getDerivedTypes() and cacheDerivedType() to get/put. Requests which involve no annotation at all are answered by the lock free lookups of TypeSystem,
+   the annotated types are created and looked up while holding the monitor of the type system.
 */
 
 public class AnnotatableTypeSystem extends TypeSystem {
@@ -41,7 +42,7 @@ public class AnnotatableTypeSystem extends TypeSystem {
 	
 	// Given a type, return all its annotated variants: parameter may be annotated.
 	@Override
-	public TypeBinding[] getAnnotatedTypes(TypeBinding type) {
+	public synchronized TypeBinding[] getAnnotatedTypes(TypeBinding type) {
 		
 		TypeBinding[] derivedTypes = getDerivedTypes(type);
 		final int length = derivedTypes.length;
@@ -70,6 +71,12 @@ public class AnnotatableTypeSystem extends TypeSystem {
 	*/
 	@Override
 	public ArrayBinding getArrayType(TypeBinding leafType, int dimensions, AnnotationBinding [] annotations) {
+		if (!(leafType instanceof ArrayBinding) && !haveTypeAnnotations(leafType, annotations))
+			return super.getArrayType(leafType, dimensions);
+		return getAnnotatedArrayType(leafType, dimensions, annotations);
+	}
+
+	private synchronized ArrayBinding getAnnotatedArrayType(TypeBinding leafType, int dimensions, AnnotationBinding [] annotations) {
 		if (leafType instanceof ArrayBinding) { // substitution attempts can cause this, don't create array of arrays.
 			dimensions += leafType.dimensions();
 			AnnotationBinding[] leafAnnotations = leafType.getTypeAnnotations();
@@ -120,7 +127,12 @@ public class AnnotatableTypeSystem extends TypeSystem {
 		
 		if (genericType.hasTypeAnnotations())   // @NonNull (List<String>) and not (@NonNull List)<String>
 			throw new IllegalStateException();
-		
+		if (!haveTypeAnnotations(genericType, enclosingType, typeArguments, annotations))
+			return super.getParameterizedType(genericType, typeArguments, enclosingType);
+		return getAnnotatedParameterizedType(genericType, typeArguments, enclosingType, annotations);
+	}
+
+	private synchronized ParameterizedTypeBinding getAnnotatedParameterizedType(ReferenceBinding genericType, TypeBinding[] typeArguments, ReferenceBinding enclosingType, AnnotationBinding [] annotations) {
 		ParameterizedTypeBinding parameterizedType = this.parameterizedTypes.get(genericType, typeArguments, enclosingType, annotations);
 		if (parameterizedType != null)
 			return parameterizedType;
@@ -149,7 +161,12 @@ public class AnnotatableTypeSystem extends TypeSystem {
 		if (!genericType.hasEnclosingInstanceContext() && enclosingType != null) {
 			enclosingType = (ReferenceBinding) enclosingType.original();
 		}
-		
+		if (!haveTypeAnnotations(genericType, enclosingType, null, annotations))
+			return super.getRawType(genericType, enclosingType);
+		return getAnnotatedRawType(genericType, enclosingType, annotations);
+	}
+
+	private synchronized RawTypeBinding getAnnotatedRawType(ReferenceBinding genericType, ReferenceBinding enclosingType, AnnotationBinding [] annotations) {
 		RawTypeBinding nakedType = null;
 		TypeBinding[] derivedTypes = getDerivedTypes(genericType);
 		for (int i = 0, length = derivedTypes.length; i < length; i++) {
@@ -188,7 +205,12 @@ public class AnnotatableTypeSystem extends TypeSystem {
 
 		if (genericType.hasTypeAnnotations())
 			throw new IllegalStateException();
-		
+		if (!haveTypeAnnotations(genericType, bound, otherBounds, annotations))
+			return super.getWildcard(genericType, rank, bound, otherBounds, boundKind);
+		return getAnnotatedWildcard(genericType, rank, bound, otherBounds, boundKind, annotations);
+	}
+
+	private synchronized WildcardBinding getAnnotatedWildcard(ReferenceBinding genericType, int rank, TypeBinding bound, TypeBinding[] otherBounds, int boundKind, AnnotationBinding [] annotations) {
 		WildcardBinding nakedType = null;
 		boolean useDerivedTypesOfBound = bound instanceof TypeVariableBinding || (bound instanceof ParameterizedTypeBinding && !(bound instanceof RawTypeBinding)) ;
 		TypeBinding[] derivedTypes = getDerivedTypes(useDerivedTypesOfBound ? bound : genericType);
@@ -227,7 +249,7 @@ public class AnnotatableTypeSystem extends TypeSystem {
 	   we first construct the binding for Outer.Middle.Inner and then annotate various parts of it. Likewise for PQTR's binding.
 	*/
 	@Override
-	public TypeBinding getAnnotatedType(TypeBinding type, AnnotationBinding[][] annotations) {
+	public synchronized TypeBinding getAnnotatedType(TypeBinding type, AnnotationBinding[][] annotations) {
 		
 		if (type == null || !type.isValidBinding() || annotations == null || annotations.length == 0)
 			return type;
@@ -297,7 +319,7 @@ public class AnnotatableTypeSystem extends TypeSystem {
 	   that may itself be possibly be annotated. This is so the binding for @Outer Outer.Inner != Outer.@Inner Inner != @Outer Outer.@Inner Inner. 
 	   Likewise so the bindings for @Readonly List<@NonNull String> != @Readonly List<@Nullable String> != @Readonly List<@Interned String> 
 	*/
-	private TypeBinding getAnnotatedType(TypeBinding type, TypeBinding enclosingType, AnnotationBinding[] annotations) {
+	private synchronized TypeBinding getAnnotatedType(TypeBinding type, TypeBinding enclosingType, AnnotationBinding[] annotations) {
 		if (type.kind() == Binding.PARAMETERIZED_TYPE) {
 			return getParameterizedType(type.actualType(), type.typeArguments(), (ReferenceBinding) enclosingType, annotations);
 		}
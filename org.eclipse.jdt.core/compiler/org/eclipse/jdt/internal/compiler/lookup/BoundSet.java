@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2017 GK Software AG.
+ * Copyright (c) 2013, 2019 GK Software AG and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -324,7 +324,35 @@ class BoundSet {
 	private TypeBound [] unincorporatedBounds = new TypeBound [1024];
 	private int unincorporatedBoundsCount = 0;
 	private TypeBound [] mostRecentBounds = new TypeBound[4]; // for quick & dirty duplicate elimination.
-	
+	/**
+	 * Not per JLS: the constraints derived by incorporation which have already been reduced into this bound set.
+	 * Since a bound set only grows, reducing any of them again cannot add a new bound, so pairs of bounds deriving
+	 * the same constraint in later generations can skip it. Not used for null analysis, which records hints per pair.
+	 */
+	private Set<ReducedFormula> reducedFormulas;
+
+	/** Key of {@link #reducedFormulas}, comparing types like {@link ConstraintTypeFormula#equalsEquals(ConstraintTypeFormula)}. */
+	private static final class ReducedFormula {
+		final ConstraintTypeFormula formula;
+		private final int hash;
+
+		ReducedFormula(ConstraintTypeFormula formula) {
+			this.formula = formula;
+			this.hash = ((hash(formula.left) * 31 + hash(formula.right)) * 31 + formula.relation) * 2 + (formula.isSoft ? 1 : 0);
+		}
+		private static int hash(TypeBinding type) {
+			return type.id != TypeIds.NoId ? type.id : System.identityHashCode(type);
+		}
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ReducedFormula && this.formula.equalsEquals(((ReducedFormula) obj).formula);
+		}
+	}
+
 	public BoundSet() {}
 	
 	// pre: typeParameters != null, variables[i].typeParameter == typeParameters[i]
@@ -373,6 +401,8 @@ class BoundSet {
 		System.arraycopy(this.incorporatedBounds, 0, copy.incorporatedBounds = new TypeBound[this.incorporatedBounds.length], 0, this.incorporatedBounds.length);
 		System.arraycopy(this.unincorporatedBounds, 0, copy.unincorporatedBounds = new TypeBound[this.unincorporatedBounds.length], 0, this.unincorporatedBounds.length);
 		copy.unincorporatedBoundsCount = this.unincorporatedBoundsCount;
+		if (this.reducedFormulas != null)
+			copy.reducedFormulas = new HashSet<>(this.reducedFormulas); // the copy has all our bounds
 		return copy;
 	}
 
@@ -516,8 +546,13 @@ class BoundSet {
 	boolean incorporate(InferenceContext18 context, TypeBound [] first, TypeBound [] next) throws InferenceFailureException {
 		boolean analyzeNull = context.environment.globalOptions.isAnnotationBasedNullAnalysisEnabled;
 		ConstraintTypeFormula [] mostRecentFormulas = new ConstraintTypeFormula[4]; // poor man's cache to toss out duplicates, in pathological cases there are a good quarter million of them.
+		if (!analyzeNull && this.reducedFormulas == null)
+			this.reducedFormulas = new HashSet<>();
+		LookupEnvironment root = context.environment.root;
 		// check each pair, in each way.
 		for (int i = 0, iLength = first.length; i < iLength; i++) {
+			if ((root.inferenceSteps += next.length) > root.inferenceStepLimit)
+				root.exceedInferenceBudget();
 			TypeBound boundI = first[i];
 			for (int j = 0, jLength = next.length; j < jLength; j++) {
 				TypeBound boundJ = next[j];
@@ -579,6 +614,12 @@ class BoundSet {
 							newConstraint = null;
 						}
 					}
+					ReducedFormula reduced = null;
+					if (newConstraint != null && !analyzeNull) {
+						reduced = new ReducedFormula(newConstraint);
+						if (this.reducedFormulas.contains(reduced))
+							newConstraint = null;
+					}
 					if (newConstraint != null) {
 						// bubble formulas around the cache.
 						mostRecentFormulas[3] = mostRecentFormulas[2];
@@ -588,6 +629,8 @@ class BoundSet {
 					
 						if (!reduceOneConstraint(context, newConstraint))
 							return false;
+						if (reduced != null)
+							this.reducedFormulas.add(reduced);
 						
 						if (analyzeNull) {
 							// not per JLS: if the new constraint relates types where at least one has a null annotations,
@@ -891,6 +934,35 @@ class BoundSet {
 		return true; // no FALSE encountered
 	}
 
+	/**
+	 * Helper for resolution (18.4):
+	 * Answer those of the given inference variables, other than alpha itself, on whose resolution alpha depends
+	 * (see {@link #dependsOnResolutionOf(InferenceVariable, InferenceVariable)}).
+	 */
+	List<InferenceVariable> directDependencies(InferenceVariable alpha, InferenceVariable[] variables) {
+		List<InferenceVariable> dependencies = new ArrayList<>();
+		if (!this.captures.isEmpty()) {
+			for (int i = 0; i < variables.length; i++) {
+				InferenceVariable beta = variables[i];
+				if (!TypeBinding.equalsEquals(beta, alpha) && dependsOnResolutionOf(alpha, beta))
+					dependencies.add(beta);
+			}
+			return dependencies;
+		}
+		// without capture bounds only the bounds of alpha matter, look them up once:
+		InferenceVariable alphaPrototype = alpha.prototype();
+		ThreeSets sets = this.boundsPerVariable.get(alphaPrototype);
+		for (int i = 0; i < variables.length; i++) {
+			InferenceVariable beta = variables[i];
+			if (TypeBinding.equalsEquals(beta, alpha))
+				continue;
+			InferenceVariable betaPrototype = beta.prototype();
+			if (TypeBinding.equalsEquals(alphaPrototype, betaPrototype) || (sets != null && sets.hasDependency(betaPrototype)))
+				dependencies.add(beta);
+		}
+		return dependencies;
+	}
+
 	/**
 	 * Helper for resolution (18.4):
 	 * Does this bound set define a direct dependency between the two given inference variables? 
@@ -892,6 +892,50 @@ public void storeDependencyInfo() {
 	for (int i = 0; i < size; i++)
 		rootRefs[i] = this.rootReferences.elementAt(i);
 	this.referenceContext.compilationResult.rootReferences = rootRefs;
+
+	// the builder recompiles the subtypes of a type whose members changed, even if they do not name these members
+	SimpleNameVector superTypeNames = new SimpleNameVector();
+	ObjectVector visitedTypes = new ObjectVector();
+	if (this.topLevelTypes != null)
+		for (int i = 0, length = this.topLevelTypes.length; i < length; i++)
+			recordSuperTypeNames(this.topLevelTypes[i], superTypeNames, visitedTypes);
+	CompilationUnitDeclaration unit = this.referenceContext;
+	for (int i = 0, max = unit.localTypeCount; i < max; i++)
+		recordSuperTypeNames(unit.localTypes[i], superTypeNames, visitedTypes);
+	size = superTypeNames.size;
+	char[][] superTypeRefs = new char[size][];
+	for (int i = 0; i < size; i++)
+		superTypeRefs[i] = superTypeNames.elementAt(i);
+	this.referenceContext.compilationResult.superTypeReferences = superTypeRefs;
+}
+private void recordSuperTypeNames(ReferenceBinding declaredType, SimpleNameVector superTypeNames, ObjectVector visitedTypes) {
+	recordSuperTypeNamesOf(declaredType, superTypeNames, visitedTypes);
+	ReferenceBinding[] memberTypes = declaredType.memberTypes();
+	if (memberTypes != null)
+		for (int i = 0, length = memberTypes.length; i < length; i++)
+			recordSuperTypeNames(memberTypes[i], superTypeNames, visitedTypes);
+}
+private void recordSuperTypeNamesOf(ReferenceBinding type, SimpleNameVector superTypeNames, ObjectVector visitedTypes) {
+	ReferenceBinding superclass = type.superclass();
+	if (superclass != null)
+		recordSuperTypeName(superclass, superTypeNames, visitedTypes);
+	ReferenceBinding[] interfaces = type.superInterfaces();
+	if (interfaces != null)
+		for (int i = 0, length = interfaces.length; i < length; i++)
+			recordSuperTypeName(interfaces[i], superTypeNames, visitedTypes);
+}
+private void recordSuperTypeName(ReferenceBinding superType, SimpleNameVector superTypeNames, ObjectVector visitedTypes) {
+	ReferenceBinding actualType = (ReferenceBinding) superType.erasure();
+	if (visitedTypes.containsIdentical(actualType)) return;
+	visitedTypes.add(actualType);
+
+	if (!actualType.isLocalType()) {
+		// the builder finds the dependents of a type, including its member types, by the name of its outermost type
+		char[] name = actualType.outermostEnclosingType().sourceName();
+		if (!superTypeNames.contains(name))
+			superTypeNames.add(name);
+	}
+	recordSuperTypeNamesOf(actualType, superTypeNames, visitedTypes);
 }
 @Override
 public String toString() {
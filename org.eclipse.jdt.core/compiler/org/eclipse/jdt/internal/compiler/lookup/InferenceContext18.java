@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -211,12 +212,14 @@ public class InferenceContext18 {
 		this.outerContext = outerContext;
 		if (site instanceof Invocation)
 			scope.compilationUnitScope().registerInferredInvocation((Invocation) site);
+		this.environment.root.inferenceContextCount++;
 	}
 
 	public InferenceContext18(Scope scope) {
 		this.scope = scope;
 		this.environment = scope.environment();
 		this.object = scope.getJavaLangObject();
+		this.environment.root.inferenceContextCount++;
 	}
 
 	/**
@@ -1321,9 +1324,11 @@ public class InferenceContext18 {
 		//  all variables upon which the resolution of at least one variable in this set depends." 
 		Set<InferenceVariable> v = new HashSet<InferenceVariable>();
 		Map<InferenceVariable,Set<InferenceVariable>> dependencies = new HashMap<>(); // compute only once, store for the final loop over 'v'.
+		// the bounds do not change while looking for the set, so each variable's direct dependencies are computed only once:
+		Map<InferenceVariable,InferenceVariable[]> directDependencies = new IdentityHashMap<>();
 		for (InferenceVariable iv : subSet) {
 			Set<InferenceVariable> tmp = new HashSet<>();
-			addDependencies(bounds, tmp, iv);
+			addDependencies(bounds, tmp, iv, directDependencies);
 			dependencies.put(iv, tmp);
 			v.addAll(tmp);
 		}
@@ -1338,7 +1343,7 @@ public class InferenceContext18 {
 				// "... if αi depends on the resolution of a variable β, then either β has an instantiation or there is some j such that β = αj; ..."
 				Set<InferenceVariable> set = dependencies.get(currentVariable);
 				if (set == null) // not an element of the original subSet, still need to fetch this var's dependencies
-					addDependencies(bounds, set = new HashSet<>(), currentVariable);
+					addDependencies(bounds, set = new HashSet<>(), currentVariable, directDependencies);
 				//  "... and ii) there exists no non-empty proper subset of { α1, ..., αn } with this property."
 				int cur = set.size();
 				if (cur == 1)
@@ -1352,15 +1357,17 @@ public class InferenceContext18 {
 		return result;
 	}
 
-	private void addDependencies(BoundSet boundSet, Set<InferenceVariable> variableSet, InferenceVariable currentVariable) {
+	private void addDependencies(BoundSet boundSet, Set<InferenceVariable> variableSet, InferenceVariable currentVariable,
+			Map<InferenceVariable,InferenceVariable[]> directDependencies) {
 		if (boundSet.isInstantiated(currentVariable)) return; // not added
 		if (!variableSet.add(currentVariable)) return; // already present
-		for (int j = 0; j < this.inferenceVariables.length; j++) {
-			InferenceVariable nextVariable = this.inferenceVariables[j];
-			if (TypeBinding.equalsEquals(nextVariable, currentVariable)) continue;
-			if (boundSet.dependsOnResolutionOf(currentVariable, nextVariable))
-				addDependencies(boundSet, variableSet, nextVariable);
+		InferenceVariable[] nextVariables = directDependencies.get(currentVariable);
+		if (nextVariables == null) {
+			List<InferenceVariable> dependsOn = boundSet.directDependencies(currentVariable, this.inferenceVariables);
+			directDependencies.put(currentVariable, nextVariables = dependsOn.toArray(new InferenceVariable[dependsOn.size()]));
 		}
+		for (int j = 0; j < nextVariables.length; j++)
+			addDependencies(boundSet, variableSet, nextVariables[j], directDependencies);
 	}
 
 	private ConstraintFormula pickFromCycle(Set<ConstraintFormula> c) {
@@ -137,6 +137,24 @@ public class LookupEnvironment implements ProblemReasons, TypeConstants {
 	/** Global access to the outermost active inference context as the universe for inference variable interning. */
 	InferenceContext18 currentInferenceContext;
 
+	// statistics, see CompilerStats -- ROOT_ONLY
+	public int inferenceContextCount;
+	public int typeCacheHits; // type lookups answered from the known bindings
+	public int typeCacheMisses; // type lookups which asked the name environment
+	public long inferenceSteps; // pairs of type bounds compared by incorporation (JLS 18.3)
+	public long costliestInferenceSteps; // steps of the costliest outermost inference, see #endInference(InvocationSite)
+	public InvocationSite costliestInference; // the invocation of the costliest outermost inference
+	public int inferenceCacheHits; // invocations whose inference was answered from #inferenceResults
+
+	// budget of the outermost inference, see CompilerOptions#inferenceStepBudget -- ROOT_ONLY
+	long inferenceStepLimit = Long.MAX_VALUE;
+	private long inferenceStepStart;
+	private long inferenceStepBudget;
+	private boolean inferenceBudgetExceeded;
+
+	// results of the inference of standalone invocations, see ParameterizedGenericMethodBinding#computeCompatibleMethod18(..) -- ROOT_ONLY
+	Map<ParameterizedGenericMethodBinding.InferenceShape, ParameterizedGenericMethodBinding.InferenceShape> inferenceResults = new HashMap<>();
+
 	final static int BUILD_FIELDS_AND_METHODS = 4;
 	final static int BUILD_TYPE_HIERARCHY = 1;
 	final static int CHECK_AND_SET_IMPORTS = 2;
@@ -222,6 +240,7 @@ public ModuleBinding getModule(char[] name) {
 
 public ReferenceBinding askForType(char[][] compoundName, /*@NonNull*/ModuleBinding clientModule) {
 	assert clientModule != null : "lookup needs a module"; //$NON-NLS-1$
+	this.root.typeCacheMisses++;
 	NameEnvironmentAnswer[] answers = null;
 	if (this.useModuleSystem) {
 		IModuleAwareNameEnvironment moduleEnv = (IModuleAwareNameEnvironment) this.nameEnvironment;
@@ -280,6 +299,7 @@ ReferenceBinding askForType(PackageBinding packageBinding, char[] name, ModuleBi
 	if (packageBinding == null) {
 		packageBinding = this.defaultPackage;
 	}
+	this.root.typeCacheMisses++;
 	NameEnvironmentAnswer[] answers = null;
 	if (this.useModuleSystem) {
 		IModuleAwareNameEnvironment moduleEnv = (IModuleAwareNameEnvironment) this.nameEnvironment;
@@ -1664,6 +1684,8 @@ public ReferenceBinding getType(char[][] compoundName, ModuleBinding mod) {
 			if (packageBinding != null && packageBinding != TheNotFoundPackage)
 				return null; // collides with a known package... should not call this method in such a case
 			referenceBinding = askForType(this.defaultPackage, compoundName[0], mod);
+		} else {
+			this.root.typeCacheHits++;
 		}
 	} else {
 		PackageBinding packageBinding = getPackage0(compoundName[0]);
@@ -1683,6 +1705,8 @@ public ReferenceBinding getType(char[][] compoundName, ModuleBinding mod) {
 			referenceBinding = askForType(compoundName, mod);
 		else if ((referenceBinding = packageBinding.getType0(compoundName[compoundName.length - 1])) == null)
 			referenceBinding = askForType(packageBinding, compoundName[compoundName.length - 1], mod);
+		else
+			this.root.typeCacheHits++;
 	}
 
 	if (referenceBinding == null || referenceBinding == TheNotFoundType)
@@ -2108,6 +2132,43 @@ public void releaseClassFiles(org.eclipse.jdt.internal.compiler.ClassFile[] clas
 		this.classFilePool.release(classFiles[i]);
 }
 
+/*
+ * Starts counting the steps of an outermost inference, i.e. of an inference not nested in another one.
+ */
+void startInference() {
+	this.inferenceStepStart = this.inferenceSteps;
+	this.inferenceBudgetExceeded = false;
+	this.inferenceStepBudget = this.globalOptions.inferenceStepBudget; // read for each inference, so that it can be changed between compilations
+	if (this.inferenceStepBudget > 0)
+		this.inferenceStepLimit = this.inferenceSteps + this.inferenceStepBudget;
+}
+
+/*
+ * Aborts the current outermost inference, which took more steps than allowed.
+ */
+void exceedInferenceBudget() throws InferenceFailureException {
+	this.inferenceBudgetExceeded = true;
+	throw new InferenceFailureException(inferenceBudgetMessage());
+}
+
+String inferenceBudgetMessage() {
+	return "exceeded the budget of " + this.inferenceStepBudget + " steps"; //$NON-NLS-1$ //$NON-NLS-2$
+}
+
+/*
+ * Ends the current outermost inference, which was performed for the given invocation, remembering it if it is
+ * the costliest one since the statistics were last read. Answers whether it was aborted for exceeding its budget.
+ */
+boolean endInference(InvocationSite invocationSite) {
+	long steps = this.inferenceSteps - this.inferenceStepStart;
+	if (steps > this.costliestInferenceSteps) {
+		this.costliestInferenceSteps = steps;
+		this.costliestInference = invocationSite;
+	}
+	this.inferenceStepLimit = Long.MAX_VALUE;
+	return this.inferenceBudgetExceeded;
+}
+
 public void reset() {
 	if (this.root != this) {
 		this.root.reset();
@@ -2129,6 +2190,7 @@ public void reset() {
 	this.uniqueParameterizedGenericMethodBindings = new SimpleLookupTable(3);
 	this.uniquePolymorphicMethodBindings = new SimpleLookupTable(3);
 	this.uniqueGetClassMethodBinding = null;
+	this.inferenceResults = new HashMap<>();
 	this.missingTypes = null;
 	this.typesBeingConnected = new HashSet();
 
@@ -2137,6 +2199,7 @@ public void reset() {
 	this.lastUnitIndex = -1;
 	this.lastCompletedUnitIndex = -1;
 	this.unitBeingCompleted = null; // in case AbortException occurred
+	this.costliestInference = null;
 
 	this.classFilePool.reset();
 	this.typeSystem.reset();
@@ -197,6 +197,8 @@ ReferenceBinding getType(char[] name, ModuleBinding mod) {
 			addNotFoundType(name);
 			return null;
 		}
+	} else {
+		this.environment.root.typeCacheHits++;
 	}
 
 	if (referenceBinding == LookupEnvironment.TheNotFoundType)
@@ -31,6 +31,7 @@ package org.eclipse.jdt.internal.compiler.lookup;
 
 import org.eclipse.jdt.internal.compiler.ast.ASTNode;
 import org.eclipse.jdt.internal.compiler.ast.Expression;
+import org.eclipse.jdt.internal.compiler.ast.ExpressionContext;
 import org.eclipse.jdt.internal.compiler.ast.Invocation;
 import org.eclipse.jdt.internal.compiler.ast.NullAnnotationMatching;
 import org.eclipse.jdt.internal.compiler.ast.ReferenceExpression;
@@ -234,8 +235,11 @@ public class ParameterizedGenericMethodBinding extends ParameterizedMethodBindin
 		
 		LookupEnvironment environment = scope.environment();
 		InferenceContext18 previousContext = environment.currentInferenceContext;
-		if (previousContext == null)
+		boolean failureReported = false;
+		if (previousContext == null) {
 			environment.currentInferenceContext = infCtx18;
+			environment.root.startInference();
+		}
 		try {
 			BoundSet provisionalResult = null;
 			BoundSet result = null;
@@ -243,6 +247,23 @@ public class ParameterizedGenericMethodBinding extends ParameterizedMethodBindin
 			final boolean isPolyExpression = invocationSite instanceof Expression &&   ((Expression) invocationSite).isTrulyExpression() && 
 					((Expression)invocationSite).isPolyExpression(originalMethod);
 			boolean isDiamond = isPolyExpression && originalMethod.isConstructor();
+			InferenceShape shape = null;
+			if (previousContext == null && !isPolyExpression && allArgumentsAreProper && !compilerOptions.isAnnotationBasedNullAnalysisEnabled)
+				shape = InferenceShape.of(originalMethod, arguments, invocationSite);
+			if (shape != null) {
+				// the same standalone invocation was already inferred, possibly in another unit
+				InferenceShape inferred = environment.root.inferenceResults.get(shape);
+				if (inferred != null) {
+					environment.root.inferenceCacheHits++;
+					infCtx18.inferenceKind = inferred.inferenceKind;
+					infCtx18.stepCompleted = InferenceContext18.TYPE_INFERRED_FINAL;
+					Invocation invocation = (Invocation) invocationSite;
+					if (shape.expectedType != null)
+						invocation.registerResult(shape.expectedType, inferred.methodSubstitute);
+					invocation.registerInferenceContext(inferred.methodSubstitute, infCtx18);
+					return inferred.methodSubstitute;
+				}
+			}
 			if (arguments.length == parameters.length) {
 				infCtx18.inferenceKind = requireBoxing ? InferenceContext18.CHECK_LOOSE : InferenceContext18.CHECK_STRICT; // engine may still slip into loose mode and adjust level.
 				infCtx18.inferInvocationApplicability(originalMethod, arguments, isDiamond);
@@ -295,6 +316,11 @@ public class ParameterizedGenericMethodBinding extends ParameterizedMethodBindin
 							if (problemMethod != null) {
 								return problemMethod;
 							}
+							if (shape != null && !hasReturnProblem && !InferenceShape.mentionsCapture(solutions)) {
+								shape.inferenceKind = infCtx18.inferenceKind;
+								shape.methodSubstitute = methodSubstitute;
+								environment.root.inferenceResults.put(shape, shape);
+							}
 						} else {
 							methodSubstitute = new PolyParameterizedGenericMethodBinding(methodSubstitute);
 						}
@@ -313,12 +339,100 @@ public class ParameterizedGenericMethodBinding extends ParameterizedMethodBindin
 		} catch (InferenceFailureException e) {
 			// FIXME stop-gap measure
 			scope.problemReporter().genericInferenceError(e.getMessage(), invocationSite);
+			failureReported = true;
 			return null;
 		} finally {
 			environment.currentInferenceContext = previousContext;
+			if (previousContext == null && environment.root.endInference(invocationSite) && !failureReported) {
+				// the failure was swallowed by a nested inference, still tell why this invocation failed
+				scope.problemReporter().genericInferenceError(environment.root.inferenceBudgetMessage(), invocationSite);
+			}
 		}
 	}
-	
+
+	/**
+	 * Shape of a standalone invocation of a generic method: the method, the types of the arguments and the target type.
+	 * As long as none of the arguments is a poly expression and all the types are proper, the shape alone determines
+	 * the result of the inference (JLS 18.5.1 and 18.5.2), which is then shared by all the invocations of that shape,
+	 * see {@link LookupEnvironment#inferenceResults}.
+	 */
+	static class InferenceShape {
+		final MethodBinding method;
+		final TypeBinding[] arguments;
+		final TypeBinding expectedType;
+		final ExpressionContext expressionContext;
+		private final int hashCode;
+		// result of the inference
+		ParameterizedGenericMethodBinding methodSubstitute;
+		int inferenceKind;
+
+		private InferenceShape(MethodBinding method, TypeBinding[] arguments, TypeBinding expectedType, ExpressionContext expressionContext) {
+			this.method = method;
+			this.arguments = arguments;
+			this.expectedType = expectedType;
+			this.expressionContext = expressionContext;
+			int hash = System.identityHashCode(method);
+			for (int i = 0; i < arguments.length; i++)
+				hash = hash * 31 + System.identityHashCode(arguments[i]);
+			this.hashCode = (hash * 31 + System.identityHashCode(expectedType)) * 31 + expressionContext.ordinal();
+		}
+
+		/*
+		 * Answers the shape of the given invocation, or null if its inference may depend on more than its shape.
+		 */
+		static InferenceShape of(MethodBinding method, TypeBinding[] arguments, InvocationSite invocationSite) {
+			if (!(invocationSite instanceof Invocation) || method.isConstructor())
+				return null;
+			Expression[] argumentExpressions = ((Invocation) invocationSite).arguments();
+			for (int i = 0, length = argumentExpressions == null ? 0 : argumentExpressions.length; i < length; i++) {
+				if (argumentExpressions[i].getPolyExpressions().length > 0)
+					return null; // inferred together with the invocation
+			}
+			TypeBinding expectedType = invocationSite.invocationTargetType();
+			if (expectedType != null && !expectedType.isProperType(true))
+				return null;
+			// copied, as the inference may update the arguments
+			return new InferenceShape(method, arguments.clone(), expectedType, invocationSite.getExpressionContext());
+		}
+
+		/*
+		 * Answers whether the given types mention a capture, which is specific to the invocation that created it.
+		 */
+		static boolean mentionsCapture(TypeBinding[] types) {
+			final boolean[] mentioned = new boolean[1];
+			TypeBindingVisitor.visit(new TypeBindingVisitor() {
+				@Override
+				public boolean visit(TypeVariableBinding typeVariable) {
+					if (typeVariable.isCapture())
+						mentioned[0] = true;
+					return super.visit(typeVariable);
+				}
+			}, types);
+			return mentioned[0];
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof InferenceShape))
+				return false;
+			InferenceShape other = (InferenceShape) object;
+			// bindings are compared by identity, so that differently annotated types are different shapes
+			if (this.method != other.method || this.expectedType != other.expectedType
+					|| this.expressionContext != other.expressionContext || this.arguments.length != other.arguments.length)
+				return false;
+			for (int i = 0; i < this.arguments.length; i++) {
+				if (this.arguments[i] != other.arguments[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
 	MethodBinding boundCheck18(Scope scope, TypeBinding[] arguments, InvocationSite site) {
 		Substitution substitution = this;
 		ParameterizedGenericMethodBinding methodSubstitute = this;
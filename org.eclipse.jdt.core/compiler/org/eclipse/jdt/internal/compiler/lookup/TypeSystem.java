@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2018 IBM Corporation and others.
+ * Copyright (c) 2013, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -20,6 +20,8 @@
 package org.eclipse.jdt.internal.compiler.lookup;
 
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.eclipse.jdt.internal.compiler.ast.ASTNode;
 import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
@@ -63,6 +65,12 @@ import org.eclipse.jdt.internal.compiler.util.Util;
    would be different unless they are identically annotated.
    
    Thus subsystems that are annotation agnostic could quickly ascertain binding equality by comparing the id field.
+   
+   Concurrency: the unannotated array, parameterized, raw, wildcard and intersection types are hash-consed in a concurrent table
+   (see DerivedTypeKey), so looking up a derived type which already exists, the overwhelmingly common case, takes no lock. The table
+   is only a front for the tables above: a miss falls back to them, and they are only read and updated while holding the monitor of
+   the type system, as is every other operation creating or registering types. Several threads may thus intern types concurrently
+   and still get unique types.
 */
 public class TypeSystem {
 	
@@ -191,9 +199,62 @@ public class TypeSystem {
 		}
 	}	
 	
+	/* The key of an unannotated derived type in the hash-consing table: the kind of derivation and the types it derives from, compared
+	   by identity. The hash is computed from the ids of these types, which is cheaper than identity hash codes. An id may change when an
+	   unresolved type gets resolved, and a derived type may stop referencing an unresolved type once resolved: a key then misses the
+	   derived type, and the lookup falls back to the tables of the type system. A key never answers a wrong type.
+	*/
+	private static final class DerivedTypeKey {
+		private final int kind; // Binding.ARRAY_TYPE, PARAMETERIZED_TYPE, RAW_TYPE, WILDCARD_TYPE or INTERSECTION_TYPE18
+		private final TypeBinding type; // leaf component type or generic type
+		private final TypeBinding otherType; // enclosing type or bound
+		private final int value; // dimensions, or rank and bound kind
+		private final TypeBinding[] types; // type arguments, other bounds or intersecting types
+		private final int hash;
+
+		DerivedTypeKey(int kind, TypeBinding type, TypeBinding otherType, int value, TypeBinding[] types) {
+			this.kind = kind;
+			this.type = type;
+			this.otherType = otherType;
+			this.value = value;
+			this.types = types;
+			int hashCode = kind * 31 + value;
+			hashCode = hashCode * 31 + (type == null ? 0 : type.id);
+			hashCode = hashCode * 31 + (otherType == null ? 0 : otherType.id);
+			for (int i = 0, length = types == null ? 0 : types.length; i < length; i++) {
+				hashCode = hashCode * 31 + (types[i] == null ? 0 : types[i].id);
+			}
+			this.hash = hashCode;
+		}
+		private DerivedTypeKey(DerivedTypeKey key, TypeBinding[] types) {
+			this.kind = key.kind;
+			this.type = key.type;
+			this.otherType = key.otherType;
+			this.value = key.value;
+			this.types = types;
+			this.hash = key.hash;
+		}
+		// Answer a key which can be stored in the table, owning its array of types.
+		DerivedTypeKey copy() {
+			return this.types == null || this.types.length == 0 ? this : new DerivedTypeKey(this, this.types.clone());
+		}
+		@Override
+		public boolean equals(Object other) {
+			DerivedTypeKey that = (DerivedTypeKey) other;  // homogeneous container.
+			return this.hash == that.hash && this.kind == that.kind && this.value == that.value && this.type == that.type //$IDENTITY-COMPARISON$
+					&& this.otherType == that.otherType && Util.effectivelyEqual(this.types, that.types); //$IDENTITY-COMPARISON$
+		}
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
 	private int typeid = TypeIds.T_LastWellKnownTypeId;
 	private TypeBinding [][] types; 
+	private volatile AtomicReferenceArray<TypeBinding> nakedTypes; // types[id][0] by id, published to getUnannotatedType() which reads them without the monitor.
 	protected HashedParameterizedTypes parameterizedTypes;  // auxiliary fast lookup table for parameterized types.
+	private final ConcurrentHashMap<DerivedTypeKey, TypeBinding> internedTypes = new ConcurrentHashMap<>(256); // hash-consing table of the unannotated derived types.
 	private SimpleLookupTable annotationTypes; // cannot store in types, since AnnotationBinding is not a TypeBinding and we don't want types to operate at Binding level.
 	LookupEnvironment environment;
 	
@@ -202,11 +263,51 @@ public class TypeSystem {
 		this.annotationTypes = new SimpleLookupTable(16);
 		this.typeid = TypeIds.T_LastWellKnownTypeId;
 		this.types = new TypeBinding[TypeIds.T_LastWellKnownTypeId * 2][]; 
+		this.nakedTypes = new AtomicReferenceArray<>(TypeIds.T_LastWellKnownTypeId * 2);
 		this.parameterizedTypes = new HashedParameterizedTypes();
 	}
 
 	// Given a type, answer its unannotated aka naked prototype. This is also a convenient way to "register" a type with TypeSystem and have it id stamped.
 	public final TypeBinding getUnannotatedType(TypeBinding type) {
+		// fast path, without locking: the type is already registered.
+		TypeBinding registeredType = type;
+		if (type.isUnresolvedType()) {
+			UnresolvedReferenceBinding urb = (UnresolvedReferenceBinding) type;
+			registeredType = urb.id == TypeIds.NoId ? null : urb.resolvedType; // else the id of the urb needs an update
+		}
+		if (registeredType != null && registeredType.id != TypeIds.NoId) {
+			AtomicReferenceArray<TypeBinding> allNakedTypes = this.nakedTypes;
+			if (registeredType.id < allNakedTypes.length()) {
+				TypeBinding nakedType = allNakedTypes.get(registeredType.id);
+				if (nakedType != null)
+					return nakedType;
+			}
+		}
+		return registerUnannotatedType(type);
+	}
+
+	// Answer a new id, with a row of the given length in the types table. Must be called while holding the monitor.
+	private int newTypeId(int derivedTypesLength) {
+		int typesLength = this.types.length;
+		if (this.typeid == typesLength) {
+			System.arraycopy(this.types, 0, this.types = new TypeBinding[typesLength * 2][], 0, typesLength);
+			AtomicReferenceArray<TypeBinding> allNakedTypes = new AtomicReferenceArray<>(typesLength * 2);
+			for (int i = 0; i < typesLength; i++)
+				allNakedTypes.lazySet(i, this.nakedTypes.get(i));
+			this.nakedTypes = allNakedTypes;
+		}
+		this.types[this.typeid] = new TypeBinding[derivedTypesLength];
+		return this.typeid++;
+	}
+
+	// Record the given type as the naked type of the given id, and publish it to getUnannotatedType(). Must be called while holding the monitor.
+	private TypeBinding setNakedType(int id, TypeBinding nakedType) {
+		this.types[id][0] = nakedType;
+		this.nakedTypes.set(id, nakedType);
+		return nakedType;
+	}
+
+	private synchronized TypeBinding registerUnannotatedType(TypeBinding type) {
 		UnresolvedReferenceBinding urb = null;
 		if (type.isUnresolvedType()) {
 			urb = (UnresolvedReferenceBinding) type;
@@ -219,10 +320,7 @@ public class TypeSystem {
 			if (type.id == TypeIds.NoId) {
 				if (type.hasTypeAnnotations())
 					throw new IllegalStateException();
-				int typesLength = this.types.length;
-				if (this.typeid == typesLength)
-					System.arraycopy(this.types, 0, this.types = new TypeBinding[typesLength * 2][], 0, typesLength);
-				this.types[type.id = this.typeid++] = new TypeBinding[4];
+				type.id = newTypeId(4);
 			} else {
 				TypeBinding nakedType = this.types[type.id] == null ? null : this.types[type.id][0];
 				if (type.hasTypeAnnotations() && nakedType == null)
@@ -236,7 +334,7 @@ public class TypeSystem {
 				urb.id = type.id;
 		}
 	
-		return this.types[type.id][0] = type;
+		return setNakedType(type.id, type);
 	}
 
 	/**
@@ -244,13 +342,13 @@ public class TypeSystem {
 	 * If it itself is already registered as the key unannotated type of its family,
 	 * create a clone to play that role from now on and swap types in the types cache.
 	 */
-	public void forceRegisterAsDerived(TypeBinding derived) {
+	public synchronized void forceRegisterAsDerived(TypeBinding derived) {
 		int id = derived.id;
 		if (id != TypeIds.NoId && this.types[id] != null) {
 			TypeBinding unannotated = this.types[id][0];
 			if (unannotated == derived) { //$IDENTITY-COMPARISON$
 				// was previously registered as unannotated, replace by a fresh clone to remain unannotated:
-				this.types[id][0] = unannotated = derived.clone(null);
+				unannotated = setNakedType(id, derived.clone(null));
 			}
 			// proceed as normal:
 			cacheDerivedType(unannotated, derived);
@@ -275,6 +373,14 @@ public class TypeSystem {
 			leafType = leafType.leafComponentType();
 		}
 		TypeBinding unannotatedLeafType = getUnannotatedType(leafType);
+		DerivedTypeKey key = new DerivedTypeKey(Binding.ARRAY_TYPE, unannotatedLeafType, null, dimensions, null);
+		TypeBinding arrayType = this.internedTypes.get(key);
+		if (arrayType == null)
+			arrayType = intern(key, findOrCreateArrayType(unannotatedLeafType, dimensions));
+		return (ArrayBinding) arrayType;
+	}
+
+	private synchronized ArrayBinding findOrCreateArrayType(TypeBinding unannotatedLeafType, int dimensions) {
 		TypeBinding[] derivedTypes = this.types[unannotatedLeafType.id];
 		int i, length = derivedTypes.length;
 		for (i = 0; i < length; i++) {
@@ -291,11 +397,8 @@ public class TypeSystem {
 			this.types[unannotatedLeafType.id] = derivedTypes;
 		}
 		TypeBinding arrayType = derivedTypes[i] = new ArrayBinding(unannotatedLeafType, dimensions, this.environment);
-		int typesLength = this.types.length;
-		if (this.typeid == typesLength)
-			System.arraycopy(this.types, 0, this.types = new TypeBinding[typesLength * 2][], 0, typesLength);
-		this.types[this.typeid] = new TypeBinding[1];
-		return (ArrayBinding) (this.types[arrayType.id = this.typeid++][0] = arrayType);
+		arrayType.id = newTypeId(1);
+		return (ArrayBinding) setNakedType(arrayType.id, arrayType);
 	}
 	
 	public ArrayBinding getArrayType(TypeBinding leafComponentType, int dimensions, AnnotationBinding[] annotations) {
@@ -323,6 +426,16 @@ public class TypeSystem {
 		}
 		ReferenceBinding unannotatedEnclosingType = enclosingType == null ? null : (ReferenceBinding) getUnannotatedType(enclosingType);
 
+		DerivedTypeKey key = new DerivedTypeKey(Binding.PARAMETERIZED_TYPE, unannotatedGenericType, unannotatedEnclosingType, 0, unannotatedTypeArguments);
+		TypeBinding parameterizedType = this.internedTypes.get(key);
+		if (parameterizedType == null)
+			parameterizedType = intern(key.copy(), findOrCreateParameterizedType(genericType, typeArguments, enclosingType,
+					unannotatedGenericType, unannotatedTypeArguments, unannotatedEnclosingType));
+		return (ParameterizedTypeBinding) parameterizedType;
+	}
+
+	private synchronized ParameterizedTypeBinding findOrCreateParameterizedType(ReferenceBinding genericType, TypeBinding[] typeArguments, ReferenceBinding enclosingType,
+			ReferenceBinding unannotatedGenericType, TypeBinding[] unannotatedTypeArguments, ReferenceBinding unannotatedEnclosingType) {
 		ParameterizedTypeBinding parameterizedType = this.parameterizedTypes.get(unannotatedGenericType, unannotatedTypeArguments, unannotatedEnclosingType, Binding.NO_ANNOTATIONS);
 		if (parameterizedType != null) 
 			return parameterizedType;
@@ -330,11 +443,8 @@ public class TypeSystem {
 		parameterizedType = new ParameterizedTypeBinding(unannotatedGenericType, unannotatedTypeArguments, unannotatedEnclosingType, this.environment);
 		cacheDerivedType(unannotatedGenericType, parameterizedType);
 		this.parameterizedTypes.put(genericType, typeArguments, enclosingType, parameterizedType);
-		int typesLength = this.types.length;
-		if (this.typeid == typesLength)
-			System.arraycopy(this.types, 0, this.types = new TypeBinding[typesLength * 2][], 0, typesLength);
-		this.types[this.typeid] = new TypeBinding[1];
-		return (ParameterizedTypeBinding) (this.types[parameterizedType.id = this.typeid++][0] = parameterizedType);
+		parameterizedType.id = newTypeId(1);
+		return (ParameterizedTypeBinding) setNakedType(parameterizedType.id, parameterizedType);
 	}
 
 	public ParameterizedTypeBinding getParameterizedType(ReferenceBinding genericType, TypeBinding[] typeArguments, ReferenceBinding enclosingType, AnnotationBinding[] annotations) {
@@ -350,7 +460,15 @@ public class TypeSystem {
 		}
 		ReferenceBinding unannotatedGenericType = (ReferenceBinding) getUnannotatedType(genericType);
 		ReferenceBinding unannotatedEnclosingType = enclosingType == null ? null : (ReferenceBinding) getUnannotatedType(enclosingType);
-	
+
+		DerivedTypeKey key = new DerivedTypeKey(Binding.RAW_TYPE, unannotatedGenericType, unannotatedEnclosingType, 0, null);
+		TypeBinding rawType = this.internedTypes.get(key);
+		if (rawType == null)
+			rawType = intern(key, findOrCreateRawType(unannotatedGenericType, unannotatedEnclosingType));
+		return (RawTypeBinding) rawType;
+	}
+
+	private synchronized RawTypeBinding findOrCreateRawType(ReferenceBinding unannotatedGenericType, ReferenceBinding unannotatedEnclosingType) {
 		TypeBinding[] derivedTypes = this.types[unannotatedGenericType.id];
 		int i, length = derivedTypes.length;
 		for (i = 0; i < length; i++) {
@@ -369,11 +487,8 @@ public class TypeSystem {
 		}
 		
 		TypeBinding rawTytpe = derivedTypes[i] = new RawTypeBinding(unannotatedGenericType, unannotatedEnclosingType, this.environment);
-		int typesLength = this.types.length;
-		if (this.typeid == typesLength)
-			System.arraycopy(this.types, 0, this.types = new TypeBinding[typesLength * 2][], 0, typesLength);
-		this.types[this.typeid] = new TypeBinding[1];
-		return (RawTypeBinding) (this.types[rawTytpe.id = this.typeid++][0] = rawTytpe);
+		rawTytpe.id = newTypeId(1);
+		return (RawTypeBinding) setNakedType(rawTytpe.id, rawTytpe);
 	}
 	
 	public RawTypeBinding getRawType(ReferenceBinding genericType, ReferenceBinding enclosingType, AnnotationBinding[] annotations) {
@@ -395,6 +510,14 @@ public class TypeSystem {
 		}
 		TypeBinding unannotatedBound = bound == null ? null : getUnannotatedType(bound);
 
+		DerivedTypeKey key = new DerivedTypeKey(Binding.WILDCARD_TYPE, unannotatedGenericType, unannotatedBound, rank << 2 | boundKind, unannotatedOtherBounds);
+		TypeBinding wildcard = this.internedTypes.get(key);
+		if (wildcard == null)
+			wildcard = intern(key.copy(), findOrCreateWildcard(unannotatedGenericType, rank, unannotatedBound, unannotatedOtherBounds, boundKind));
+		return (WildcardBinding) wildcard;
+	}
+
+	private synchronized WildcardBinding findOrCreateWildcard(ReferenceBinding unannotatedGenericType, int rank, TypeBinding unannotatedBound, TypeBinding[] unannotatedOtherBounds, int boundKind) {
 		boolean useDerivedTypesOfBound = unannotatedBound instanceof TypeVariableBinding || (unannotatedBound instanceof ParameterizedTypeBinding && !(unannotatedBound instanceof RawTypeBinding));
 		TypeBinding[] derivedTypes = this.types[useDerivedTypesOfBound ? unannotatedBound.id :unannotatedGenericType.id];  // by construction, cachedInfo != null now.
 
@@ -417,15 +540,12 @@ public class TypeSystem {
 		}
 		TypeBinding wildcard = derivedTypes[i] = new WildcardBinding(unannotatedGenericType, rank, unannotatedBound, unannotatedOtherBounds, boundKind, this.environment);
 	
-		int typesLength = this.types.length;
-		if (this.typeid == typesLength)
-			System.arraycopy(this.types, 0, this.types = new TypeBinding[typesLength * 2][], 0, typesLength);
-		this.types[this.typeid] = new TypeBinding[1];
-		return (WildcardBinding) (this.types[wildcard.id = this.typeid++][0] = wildcard);
+		wildcard.id = newTypeId(1);
+		return (WildcardBinding) setNakedType(wildcard.id, wildcard);
 	}
 	
 	// No need for an override in ATS, since interning is position specific and either the wildcard there is annotated or not.
-	public final CaptureBinding getCapturedWildcard(WildcardBinding wildcard, ReferenceBinding contextType, int start, int end, ASTNode cud, int id) {
+	public final synchronized CaptureBinding getCapturedWildcard(WildcardBinding wildcard, ReferenceBinding contextType, int start, int end, ASTNode cud, int id) {
 		
 		WildcardBinding unannotatedWildcard = (WildcardBinding) getUnannotatedType(wildcard);
 		TypeBinding[] derivedTypes = this.types[unannotatedWildcard.id];  // by construction, cachedInfo != null now.
@@ -474,11 +594,17 @@ public class TypeSystem {
 		return type; // Nothing to do for plain vanilla type system.
 	}
 	
-	protected final TypeBinding /* @NonNull */ [] getDerivedTypes(TypeBinding keyType) {
+	protected final synchronized TypeBinding /* @NonNull */ [] getDerivedTypes(TypeBinding keyType) {
 		keyType = getUnannotatedType(keyType);
 		return this.types[keyType.id];
 	}
 	
+	// Remembers the given derived type in the hash-consing table, answering it.
+	private TypeBinding intern(DerivedTypeKey key, TypeBinding derivedType) {
+		this.internedTypes.putIfAbsent(key, derivedType);
+		return derivedType;
+	}
+
 	private TypeBinding cacheDerivedType(TypeBinding keyType, TypeBinding derivedType) {
 		if (keyType == null || derivedType == null || keyType.id == TypeIds.NoId)
 			throw new IllegalStateException();
@@ -505,7 +631,7 @@ public class TypeSystem {
 		return derivedTypes[i] = derivedType;
 	}
 	
-	protected final TypeBinding cacheDerivedType(TypeBinding keyType, TypeBinding nakedType, TypeBinding derivedType) {
+	protected final synchronized TypeBinding cacheDerivedType(TypeBinding keyType, TypeBinding nakedType, TypeBinding derivedType) {
 		
 		/* Cache the derived type, tagging it as a derivative of both the key type and the naked type.
 		   E.g: int @NonNull [] would be tagged as a derived type of both int and int []. This is not
@@ -531,7 +657,7 @@ public class TypeSystem {
 	/* Return a unique annotation binding for an annotation with either no or all default element-value pairs.
 	   We may return a resolved annotation when requested for unresolved one, but not vice versa. 
 	*/
-	public final AnnotationBinding getAnnotationType(ReferenceBinding annotationType, boolean requiredResolved) {
+	public final synchronized AnnotationBinding getAnnotationType(ReferenceBinding annotationType, boolean requiredResolved) {
 		AnnotationBinding annotation = (AnnotationBinding) this.annotationTypes.get(annotationType);
 		if (annotation == null) {
 			if (requiredResolved)
@@ -549,14 +675,16 @@ public class TypeSystem {
 		return false;
 	}
 
-	public void reset() {
+	public synchronized void reset() {
 		this.annotationTypes = new SimpleLookupTable(16);
 		this.typeid = TypeIds.T_LastWellKnownTypeId;
 		this.types = new TypeBinding[TypeIds.T_LastWellKnownTypeId * 2][];
+		this.nakedTypes = new AtomicReferenceArray<>(TypeIds.T_LastWellKnownTypeId * 2);
 		this.parameterizedTypes = new HashedParameterizedTypes();
+		this.internedTypes.clear();
 	}
 	
-	public void updateCaches(UnresolvedReferenceBinding unresolvedType, ReferenceBinding resolvedType) {
+	public synchronized void updateCaches(UnresolvedReferenceBinding unresolvedType, ReferenceBinding resolvedType) {
 		final int unresolvedTypeId = unresolvedType.id;
 		if (resolvedType.id != TypeIds.NoId) {
 			unresolvedType.id = resolvedType.id;
@@ -570,7 +698,10 @@ public class TypeSystem {
 				if (derivedTypes[i] == unresolvedType) { //$IDENTITY-COMPARISON$
 					if(resolvedType.id == TypeIds.NoId)
 						resolvedType.id = unresolvedTypeId;
-					derivedTypes[i] = resolvedType;
+					if (i == 0)
+						setNakedType(unresolvedTypeId, resolvedType);
+					else
+						derivedTypes[i] = resolvedType;
 				}
 			}
 		}
@@ -592,7 +723,16 @@ public class TypeSystem {
 		TypeBinding keyType = intersectingTypes[0];
 		if (keyType == null || intersectingTypesLength == 1)
 			return keyType;
-					
+
+		DerivedTypeKey key = new DerivedTypeKey(Binding.INTERSECTION_TYPE18, null, null, 0, intersectingTypes);
+		TypeBinding intersectionType = this.internedTypes.get(key);
+		if (intersectionType == null)
+			intersectionType = intern(key.copy(), findOrCreateIntersectionType18(keyType, intersectingTypes));
+		return intersectionType;
+	}
+
+	private synchronized TypeBinding findOrCreateIntersectionType18(TypeBinding keyType, ReferenceBinding[] intersectingTypes) {
+		int intersectingTypesLength = intersectingTypes.length;
 		TypeBinding[] derivedTypes = getDerivedTypes(keyType);
 		int i, length = derivedTypes.length;
 		next:
@@ -618,7 +758,7 @@ public class TypeSystem {
 	 * If a TVB was created with a dummy declaring element and needs to be fixed now,
 	 * make sure that this update affects all early clones, too.
 	 */
-	public void fixTypeVariableDeclaringElement(TypeVariableBinding var, Binding declaringElement) {
+	public synchronized void fixTypeVariableDeclaringElement(TypeVariableBinding var, Binding declaringElement) {
 		int id = var.id;
 		if (id < this.typeid && this.types[id] != null) {
 			for (TypeBinding t : this.types[id]) {
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue handing elements over from exactly one producer thread to exactly one
+ * consumer thread.
+ * <p>
+ * The producer only writes the tail index and the consumer only writes the head index, so neither side
+ * ever takes a monitor. When the queue is full the producer parks until the consumer frees a slot
+ * (back-pressure), and when it is empty the consumer parks until an element is added or the queue is closed.
+ * <p>
+ * Occupancy and stall counters are maintained by the owning thread of each side and can be read once the
+ * queue has been drained.
+ */
+public class BoundedHandoffQueue<E> {
+
+	private final Object[] elements;
+	private final int capacity;
+
+	// written by the consumer only
+	private volatile long head;
+	// written by the producer only
+	private volatile long tail;
+	private volatile boolean closed;
+
+	private volatile Thread waitingProducer;
+	private volatile Thread waitingConsumer;
+
+	// statistics
+	private int maxOccupancy;
+	private long occupancySum;
+	private long putCount;
+	private int producerStalls;
+	private int consumerStalls;
+
+	private static final long PARK_NANOS = 100 * 1000 * 1000L; // guard against a lost wake up
+
+public BoundedHandoffQueue(int capacity) {
+	if (capacity < 1)
+		throw new IllegalArgumentException("Invalid capacity: " + capacity); //$NON-NLS-1$
+	this.capacity = capacity;
+	this.elements = new Object[capacity];
+}
+
+/**
+ * Adds the given element, waiting while the queue is full.
+ * Must only be called from the producer thread.
+ *
+ * @return false if the queue was closed before the element could be added
+ */
+public boolean put(E element) {
+	if (element == null)
+		throw new NullPointerException();
+	long currentTail = this.tail;
+	if (currentTail - this.head >= this.capacity) {
+		this.producerStalls++;
+		Thread current = Thread.currentThread();
+		while (currentTail - this.head >= this.capacity) {
+			if (this.closed) return false;
+			this.waitingProducer = current;
+			if (currentTail - this.head >= this.capacity && !this.closed)
+				LockSupport.parkNanos(this, PARK_NANOS);
+			this.waitingProducer = null;
+		}
+	}
+	if (this.closed) return false;
+	this.elements[(int) (currentTail % this.capacity)] = element;
+	this.tail = currentTail + 1; // publish the element
+
+	int occupancy = (int) (currentTail + 1 - this.head);
+	if (occupancy > this.maxOccupancy)
+		this.maxOccupancy = occupancy;
+	this.occupancySum += occupancy;
+	this.putCount++;
+
+	Thread consumer = this.waitingConsumer;
+	if (consumer != null)
+		LockSupport.unpark(consumer);
+	return true;
+}
+
+/**
+ * Removes the next element, waiting while the queue is empty.
+ * Must only be called from the consumer thread.
+ *
+ * @return null once the queue has been closed and all its elements have been taken
+ */
+@SuppressWarnings("unchecked")
+public E take() {
+	long currentHead = this.head;
+	if (currentHead == this.tail) {
+		boolean stalled = false;
+		Thread current = Thread.currentThread();
+		while (currentHead == this.tail) {
+			if (this.closed) {
+				if (currentHead == this.tail) // check again, the producer may have added its last element before closing
+					return null;
+				break;
+			}
+			if (!stalled) {
+				this.consumerStalls++;
+				stalled = true;
+			}
+			this.waitingConsumer = current;
+			if (currentHead == this.tail && !this.closed)
+				LockSupport.parkNanos(this, PARK_NANOS);
+			this.waitingConsumer = null;
+		}
+	}
+	int index = (int) (currentHead % this.capacity);
+	E element = (E) this.elements[index];
+	this.elements[index] = null;
+	this.head = currentHead + 1; // free the slot
+
+	Thread producer = this.waitingProducer;
+	if (producer != null)
+		LockSupport.unpark(producer);
+	return element;
+}
+
+/**
+ * Closes the queue: the consumer can still take the remaining elements, but no element can be added anymore.
+ * Can be called from any thread.
+ */
+public void close() {
+	this.closed = true;
+	Thread thread = this.waitingConsumer;
+	if (thread != null)
+		LockSupport.unpark(thread);
+	thread = this.waitingProducer;
+	if (thread != null)
+		LockSupport.unpark(thread);
+}
+
+public boolean isClosed() {
+	return this.closed;
+}
+
+public int capacity() {
+	return this.capacity;
+}
+
+public int size() {
+	return (int) (this.tail - this.head);
+}
+
+/**
+ * Answer the highest number of elements which were waiting in the queue at once.
+ */
+public int maxOccupancy() {
+	return this.maxOccupancy;
+}
+
+/**
+ * Answer the average number of elements waiting in the queue, sampled each time an element was added.
+ */
+public double averageOccupancy() {
+	return this.putCount == 0 ? 0 : (double) this.occupancySum / this.putCount;
+}
+
+/**
+ * Answer how many elements were added to the queue.
+ */
+public long putCount() {
+	return this.putCount;
+}
+
+/**
+ * Answer how many times the producer had to wait for the consumer because the queue was full.
+ */
+public int producerStalls() {
+	return this.producerStalls;
+}
+
+/**
+ * Answer how many times the consumer had to wait for the producer because the queue was empty.
+ */
+public int consumerStalls() {
+	return this.consumerStalls;
+}
+
+@Override
+public String toString() {
+	return "BoundedHandoffQueue [size=" + size() + ", capacity=" + this.capacity //$NON-NLS-1$ //$NON-NLS-2$
+		+ ", maxOccupancy=" + this.maxOccupancy + ", producerStalls=" + this.producerStalls //$NON-NLS-1$ //$NON-NLS-2$
+		+ ", consumerStalls=" + this.consumerStalls + (this.closed ? ", closed]" : "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+}
+}
@@ -0,0 +1,530 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+
+/**
+ * A process-wide cache of the jars on the class path, shared by the batch compiler and the builder.
+ * <p>
+ * Each jar is opened once, whatever the number of class path entries referencing it: the
+ * {@link ZipFile} is reference counted, and stays open while it is acquired. Its central directory
+ * is read once into a {@link Directory}, which answers the packages
+ * of the jar and the files of each package without enumerating the zip entries again.
+ * <p>
+ * The class files read from a jar are decoded once too, and their readers are shared by all the
+ * lookup environments reading the jar (see {@link SharedJar#getClassFileReader(String, char[])}), as long as
+ * the readers of all the jars fit in the size of the cache. The readers of a jar are dropped with the jar.
+ * <p>
+ * A jar whose time stamp or size changed is read again on the next acquisition. Released
+ * jars are kept, least recently used first, until their directories and class files exceed the size set
+ * by the <code>jdt.compiler.jarCacheSize</code> system property (in MB). At most
+ * <code>jdt.compiler.jarCacheOpenFiles</code> of them keep their file open, until
+ * {@link #closeIdleFiles()} is called at the end of a build.
+ */
+public class JarDirectoryCache {
+
+	private static final int END_HEADER = 0x06054b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_HEADER_SIZE = 22;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	private static final int DEFAULT_SIZE = 32; // MB
+	private static final int DEFAULT_OPEN_FILES = 32;
+
+	private static JarDirectoryCache Default;
+
+	/**
+	 * The packages and files of a jar, as recorded in its central directory.
+	 */
+	public static class Directory {
+		private static final String[] NO_FILES = new String[0];
+
+		private Set<String> packageNames = new HashSet<>();
+		private Map<String, Object> fileNames = new HashMap<>(); // package name > List<String> then String[]
+		long footprint;
+		// the package of the last added entry, since the entries of a package are usually consecutive
+		private String lastPackageName;
+		private List<String> lastFileNames;
+
+		Directory() {
+			this.packageNames.add(Util.EMPTY_STRING);
+		}
+
+		void addEntry(String entryName) {
+			int last = entryName.lastIndexOf('/');
+			addEntry(last == -1 ? Util.EMPTY_STRING : entryName.substring(0, last), entryName.substring(last + 1));
+		}
+
+		/**
+		 * Records an entry, or a folder when the file name is empty.
+		 */
+		@SuppressWarnings("unchecked")
+		void addEntry(String packageName, String fileName) {
+			if (!packageName.equals(this.lastPackageName)) {
+				this.lastPackageName = packageName;
+				this.lastFileNames = (List<String>) this.fileNames.get(packageName);
+				// add the package name & all of its parent packages
+				String name = packageName;
+				while (name.length() > 0 && this.packageNames.add(name)) {
+					this.footprint += 56 + 2 * name.length();
+					name = name.substring(0, Math.max(name.lastIndexOf('/'), 0));
+				}
+			}
+			if (fileName.length() == 0)
+				return;
+			if (this.lastFileNames == null)
+				this.fileNames.put(packageName, this.lastFileNames = new ArrayList<>());
+			this.lastFileNames.add(fileName);
+			this.footprint += 48 + 2 * fileName.length();
+		}
+
+		@SuppressWarnings("unchecked")
+		Directory complete() {
+			for (Map.Entry<String, Object> entry : this.fileNames.entrySet()) {
+				List<String> names = (List<String>) entry.getValue();
+				entry.setValue(names.toArray(new String[names.size()]));
+			}
+			this.packageNames = Collections.unmodifiableSet(this.packageNames);
+			this.lastPackageName = null;
+			this.lastFileNames = null;
+			return this;
+		}
+
+		/**
+		 * Answer whether the given package, in internal form (<code>java/lang</code>), or one of its
+		 * sub-packages contains an entry.
+		 */
+		public boolean isPackage(String qualifiedPackageName) {
+			return this.packageNames.contains(qualifiedPackageName);
+		}
+
+		/**
+		 * Answer the names of all the packages of the jar, including the default package.
+		 */
+		public Set<String> getPackageNames() {
+			return this.packageNames;
+		}
+
+		/**
+		 * Answer the simple names of the files directly contained in the given package.
+		 */
+		public String[] getFileNames(String qualifiedPackageName) {
+			String[] names = (String[]) this.fileNames.get(qualifiedPackageName);
+			return names == null ? NO_FILES : names;
+		}
+	}
+
+	/**
+	 * A jar of the cache, acquired by {@link JarDirectoryCache#acquire(File)}.
+	 */
+	public static class SharedJar {
+		final File file;
+		final String key;
+		final long lastModified;
+		final long length;
+		final JarDirectoryCache cache;
+		int references;
+		volatile boolean removed;
+		private ZipFile zipFile;
+		private volatile Directory directory;
+		private final Map<String, ClassFileReader> classFiles = new ConcurrentHashMap<>();
+		private long classFilesFootprint; // guarded by the classFiles map
+
+		SharedJar(File file, String key, long lastModified, long length, JarDirectoryCache cache) {
+			this.file = file;
+			this.key = key;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.cache = cache;
+		}
+
+		public ZipFile getZipFile() {
+			return this.zipFile;
+		}
+
+		/**
+		 * Answer the directory of the jar, reading it on the first call.
+		 */
+		public Directory getDirectory() {
+			Directory result = this.directory;
+			if (result == null) {
+				synchronized (this) {
+					result = this.directory;
+					if (result == null) {
+						try {
+							result = readCentralDirectory(this.file);
+						} catch (IOException | RuntimeException e) {
+							// let the zip file report any problem
+						}
+						if (result == null) {
+							result = new Directory();
+							for (Enumeration<? extends ZipEntry> e = this.zipFile.entries(); e.hasMoreElements(); )
+								result.addEntry(e.nextElement().getName());
+						}
+						this.directory = result.complete();
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Answer the reader of the given class file of the jar, or <code>null</code> if the jar has no such entry.
+		 * The reader answers the given module name, unless the class file is a module descriptor.
+		 * <p>
+		 * The reader is fully initialized, and shared by all the users of the jar until the jar changes on disk:
+		 * it must not be modified. Only the readers are shared, each lookup environment creating its own bindings
+		 * from them since bindings depend on the state of their environment.
+		 */
+		public ClassFileReader getClassFileReader(String entryName, char[] moduleName) throws ClassFormatException, IOException {
+			ClassFileReader reader = this.classFiles.get(entryName);
+			if (reader != null && CharOperation.equals(reader.moduleName, moduleName))
+				return reader;
+			boolean share = reader == null; // else the jar is also read as another module, keep the first reader
+			ZipFile zip = this.zipFile;
+			ZipEntry entry = zip.getEntry(entryName);
+			if (entry == null)
+				return null;
+			byte[] bytes = Util.getZipEntryByteContent(entry, zip);
+			reader = new ClassFileReader(bytes, entryName.toCharArray(), true);
+			if (reader.moduleName == null)
+				reader.moduleName = moduleName;
+			if (share) {
+				// a fully initialized reader retains from 0.8 to 1.5 times the size of its class file
+				// (measured on the compiler's own classes, rt.jar and kotlin-reflect.jar)
+				long footprint = bytes.length + bytes.length / 2;
+				synchronized (this.classFiles) {
+					ClassFileReader previous = this.classFiles.get(entryName);
+					if (previous != null) {
+						if (CharOperation.equals(previous.moduleName, reader.moduleName))
+							return previous; // read concurrently by another user
+					} else if (!this.removed && this.cache.reserve(footprint)) {
+						this.classFiles.put(entryName, reader);
+						this.classFilesFootprint += footprint;
+					}
+				}
+			}
+			return reader;
+		}
+
+		/**
+		 * Drops the shared readers, giving their footprint back to the cache. Called once the jar is removed
+		 * from the cache, so no reader is shared any more.
+		 */
+		void dropClassFiles() {
+			synchronized (this.classFiles) {
+				this.classFiles.clear();
+				this.cache.classFilesFootprint.addAndGet(-this.classFilesFootprint);
+				this.classFilesFootprint = 0;
+			}
+		}
+
+		synchronized void open() throws IOException {
+			if (this.zipFile == null)
+				this.zipFile = new ZipFile(this.file);
+		}
+
+		synchronized boolean isOpen() {
+			return this.zipFile != null;
+		}
+
+		synchronized void close() {
+			if (this.zipFile != null) {
+				try {
+					this.zipFile.close();
+				} catch (IOException e) {
+					// ignore
+				}
+				this.zipFile = null;
+			}
+		}
+
+		long footprint() {
+			Directory current = this.directory;
+			long result = current == null ? 0 : current.footprint;
+			synchronized (this.classFiles) {
+				return result + this.classFilesFootprint;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Shared jar " + this.key + " (" + this.references + " references)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private final Map<String, SharedJar> jars = new LinkedHashMap<>(16, 0.75f, true); // in access order
+	private final long maxFootprint;
+	private final int maxOpenFiles;
+	// the footprint of the shared readers of all the jars, bounded by maxFootprint
+	final AtomicLong classFilesFootprint = new AtomicLong();
+
+public static synchronized JarDirectoryCache getDefault() {
+	if (Default == null)
+		Default = new JarDirectoryCache(getSetting("jdt.compiler.jarCacheSize", DEFAULT_SIZE) * 1024L * 1024L, //$NON-NLS-1$
+				getSetting("jdt.compiler.jarCacheOpenFiles", DEFAULT_OPEN_FILES)); //$NON-NLS-1$
+	return Default;
+}
+
+private static int getSetting(String property, int defaultValue) {
+	String setting = System.getProperty(property);
+	if (setting != null) {
+		try {
+			int value = Integer.parseInt(setting);
+			if (value >= 0)
+				return value;
+		} catch (NumberFormatException e) {
+			// use default
+		}
+	}
+	return defaultValue;
+}
+
+public JarDirectoryCache(long maxFootprint, int maxOpenFiles) {
+	this.maxFootprint = maxFootprint;
+	this.maxOpenFiles = maxOpenFiles;
+}
+
+/**
+ * Answer the shared jar for the given file, opening it if needed. Each call must be paired with a call to
+ * {@link #release(SharedJar)}.
+ */
+public SharedJar acquire(File file) throws IOException {
+	String key = file.getAbsolutePath();
+	long lastModified = file.lastModified();
+	long length = file.length();
+	SharedJar jar;
+	synchronized (this) {
+		jar = this.jars.get(key);
+		if (jar != null && (jar.lastModified != lastModified || jar.length != length)) {
+			// the jar changed on disk, its current users keep the previous zip file until they release it
+			remove(jar);
+			jar = null;
+		}
+		if (jar == null) {
+			jar = new SharedJar(file, key, lastModified, length, this);
+			this.jars.put(key, jar);
+		}
+		jar.references++;
+	}
+	try {
+		jar.open();
+	} catch (IOException e) {
+		release(jar);
+		throw e;
+	}
+	return jar;
+}
+
+/**
+ * Releases the given jar. The zip file must not be used any more by the caller.
+ */
+public synchronized void release(SharedJar jar) {
+	if (--jar.references > 0)
+		return;
+	if (jar.removed)
+		jar.close();
+	else
+		evict(this.maxOpenFiles);
+}
+
+/**
+ * Answer the estimated footprint of the class file readers shared by the jars of the cache.
+ */
+public long getClassFilesFootprint() {
+	return this.classFilesFootprint.get();
+}
+
+/**
+ * Reserves the given footprint for a shared reader, answering whether it fits in the cache.
+ */
+boolean reserve(long footprint) {
+	long current;
+	do {
+		current = this.classFilesFootprint.get();
+		if (current + footprint > this.maxFootprint)
+			return false;
+	} while (!this.classFilesFootprint.compareAndSet(current, current + footprint));
+	return true;
+}
+
+/**
+ * Closes the files of the jars which are not in use, keeping their directories and class files.
+ */
+public synchronized void closeIdleFiles() {
+	evict(0);
+}
+
+/**
+ * Removes all the jars which are not in use.
+ */
+public synchronized void flush() {
+	for (Iterator<SharedJar> iterator = this.jars.values().iterator(); iterator.hasNext();) {
+		SharedJar jar = iterator.next();
+		if (jar.references == 0) {
+			iterator.remove();
+			jar.removed = true;
+			jar.dropClassFiles();
+			jar.close();
+		}
+	}
+}
+
+private void remove(SharedJar jar) {
+	this.jars.remove(jar.key);
+	jar.removed = true;
+	jar.dropClassFiles();
+	if (jar.references == 0)
+		jar.close();
+}
+
+private void evict(int openFiles) {
+	long footprint = 0;
+	int idleOpenFiles = 0;
+	for (SharedJar jar : this.jars.values()) {
+		footprint += jar.footprint();
+		if (jar.references == 0 && jar.isOpen())
+			idleOpenFiles++;
+	}
+	// least recently used first
+	for (Iterator<SharedJar> iterator = this.jars.values().iterator(); iterator.hasNext();) {
+		if (footprint <= this.maxFootprint && idleOpenFiles <= openFiles)
+			return;
+		SharedJar jar = iterator.next();
+		if (jar.references > 0)
+			continue;
+		if (jar.isOpen()) {
+			jar.close();
+			idleOpenFiles--;
+		}
+		if (footprint > this.maxFootprint) {
+			footprint -= jar.footprint();
+			iterator.remove();
+			jar.removed = true;
+			jar.dropClassFiles();
+		}
+	}
+}
+
+/**
+ * Answer the directory of the given zip file, read from a copy of its central directory, or
+ * <code>null</code> if the file uses a format not handled here (zip64, spanned archive).
+ * <p>
+ * The central directory is read into a heap buffer rather than mapped: a mapped file stays locked on
+ * Windows until the buffer is garbage collected, which would prevent replacing the jar.
+ */
+static Directory readCentralDirectory(File file) throws IOException {
+	try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+		long size = channel.size();
+		if (size < END_HEADER_SIZE)
+			return null;
+		int tailSize = (int) Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+		ByteBuffer tail = read(channel, size - tailSize, tailSize);
+		int end = tailSize - END_HEADER_SIZE;
+		while (end >= 0 && tail.getInt(end) != END_HEADER)
+			end--;
+		if (end < 0)
+			return null;
+		int entryCount = tail.getShort(end + 10) & 0xFFFF;
+		long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+		if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || (tail.getShort(end + 4) & 0xFFFF) != 0)
+			return null;
+		// the central directory precedes the end header, even when the archive is prefixed by other data
+		long directoryStart = size - tailSize + end - directorySize;
+		if (directoryStart < 0 || directorySize > Integer.MAX_VALUE)
+			return null;
+		ByteBuffer buffer = read(channel, directoryStart, (int) directorySize);
+		Directory directory = new Directory();
+		byte[] name = new byte[256];
+		byte[] lastPackage = new byte[256];
+		int lastPackageLength = -1;
+		String packageName = null;
+		int count = 0;
+		int position = 0;
+		while (position + CENTRAL_HEADER_SIZE <= directorySize) {
+			if (buffer.getInt(position) != CENTRAL_HEADER)
+				return null;
+			int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+			int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+			int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+			if (nameLength > name.length) {
+				name = new byte[nameLength];
+				lastPackage = new byte[nameLength];
+				lastPackageLength = -1;
+			}
+			buffer.position(position + CENTRAL_HEADER_SIZE);
+			buffer.get(name, 0, nameLength);
+			int last = nameLength - 1;
+			while (last >= 0 && name[last] != '/')
+				last--;
+			int packageLength = Math.max(last, 0);
+			if (packageLength != lastPackageLength || !equals(name, lastPackage, packageLength)) {
+				packageName = new String(name, 0, packageLength, StandardCharsets.UTF_8);
+				System.arraycopy(name, 0, lastPackage, 0, packageLength);
+				lastPackageLength = packageLength;
+			}
+			directory.addEntry(packageName, new String(name, last + 1, nameLength - last - 1, StandardCharsets.UTF_8));
+			count++;
+			position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		return count == entryCount ? directory : null;
+	}
+}
+
+private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+	ByteBuffer buffer = ByteBuffer.allocate(size);
+	while (buffer.hasRemaining()) {
+		if (channel.read(buffer, position + buffer.position()) < 0)
+			throw new EOFException();
+	}
+	buffer.clear();
+	buffer.order(ByteOrder.LITTLE_ENDIAN);
+	return buffer;
+}
+
+private static boolean equals(byte[] first, byte[] second, int length) {
+	for (int i = 0; i < length; i++) {
+		if (first[i] != second[i])
+			return false;
+	}
+	return true;
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -97,6 +97,20 @@ public Object keyForValue(Object valueToMatch) {
 	return null;
 }
 
+/**
+ * Returns the index of the given key in the key table, or -1 if the key is not in this table.
+ */
+public int indexOf(Object key) {
+	int length = this.keyTable.length;
+	int index = (key.hashCode() & 0x7FFFFFFF) % length;
+	Object currentKey;
+	while ((currentKey = this.keyTable[index]) != null) {
+		if (currentKey.equals(key)) return index;
+		if (++index == length) index = 0;
+	}
+	return -1;
+}
+
 public Object put(Object key, Object value) {
 	int length = this.keyTable.length;
 	int index = (key.hashCode() & 0x7FFFFFFF) % length;
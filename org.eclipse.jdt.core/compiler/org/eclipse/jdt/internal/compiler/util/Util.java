@@ -27,6 +27,14 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -232,6 +240,7 @@ public class Util implements SuffixConstants {
 	}
 
 	private static final int DEFAULT_READING_SIZE = 8192;
+	private static final int MAX_REUSED_READING_SIZE = 1024 * 1024; // larger files are read in a buffer which is not kept
 	private static final int DEFAULT_WRITING_SIZE = 1024;
 	public final static String UTF_8 = "UTF-8";	//$NON-NLS-1$
 	public static final String LINE_SEPARATOR = System.getProperty("line.separator"); //$NON-NLS-1$
@@ -431,6 +440,105 @@ public class Util implements SuffixConstants {
 			}
 		}
 	}
+	/*
+	 * Decoder and read buffer reused by each thread reading files through NIO.
+	 */
+	private static class FileReadingCache {
+		String encoding;
+		CharsetDecoder decoder;
+		ByteBuffer buffer;
+
+		FileReadingCache() {
+			// not private, so that the outer class creates it without a synthetic accessor
+		}
+
+		CharsetDecoder getDecoder(String fileEncoding) {
+			if (this.decoder == null || (fileEncoding == null ? this.encoding != null : !fileEncoding.equals(this.encoding))) {
+				Charset charset = null;
+				if (fileEncoding != null) {
+					try {
+						charset = Charset.forName(fileEncoding);
+					} catch (IllegalArgumentException e) {
+						// encoding is not supported
+					}
+				}
+				if (charset == null)
+					charset = Charset.defaultCharset();
+				// malformed input is replaced, as done by InputStreamReader
+				this.decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+				this.encoding = fileEncoding;
+			}
+			return this.decoder.reset();
+		}
+
+		ByteBuffer getBuffer(int size) {
+			if (size > MAX_REUSED_READING_SIZE)
+				return ByteBuffer.allocate(size);
+			if (this.buffer == null || this.buffer.capacity() < size)
+				this.buffer = ByteBuffer.allocate(Math.max(size, DEFAULT_READING_SIZE));
+			this.buffer.clear();
+			this.buffer.limit(size);
+			return this.buffer;
+		}
+	}
+	private static final ThreadLocal<FileReadingCache> FILE_READING_CACHE = ThreadLocal.withInitial(FileReadingCache::new);
+
+	/**
+	 * Returns the contents of the given file as a char array, like {@link #getFileCharContent(File, String)}.
+	 * The file is read through a {@link FileChannel} into a buffer reused by the current thread, unless it is
+	 * very large, and the bytes are decoded with a decoder also reused by the current thread. Files are not
+	 * memory mapped, since a mapped file stays open until the buffer is garbage collected.
+	 * When encoding is null, then the platform default one is used
+	 * @throws IOException if a problem occured reading the file.
+	 */
+	public static char[] getFileCharContentNIO(File file, String encoding) throws IOException {
+		FileReadingCache cache = FILE_READING_CACHE.get();
+		ByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			if (fileSize > Integer.MAX_VALUE)
+				throw new IOException("File too large: " + file); //$NON-NLS-1$
+			bytes = cache.getBuffer((int) fileSize);
+			while (bytes.hasRemaining()) {
+				if (channel.read(bytes) < 0) break; // file was truncated in between
+			}
+			bytes.flip();
+		}
+		CharsetDecoder decoder = cache.getDecoder(encoding);
+		char[] contents = new char[(int) (bytes.remaining() * (double) decoder.maxCharsPerByte()) + 1];
+		CharBuffer chars = CharBuffer.wrap(contents);
+		boolean flushing = false; // once all the bytes are decoded, only the flush is retried on overflow
+		while (true) {
+			CoderResult result = flushing ? decoder.flush(chars) : decoder.decode(bytes, chars, true);
+			if (result.isUnderflow()) {
+				if (flushing)
+					break;
+				flushing = true;
+			} else if (result.isOverflow()) {
+				System.arraycopy(contents, 0, contents = new char[contents.length * 2], 0, chars.position());
+				chars = CharBuffer.wrap(contents, chars.position(), contents.length - chars.position());
+			} else {
+				result.throwException();
+			}
+		}
+		int totalRead = chars.position();
+
+		// Do not keep first character for UTF-8 BOM encoding
+		int start = 0;
+		if (totalRead > 0 && UTF_8.equals(encoding)) {
+			if (contents[0] == 0xFEFF) { // if BOM char then skip
+				totalRead--;
+				start = 1;
+			}
+		}
+
+		// resize contents if necessary
+		if (totalRead < contents.length)
+			System.arraycopy(contents, start, contents = new char[totalRead], 0, totalRead);
+		return contents;
+	}
 	private static FileOutputStream getFileOutputStream(boolean generatePackagesStructure, String outputPath, String relativeFileName) throws IOException {
 		if (generatePackagesStructure) {
 			return new FileOutputStream(new File(buildAllDirectoriesInto(outputPath, relativeFileName)));
@@ -1070,6 +1178,21 @@ public class Util implements SuffixConstants {
 			output.close();
 		}
 	}
+	/**
+	 * Copy the given class file to disk, like {@link #writeToDisk(boolean, String, String, ClassFile)}.
+	 * The bytes are transferred between the two files by the file system, without being read into memory.
+	 */
+	public static void copyToDisk(boolean generatePackagesStructure, String outputPath, String relativeFileName, File classFile) throws IOException {
+		try (FileInputStream input = new FileInputStream(classFile);
+				FileOutputStream output = getFileOutputStream(generatePackagesStructure, outputPath, relativeFileName)) {
+			FileChannel source = input.getChannel();
+			FileChannel target = output.getChannel();
+			long size = source.size();
+			long position = 0;
+			while (position < size)
+				position += source.transferTo(position, size - position, target);
+		}
+	}
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static void recordNestedType(ClassFile classFile, TypeBinding typeBinding) {
 		if (classFile.visitedTypes == null) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -66,8 +66,15 @@ protected boolean close(LRUCacheEntry<K, JavaElementInfo> entry) {
  * If the space limit must be increased, record the parent that needed this space limit.
  */
 protected void ensureSpaceLimit(JavaElementInfo info, IJavaElement parent) {
+	ensureSpaceLimit(info.getChildren().length, parent);
+}
+
+/*
+ * Ensures that there is enough room for adding the given number of children.
+ * If the space limit must be increased, record the parent that needed this space limit.
+ */
+protected void ensureSpaceLimit(int childrenSize, IJavaElement parent) {
 	// ensure the children can be put without closing other elements
-	int childrenSize = info.getChildren().length;
 	int spaceNeeded = 1 + (int)((1 + this.loadFactor) * (childrenSize + this.overflow));
 	if (this.spaceLimit < spaceNeeded) {
 		// parent is being opened with more children than the space limit
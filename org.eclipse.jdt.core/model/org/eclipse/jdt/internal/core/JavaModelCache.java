@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,11 +15,24 @@
  *								Bug 440477 - [null] Infrastructure for feeding external annotations into compilation
  *******************************************************************************/
 package org.eclipse.jdt.internal.core;
-import java.util.HashMap;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.text.NumberFormat;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
 
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IOpenable;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.ITypeRoot;
@@ -28,19 +41,56 @@ import org.eclipse.jdt.internal.core.util.Util;
 
 /**
  * The cache of java elements to their respective info.
+ * <p>
+ * Lookups may be done concurrently without holding the lock of the {@link JavaModelManager}.
+ * Insertions and removals are serialized by the {@link JavaModelManager}.
+ * </p>
  */
 public class JavaModelCache {
 	public static boolean VERBOSE = false;
 	public static boolean DEBUG_CACHE_INSERTIONS = false;
 
 	public static final int DEFAULT_PROJECT_SIZE = 5;  // average 25552 bytes per project.
-	public static final int DEFAULT_ROOT_SIZE = 50; // average 2590 bytes per root -> maximum size : 25900*BASE_VALUE bytes
-	public static final int DEFAULT_PKG_SIZE = 500; // average 1782 bytes per pkg -> maximum size : 178200*BASE_VALUE bytes
-	public static final int DEFAULT_OPENABLE_SIZE = 250; // average 6629 bytes per openable (includes children) -> maximum size : 662900*BASE_VALUE bytes
+	// sizes for a 64MB heap with the default budget, scaled by the memory ratio
+	public static final int DEFAULT_ROOT_SIZE = 50;
+	public static final int DEFAULT_PKG_SIZE = 500;
+	public static final int DEFAULT_OPENABLE_SIZE = 250;
 	public static final int DEFAULT_CHILDREN_SIZE = 250*20; // average 20 children per openable
 	public static final int DEFAULT_ACCESSRULE_SIZE = 1024;
 	public static final String RATIO_PROPERTY = "org.eclipse.jdt.core.javamodelcache.ratio"; //$NON-NLS-1$
 	public static final String JAR_TYPE_RATIO_PROPERTY = "org.eclipse.jdt.core.javamodelcache.jartyperatio"; //$NON-NLS-1$
+	public static final String SHARDS_PROPERTY = "org.eclipse.jdt.core.javamodelcache.shards"; //$NON-NLS-1$
+	public static final String BUDGET_PROPERTY = "org.eclipse.jdt.core.javamodelcache.budget"; //$NON-NLS-1$
+
+	/*
+	 * Estimated size of an entry of each cache.
+	 */
+	public static final int ROOT_ENTRY_SIZE = 2590; // average bytes per root
+	public static final int PKG_ENTRY_SIZE = 1782; // average bytes per pkg
+	public static final int OPENABLE_ENTRY_SIZE = 6629; // average bytes per openable (includes children)
+
+	/*
+	 * Default percentage of the maximum heap that the root, package and openable caches may use.
+	 * With a 64MB heap, this gives about the default sizes above.
+	 */
+	public static final double DEFAULT_BUDGET = 4;
+
+	/*
+	 * The estimated number of bytes used by the root, package and openable caches with the default sizes.
+	 */
+	private static final long DEFAULT_SIZES_FOOTPRINT =
+		(long) DEFAULT_ROOT_SIZE * ROOT_ENTRY_SIZE
+		+ (long) DEFAULT_PKG_SIZE * PKG_ENTRY_SIZE
+		+ (long) DEFAULT_OPENABLE_SIZE * OPENABLE_ENTRY_SIZE;
+
+	/*
+	 * The caches are shrunk when the used heap is above this fraction of the maximum heap after a garbage collection,
+	 * and grown back when it is below MEMORY_RELIEF_THRESHOLD.
+	 */
+	private static final double MEMORY_PRESSURE_THRESHOLD = 0.85;
+	private static final double MEMORY_RELIEF_THRESHOLD = 0.6;
+	private static final double MIN_SPACE_LIMIT_FACTOR = 0.125;
+	private static final long MEMORY_CHECK_INTERVAL = 10000; // ms
 
 	public static final Object NON_EXISTING_JAR_TYPE_INFO = new Object();
 
@@ -49,35 +99,51 @@ public class JavaModelCache {
 	 */
 	protected double memoryRatio = -1;
 
+	/*
+	 * The factor applied to the space limits while the heap is nearly full (see #reduceSpaceLimits()).
+	 */
+	protected volatile double spaceLimitFactor = 1;
+	protected long lastMemoryCheck;
+	private MemoryPoolMXBean heapPool;
+	private NotificationListener memoryListener;
+	/*
+	 * The collection usage threshold of the heap pool set by #startMemoryMonitoring(Object), or 0 if it was
+	 * already set, and the threshold it replaced, restored by #stopMemoryMonitoring().
+	 */
+	private long memoryThreshold;
+	private long previousMemoryThreshold;
+
 	/**
 	 * Active Java Model Info
 	 */
-	protected JavaElementInfo modelInfo;
+	protected volatile JavaElementInfo modelInfo;
 
 	/**
 	 * Cache of open projects.
 	 */
-	protected HashMap<IJavaProject, JavaElementInfo> projectCache;
+	protected Map<IJavaProject, JavaElementInfo> projectCache;
 
 	/**
 	 * Cache of open package fragment roots.
 	 */
-	protected ElementCache<IPackageFragmentRoot> rootCache;
+	protected ShardedElementCache<IPackageFragmentRoot> rootCache;
 
 	/**
 	 * Cache of open package fragments
 	 */
-	protected ElementCache<IPackageFragment> pkgCache;
+	protected ShardedElementCache<IPackageFragment> pkgCache;
 
 	/**
 	 * Cache of open compilation unit and class files
 	 */
-	protected ElementCache<ITypeRoot> openableCache;
+	protected ShardedElementCache<ITypeRoot> openableCache;
 
 	/**
 	 * Cache of open children of openable Java Model Java elements
 	 */
 	protected Map<IJavaElement, Object> childrenCache;
+	protected LongAdder childrenHits = new LongAdder();
+	protected LongAdder childrenMisses = new LongAdder();
 	
 	/**
 	 * Cache of access rules
@@ -88,29 +154,60 @@ public class JavaModelCache {
 	/**
 	 * Cache of open binary type (inside a jar) that have a non-open parent
 	 * Values are either instance of IBinaryType or Object (see {@link #NON_EXISTING_JAR_TYPE_INFO})
+	 * Accesses are synchronized on the cache itself.
 	 */
-	protected LRUCache<IJavaElement, Object> jarTypeCache;
+	protected volatile LRUCache<IJavaElement, Object> jarTypeCache;
 
 public JavaModelCache() {
 	// set the size of the caches as a function of the maximum amount of memory available
 	double ratio = getMemoryRatio();
 	// adjust the size of the openable cache using the RATIO_PROPERTY property
 	double openableRatio = getOpenableRatio();
-	this.projectCache = new HashMap<>(DEFAULT_PROJECT_SIZE); // NB: Don't use a LRUCache for projects as they are constantly reopened (e.g. during delta processing)
-	if (VERBOSE) {
-		this.rootCache = new VerboseElementCache<>((int) (DEFAULT_ROOT_SIZE * ratio), "Root cache"); //$NON-NLS-1$
-		this.pkgCache = new VerboseElementCache<>((int) (DEFAULT_PKG_SIZE * ratio), "Package cache"); //$NON-NLS-1$
-		this.openableCache = new VerboseElementCache<>((int) (DEFAULT_OPENABLE_SIZE * ratio * openableRatio), "Openable cache"); //$NON-NLS-1$
-	} else {
-		this.rootCache = new ElementCache<>((int) (DEFAULT_ROOT_SIZE * ratio));
-		this.pkgCache = new ElementCache<>((int) (DEFAULT_PKG_SIZE * ratio));
-		this.openableCache = new ElementCache<>((int) (DEFAULT_OPENABLE_SIZE * ratio * openableRatio));
-	}
-	this.childrenCache = new HashMap<>((int) (DEFAULT_CHILDREN_SIZE * ratio * openableRatio));
+	this.projectCache = new ConcurrentHashMap<>(DEFAULT_PROJECT_SIZE); // NB: Don't use a LRUCache for projects as they are constantly reopened (e.g. during delta processing)
+	this.rootCache = newElementCache(getRootSpaceLimit(), "Root cache"); //$NON-NLS-1$
+	this.pkgCache = newElementCache(getPkgSpaceLimit(), "Package cache"); //$NON-NLS-1$
+	this.openableCache = newElementCache(getOpenableSpaceLimit(), "Openable cache"); //$NON-NLS-1$
+	this.childrenCache = new ConcurrentHashMap<>((int) (DEFAULT_CHILDREN_SIZE * ratio * openableRatio));
 	this.accessRuleCache = new LRUCache<>(DEFAULT_ACCESSRULE_SIZE);
 	resetJarTypeCache();
 }
 
+private <K extends IJavaElement & IOpenable> ShardedElementCache<K> newElementCache(int size, String name) {
+	int shardCount = ShardedElementCache.defaultShardCount(size);
+	String property = System.getProperty(SHARDS_PROPERTY);
+	if (property != null) {
+		try {
+			shardCount = Integer.parseInt(property);
+		} catch (NumberFormatException e) {
+			// ignore
+			Util.log(e, "Could not parse value for " + SHARDS_PROPERTY + ": " + property); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+	return new ShardedElementCache<>(size, shardCount, VERBOSE ? name : null);
+}
+
+/*
+ * Returns the default space limit of the root cache, that is the number of roots that fit in its share of the budget.
+ */
+protected int getRootSpaceLimit() {
+	return Math.max(1, (int) (DEFAULT_ROOT_SIZE * getMemoryRatio() * this.spaceLimitFactor));
+}
+
+/*
+ * Returns the default space limit of the package cache, that is the number of packages that fit in its share of the budget.
+ */
+protected int getPkgSpaceLimit() {
+	return Math.max(1, (int) (DEFAULT_PKG_SIZE * getMemoryRatio() * this.spaceLimitFactor));
+}
+
+/*
+ * Returns the default space limit of the openable cache, that is the number of openables that fit in its share of the budget,
+ * adjusted with the RATIO_PROPERTY property.
+ */
+protected int getOpenableSpaceLimit() {
+	return Math.max(1, (int) (DEFAULT_OPENABLE_SIZE * getMemoryRatio() * getOpenableRatio() * this.spaceLimitFactor));
+}
+
 private double getOpenableRatio() {
 	return getRatioForProperty(RATIO_PROPERTY);
 }
@@ -149,16 +246,28 @@ public Object getInfo(IJavaElement element) {
 		case IJavaElement.CLASS_FILE:
 			return this.openableCache.get((ITypeRoot) element);
 		case IJavaElement.TYPE:
-			Object result = this.jarTypeCache.get(element);
+			LRUCache<IJavaElement, Object> jarTypes = this.jarTypeCache;
+			Object result;
+			synchronized (jarTypes) {
+				result = jarTypes.get(element);
+			}
 			if (result != null)
 				return result;
-			else
-				return this.childrenCache.get(element);
+			return getChildInfo(element);
 		default:
-			return this.childrenCache.get(element);
+			return getChildInfo(element);
 	}
 }
 
+private Object getChildInfo(IJavaElement element) {
+	Object info = this.childrenCache.get(element);
+	if (info == null)
+		this.childrenMisses.increment();
+	else
+		this.childrenHits.increment();
+	return info;
+}
+
 /*
  *  Returns the existing element that is equal to the given element if present in the cache.
  *  Returns the given element otherwise.
@@ -183,16 +292,145 @@ public IJavaElement getExistingElement(IJavaElement element) {
 	}
 }
 
+/*
+ * Returns the ratio to apply to the default sizes so that the root, package and openable caches
+ * use the budget given by the BUDGET_PROPERTY property (a percentage of the maximum heap).
+ */
 protected double getMemoryRatio() {
 	if ((int) this.memoryRatio == -1) {
 		long maxMemory = Runtime.getRuntime().maxMemory();
-		// if max memory is infinite, set the ratio to 4d which corresponds to the 256MB that Eclipse defaults to
+		// if max memory is infinite, use the 256MB that Eclipse defaults to
 		// (see https://bugs.eclipse.org/bugs/show_bug.cgi?id=111299)
-		this.memoryRatio = maxMemory == Long.MAX_VALUE ? 4d : ((double) maxMemory) / (64 * 0x100000); // 64MB is the base memory for most JVM
+		if (maxMemory == Long.MAX_VALUE)
+			maxMemory = 256 * 0x100000;
+		double budget = maxMemory * getBudget() / 100;
+		this.memoryRatio = budget / DEFAULT_SIZES_FOOTPRINT;
 	}
 	return this.memoryRatio;
 }
 
+private double getBudget() {
+	String property = System.getProperty(BUDGET_PROPERTY);
+	if (property != null) {
+		try {
+			double budget = Double.parseDouble(property);
+			if (budget > 0 && budget <= 100)
+				return budget;
+		} catch (NumberFormatException e) {
+			// ignore
+		}
+		Util.log(new IllegalArgumentException(), "Invalid value for " + BUDGET_PROPERTY + ": " + property); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	return DEFAULT_BUDGET;
+}
+
+/*
+ * Starts shrinking the caches when the heap is nearly full after a garbage collection.
+ * Space is made while holding the given lock, as this closes elements.
+ */
+protected void startMemoryMonitoring(final Object lock) {
+	MemoryPoolMXBean pool = null;
+	for (MemoryPoolMXBean candidate : ManagementFactory.getMemoryPoolMXBeans()) {
+		// monitor the largest heap pool that is collected, i.e. the old generation
+		if (candidate.getType() == MemoryType.HEAP && candidate.isCollectionUsageThresholdSupported()) {
+			long max = candidate.getUsage().getMax();
+			if (max > 0 && (pool == null || max > pool.getUsage().getMax()))
+				pool = candidate;
+		}
+	}
+	if (pool == null)
+		return;
+	try {
+		long previousThreshold = pool.getCollectionUsageThreshold();
+		long threshold = 0;
+		if (previousThreshold == 0) { // don't override a threshold set by someone else
+			threshold = (long) (pool.getUsage().getMax() * MEMORY_PRESSURE_THRESHOLD);
+			pool.setCollectionUsageThreshold(threshold);
+		}
+		final String poolName = pool.getName();
+		NotificationListener listener = (notification, handback) -> {
+			if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+				return;
+			MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+			if (!poolName.equals(info.getPoolName()))
+				return;
+			synchronized (lock) {
+				reduceSpaceLimits();
+			}
+		};
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+		this.heapPool = pool;
+		this.memoryListener = listener;
+		this.memoryThreshold = threshold;
+		this.previousMemoryThreshold = previousThreshold;
+	} catch (SecurityException | UnsupportedOperationException | IllegalArgumentException e) {
+		// memory monitoring is not available: keep fixed space limits
+	}
+}
+
+protected void stopMemoryMonitoring() {
+	if (this.memoryListener == null)
+		return;
+	try {
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this.memoryListener);
+	} catch (ListenerNotFoundException e) {
+		// ignore
+	}
+	// the threshold applies to the whole VM: restore it unless someone else changed it in the meantime
+	MemoryPoolMXBean pool = this.heapPool;
+	try {
+		if (this.memoryThreshold != 0 && pool.getCollectionUsageThreshold() == this.memoryThreshold)
+			pool.setCollectionUsageThreshold(this.previousMemoryThreshold);
+	} catch (SecurityException | UnsupportedOperationException | IllegalArgumentException e) {
+		// ignore
+	}
+	this.memoryListener = null;
+	this.heapPool = null;
+	this.memoryThreshold = 0;
+}
+
+/*
+ * Halves the space limits of the caches (down to MIN_SPACE_LIMIT_FACTOR of their default),
+ * closing the least recently used elements.
+ */
+protected void reduceSpaceLimits() {
+	this.lastMemoryCheck = System.currentTimeMillis();
+	if (this.spaceLimitFactor <= MIN_SPACE_LIMIT_FACTOR)
+		return;
+	this.spaceLimitFactor = Math.max(MIN_SPACE_LIMIT_FACTOR, this.spaceLimitFactor / 2);
+	updateSpaceLimits();
+}
+
+/*
+ * Doubles the space limits of the caches (up to their default) if the heap is no longer nearly full.
+ * The heap usage is checked at most every MEMORY_CHECK_INTERVAL ms.
+ */
+protected void restoreSpaceLimits() {
+	long now = System.currentTimeMillis();
+	if (now - this.lastMemoryCheck < MEMORY_CHECK_INTERVAL)
+		return;
+	this.lastMemoryCheck = now;
+	MemoryPoolMXBean pool = this.heapPool;
+	MemoryUsage usage = pool == null ? null : pool.getCollectionUsage();
+	if (usage == null || usage.getMax() <= 0 || usage.getUsed() < usage.getMax() * MEMORY_RELIEF_THRESHOLD) {
+		this.spaceLimitFactor = Math.min(1, this.spaceLimitFactor * 2);
+		updateSpaceLimits();
+	}
+}
+
+private void updateSpaceLimits() {
+	if (VERBOSE) {
+		System.out.println(Thread.currentThread() + " SETTING SPACE LIMIT FACTOR OF JAVA MODEL CACHE TO " + this.spaceLimitFactor); //$NON-NLS-1$
+	}
+	this.rootCache.setSpaceLimit(getRootSpaceLimit());
+	this.pkgCache.setSpaceLimit(getPkgSpaceLimit());
+	this.openableCache.setSpaceLimit(getOpenableSpaceLimit());
+	LRUCache<IJavaElement, Object> jarTypes = this.jarTypeCache;
+	synchronized (jarTypes) {
+		jarTypes.setSpaceLimit(getJarTypeSpaceLimit());
+	}
+}
+
 /**
  *  Returns the info for this element without
  *  disturbing the cache ordering.
@@ -211,7 +449,11 @@ protected Object peekAtInfo(IJavaElement element) {
 		case IJavaElement.CLASS_FILE:
 			return this.openableCache.peek((ITypeRoot) element);
 		case IJavaElement.TYPE:
-			Object result = this.jarTypeCache.peek(element);
+			LRUCache<IJavaElement, Object> jarTypes = this.jarTypeCache;
+			Object result;
+			synchronized (jarTypes) {
+				result = jarTypes.peek(element);
+			}
 			if (result != null)
 				return result;
 			else
@@ -225,6 +467,9 @@ protected Object peekAtInfo(IJavaElement element) {
  * Remember the info for the element.
  */
 protected void putInfo(IJavaElement element, Object info) {
+	if (this.spaceLimitFactor < 1) {
+		restoreSpaceLimits();
+	}
 	if (DEBUG_CACHE_INSERTIONS) {
 		System.out.println(Thread.currentThread() + " cache putInfo (" + getElementType(element) + " " + element.toString() + ", " + info + ")");  //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$//$NON-NLS-4$
 	}
@@ -291,15 +536,15 @@ protected void removeInfo(JavaElement element) {
 			break;
 		case IJavaElement.JAVA_PROJECT:
 			this.projectCache.remove((IJavaProject)element);
-			this.rootCache.resetSpaceLimit((int) (DEFAULT_ROOT_SIZE * getMemoryRatio()), element);
+			this.rootCache.resetSpaceLimit(getRootSpaceLimit(), element);
 			break;
 		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
 			this.rootCache.remove((IPackageFragmentRoot) element);
-			this.pkgCache.resetSpaceLimit((int) (DEFAULT_PKG_SIZE * getMemoryRatio()), element);
+			this.pkgCache.resetSpaceLimit(getPkgSpaceLimit(), element);
 			break;
 		case IJavaElement.PACKAGE_FRAGMENT:
 			this.pkgCache.remove((IPackageFragment) element);
-			this.openableCache.resetSpaceLimit((int) (DEFAULT_OPENABLE_SIZE * getMemoryRatio() * getOpenableRatio()), element);
+			this.openableCache.resetSpaceLimit(getOpenableSpaceLimit(), element);
 			break;
 		case IJavaElement.COMPILATION_UNIT:
 		case IJavaElement.CLASS_FILE:
@@ -310,10 +555,22 @@ protected void removeInfo(JavaElement element) {
 	}
 }
 protected void resetJarTypeCache() {
-	this.jarTypeCache = new LRUCache<>((int) (DEFAULT_OPENABLE_SIZE * getMemoryRatio() * getJarTypeRatio()));
+	this.jarTypeCache = new LRUCache<>(getJarTypeSpaceLimit());
+}
+private int getJarTypeSpaceLimit() {
+	return Math.max(1, (int) (DEFAULT_OPENABLE_SIZE * getMemoryRatio() * getJarTypeRatio() * this.spaceLimitFactor));
+}
+protected void putJarTypeInfo(IJavaElement type, Object info) {
+	LRUCache<IJavaElement, Object> jarTypes = this.jarTypeCache;
+	synchronized (jarTypes) {
+		jarTypes.put(type, info);
+	}
 }
 protected void removeFromJarTypeCache(BinaryType type) {
-	this.jarTypeCache.flush(type);
+	LRUCache<IJavaElement, Object> jarTypes = this.jarTypeCache;
+	synchronized (jarTypes) {
+		jarTypes.flush(type);
+	}
 }
 @Override
 public String toString() {
@@ -335,7 +592,20 @@ public String toStringFillingRation(String prefix) {
 	buffer.append(this.openableCache.toStringFillingRation("Openable cache")); //$NON-NLS-1$
 	buffer.append('\n');
 	buffer.append(prefix);
-	buffer.append(this.jarTypeCache.toStringFillingRation("Jar type cache")); //$NON-NLS-1$
+	buffer.append("Children cache: "); //$NON-NLS-1$
+	buffer.append(this.childrenCache.size());
+	buffer.append(" elements, "); //$NON-NLS-1$
+	long hits = this.childrenHits.sum();
+	long lookups = hits + this.childrenMisses.sum();
+	buffer.append(NumberFormat.getInstance().format(lookups == 0 ? 0 : hits * 100.0 / lookups));
+	buffer.append("% hits ("); //$NON-NLS-1$
+	buffer.append(lookups);
+	buffer.append(" lookups)\n"); //$NON-NLS-1$
+	buffer.append(prefix);
+	LRUCache<IJavaElement, Object> jarTypes = this.jarTypeCache;
+	synchronized (jarTypes) {
+		buffer.append(jarTypes.toStringFillingRation("Jar type cache")); //$NON-NLS-1$
+	}
 	buffer.append('\n');
 	return buffer.toString();
 }
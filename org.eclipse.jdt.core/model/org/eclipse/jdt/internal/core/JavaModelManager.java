@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -1220,7 +1220,7 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 	/**
 	 * Infos cache.
 	 */
-	private JavaModelCache cache;
+	private volatile JavaModelCache cache;
 
 	/*
 	 * Temporary cache of newly opened elements
@@ -2174,8 +2174,14 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 
 	/**
 	 *  Returns the info for the element.
+	 *  <p>
+	 *  The cache is first looked up without holding the lock of the manager. If the info is not found,
+	 *  the lookup is done again while holding the lock, so that an element that is being opened or closed
+	 *  (see {@link #putInfos(IJavaElement, Object, boolean, Map)} and {@link #removeInfoAndChildren(JavaElement)})
+	 *  is not considered as closed while its parent is seen as opened.
+	 *  </p>
 	 */
-	public synchronized Object getInfo(IJavaElement element) {
+	public Object getInfo(IJavaElement element) {
 		HashMap<IJavaElement, Object> tempCache = this.temporaryCache.get();
 		if (tempCache != null) {
 			Object result = tempCache.get(element);
@@ -2183,13 +2189,19 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 				return result;
 			}
 		}
-		return this.cache.getInfo(element);
+		Object info = this.cache.getInfo(element);
+		if (info != null) {
+			return info;
+		}
+		synchronized (this) {
+			return this.cache.peekAtInfo(element);
+		}
 	}
 
 	/**
 	 *  Returns the existing element in the cache that is equal to the given element.
 	 */
-	public synchronized IJavaElement getExistingElement(IJavaElement element) {
+	public IJavaElement getExistingElement(IJavaElement element) {
 		return this.cache.getExistingElement(element);
 	}
 
@@ -2279,17 +2291,19 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 			return null; // should never be requested on non-Java projects
 		}
 		PerProjectInfo info = getPerProjectInfo(project, true/*create if missing*/);
-		if (!info.triedRead) {
-			info.triedRead = true;
-			try {
-				if (monitor != null)
-					monitor.subTask(Messages.bind(Messages.build_readStateProgress, project.getName()));
-				info.savedState = readState(project);
-			} catch (CoreException e) {
-				e.printStackTrace();
+		synchronized (info) { // the dependents of a project can be built at the same time
+			if (!info.triedRead) {
+				info.triedRead = true;
+				try {
+					if (monitor != null)
+						monitor.subTask(Messages.bind(Messages.build_readStateProgress, project.getName()));
+					info.savedState = readState(project);
+				} catch (CoreException e) {
+					e.printStackTrace();
+				}
 			}
+			return info.savedState;
 		}
-		return info.savedState;
 	}
 
 	public String getOption(String optionName) {
@@ -4049,7 +4063,7 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 	 *  Returns the info for this element without
 	 *  disturbing the cache ordering.
 	 */
-	protected synchronized Object peekAtInfo(IJavaElement element) {
+	protected Object peekAtInfo(IJavaElement element) {
 		HashMap<IJavaElement, Object> tempCache = this.temporaryCache.get();
 		if (tempCache != null) {
 			Object result = tempCache.get(element);
@@ -4057,7 +4071,13 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 				return result;
 			}
 		}
-		return this.cache.peekAtInfo(element);
+		Object info = this.cache.peekAtInfo(element);
+		if (info != null) {
+			return info;
+		}
+		synchronized (this) { // see getInfo(IJavaElement)
+			return this.cache.peekAtInfo(element);
+		}
 	}
 
 	/**
@@ -4137,7 +4157,7 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 	 * @param info instanceof IBinaryType or {@link JavaModelCache#NON_EXISTING_JAR_TYPE_INFO}
 	 */
 	protected synchronized void putJarTypeInfo(IJavaElement type, Object info) {
-		this.cache.jarTypeCache.put(type, info);
+		this.cache.putJarTypeInfo(type, info);
 	}
 
 	/**
@@ -5258,8 +5278,10 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 		if (JavaProject.hasJavaNature(project)) {
 			// should never be requested on non-Java projects
 			PerProjectInfo info = getPerProjectInfo(project, true /*create if missing*/);
-			info.triedRead = true; // no point trying to re-read once using setter
-			info.savedState = state;
+			synchronized (info) {
+				info.triedRead = true; // no point trying to re-read once using setter
+				info.savedState = state;
+			}
 		}
 		if (state == null) { // delete state file to ensure a full build happens if the workspace crashes
 			try {
@@ -5363,6 +5385,7 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 		try {
 			// initialize Java model cache
 			this.cache = new JavaModelCache();
+			this.cache.startMemoryMonitoring(this);
 
 			// request state folder creation (workaround 19885)
 			JavaCore.getPlugin().getStateLocation();
@@ -5495,6 +5518,9 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 			this.indexManager.shutdown();
 		}
 
+		// Stop shrinking the Java model cache under memory pressure
+		this.cache.stopMemoryMonitoring();
+
 		// Stop listening to preferences changes
 		preferences.removePreferenceChangeListener(this.propertyListener);
 		((IEclipsePreferences) this.preferencesLookup[PREF_DEFAULT].parent()).removeNodeChangeListener(this.defaultNodeListener);
@@ -5637,8 +5663,8 @@ public class JavaModelManager implements ISaveParticipant, IContentTypeChangeLis
 		return this.cache.toStringFillingRation(prefix);
 	}
 
-	public ElementCache<ITypeRoot>.Stats debugNewOpenableCacheStats() {
-		return this.cache.openableCache.new Stats();
+	public List<ElementCache<ITypeRoot>.Stats> debugNewOpenableCacheStats() {
+		return this.cache.openableCache.newStats();
 	}
 
 	public int getOpenableCacheSize() {
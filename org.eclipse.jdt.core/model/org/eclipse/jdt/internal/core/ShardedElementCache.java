@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IOpenable;
+
+/**
+ * An element cache split in several independent {@link ElementCache} shards.
+ * <p>
+ * An element always lives in the same shard (chosen from its hash code), and every
+ * operation on a shard is synchronized on that shard. Lookups thus only contend with
+ * lookups of elements falling in the same shard, and never need the lock of the
+ * {@link JavaModelManager}. The LRU order is maintained per shard, so the element that
+ * is closed to make room is the least recently used one of its shard.
+ * </p><p>
+ * Insertions and removals are expected to be serialized by the {@link JavaModelManager}:
+ * closing an element to make room in one shard may remove its children from other shards.
+ * </p>
+ */
+public class ShardedElementCache<K extends IJavaElement & IOpenable> {
+
+	/**
+	 * Shards are not made smaller than this, so that small caches are not split.
+	 */
+	public static final int MIN_SHARD_SIZE = 64;
+
+	private final ElementCache<K>[] shards;
+	private final int mask;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+/**
+ * Constructs a new cache of the given total size, using as many shards as there are
+ * processors (rounded to a power of 2), unless this makes the shards too small.
+ */
+public ShardedElementCache(int size) {
+	this(size, defaultShardCount(size), null);
+}
+/**
+ * Constructs a new cache of the given total size split in the given number of shards
+ * (rounded down to a power of 2). If a name is given, the shards print
+ * diagnostics when making space (see {@link VerboseElementCache}).
+ */
+@SuppressWarnings("unchecked")
+public ShardedElementCache(int size, int shardCount, String name) {
+	int count = Integer.highestOneBit(Math.max(1, shardCount));
+	this.shards = new ElementCache[count];
+	this.mask = count - 1;
+	int shardSize = shardLimit(size);
+	for (int i = 0; i < count; i++) {
+		if (name == null) {
+			this.shards[i] = new ElementCache<>(shardSize);
+		} else {
+			this.shards[i] = new VerboseElementCache<>(shardSize, count == 1 ? name : name + " #" + i); //$NON-NLS-1$
+		}
+	}
+}
+
+/**
+ * Returns the number of shards to use for a cache of the given total size.
+ */
+public static int defaultShardCount(int size) {
+	int processors = Runtime.getRuntime().availableProcessors();
+	return Math.max(1, Math.min(Integer.highestOneBit(processors), size / MIN_SHARD_SIZE));
+}
+
+private int indexFor(Object element) {
+	int hash = element.hashCode();
+	return (hash ^ (hash >>> 16)) & this.mask;
+}
+
+private ElementCache<K> shardFor(Object element) {
+	return this.shards[indexFor(element)];
+}
+
+private int shardLimit(int totalLimit) {
+	return Math.max(1, (totalLimit + this.shards.length - 1) / this.shards.length);
+}
+
+/**
+ * Returns the info for the given element, updating the LRU order of its shard,
+ * or <code>null</code> if the element is not in the cache.
+ */
+public JavaElementInfo get(K element) {
+	ElementCache<K> shard = shardFor(element);
+	JavaElementInfo info;
+	synchronized (shard) {
+		info = shard.get(element);
+	}
+	if (info == null)
+		this.misses.increment();
+	else
+		this.hits.increment();
+	return info;
+}
+
+/**
+ * Returns the info for the given element without disturbing the LRU order,
+ * or <code>null</code> if the element is not in the cache.
+ */
+public JavaElementInfo peek(K element) {
+	ElementCache<K> shard = shardFor(element);
+	synchronized (shard) {
+		return shard.peek(element);
+	}
+}
+
+/**
+ * Returns the key in the cache that is equal to the given element,
+ * or the given element if it is not in the cache.
+ */
+public K getKey(K element) {
+	ElementCache<K> shard = shardFor(element);
+	synchronized (shard) {
+		return shard.getKey(element);
+	}
+}
+
+public JavaElementInfo put(K element, JavaElementInfo info) {
+	ElementCache<K> shard = shardFor(element);
+	synchronized (shard) {
+		return shard.put(element, info);
+	}
+}
+
+public JavaElementInfo remove(K element) {
+	ElementCache<K> shard = shardFor(element);
+	synchronized (shard) {
+		return shard.remove(element);
+	}
+}
+
+/*
+ * Ensures that there is enough room in each shard for adding the children of the given info
+ * that fall in this shard.
+ */
+protected void ensureSpaceLimit(JavaElementInfo info, IJavaElement parent) {
+	IJavaElement[] children = info.getChildren();
+	int[] childrenPerShard = new int[this.shards.length];
+	for (int i = 0, length = children.length; i < length; i++) {
+		childrenPerShard[indexFor(children[i])]++;
+	}
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		ElementCache<K> shard = this.shards[i];
+		synchronized (shard) {
+			shard.ensureSpaceLimit(childrenPerShard[i], parent);
+		}
+	}
+}
+
+/*
+ * If the given parent was the one that increased the space limit of a shard, reset
+ * the space limit of this shard to its share of the given default value.
+ */
+protected void resetSpaceLimit(int defaultLimit, IJavaElement parent) {
+	int shardLimit = shardLimit(defaultLimit);
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		ElementCache<K> shard = this.shards[i];
+		synchronized (shard) {
+			shard.resetSpaceLimit(shardLimit, parent);
+		}
+	}
+}
+
+/**
+ * Sets the space limit of the shards to their share of the given limit, closing the least
+ * recently used elements if needed. Shards whose limit was increased for a parent
+ * (see {@link #ensureSpaceLimit(JavaElementInfo, IJavaElement)}) are left unchanged.
+ */
+public void setSpaceLimit(int limit) {
+	int shardLimit = shardLimit(limit);
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		ElementCache<K> shard = this.shards[i];
+		synchronized (shard) {
+			if (shard.spaceLimitParent == null)
+				shard.setSpaceLimit(shardLimit);
+		}
+	}
+}
+
+public int getShardCount() {
+	return this.shards.length;
+}
+
+/**
+ * Returns the sum of the space limits of the shards.
+ */
+public int getSpaceLimit() {
+	int limit = 0;
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		ElementCache<K> shard = this.shards[i];
+		synchronized (shard) {
+			limit += shard.getSpaceLimit();
+		}
+	}
+	return limit;
+}
+
+/**
+ * Returns the sum of the space used in the shards.
+ */
+public int getCurrentSpace() {
+	int space = 0;
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		ElementCache<K> shard = this.shards[i];
+		synchronized (shard) {
+			space += shard.getCurrentSpace();
+		}
+	}
+	return space;
+}
+
+/**
+ * Returns the number of lookups (see {@link #get(IJavaElement)}) that found an info.
+ */
+public long getHitCount() {
+	return this.hits.sum();
+}
+
+/**
+ * Returns the number of lookups (see {@link #get(IJavaElement)}) that found no info.
+ */
+public long getMissCount() {
+	return this.misses.sum();
+}
+
+/**
+ * Returns new statistics on the entries of each shard.
+ */
+public List<ElementCache<K>.Stats> newStats() {
+	List<ElementCache<K>.Stats> stats = new ArrayList<>(this.shards.length);
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		stats.add(this.shards[i].new Stats());
+	}
+	return stats;
+}
+
+public String toStringFillingRation(String cacheName) {
+	int limit = 0;
+	double filled = 0;
+	for (int i = 0, length = this.shards.length; i < length; i++) {
+		ElementCache<K> shard = this.shards[i];
+		synchronized (shard) {
+			limit += shard.getSpaceLimit();
+			filled += shard.fillingRatio() * shard.getSpaceLimit();
+		}
+	}
+	long hitCount = getHitCount();
+	long lookups = hitCount + getMissCount();
+	NumberFormat format = NumberFormat.getInstance();
+	StringBuffer buffer = new StringBuffer(cacheName);
+	buffer.append('[');
+	buffer.append(limit);
+	buffer.append("]: "); //$NON-NLS-1$
+	buffer.append(format.format(limit == 0 ? 0 : filled / limit));
+	buffer.append("% full, "); //$NON-NLS-1$
+	buffer.append(this.shards.length);
+	buffer.append(" shards, "); //$NON-NLS-1$
+	buffer.append(format.format(lookups == 0 ? 0 : hitCount * 100.0 / lookups));
+	buffer.append("% hits ("); //$NON-NLS-1$
+	buffer.append(lookups);
+	buffer.append(" lookups)"); //$NON-NLS-1$
+	return buffer.toString();
+}
+
+@Override
+public String toString() {
+	return toStringFillingRation("ShardedElementCache"); //$NON-NLS-1$
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -21,5 +21,10 @@ protected AdditionalTypeCollection(char[][] definedTypeNames, char[][][] qualifi
 	super(qualifiedReferences, simpleNameReferences, rootReferences);
 	this.definedTypeNames = definedTypeNames; // do not bother interning member type names (i.e. 'A$M')
 }
+
+protected AdditionalTypeCollection(char[][] definedTypeNames, char[][][] qualifiedReferences, char[][] simpleNameReferences, char[][] rootReferences, char[][] superTypeReferences) {
+	super(qualifiedReferences, simpleNameReferences, rootReferences, superTypeReferences);
+	this.definedTypeNames = definedTypeNames; // do not bother interning member type names (i.e. 'A$M')
+}
 }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -31,6 +31,11 @@ protected int newErrorCount;
 protected int fixedErrorCount;
 protected int newWarningCount;
 protected int fixedWarningCount;
+// the counters of the previous builds when this build started, see done()
+private int previousNewErrorCount;
+private int previousFixedErrorCount;
+private int previousNewWarningCount;
+private int previousFixedWarningCount;
 protected int workDone;
 protected int totalWork;
 protected String previousSubtask;
@@ -40,7 +45,7 @@ public static int FixedErrorCount = 0;
 public static int NewWarningCount = 0;
 public static int FixedWarningCount = 0;
 
-public static void resetProblemCounters() {
+public static synchronized void resetProblemCounters() {
 	NewErrorCount = 0;
 	FixedErrorCount = 0;
 	NewWarningCount = 0;
@@ -50,10 +55,12 @@ public static void resetProblemCounters() {
 public BuildNotifier(IProgressMonitor monitor, IProject project) {
 	this.monitor = monitor;
 	this.cancelling = false;
-	this.newErrorCount = NewErrorCount;
-	this.fixedErrorCount = FixedErrorCount;
-	this.newWarningCount = NewWarningCount;
-	this.fixedWarningCount = FixedWarningCount;
+	synchronized (BuildNotifier.class) {
+		this.newErrorCount = this.previousNewErrorCount = NewErrorCount;
+		this.fixedErrorCount = this.previousFixedErrorCount = FixedErrorCount;
+		this.newWarningCount = this.previousNewWarningCount = NewWarningCount;
+		this.fixedWarningCount = this.previousFixedWarningCount = FixedWarningCount;
+	}
 	this.workDone = 0;
 	this.totalWork = 1000000;
 }
@@ -105,10 +112,13 @@ public void compiled(SourceFile unit) {
 }
 
 public void done() {
-	NewErrorCount = this.newErrorCount;
-	FixedErrorCount = this.fixedErrorCount;
-	NewWarningCount = this.newWarningCount;
-	FixedWarningCount = this.fixedWarningCount;
+	// only add the problems of this build, since other projects can be built at the same time
+	synchronized (BuildNotifier.class) {
+		NewErrorCount += this.newErrorCount - this.previousNewErrorCount;
+		FixedErrorCount += this.fixedErrorCount - this.previousFixedErrorCount;
+		NewWarningCount += this.newWarningCount - this.previousNewWarningCount;
+		FixedWarningCount += this.fixedWarningCount - this.previousFixedWarningCount;
+	}
 
 	updateProgress(1.0f);
 	subTask(Messages.build_done);
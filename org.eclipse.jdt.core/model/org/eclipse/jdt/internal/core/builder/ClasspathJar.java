@@ -20,6 +20,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
@@ -40,7 +42,7 @@ import org.eclipse.jdt.internal.compiler.env.IModule;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 import org.eclipse.jdt.internal.compiler.lookup.BinaryTypeBinding.ExternalAnnotationStatus;
 import org.eclipse.jdt.internal.compiler.lookup.TypeConstants;
-import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+import org.eclipse.jdt.internal.compiler.util.JarDirectoryCache;
 import org.eclipse.jdt.internal.compiler.util.SimpleSet;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -60,8 +62,8 @@ static class PackageCacheEntry {
 	}
 }
 
-protected static SimpleLookupTable PackageCache = new SimpleLookupTable();
-protected static SimpleLookupTable ModuleCache = new SimpleLookupTable();
+// shared by the builds of all the projects
+protected static Map<String, PackageCacheEntry> PackageCache = new ConcurrentHashMap<>();
 
 protected static void addToPackageSet(SimpleSet packageSet, String fileName, boolean endsWithSep) {
 	int last = endsWithSep ? fileName.length() : fileName.lastIndexOf('/');
@@ -80,7 +82,7 @@ protected static void addToPackageSet(SimpleSet packageSet, String fileName, boo
  */
 protected SimpleSet findPackageSet() {
 	String zipFileName = this.zipFilename;
-	PackageCacheEntry cacheEntry = (PackageCacheEntry) PackageCache.get(zipFileName);
+	PackageCacheEntry cacheEntry = PackageCache.get(zipFileName);
 	long timestamp = this.lastModified();
 	long fileSize = new File(zipFileName).length();
 	if (cacheEntry != null && cacheEntry.lastModified == timestamp && cacheEntry.fileSize == fileSize) {
@@ -94,6 +96,23 @@ protected SimpleSet findPackageSet() {
 }
 protected String readJarContent(final SimpleSet packageSet) {
 	String modInfo = null;
+	if (this.sharedJar != null) {
+		JarDirectoryCache.Directory directory = this.sharedJar.getDirectory();
+		for (String packageName : directory.getPackageNames()) {
+			if (packageName.equals("META-INF") || packageName.startsWith("META-INF/")) //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			if (modInfo == null) {
+				for (String fileName : directory.getFileNames(packageName)) {
+					if (fileName.equalsIgnoreCase(IModule.MODULE_INFO_CLASS)) {
+						modInfo = packageName.length() == 0 ? fileName : packageName + '/' + fileName;
+						break;
+					}
+				}
+			}
+			packageSet.add(packageName);
+		}
+		return modInfo;
+	}
 	for (Enumeration e = this.zipFile.entries(); e.hasMoreElements(); ) {
 		String fileName = ((ZipEntry) e.nextElement()).getName();
 		if (fileName.startsWith("META-INF/")) //$NON-NLS-1$
@@ -112,9 +131,10 @@ protected String readJarContent(final SimpleSet packageSet) {
 }
 IModule initializeModule() {
 	IModule mod = null;
-	ZipFile file = null;
+	JarDirectoryCache.SharedJar jar = null;
 	try {
-		file = new ZipFile(this.zipFilename);
+		jar = JarDirectoryCache.getDefault().acquire(new File(this.zipFilename));
+		ZipFile file = jar.getZipFile();
 		String releasePath = "META-INF/versions/" + this.compliance + '/' + IModule.MODULE_INFO_CLASS; //$NON-NLS-1$
 		ClassFileReader classfile = null;
 		try {
@@ -124,7 +144,7 @@ IModule initializeModule() {
 			// move on to the default
 		}
 		if (classfile == null) {
-			classfile = ClassFileReader.read(file, IModule.MODULE_INFO_CLASS); // FIXME: use jar cache
+			classfile = ClassFileReader.read(file, IModule.MODULE_INFO_CLASS);
 		}
 		if (classfile != null) {
 			mod = classfile.getModuleDeclaration();
@@ -132,12 +152,8 @@ IModule initializeModule() {
 	} catch (ClassFormatException | IOException e) {
 		// do nothing
 	} finally {
-		try {
-			if (file != null)
-				file.close();
-		} catch (IOException e) {
-			// do nothing
-		}
+		if (jar != null)
+			JarDirectoryCache.getDefault().release(jar);
 	}
 	return mod;
 }
@@ -145,6 +161,7 @@ IModule initializeModule() {
 String zipFilename; // keep for equals
 IFile resource;
 ZipFile zipFile;
+JarDirectoryCache.SharedJar sharedJar; // when the zip file is owned by the shared jar cache
 ZipFile annotationZipFile;
 long lastModified;
 boolean closeZipFileAtEnd;
@@ -202,7 +219,14 @@ public ClasspathJar(String fileName, AccessRuleSet accessRuleSet, IPath external
 @Override
 public void cleanup() {
 	if (this.closeZipFileAtEnd) {
-		if (this.zipFile != null) {
+		if (this.sharedJar != null) {
+			JarDirectoryCache.getDefault().release(this.sharedJar);
+			if (org.eclipse.jdt.internal.core.JavaModelManager.ZIP_ACCESS_VERBOSE) {
+				System.out.println("(" + Thread.currentThread() + ") [ClasspathJar.cleanup()] Released shared ZipFile on " + this.zipFilename); //$NON-NLS-1$	//$NON-NLS-2$
+			}
+			this.sharedJar = null;
+			this.zipFile = null;
+		} else if (this.zipFile != null) {
 			try {
 				this.zipFile.close();
 				if (org.eclipse.jdt.internal.core.JavaModelManager.ZIP_ACCESS_VERBOSE) {
@@ -243,14 +267,21 @@ public boolean equals(Object o) {
 	if (this == o) return true;
 	if (!(o instanceof ClasspathJar)) return false;
 	ClasspathJar jar = (ClasspathJar) o;
+	return isSameEntry(jar) && lastModified() == jar.lastModified();
+}
+
+/*
+ * Answers whether the given jar is the same entry of the build path as the receiver, although the contents
+ * of the jar file may have changed.
+ */
+boolean isSameEntry(ClasspathJar jar) {
 	if (this.accessRuleSet != jar.accessRuleSet)
 		if (this.accessRuleSet == null || !this.accessRuleSet.equals(jar.accessRuleSet))
 			return false;
 	if (!Util.equalOrNull(this.compliance, jar.compliance)) {
 		return false;
 	}
-	return this.zipFilename.equals(jar.zipFilename) 
-			&& lastModified() == jar.lastModified()
+	return this.zipFilename.equals(jar.zipFilename)
 			&& this.isOnModulePath == jar.isOnModulePath
 			&& areAllModuleOptionsEqual(jar);
 }
@@ -260,9 +291,9 @@ public NameEnvironmentAnswer findClass(String binaryFileName, String qualifiedPa
 	if (!isPackage(qualifiedPackageName, moduleName)) return null; // most common case
 
 	try {
-		IBinaryType reader = ClassFileReader.read(this.zipFile, qualifiedBinaryFileName);
+		char[] modName = this.module == null ? null : this.module.name();
+		IBinaryType reader = readClassFile(qualifiedBinaryFileName, modName);
 		if (reader != null) {
-			char[] modName = this.module == null ? null : this.module.name();
 			if (reader instanceof ClassFileReader) {
 				ClassFileReader classReader = (ClassFileReader) reader;
 				if (classReader.moduleName == null)
@@ -323,6 +354,13 @@ public boolean isPackage(String qualifiedPackageName, String moduleName) {
 }
 @Override
 public boolean hasCompilationUnit(String pkgName, String moduleName) {
+	if (this.sharedJar != null) {
+		for (String fileName : this.sharedJar.getDirectory().getFileNames(pkgName)) {
+			if (fileName.toLowerCase().endsWith(SuffixConstants.SUFFIX_STRING_class))
+				return true;
+		}
+		return false;
+	}
 	for (Enumeration<? extends ZipEntry> e = this.zipFile.entries(); e.hasMoreElements(); ) {
 		String fileName = e.nextElement().getName();
 		if (fileName.startsWith(pkgName)
@@ -340,7 +378,8 @@ private boolean scanContent() {
 			if (org.eclipse.jdt.internal.core.JavaModelManager.ZIP_ACCESS_VERBOSE) {
 				System.out.println("(" + Thread.currentThread() + ") [ClasspathJar.isPackage(String)] Creating ZipFile on " + this.zipFilename); //$NON-NLS-1$	//$NON-NLS-2$
 			}
-			this.zipFile = new ZipFile(this.zipFilename);
+			this.sharedJar = JarDirectoryCache.getDefault().acquire(new File(this.zipFilename));
+			this.zipFile = this.sharedJar.getZipFile();
 			this.closeZipFileAtEnd = true;
 			this.knownPackageNames = findPackageSet();
 		} else {
@@ -382,6 +421,16 @@ public IModule getModule() {
 	return this.module;
 }
 
+/*
+ * Answers the reader of the given class file, shared with the other users of the jar when the zip file is
+ * owned by the shared jar cache (see JarDirectoryCache.SharedJar#getClassFileReader(String, char[])).
+ */
+ClassFileReader readClassFile(String entryName, char[] modName) throws ClassFormatException, IOException {
+	if (this.sharedJar != null)
+		return this.sharedJar.getClassFileReader(entryName, modName);
+	return ClassFileReader.read(this.zipFile, entryName);
+}
+
 @Override
 public NameEnvironmentAnswer findClass(String typeName, String qualifiedPackageName, String moduleName, String qualifiedBinaryFileName) {
 	// 
@@ -23,7 +23,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.zip.ZipFile;
 
@@ -46,8 +48,9 @@ import org.eclipse.jdt.internal.core.JavaProject;
 public class ClasspathJrt extends ClasspathLocation implements IMultiModuleEntry {
 
 //private HashMap<String, SimpleSet> packagesInModule = null;
-protected static HashMap<String, HashMap<String, SimpleSet>> PackageCache = new HashMap<>();
-protected static HashMap<String, Set<IModule>> ModulesCache = new HashMap<>();
+// shared by the builds of all the projects, the images are only read while holding the lock of the cache
+protected static Map<String, HashMap<String, SimpleSet>> PackageCache = new ConcurrentHashMap<>();
+protected static Map<String, Set<IModule>> ModulesCache = new ConcurrentHashMap<>();
 String externalAnnotationPath;
 protected ZipFile annotationZipFile;
 String zipFilename; // keep for equals
@@ -78,66 +81,25 @@ static HashMap<String, SimpleSet> findPackagesInModules(final ClasspathJrt jrt)
 	if (cache != null) {
 		return cache;
 	}
-	final HashMap<String, SimpleSet> packagesInModule = new HashMap<>();
-	PackageCache.put(zipFileName, packagesInModule);
-	try {
-		final File imageFile = new File(zipFileName);
-		org.eclipse.jdt.internal.compiler.util.JRTUtil.walkModuleImage(imageFile, 
-				new org.eclipse.jdt.internal.compiler.util.JRTUtil.JrtFileVisitor<Path>() {
-			SimpleSet packageSet = null;
-			@Override
-			public FileVisitResult visitPackage(Path dir, Path mod, BasicFileAttributes attrs) throws IOException {
-				ClasspathJar.addToPackageSet(this.packageSet, dir.toString(), true);
-				return FileVisitResult.CONTINUE;
-			}
-
-			@Override
-			public FileVisitResult visitFile(Path file, Path mod, BasicFileAttributes attrs) throws IOException {
-				return FileVisitResult.CONTINUE;
-			}
-
-			@Override
-			public FileVisitResult visitModule(Path path, String name) throws IOException {
-				try {
-					jrt.acceptModule(JRTUtil.getClassfileContent(imageFile, IModule.MODULE_INFO_CLASS, name));
-				} catch (ClassFormatException e) {
-					e.printStackTrace();
-				}
-				this.packageSet = new SimpleSet(41);
-				this.packageSet.add(""); //$NON-NLS-1$
-				if (name.endsWith("/")) { //$NON-NLS-1$
-					name = name.substring(0, name.length() - 1);
-				}
-				packagesInModule.put(name, this.packageSet);
-				return FileVisitResult.CONTINUE;
-			}
-		}, JRTUtil.NOTIFY_PACKAGES | JRTUtil.NOTIFY_MODULES);
-	} catch (IOException e) {
-		// TODO: Java 9 Should report better
-	}
-	return packagesInModule;
-}
-
-public static void loadModules(final ClasspathJrt jrt) {
-	Set<IModule> cache = ModulesCache.get(jrt.getKey());
-
-	if (cache == null) {
+	synchronized (PackageCache) { // walk the image once, even when several projects are built at the same time
+		cache = PackageCache.get(jrt.getKey());
+		if (cache != null) {
+			return cache;
+		}
+		final HashMap<String, SimpleSet> packagesInModule = new HashMap<>();
 		try {
-			final File imageFile = new File(jrt.zipFilename);
-			org.eclipse.jdt.internal.compiler.util.JRTUtil.walkModuleImage(imageFile,
+			final File imageFile = new File(zipFileName);
+			org.eclipse.jdt.internal.compiler.util.JRTUtil.walkModuleImage(imageFile, 
 					new org.eclipse.jdt.internal.compiler.util.JRTUtil.JrtFileVisitor<Path>() {
 				SimpleSet packageSet = null;
-
 				@Override
-				public FileVisitResult visitPackage(Path dir, Path mod, BasicFileAttributes attrs)
-						throws IOException {
+				public FileVisitResult visitPackage(Path dir, Path mod, BasicFileAttributes attrs) throws IOException {
 					ClasspathJar.addToPackageSet(this.packageSet, dir.toString(), true);
 					return FileVisitResult.CONTINUE;
 				}
 
 				@Override
-				public FileVisitResult visitFile(Path file, Path mod, BasicFileAttributes attrs)
-						throws IOException {
+				public FileVisitResult visitFile(Path file, Path mod, BasicFileAttributes attrs) throws IOException {
 					return FileVisitResult.CONTINUE;
 				}
 
@@ -148,16 +110,65 @@ public static void loadModules(final ClasspathJrt jrt) {
 					} catch (ClassFormatException e) {
 						e.printStackTrace();
 					}
-					return FileVisitResult.SKIP_SUBTREE;
+					this.packageSet = new SimpleSet(41);
+					this.packageSet.add(""); //$NON-NLS-1$
+					if (name.endsWith("/")) { //$NON-NLS-1$
+						name = name.substring(0, name.length() - 1);
+					}
+					packagesInModule.put(name, this.packageSet);
+					return FileVisitResult.CONTINUE;
 				}
-			}, JRTUtil.NOTIFY_MODULES);
+			}, JRTUtil.NOTIFY_PACKAGES | JRTUtil.NOTIFY_MODULES);
 		} catch (IOException e) {
 			// TODO: Java 9 Should report better
 		}
-	} else {
-//		for (IModuleDeclaration iModule : cache) {
-//			jimage.env.acceptModule(iModule, jimage);
-//		}
+		PackageCache.put(zipFileName, packagesInModule); // only shared once complete
+		return packagesInModule;
+	}
+}
+
+public static void loadModules(final ClasspathJrt jrt) {
+	synchronized (ModulesCache) { // read the modules of the image once, even when several projects are built at the same time
+		Set<IModule> cache = ModulesCache.get(jrt.getKey());
+
+		if (cache == null) {
+			try {
+				final File imageFile = new File(jrt.zipFilename);
+				org.eclipse.jdt.internal.compiler.util.JRTUtil.walkModuleImage(imageFile,
+						new org.eclipse.jdt.internal.compiler.util.JRTUtil.JrtFileVisitor<Path>() {
+					SimpleSet packageSet = null;
+
+					@Override
+					public FileVisitResult visitPackage(Path dir, Path mod, BasicFileAttributes attrs)
+							throws IOException {
+						ClasspathJar.addToPackageSet(this.packageSet, dir.toString(), true);
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path file, Path mod, BasicFileAttributes attrs)
+							throws IOException {
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitModule(Path path, String name) throws IOException {
+						try {
+							jrt.acceptModule(JRTUtil.getClassfileContent(imageFile, IModule.MODULE_INFO_CLASS, name));
+						} catch (ClassFormatException e) {
+							e.printStackTrace();
+						}
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+				}, JRTUtil.NOTIFY_MODULES);
+			} catch (IOException e) {
+				// TODO: Java 9 Should report better
+			}
+		} else {
+//			for (IModuleDeclaration iModule : cache) {
+//				jimage.env.acceptModule(iModule, jimage);
+//			}
+		}
 	}
 }
 protected String getKey() {
@@ -176,10 +187,7 @@ void acceptModule(byte[] content) {
 		String key = getKey();
 		IModule moduleDecl = reader.getModuleDeclaration();
 		if (moduleDecl != null) {
-			Set<IModule> cache = ModulesCache.get(key);
-			if (cache == null) {
-				ModulesCache.put(key, cache = new HashSet<IModule>());
-			}
+			Set<IModule> cache = ModulesCache.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
 			cache.add(moduleDecl);
 		}
 	}
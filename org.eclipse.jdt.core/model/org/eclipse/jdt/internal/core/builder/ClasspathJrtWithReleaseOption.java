@@ -179,42 +179,48 @@ public class ClasspathJrtWithReleaseOption extends ClasspathJrt {
 		if (cache != null) {
 			return cache;
 		}
-		final HashMap<String, SimpleSet> packagesInModule = new HashMap<>();
-		PackageCache.put(jrt.modPathString, packagesInModule);
-		try {
-			final File imageFile = new File(zipFileName);
-			org.eclipse.jdt.internal.compiler.util.JRTUtil.walkModuleImage(imageFile, jrt.release,
-					new org.eclipse.jdt.internal.compiler.util.JRTUtil.JrtFileVisitor<Path>() {
-						SimpleSet packageSet = null;
+		synchronized (PackageCache) { // walk the image once, even when several projects are built at the same time
+			cache = PackageCache.get(jrt.modPathString);
+			if (cache != null) {
+				return cache;
+			}
+			final HashMap<String, SimpleSet> packagesInModule = new HashMap<>();
+			try {
+				final File imageFile = new File(zipFileName);
+				org.eclipse.jdt.internal.compiler.util.JRTUtil.walkModuleImage(imageFile, jrt.release,
+						new org.eclipse.jdt.internal.compiler.util.JRTUtil.JrtFileVisitor<Path>() {
+							SimpleSet packageSet = null;
 
-						@Override
-						public FileVisitResult visitPackage(Path dir, Path mod, BasicFileAttributes attrs)
-								throws IOException {
-							ClasspathJar.addToPackageSet(this.packageSet, dir.toString(), true);
-							return FileVisitResult.CONTINUE;
-						}
+							@Override
+							public FileVisitResult visitPackage(Path dir, Path mod, BasicFileAttributes attrs)
+									throws IOException {
+								ClasspathJar.addToPackageSet(this.packageSet, dir.toString(), true);
+								return FileVisitResult.CONTINUE;
+							}
 
-						@Override
-						public FileVisitResult visitFile(Path file, Path mod, BasicFileAttributes attrs)
-								throws IOException {
-							return FileVisitResult.CONTINUE;
-						}
+							@Override
+							public FileVisitResult visitFile(Path file, Path mod, BasicFileAttributes attrs)
+									throws IOException {
+								return FileVisitResult.CONTINUE;
+							}
 
-						@Override
-						public FileVisitResult visitModule(Path path, String name) throws IOException {
-							this.packageSet = new SimpleSet(41);
-							this.packageSet.add(""); //$NON-NLS-1$
-							if (name.endsWith("/")) { //$NON-NLS-1$
-								name = name.substring(0, name.length() - 1);
+							@Override
+							public FileVisitResult visitModule(Path path, String name) throws IOException {
+								this.packageSet = new SimpleSet(41);
+								this.packageSet.add(""); //$NON-NLS-1$
+								if (name.endsWith("/")) { //$NON-NLS-1$
+									name = name.substring(0, name.length() - 1);
+								}
+								packagesInModule.put(name, this.packageSet);
+								return FileVisitResult.CONTINUE;
 							}
-							packagesInModule.put(name, this.packageSet);
-							return FileVisitResult.CONTINUE;
-						}
-					}, JRTUtil.NOTIFY_PACKAGES | JRTUtil.NOTIFY_MODULES);
-		} catch (IOException e) {
-			// return empty handed
+						}, JRTUtil.NOTIFY_PACKAGES | JRTUtil.NOTIFY_MODULES);
+			} catch (IOException e) {
+				// return empty handed
+			}
+			PackageCache.put(jrt.modPathString, packagesInModule); // only shared once complete
+			return packagesInModule;
 		}
-		return packagesInModule;
 	}
 
 	public static void loadModules(final ClasspathJrtWithReleaseOption jrt) {
@@ -224,46 +230,48 @@ public class ClasspathJrtWithReleaseOption extends ClasspathJrt {
 		}
 		if (jrt.modPathString == null)
 			return;
-		Set<IModule> cache = ModulesCache.get(jrt.modPathString);
-		if (cache == null) {
-			try (DirectoryStream<java.nio.file.Path> stream = Files.newDirectoryStream(jrt.modulePath)) {
-				for (final java.nio.file.Path subdir : stream) {
+		synchronized (ModulesCache) { // read the modules once, even when several projects are built at the same time
+			Set<IModule> cache = ModulesCache.get(jrt.modPathString);
+			if (cache == null) {
+				try (DirectoryStream<java.nio.file.Path> stream = Files.newDirectoryStream(jrt.modulePath)) {
+					for (final java.nio.file.Path subdir : stream) {
 
-					Files.walkFileTree(subdir, Collections.EMPTY_SET, 1, new FileVisitor<java.nio.file.Path>() {
-						@Override
-						public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attrs)
-								throws IOException {
-							return FileVisitResult.CONTINUE;
-						}
+						Files.walkFileTree(subdir, Collections.EMPTY_SET, 1, new FileVisitor<java.nio.file.Path>() {
+							@Override
+							public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attrs)
+									throws IOException {
+								return FileVisitResult.CONTINUE;
+							}
 
-						@Override
-						public FileVisitResult visitFile(java.nio.file.Path f, BasicFileAttributes attrs)
-								throws IOException {
-							byte[] content = null;
-							if (Files.exists(f)) {
-								content = JRTUtil.safeReadBytes(f);
-								if (content == null)
-									return FileVisitResult.CONTINUE;
-								jrt.acceptModule(content);
+							@Override
+							public FileVisitResult visitFile(java.nio.file.Path f, BasicFileAttributes attrs)
+									throws IOException {
+								byte[] content = null;
+								if (Files.exists(f)) {
+									content = JRTUtil.safeReadBytes(f);
+									if (content == null)
+										return FileVisitResult.CONTINUE;
+									jrt.acceptModule(content);
+								}
+								return FileVisitResult.CONTINUE;
 							}
-							return FileVisitResult.CONTINUE;
-						}
 
-						@Override
-						public FileVisitResult visitFileFailed(java.nio.file.Path f, IOException exc)
-								throws IOException {
-							return FileVisitResult.CONTINUE;
-						}
+							@Override
+							public FileVisitResult visitFileFailed(java.nio.file.Path f, IOException exc)
+									throws IOException {
+								return FileVisitResult.CONTINUE;
+							}
 
-						@Override
-						public FileVisitResult postVisitDirectory(java.nio.file.Path dir, IOException exc)
-								throws IOException {
-							return FileVisitResult.CONTINUE;
-						}
-					});
+							@Override
+							public FileVisitResult postVisitDirectory(java.nio.file.Path dir, IOException exc)
+									throws IOException {
+								return FileVisitResult.CONTINUE;
+							}
+						});
+					}
+				} catch (IOException e) {
+					// Nothing much to do
 				}
-			} catch (IOException e) {
-				// Nothing much to do
 			}
 		}
 	}
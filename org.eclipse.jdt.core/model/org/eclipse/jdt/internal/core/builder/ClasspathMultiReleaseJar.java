@@ -1,5 +1,6 @@
 package org.eclipse.jdt.internal.core.builder;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -20,6 +21,7 @@ import org.eclipse.jdt.internal.compiler.env.IModule;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
 import org.eclipse.jdt.internal.compiler.lookup.BinaryTypeBinding.ExternalAnnotationStatus;
+import org.eclipse.jdt.internal.compiler.util.JarDirectoryCache;
 import org.eclipse.jdt.internal.compiler.util.SimpleSet;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -93,7 +95,8 @@ public class ClasspathMultiReleaseJar extends ClasspathJar {
 				System.out.println("(" + Thread.currentThread() + ") [ClasspathMultiReleaseJar.initializeVersions(String)] Creating ZipFile on " + jar.zipFilename); //$NON-NLS-1$	//$NON-NLS-2$
 			}
 			try {
-				jar.zipFile = new ZipFile(jar.zipFilename);
+				jar.sharedJar = JarDirectoryCache.getDefault().acquire(new File(jar.zipFilename));
+				jar.zipFile = jar.sharedJar.getZipFile();
 			} catch (IOException e) {
 				return;
 			}
@@ -149,9 +152,9 @@ public class ClasspathMultiReleaseJar extends ClasspathJar {
 				ZipEntry entry = this.zipFile.getEntry(s);
 				if (entry == null)
 					continue;
-				IBinaryType reader = ClassFileReader.read(this.zipFile, s);
+				char[] modName = this.module == null ? null : this.module.name();
+				IBinaryType reader = readClassFile(s, modName);
 				if (reader != null) {
-					char[] modName = this.module == null ? null : this.module.name();
 					if (reader instanceof ClassFileReader) {
 						ClassFileReader classReader = (ClassFileReader) reader;
 						if (classReader.moduleName == null) {
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.builder;
+
+import java.io.ByteArrayOutputStream;
+
+import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
+
+/**
+ * The reference collections of a {@link State} as they were read from disk.
+ * <p>
+ * Each collection is encoded in a single block of bytes as a sequence of variable-length integers
+ * indexing the interned root, simple and qualified names of the state (the names of the supertypes are
+ * simple names). A collection is only decoded the first time it is asked for
+ * (see {@link State#getReferenceCollection(String)}), and the encoding of the collections that were
+ * never decoded is copied as is when the state is written again.
+ * </p>
+ */
+class EncodedReferences {
+
+	static final int ADDITIONAL_TYPE_COLLECTION = 1;
+	static final int REFERENCE_COLLECTION = 2;
+
+	/**
+	 * The value of a reference collection in {@link State#references} which is not decoded yet.
+	 */
+	static final class Entry {
+		final int offset;
+		final int length;
+
+		Entry(int offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	final char[][] rootNames;
+	final char[][] simpleNames;
+	final char[][][] qualifiedNames;
+	final byte[] bytes;
+
+EncodedReferences(char[][] rootNames, char[][] simpleNames, char[][][] qualifiedNames, byte[] bytes) {
+	this.rootNames = rootNames;
+	this.simpleNames = simpleNames;
+	this.qualifiedNames = qualifiedNames;
+	this.bytes = bytes;
+}
+
+ReferenceCollection decode(Entry entry) {
+	int[] position = new int[] {entry.offset};
+	int kind = readInt(position);
+	char[][] definedTypeNames = null;
+	if (kind == ADDITIONAL_TYPE_COLLECTION) {
+		definedTypeNames = new char[readInt(position)][];
+		for (int i = 0, l = definedTypeNames.length; i < l; i++) {
+			char[] name = new char[readInt(position)];
+			for (int j = 0, m = name.length; j < m; j++)
+				name[j] = (char) readInt(position);
+			definedTypeNames[i] = name;
+		}
+	}
+	char[][][] qNames = new char[readInt(position)][][];
+	for (int i = 0, l = qNames.length; i < l; i++)
+		qNames[i] = this.qualifiedNames[readInt(position)];
+	char[][] sNames = new char[readInt(position)][];
+	for (int i = 0, l = sNames.length; i < l; i++)
+		sNames[i] = this.simpleNames[readInt(position)];
+	char[][] rNames = new char[readInt(position)][];
+	for (int i = 0, l = rNames.length; i < l; i++)
+		rNames[i] = this.rootNames[readInt(position)];
+	char[][] superNames = null;
+	int superCount = readInt(position); // 0 when the supertypes are unknown
+	if (superCount > 0) {
+		superNames = new char[superCount - 1][];
+		for (int i = 0, l = superNames.length; i < l; i++)
+			superNames[i] = this.simpleNames[readInt(position)];
+	}
+	if (kind == ADDITIONAL_TYPE_COLLECTION)
+		return new AdditionalTypeCollection(definedTypeNames, qNames, sNames, rNames, superNames);
+	return new ReferenceCollection(qNames, sNames, rNames, superNames);
+}
+
+/*
+ * Copies the encoding of the given entry to the given stream.
+ */
+void copy(Entry entry, ByteArrayOutputStream out) {
+	out.write(this.bytes, entry.offset, entry.length);
+}
+
+/*
+ * Encodes the given collection using the ids of its names in the given tables.
+ */
+static void encode(ReferenceCollection collection, SimpleLookupTable qualifiedIds, SimpleLookupTable simpleIds, SimpleLookupTable rootIds, ByteArrayOutputStream out) {
+	if (collection instanceof AdditionalTypeCollection) {
+		writeInt(ADDITIONAL_TYPE_COLLECTION, out);
+		char[][] definedTypeNames = ((AdditionalTypeCollection) collection).definedTypeNames;
+		writeInt(definedTypeNames.length, out);
+		for (int i = 0, l = definedTypeNames.length; i < l; i++) {
+			char[] name = definedTypeNames[i];
+			writeInt(name.length, out);
+			for (int j = 0, m = name.length; j < m; j++)
+				writeInt(name[j], out);
+		}
+	} else {
+		writeInt(REFERENCE_COLLECTION, out);
+	}
+	writeIds(collection.qualifiedNameReferences, qualifiedIds, out);
+	writeIds(collection.simpleNameReferences, simpleIds, out);
+	writeIds(collection.rootReferences, rootIds, out);
+	char[][] superNames = collection.superTypeReferences;
+	if (superNames == null) {
+		writeInt(0, out);
+	} else {
+		writeInt(superNames.length + 1, out);
+		for (int i = 0, l = superNames.length; i < l; i++)
+			writeInt(((Integer) simpleIds.get(superNames[i])).intValue(), out);
+	}
+}
+
+private static void writeIds(Object[] names, SimpleLookupTable ids, ByteArrayOutputStream out) {
+	writeInt(names.length, out);
+	for (int i = 0, l = names.length; i < l; i++)
+		writeInt(((Integer) ids.get(names[i])).intValue(), out);
+}
+
+/*
+ * Writes the given positive int using 7 bits per byte, the high bit telling whether more bytes follow.
+ */
+private static void writeInt(int value, ByteArrayOutputStream out) {
+	while ((value & ~0x7F) != 0) {
+		out.write((value & 0x7F) | 0x80);
+		value >>>= 7;
+	}
+	out.write(value);
+}
+
+private int readInt(int[] position) {
+	int value = 0;
+	int shift = 0;
+	byte b;
+	do {
+		b = this.bytes[position[0]++];
+		value |= (b & 0x7F) << shift;
+		shift += 7;
+	} while ((b & 0x80) != 0);
+	return value;
+}
+}
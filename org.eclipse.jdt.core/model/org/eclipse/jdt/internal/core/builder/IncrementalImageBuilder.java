@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -44,6 +44,7 @@ protected LinkedHashSet<SourceFile> previousSourceFiles;
 protected Set<String> qualifiedStrings;
 protected Set<String> simpleStrings;
 protected Set<String> rootStrings;
+protected Map<String, Set<String>> changedMembers; // the names of the changed members, per top level type path 'p1/p2/A'
 protected SimpleLookupTable secondaryTypesToRemove;
 protected boolean hasStructuralChanges;
 protected boolean makeOutputFolderConsistent;
@@ -133,6 +134,11 @@ public boolean build(SimpleLookupTable deltas) {
 						if (!findAffectedSourceFiles(delta, classFoldersAndJars, p)) return false;
 				}
 			}
+			if (this.javaBuilder.changedJarTypes != null) {
+				// the contents of external jars changed, their dependents are found like for the jars of the workspace
+				for (String typeName : this.javaBuilder.changedJarTypes)
+					addDependentsOf(new Path(typeName), false);
+			}
 			this.notifier.updateProgressDelta(0.10f);
 
 			this.notifier.subTask(Messages.build_analyzingSources);
@@ -219,6 +225,11 @@ protected void buildAfterBatchBuild() {
 }
 
 protected void addAffectedSourceFiles() {
+	if (!this.changedMembers.isEmpty()) {
+		if (this.testImageBuilder != null)
+			this.testImageBuilder.addAffectedSourceFiles(this.changedMembers);
+		addAffectedSourceFiles(this.changedMembers);
+	}
 	if (this.qualifiedStrings.size() == 0 && this.simpleStrings.size() == 0) return;
 	if(this.testImageBuilder != null) {
 		this.testImageBuilder.addAffectedSourceFiles(this.qualifiedStrings, this.simpleStrings, this.rootStrings, null);
@@ -226,6 +237,67 @@ protected void addAffectedSourceFiles() {
 	addAffectedSourceFiles(this.qualifiedStrings, this.simpleStrings, this.rootStrings, null);
 }
 
+/*
+ * Adds the source files which depend on the given changed members: the source files which reference the
+ * type of the members and either name one of the members or declare a subtype of the type.
+ */
+protected void addAffectedSourceFiles(Map<String, Set<String>> changedMembersPerType) {
+	for (Map.Entry<String, Set<String>> entry : changedMembersPerType.entrySet()) {
+		IPath typePath = new Path(entry.getKey());
+		char[][][] internedQualifiedNames = ReferenceCollection.internQualifiedNames(Collections.singleton(typePath.removeLastSegments(1).toString()));
+		if (internedQualifiedNames.length == 0)
+			internedQualifiedNames = null; // a well known package
+		char[] typeName = typePath.lastSegment().toCharArray();
+		char[][] internedSimpleNames = ReferenceCollection.internSimpleNames(new char[][] {typeName}, true);
+		if (internedSimpleNames.length == 0)
+			internedSimpleNames = null; // a well known type
+		char[][] internedRootNames = ReferenceCollection.internSimpleNames(new char[][] {typePath.segment(0).toCharArray()}, false);
+		char[] internedTypeName = ReferenceCollection.internSimpleNames(new char[][] {typeName}, false)[0];
+		char[][] memberNames = new char[entry.getValue().size()][];
+		int index = 0;
+		for (String memberName : entry.getValue())
+			memberNames[index++] = memberName.toCharArray();
+
+		int[] affectedReferences = this.newState.getAffectedReferences(internedQualifiedNames, internedSimpleNames, internedRootNames, null);
+		Object[] keyTable = this.newState.references.keyTable;
+		next : for (int i = 0, l = affectedReferences.length; i < l; i++) {
+			String typeLocator = (String) keyTable[affectedReferences[i]];
+			SourceFile sourceFile = findAffectedSourceFile(typeLocator);
+			if (sourceFile == null) continue next;
+			if (!this.newState.getReferenceCollection(affectedReferences[i]).includesSuperType(internedTypeName)
+					&& !mentionsAny(sourceFile.getContents(), memberNames))
+				continue next;
+
+			if (JavaBuilder.DEBUG)
+				System.out.println("  adding affected source file " + typeLocator //$NON-NLS-1$
+					+ " of changed members " + entry.getValue() + " of " + typePath); //$NON-NLS-1$ //$NON-NLS-2$
+			this.sourceFiles.add(sourceFile);
+		}
+	}
+}
+
+/*
+ * Answers whether the given contents include one of the given names as a whole word.
+ * Since the unicode escapes can spell any name, contents with an escape include every name.
+ */
+private static boolean mentionsAny(char[] contents, char[][] names) {
+	for (int i = 0, length = contents.length - 1; i < length; i++)
+		if (contents[i] == '\\' && contents[i + 1] == 'u')
+			return true;
+	for (int i = 0, l = names.length; i < l; i++) {
+		char[] name = names[i];
+		int start = 0;
+		while ((start = CharOperation.indexOf(name, contents, true, start)) >= 0) {
+			int end = start + name.length;
+			if ((start == 0 || !Character.isJavaIdentifierPart(contents[start - 1]))
+					&& (end == contents.length || !Character.isJavaIdentifierPart(contents[end])))
+				return true;
+			start = end;
+		}
+	}
+	return false;
+}
+
 protected void addAffectedSourceFiles(Set<String> qualifiedSet, Set<String> simpleSet, Set<String> rootSet, Set<String> affectedTypes) {
 	// the qualifiedStrings are of the form 'p1/p2' & the simpleStrings are just 'X'
 	char[][][] internedQualifiedNames = ReferenceCollection.internQualifiedNames(qualifiedSet);
@@ -238,29 +310,33 @@ protected void addAffectedSourceFiles(Set<String> qualifiedSet, Set<String> simp
 		internedSimpleNames = null;
 	char[][] internedRootNames = ReferenceCollection.internSimpleNames(rootSet, false);
 
+	// the index of the references only checks the collections which may include the names
+	int[] affectedReferences = this.newState.getAffectedReferences(internedQualifiedNames, internedSimpleNames, internedRootNames, affectedTypes);
 	Object[] keyTable = this.newState.references.keyTable;
-	Object[] valueTable = this.newState.references.valueTable;
-	next : for (int i = 0, l = valueTable.length; i < l; i++) {
-		String typeLocator = (String) keyTable[i];
-		if (typeLocator != null) {
-			if (affectedTypes != null && !affectedTypes.contains(typeLocator)) continue next;
-			ReferenceCollection refs = (ReferenceCollection) valueTable[i];
-			if (refs.includes(internedQualifiedNames, internedSimpleNames, internedRootNames)) {
-				IFile file = this.javaBuilder.currentProject.getFile(typeLocator);
-				SourceFile sourceFile = findSourceFile(file, true);
-				if (sourceFile == null) continue next;
-				if (this.sourceFiles.contains(sourceFile)) continue next;
-				if (this.compiledAllAtOnce && this.previousSourceFiles != null && this.previousSourceFiles.contains(sourceFile))
-					continue next; // can skip previously compiled files since already saw hierarchy related problems
+	next : for (int i = 0, l = affectedReferences.length; i < l; i++) {
+		String typeLocator = (String) keyTable[affectedReferences[i]];
+		SourceFile sourceFile = findAffectedSourceFile(typeLocator);
+		if (sourceFile == null) continue next;
 
-				if (JavaBuilder.DEBUG)
-					System.out.println("  adding affected source file " + typeLocator); //$NON-NLS-1$
-				this.sourceFiles.add(sourceFile);
-			}
-		}
+		if (JavaBuilder.DEBUG)
+			System.out.println("  adding affected source file " + typeLocator); //$NON-NLS-1$
+		this.sourceFiles.add(sourceFile);
 	}
 }
 
+/*
+ * Answers the source file of the given type locator, or null if it does not need to be added to the source files.
+ */
+private SourceFile findAffectedSourceFile(String typeLocator) {
+	IFile file = this.javaBuilder.currentProject.getFile(typeLocator);
+	SourceFile sourceFile = findSourceFile(file, true);
+	if (sourceFile == null) return null;
+	if (this.sourceFiles.contains(sourceFile)) return null;
+	if (this.compiledAllAtOnce && this.previousSourceFiles != null && this.previousSourceFiles.contains(sourceFile))
+		return null; // can skip previously compiled files since already saw hierarchy related problems
+	return sourceFile;
+}
+
 protected void addDependentsOf(IPath path, boolean isStructuralChange) {
 	addDependentsOf(path, isStructuralChange, this.qualifiedStrings, this.simpleStrings, this.rootStrings);
 }
@@ -300,6 +376,27 @@ protected void addDependentsOf(IPath path, boolean isStructuralChange, Set<Strin
 			+ typeName + " in " + packageName); //$NON-NLS-1$
 }
 
+/*
+ * Records that the given members of the type of the given path changed structurally. Only the source files which name
+ * one of these members, or declare a subtype of the type, will be recompiled (see addAffectedSourceFiles(Map)).
+ */
+protected void addDependentsOfMembers(IPath path, char[][] memberNames) {
+	if (!this.hasStructuralChanges) {
+		this.newState.tagAsStructurallyChanged();
+		this.hasStructuralChanges = true;
+	}
+	path = path.setDevice(null);
+	String typeName = path.lastSegment();
+	int memberIndex = typeName.indexOf('$');
+	if (memberIndex > 0)
+		path = path.removeLastSegments(1).append(typeName.substring(0, memberIndex));
+	Set<String> names = this.changedMembers.computeIfAbsent(path.toString(), key -> new HashSet<>(3));
+	for (int i = 0, l = memberNames.length; i < l; i++)
+		names.add(new String(memberNames[i]));
+	if (JavaBuilder.DEBUG)
+		System.out.println("  will look for dependents of members " + names + " of " + path); //$NON-NLS-1$ //$NON-NLS-2$
+}
+
 protected boolean checkForClassFileChanges(IResourceDelta binaryDelta, ClasspathMultiDirectory md, int segmentCount) throws CoreException {
 	IResource resource = binaryDelta.getResource();
 	// remember that if inclusion & exclusion patterns change then a full build is done
@@ -339,6 +436,7 @@ protected void cleanUp() {
 	this.qualifiedStrings = null;
 	this.simpleStrings = null;
 	this.rootStrings = null;
+	this.changedMembers = null;
 	this.secondaryTypesToRemove = null;
 	this.hasStructuralChanges = false;
 }
@@ -413,9 +511,19 @@ protected boolean findAffectedSourceFiles(IResourceDelta delta, ClasspathLocatio
 				IResourceDelta binaryDelta = delta.findMember(p);
 				if (binaryDelta != null) {
 					if (bLocation instanceof ClasspathJar) {
+						// added/removed jar files were caught as classpath change
+						Set<String> changedTypes = new HashSet<>();
+						if (binaryDelta.getKind() != IResourceDelta.CHANGED
+								|| !this.javaBuilder.addJarAbiChanges((ClasspathJar) bLocation, 0, changedTypes)) {
+							if (JavaBuilder.DEBUG)
+								System.out.println("ABORTING incremental build... found delta to jar/zip file"); //$NON-NLS-1$
+							return false; // do full build since the changes of the jar file cannot be tracked to its types
+						}
 						if (JavaBuilder.DEBUG)
-							System.out.println("ABORTING incremental build... found delta to jar/zip file"); //$NON-NLS-1$
-						return false; // do full build since jar file was changed (added/removed were caught as classpath change)
+							System.out.println("Found delta to jar/zip file, its ABI changed for " + changedTypes); //$NON-NLS-1$
+						for (String typeName : changedTypes)
+							addDependentsOf(new Path(typeName), false);
+						continue;
 					}
 					if (binaryDelta.getKind() == IResourceDelta.ADDED || binaryDelta.getKind() == IResourceDelta.REMOVED) {
 						if (JavaBuilder.DEBUG)
@@ -829,6 +937,7 @@ protected void resetCollections() {
 		this.qualifiedStrings = new HashSet<>(3);
 		this.simpleStrings = new HashSet<>(3);
 		this.rootStrings = new HashSet<>(3);
+		this.changedMembers = new HashMap<>(3);
 		this.hasStructuralChanges = false;
 	} else {
 		this.previousSourceFiles = this.sourceFiles.isEmpty() ? null : (LinkedHashSet) this.sourceFiles.clone();
@@ -837,6 +946,7 @@ protected void resetCollections() {
 		this.qualifiedStrings.clear();
 		this.simpleStrings.clear();
 		this.rootStrings.clear();
+		this.changedMembers.clear();
 		this.workQueue.clear();
 	}
 }
@@ -950,11 +1060,19 @@ protected boolean writeClassFileCheck(IFile file, String fileName, byte[] newByt
 		String filePath = location.getSchemeSpecificPart();
 		ClassFileReader reader = new ClassFileReader(oldBytes, filePath.toCharArray());
 		// ignore local types since they're only visible inside a single method
-		if (!(reader.isLocal() || reader.isAnonymous()) && reader.hasStructuralChanges(newBytes)) {
-			if (JavaBuilder.DEBUG)
-				System.out.println("Type has structural changes " + fileName); //$NON-NLS-1$
-			addDependentsOf(new Path(fileName), true);
-			this.newState.wasStructurallyChanged(fileName);
+		if (!(reader.isLocal() || reader.isAnonymous())) {
+			char[][] changedMemberNames = reader.getStructuralMemberChanges(newBytes);
+			if (changedMemberNames == null) {
+				if (JavaBuilder.DEBUG)
+					System.out.println("Type has structural changes " + fileName); //$NON-NLS-1$
+				addDependentsOf(new Path(fileName), true);
+				this.newState.wasStructurallyChanged(fileName);
+			} else if (changedMemberNames.length > 0) {
+				if (JavaBuilder.DEBUG)
+					System.out.println("Members have structural changes " + fileName); //$NON-NLS-1$
+				addDependentsOfMembers(new Path(fileName), changedMemberNames);
+				this.newState.wasStructurallyChanged(fileName); // dependent projects only track the changed types
+			}
 		}
 	} catch (ClassFormatException e) {
 		addDependentsOf(new Path(fileName), true);
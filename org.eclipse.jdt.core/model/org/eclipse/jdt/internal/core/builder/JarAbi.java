@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.builder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IModule;
+import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
+import org.eclipse.jdt.internal.compiler.util.Util;
+
+/**
+ * The ABI of a jar file on the build path: a hash of the structure of each class file of the jar which can be
+ * referenced from outside of it, ignoring the private members (see
+ * {@link ClassFileReader#getStructuralHash(org.eclipse.jdt.internal.compiler.env.IBinaryType, boolean)}).
+ * <p>
+ * When a jar is replaced, the source files compiled against it only need to be recompiled if they depend
+ * on one of the types whose hash changed (see {@link #addChangedTypes(JarAbi, Set)}).
+ * </p>
+ */
+class JarAbi {
+
+	private static final String META_INF_VERSIONS = "META-INF/versions/"; //$NON-NLS-1$
+
+	final long lastModified;
+	// the names of the class file entries without their suffix (i.e. "p1/p2/A" or "p1/p2/A$M"), sorted
+	private final String[] entryNames;
+	private final long[] hashes;
+
+private JarAbi(long lastModified, String[] entryNames, long[] hashes) {
+	this.lastModified = lastModified;
+	this.entryNames = entryNames;
+	this.hashes = hashes;
+}
+
+/*
+ * Computes the ABI of the given jar file, as it was modified at the given time.
+ */
+static JarAbi compute(String zipFilename, long lastModified) throws IOException {
+	TreeMap<String, Long> entryHashes = new TreeMap<>();
+	try (ZipFile zipFile = new ZipFile(zipFilename)) {
+		for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+			ZipEntry entry = e.nextElement();
+			String fileName = entry.getName();
+			if (!Util.isClassFileName(fileName)) continue;
+
+			byte[] bytes = Util.getZipEntryByteContent(entry, zipFile);
+			String entryName = fileName.substring(0, fileName.length() - SuffixConstants.SUFFIX_CLASS.length);
+			if (isModuleInfo(entryName)) {
+				entryHashes.put(entryName, toLong(digest(bytes))); // any change to the module descriptor matters
+				continue;
+			}
+			try {
+				ClassFileReader reader = new ClassFileReader(bytes, fileName.toCharArray());
+				// local, anonymous and private member types cannot be referenced from outside of the jar
+				if (reader.isLocal() || reader.isAnonymous() || (reader.getModifiers() & ClassFileConstants.AccPrivate) != 0)
+					continue;
+				entryHashes.put(entryName, toLong(ClassFileReader.getStructuralHash(reader, true)));
+			} catch (ClassFormatException ignored) {
+				entryHashes.put(entryName, toLong(digest(bytes))); // any change to an invalid class file matters
+			}
+		}
+	}
+	String[] names = new String[entryHashes.size()];
+	long[] values = new long[names.length];
+	int index = 0;
+	for (Map.Entry<String, Long> entry : entryHashes.entrySet()) {
+		names[index] = entry.getKey();
+		values[index++] = entry.getValue().longValue();
+	}
+	return new JarAbi(lastModified, names, values);
+}
+
+/*
+ * Adds to the given set the qualified names of the types (i.e. "p1/p2/A") which were added, removed or
+ * changed in the given newer ABI of the jar. Answers false if the module descriptor of the jar changed,
+ * since the changes cannot be tracked to types then.
+ */
+boolean addChangedTypes(JarAbi newAbi, Set<String> changedTypes) {
+	String[] newNames = newAbi.entryNames;
+	long[] newHashes = newAbi.hashes;
+	int index1 = 0, index2 = 0;
+	int length1 = this.entryNames.length, length2 = newNames.length;
+	while (index1 < length1 || index2 < length2) {
+		String changedName;
+		int compare = index1 == length1 ? 1 : index2 == length2 ? -1 : this.entryNames[index1].compareTo(newNames[index2]);
+		if (compare == 0) {
+			changedName = this.hashes[index1] == newHashes[index2] ? null : this.entryNames[index1];
+			index1++;
+			index2++;
+		} else if (compare < 0) {
+			changedName = this.entryNames[index1++]; // removed type
+		} else {
+			changedName = newNames[index2++]; // added type
+		}
+		if (changedName != null) {
+			if (isModuleInfo(changedName))
+				return false;
+			changedTypes.add(typeName(changedName));
+		}
+	}
+	return true;
+}
+
+private static boolean isModuleInfo(String entryName) {
+	return entryName.equals(IModule.MODULE_INFO) || entryName.endsWith('/' + IModule.MODULE_INFO);
+}
+
+/*
+ * Answers the qualified type name of the given entry name, removing the versioned folder of multi-release jars.
+ */
+private static String typeName(String entryName) {
+	if (entryName.startsWith(META_INF_VERSIONS)) {
+		int versionEnd = entryName.indexOf('/', META_INF_VERSIONS.length());
+		if (versionEnd > 0)
+			return entryName.substring(versionEnd + 1);
+	}
+	return entryName;
+}
+
+private static byte[] digest(byte[] bytes) {
+	try {
+		return MessageDigest.getInstance("SHA-1").digest(bytes); //$NON-NLS-1$
+	} catch (NoSuchAlgorithmException e) {
+		// required from every Java platform
+		throw new IllegalStateException(e);
+	}
+}
+
+private static long toLong(byte[] digest) {
+	long value = 0;
+	for (int i = 0; i < 8; i++)
+		value = (value << 8) | (digest[i] & 0xFF);
+	return value;
+}
+
+static JarAbi read(DataInputStream in) throws IOException {
+	long lastModified = in.readLong();
+	int length = in.readInt();
+	String[] names = new String[length];
+	long[] values = new long[length];
+	for (int i = 0; i < length; i++) {
+		names[i] = in.readUTF();
+		values[i] = in.readLong();
+	}
+	return new JarAbi(lastModified, names, values);
+}
+
+void write(DataOutputStream out) throws IOException {
+	out.writeLong(this.lastModified);
+	out.writeInt(this.entryNames.length);
+	for (int i = 0, l = this.entryNames.length; i < l; i++) {
+		out.writeUTF(this.entryNames[i]);
+		out.writeLong(this.hashes[i]);
+	}
+}
+
+@Override
+public String toString() {
+	return "JarAbi of " + this.entryNames.length + " class files modified at " + this.lastModified; //$NON-NLS-1$ //$NON-NLS-2$
+}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -16,9 +16,11 @@ package org.eclipse.jdt.internal.core.builder;
 
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
 import org.eclipse.jdt.core.*;
 import org.eclipse.jdt.core.compiler.*;
+import org.eclipse.jdt.internal.compiler.util.JarDirectoryCache;
 import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.core.*;
 import org.eclipse.jdt.internal.core.util.Messages;
@@ -38,6 +40,12 @@ NameEnvironment nameEnvironment;
 NameEnvironment testNameEnvironment;
 SimpleLookupTable binaryLocationsPerProject; // maps a project to its binary resources (output folders, class folders, zip/jar files)
 public State lastState;
+// the ABIs of the jars to record in the new state, keyed by their file name (see JarAbi)
+Map<String, JarAbi> jarAbis;
+// the external jars whose contents changed since the last state, keyed by their file name, value is {new jar, old jar}
+private Map<String, ClasspathJar[]> changedJars;
+// the types whose ABI changed in the external jars which changed, or null if the build path did not only change by these
+Set<String> changedJarTypes;
 BuildNotifier notifier;
 char[][] extraResourceFileFilters;
 String[] extraResourceFolderFilters;
@@ -46,6 +54,12 @@ public static final String SOURCE_ID = "JDT"; //$NON-NLS-1$
 public static boolean DEBUG = false;
 public static boolean SHOW_STATS = false;
 
+/**
+ * Name of the system property enabling the parallel builds of the Java projects (see {@link #getRule(int, Map)}).
+ */
+public static final String PARALLEL_BUILDS_PROPERTY = "org.eclipse.jdt.core.builder.parallel"; //$NON-NLS-1$
+public static boolean PARALLEL_BUILDS = Boolean.getBoolean(PARALLEL_BUILDS_PROPERTY);
+
 /**
  * A list of project names that have been built.
  * This list is used to reset the JavaModel.existingExternalFiles cache when a build cycle begins
@@ -104,6 +118,8 @@ public static void buildStarting() {
  */
 public static void buildFinished() {
 	BuildNotifier.resetProblemCounters();
+	// the jars read during the build stay cached, but must not be kept open between builds
+	JarDirectoryCache.getDefault().closeIdleFiles();
 }
 
 public static void removeProblemsFor(IResource resource) {
@@ -196,8 +212,8 @@ protected IProject[] build(int kind, Map ignored, IProgressMonitor monitor) thro
 						if (DEBUG)
 							System.out.println("JavaBuilder: Performing full build since deltas are missing after incremental request"); //$NON-NLS-1$
 						buildAll();
-					} else if (deltas.elementSize > 0) {
-						buildDeltas(deltas);
+					} else if (deltas.elementSize > 0 || this.changedJarTypes != null) {
+						buildDeltas(deltas); // also records the new jars when their ABI did not change
 					} else if (DEBUG) {
 						System.out.println("JavaBuilder: Nothing to build since deltas were empty"); //$NON-NLS-1$
 					}
@@ -251,6 +267,31 @@ protected IProject[] build(int kind, Map ignored, IProgressMonitor monitor) thro
 	return requiredProjects;
 }
 
+/**
+ * Returns the project being built when parallel builds are enabled, so that the workspace can build
+ * at the same time the Java projects which do not require each other (provided the workspace allows
+ * concurrent builds, see <code>IWorkspaceDescription#setMaxConcurrentBuilds(int)</code>).
+ * <p>
+ * The workspace only builds a project once the projects it references are built, and the references
+ * of a Java project include the projects on its resolved classpath (see {@link DynamicProjectReferences}).
+ * Each build uses its own {@link NameEnvironment}, and the caches shared by the builds (the contents
+ * of the jars, the interned names of the references...) are safe for concurrent use.
+ * </p><p>
+ * A project on a classpath cycle is still built with the whole workspace locked, since the projects
+ * of the cycle are built repeatedly until their structural changes are propagated.
+ * </p>
+ */
+@Override
+public ISchedulingRule getRule(int kind, Map<String, String> args) {
+	if (!PARALLEL_BUILDS)
+		return super.getRule(kind, args);
+	IProject project = getProject();
+	IJavaProject javaProj = JavaCore.create(project);
+	if (javaProj instanceof JavaProject && ((JavaProject) javaProj).hasCycleMarker())
+		return super.getRule(kind, args);
+	return project;
+}
+
 private void buildAll() {
 	this.notifier.checkCancel();
 	this.notifier.subTask(Messages.bind(Messages.build_preparingBuild, this.currentProject.getName()));
@@ -352,6 +393,9 @@ private void cleanup() {
 	}
 	this.binaryLocationsPerProject = null;
 	this.lastState = null;
+	this.jarAbis = null;
+	this.changedJars = null;
+	this.changedJarTypes = null;
 	this.notifier = null;
 	this.extraResourceFileFilters = null;
 	this.extraResourceFolderFilters = null;
@@ -499,7 +543,53 @@ boolean hasBuildpathErrors() throws CoreException {
 }
 
 private boolean hasClasspathChanged() {
-	return hasClasspathChanged(CompilationGroup.MAIN) || hasClasspathChanged(CompilationGroup.TEST);	
+	this.jarAbis = new HashMap<>(this.lastState.jarAbis);
+	this.changedJars = new LinkedHashMap<>();
+	boolean hasChanged = hasClasspathChanged(CompilationGroup.MAIN) || hasClasspathChanged(CompilationGroup.TEST);
+	if (this.changedJars.isEmpty())
+		return hasChanged;
+
+	// the ABIs of the changed jars are computed even if the build path changed, to be compared with the next time
+	Set<String> changedTypes = new HashSet<>();
+	boolean isTracked = true;
+	for (ClasspathJar[] jars : this.changedJars.values())
+		isTracked &= addJarAbiChanges(jars[0], jars[1].lastModified(), changedTypes);
+	if (hasChanged || !isTracked)
+		return true;
+	if (DEBUG)
+		System.out.println("JavaBuilder: Found jar files with changed contents, their ABI changed for " + changedTypes); //$NON-NLS-1$
+	this.changedJarTypes = changedTypes;
+	return false;
+}
+
+/*
+ * Adds to the given set the types whose ABI changed in the given jar since the last build, and records its new ABI.
+ * The previous modification time of the jar is checked against its last recorded ABI when it is known (i.e. non zero).
+ * Answers false if the changes cannot be tracked to types because its previous ABI is unknown, or its module
+ * descriptor changed.
+ */
+boolean addJarAbiChanges(ClasspathJar jar, long previousLastModified, Set<String> changedTypes) {
+	if (this.jarAbis == null) return false; // the last state is unknown
+	JarAbi previousAbi = this.jarAbis.get(jar.zipFilename);
+	JarAbi abi;
+	try {
+		this.notifier.subTask(Messages.bind(Messages.build_readingDelta, jar.zipFilename));
+		abi = JarAbi.compute(jar.zipFilename, jar.lastModified());
+	} catch (IOException e) {
+		if (DEBUG)
+			System.out.println("JavaBuilder: Could not compute the ABI of " + jar.zipFilename + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+		this.jarAbis.remove(jar.zipFilename);
+		return false;
+	} finally {
+		this.notifier.subTask(""); //$NON-NLS-1$
+	}
+	this.jarAbis.put(jar.zipFilename, abi);
+	if (previousAbi == null || (previousLastModified != 0 && previousAbi.lastModified != previousLastModified)) {
+		if (DEBUG)
+			System.out.println("JavaBuilder: Unknown previous ABI of " + jar.zipFilename); //$NON-NLS-1$
+		return false;
+	}
+	return previousAbi.addChangedTypes(abi, changedTypes);
 }
 
 private boolean hasClasspathChanged(CompilationGroup compilationGroup) {
@@ -558,6 +648,14 @@ private boolean hasClasspathChanged(CompilationGroup compilationGroup) {
 	oldLength = oldBinaryLocations.length;
 	for (n = o = 0; n < newLength && o < oldLength; n++, o++) {
 		if (newBinaryLocations[n].equals(oldBinaryLocations[o])) continue;
+		if (newBinaryLocations[n] instanceof ClasspathJar && oldBinaryLocations[o] instanceof ClasspathJar) {
+			ClasspathJar newJar = (ClasspathJar) newBinaryLocations[n];
+			if (newJar.isSameEntry((ClasspathJar) oldBinaryLocations[o])) {
+				// only the contents of the jar changed, see if its ABI changed
+				this.changedJars.put(newJar.zipFilename, new ClasspathJar[] {newJar, (ClasspathJar) oldBinaryLocations[o]});
+				continue;
+			}
+		}
 		if (DEBUG) {
 			System.out.println("JavaBuilder: New location: " + newBinaryLocations[n] + "\n!= old location: " + oldBinaryLocations[o]); //$NON-NLS-1$ //$NON-NLS-2$
 			printLocations(newBinaryLocations, oldBinaryLocations);
@@ -619,10 +717,12 @@ private int initializeBuilder(int kind, boolean forBuild) throws CoreException {
 
 		// Flush the existing external files cache if this is the beginning of a build cycle
 		String projectName = this.currentProject.getName();
-		if (builtProjects == null || builtProjects.contains(projectName)) {
-			builtProjects = new LinkedHashSet();
+		synchronized (JavaBuilder.class) { // projects can be built in parallel
+			if (builtProjects == null || builtProjects.contains(projectName)) {
+				builtProjects = new LinkedHashSet();
+			}
+			builtProjects.add(projectName);
 		}
-		builtProjects.add(projectName);
 	}
 
 	this.binaryLocationsPerProject = new SimpleLookupTable(3);
@@ -785,6 +885,8 @@ private void printLocations(ClasspathLocation[] newLocations, ClasspathLocation[
 }
 
 private void recordNewState(State state) {
+	if (this.jarAbis != null)
+		state.recordJarAbis(this.jarAbis);
 	Object[] keyTable = this.binaryLocationsPerProject.keyTable;
 	for (int i = 0, l = keyTable.length; i < l; i++) {
 		IProject prereqProject = (IProject) keyTable[i];
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -26,7 +26,7 @@ private ProblemFactory(Locale locale) {
 	super(locale);
 }
 
-public static ProblemFactory getProblemFactory(Locale locale) {
+public static synchronized ProblemFactory getProblemFactory(Locale locale) {
 	ProblemFactory factory = (ProblemFactory) factories.get(locale);
 	if (factory == null)
 		factories.put(locale, factory = new ProblemFactory(locale));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -24,11 +24,17 @@ public class ReferenceCollection {
 char[][][] qualifiedNameReferences; // contains no simple names as in just 'a' which is kept in simpleNameReferences instead
 char[][] simpleNameReferences;
 char[][] rootReferences;
+char[][] superTypeReferences; // the names of the outermost types of the supertypes, null if unknown
 
 protected ReferenceCollection(char[][][] qualifiedNameReferences, char[][] simpleNameReferences, char[][] rootReferences) {
+	this(qualifiedNameReferences, simpleNameReferences, rootReferences, null);
+}
+
+protected ReferenceCollection(char[][][] qualifiedNameReferences, char[][] simpleNameReferences, char[][] rootReferences, char[][] superTypeReferences) {
 	this.qualifiedNameReferences = internQualifiedNames(qualifiedNameReferences, false);
 	this.simpleNameReferences = internSimpleNames(simpleNameReferences, true);
 	this.rootReferences = internSimpleNames(rootReferences, false);
+	this.superTypeReferences = superTypeReferences == null ? null : internSimpleNames(superTypeReferences, false);
 }
 
 public void addDependencies(String[] typeNameDependencies) {
@@ -72,6 +78,17 @@ public boolean includes(char[] simpleName) {
 	return false;
 }
 
+/*
+ * Answers whether one of the types of this collection may have a supertype whose outermost type
+ * has the given interned name. Answers true if the supertypes were not recorded.
+ */
+public boolean includesSuperType(char[] outermostTypeName) {
+	if (this.superTypeReferences == null) return true;
+	for (int i = 0, l = this.superTypeReferences.length; i < l; i++)
+		if (outermostTypeName == this.superTypeReferences[i]) return true;
+	return false;
+}
+
 public boolean includes(char[][] qualifiedName) {
 	for (int i = 0, l = this.qualifiedNameReferences.length; i < l; i++)
 		if (qualifiedName == this.qualifiedNameReferences[i]) return true;
@@ -189,6 +206,7 @@ static final char[][][] EmptyQualifiedNames = new char[0][][];
 static final char[][] EmptySimpleNames = CharOperation.NO_CHAR_CHAR;
 
 // each array contains qualified char[][], one for size 2, 3, 4, 5, 6, 7 & the rest
+// the sets are shared by the builds of all the projects, and are synchronized on themselves
 static final int MaxQualifiedNames = 7;
 static QualifiedNameSet[] InternedQualifiedNames = new QualifiedNameSet[MaxQualifiedNames];
 // each array contains simple char[], one for size 1 to 29 & the rest
@@ -259,7 +277,9 @@ public static char[][][] internQualifiedNames(char[][][] qualifiedNames, boolean
 		// InternedQualifiedNames[6] is for size 7
 		QualifiedNameSet internedNames = InternedQualifiedNames[qLength <= MaxQualifiedNames ? qLength - 1 : 0];
 		qualifiedName = internSimpleNames(qualifiedName, false);
-		keepers[index++] = internedNames.add(qualifiedName);
+		synchronized (internedNames) {
+			keepers[index++] = internedNames.add(qualifiedName);
+		}
 	}
 	if (length > index) {
 		if (index == 0) return EmptyQualifiedNames;
@@ -327,7 +347,9 @@ public static char[][] internSimpleNames(char[][] simpleNames, boolean removeWel
 		// InternedSimpleNames[1] is for size 1...
 		// InternedSimpleNames[29] is for size 29
 		NameSet internedNames = InternedSimpleNames[sLength < MaxSimpleNames ? sLength : 0];
-		keepers[index++] = internedNames.add(name);
+		synchronized (internedNames) {
+			keepers[index++] = internedNames.add(name);
+		}
 	}
 	if (length > index) {
 		if (index == 0) return EmptySimpleNames;
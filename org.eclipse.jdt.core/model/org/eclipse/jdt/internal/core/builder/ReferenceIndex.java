@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.core.builder;
+
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * An inverted index of the reference collections of a {@link State}, from the interned
+ * simple and qualified names to the type locators whose collection references them.
+ * <p>
+ * The index only answers candidates: a type locator is never removed from the index, so it can be
+ * answered for a name it no longer references (or for a type locator which no longer exists).
+ * Candidates must thus be checked against their collection with
+ * {@link ReferenceCollection#includes(char[][][], char[][], char[][])}.
+ * </p>
+ */
+class ReferenceIndex {
+
+	private static class Locators {
+		String[] values = new String[2];
+		int size;
+
+		Locators() {
+			// not private, so that the index creates it without a synthetic accessor
+		}
+
+		void add(String typeLocator) {
+			if (this.size > 0 && this.values[this.size - 1] == typeLocator)
+				return; // already added for this collection
+			if (this.size == this.values.length)
+				System.arraycopy(this.values, 0, this.values = new String[this.size * 2], 0, this.size);
+			this.values[this.size++] = typeLocator;
+		}
+	}
+
+	// keys are interned char[] (simple names) and char[][] (qualified names), compared by identity
+	private final IdentityHashMap<Object, Locators> locators = new IdentityHashMap<>();
+	private int size;
+	private int staleSize;
+
+void add(String typeLocator, ReferenceCollection collection) {
+	char[][] simpleNames = collection.simpleNameReferences;
+	for (int i = 0, l = simpleNames.length; i < l; i++)
+		add(simpleNames[i], typeLocator);
+	char[][][] qualifiedNames = collection.qualifiedNameReferences;
+	for (int i = 0, l = qualifiedNames.length; i < l; i++)
+		add(qualifiedNames[i], typeLocator);
+}
+
+/*
+ * Returns the number of entries added to the index for the given collection.
+ */
+static int sizeOf(ReferenceCollection collection) {
+	return collection.simpleNameReferences.length + collection.qualifiedNameReferences.length;
+}
+
+private void add(Object name, String typeLocator) {
+	Locators value = this.locators.get(name);
+	if (value == null)
+		this.locators.put(name, value = new Locators());
+	value.add(typeLocator);
+	this.size++;
+}
+
+/*
+ * Records that the given number of entries of the index are now useless,
+ * since their type locator was removed or recorded again.
+ */
+void addStaleEntries(int count) {
+	this.staleSize += count;
+}
+
+/*
+ * Returns true if more than half of the index is useless, and it should be rebuilt.
+ */
+boolean isStale() {
+	return this.staleSize * 2 > this.size;
+}
+
+/*
+ * Adds to the given set the type locators whose collection may include the given names
+ * (see ReferenceCollection#includes(char[][][], char[][], char[][])).
+ * Returns false if any type locator may include them, i.e. when both arrays are null because they
+ * contained a well known name.
+ */
+boolean addCandidates(char[][][] qualifiedNames, char[][] simpleNames, Set<String> candidates) {
+	if (simpleNames != null) {
+		// any matching collection must include one of the simple names
+		for (int i = 0, l = simpleNames.length; i < l; i++)
+			addCandidates(simpleNames[i], candidates);
+		return true;
+	}
+	if (qualifiedNames != null) {
+		for (int i = 0, l = qualifiedNames.length; i < l; i++) {
+			char[][] qualifiedName = qualifiedNames[i];
+			addCandidates(qualifiedName.length == 1 ? qualifiedName[0] : qualifiedName, candidates);
+		}
+		return true;
+	}
+	return false;
+}
+
+private void addCandidates(Object name, Set<String> candidates) {
+	Locators value = this.locators.get(name);
+	if (value != null)
+		for (int i = 0, l = value.size; i < l; i++)
+			candidates.add(value.values[i]);
+}
+}
@@ -31,6 +31,7 @@ import java.io.*;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class State {
@@ -41,11 +42,19 @@ public ClasspathMultiDirectory[] sourceLocations;
 public ClasspathMultiDirectory[] testSourceLocations;
 ClasspathLocation[] binaryLocations;
 ClasspathLocation[] testBinaryLocations;
-// keyed by the project relative path of the type (i.e. "src1/p1/p2/A.java"), value is a ReferenceCollection or an AdditionalTypeCollection
+// keyed by the project relative path of the type (i.e. "src1/p1/p2/A.java"), value is a ReferenceCollection or an AdditionalTypeCollection,
+// or an EncodedReferences.Entry if it was not used since the state was read (see getReferenceCollection(String))
 SimpleLookupTable references;
+// the encoded reference collections of the state that was read
+EncodedReferences encodedReferences;
+// the inverted index of the references, built on demand and shared with the next states (see getReferenceIndex())
+private ReferenceIndex referenceIndex;
 // keyed by qualified type name "p1/p2/A", value is the project relative path which defines this type "src1/p1/p2/A.java"
 public SimpleLookupTable typeLocators;
 
+// keyed by the file name of the jars of the build path which changed since they were added, value is a JarAbi
+Map<String, JarAbi> jarAbis = Collections.emptyMap();
+
 int buildNumber;
 long lastStructuralBuildTime;
 SimpleLookupTable structuralBuildTimes;
@@ -56,7 +65,10 @@ private long previousStructuralBuildTime;
 private StringSet structurallyChangedTypes;
 public static int MaxStructurallyChangedTypes = 100; // keep track of ? structurally changed types, otherwise consider all to be changed
 
-public static final byte VERSION = 0x0022;
+public static final byte VERSION = 0x0025;
+
+// the number of candidate collections above which they are checked in parallel (see getAffectedReferences)
+static final int PARALLEL_CHECK_THRESHOLD = 1000;
 
 static final byte SOURCE_FOLDER = 1;
 static final byte BINARY_FOLDER = 2;
@@ -98,6 +110,9 @@ void copyFrom(State lastState) {
 	this.buildNumber = lastState.buildNumber + 1;
 	this.lastStructuralBuildTime = lastState.lastStructuralBuildTime;
 	this.structuralBuildTimes = lastState.structuralBuildTimes;
+	this.encodedReferences = lastState.encodedReferences;
+	this.referenceIndex = lastState.referenceIndex;
+	this.jarAbis = lastState.jarAbis;
 
 	try {
 		this.references = (SimpleLookupTable) lastState.references.clone();
@@ -119,16 +134,104 @@ void copyFrom(State lastState) {
 	}
 }
 public char[][] getDefinedTypeNamesFor(String typeLocator) {
-	Object c = this.references.get(typeLocator);
+	Object c = getReferenceCollection(typeLocator);
 	if (c instanceof AdditionalTypeCollection)
 		return ((AdditionalTypeCollection) c).definedTypeNames;
 	return null; // means only one type is defined with the same name as the file... saves space
 }
 
+/**
+ * Returns the table of references keyed by type locator. Use {@link #getReferenceCollection(int)}
+ * to get the collection stored at a given index of this table.
+ */
 public SimpleLookupTable getReferences() {
 	return this.references;
 }
 
+/**
+ * Returns the reference collection of the given type locator, or <code>null</code> if none.
+ * The collection is decoded if it was not used since the state was read.
+ */
+public ReferenceCollection getReferenceCollection(String typeLocator) {
+	Object value = this.references.get(typeLocator);
+	if (value instanceof EncodedReferences.Entry) {
+		ReferenceCollection collection = this.encodedReferences.decode((EncodedReferences.Entry) value);
+		this.references.put(typeLocator, collection);
+		return collection;
+	}
+	return (ReferenceCollection) value;
+}
+
+/**
+ * Returns the reference collection at the given index of the value table of {@link #getReferences()},
+ * or <code>null</code> if none. The collection is decoded if it was not used since the state was read.
+ */
+public ReferenceCollection getReferenceCollection(int index) {
+	Object[] valueTable = this.references.valueTable;
+	Object value = valueTable[index];
+	if (value instanceof EncodedReferences.Entry) {
+		ReferenceCollection collection = this.encodedReferences.decode((EncodedReferences.Entry) value);
+		valueTable[index] = collection;
+		return collection;
+	}
+	return (ReferenceCollection) value;
+}
+
+/*
+ * Returns the inverted index of the references of this state, building it if needed.
+ * All the reference collections are decoded once the index is built.
+ */
+ReferenceIndex getReferenceIndex() {
+	if (this.referenceIndex == null) {
+		ReferenceIndex index = new ReferenceIndex();
+		Object[] keyTable = this.references.keyTable;
+		for (int i = 0, l = keyTable.length; i < l; i++)
+			if (keyTable[i] != null)
+				index.add((String) keyTable[i], getReferenceCollection(i));
+		this.referenceIndex = index;
+	}
+	return this.referenceIndex;
+}
+
+/*
+ * Returns the indexes in the key table of getReferences() of the type locators whose collection includes
+ * the given names (see ReferenceCollection#includes(char[][][], char[][], char[][])), in the order of the table.
+ * Only the given type locators are considered, unless the set is null.
+ */
+int[] getAffectedReferences(char[][][] qualifiedNames, char[][] simpleNames, char[][] rootNames, Set<String> typeLocatorsToCheck) {
+	ReferenceIndex index = getReferenceIndex();
+	int[] candidates;
+	int count = 0;
+	Set<String> candidateLocators = new HashSet<>();
+	if (index.addCandidates(qualifiedNames, simpleNames, candidateLocators)) {
+		if (typeLocatorsToCheck != null)
+			candidateLocators.retainAll(typeLocatorsToCheck);
+		candidates = new int[candidateLocators.size()];
+		for (String typeLocator : candidateLocators) {
+			int i = this.references.indexOf(typeLocator);
+			if (i >= 0) // the index can answer type locators which were removed
+				candidates[count++] = i;
+		}
+		Arrays.sort(candidates, 0, count);
+	} else {
+		Object[] keyTable = this.references.keyTable;
+		candidates = new int[this.references.elementSize];
+		for (int i = 0, l = keyTable.length; i < l; i++)
+			if (keyTable[i] != null && (typeLocatorsToCheck == null || typeLocatorsToCheck.contains(keyTable[i])))
+				candidates[count++] = i;
+	}
+	// decode the candidates first since decoding updates the table of references
+	for (int i = 0; i < count; i++)
+		getReferenceCollection(candidates[i]);
+	IntStream stream = Arrays.stream(candidates, 0, count);
+	if (count > PARALLEL_CHECK_THRESHOLD)
+		stream = stream.parallel();
+	Object[] valueTable = this.references.valueTable;
+	return stream
+			.filter(i -> ((ReferenceCollection) valueTable[i]).includes(qualifiedNames, simpleNames, rootNames))
+			.toArray();
+}
+
 StringSet getStructurallyChangedTypes(State prereqState) {
 	if (prereqState != null && prereqState.previousStructuralBuildTime > 0) {
 		Object o = this.structuralBuildTimes.get(prereqState.javaProjectName);
@@ -182,16 +285,60 @@ boolean isSourceFolderEmpty(IContainer sourceFolder) {
 	return true;
 }
 
-void record(String typeLocator, char[][][] qualifiedRefs, char[][] simpleRefs, char[][] rootRefs, char[] mainTypeName, ArrayList typeNames) {
+void record(String typeLocator, char[][][] qualifiedRefs, char[][] simpleRefs, char[][] rootRefs, char[][] superTypeRefs, char[] mainTypeName, ArrayList typeNames) {
+	ReferenceCollection collection;
 	if (typeNames.size() == 1 && CharOperation.equals(mainTypeName, (char[]) typeNames.get(0))) {
-		this.references.put(typeLocator, new ReferenceCollection(qualifiedRefs, simpleRefs, rootRefs));
+		collection = new ReferenceCollection(qualifiedRefs, simpleRefs, rootRefs, superTypeRefs);
 	} else {
 		char[][] definedTypeNames = new char[typeNames.size()][]; // can be empty when no types are defined
 		typeNames.toArray(definedTypeNames);
-		this.references.put(typeLocator, new AdditionalTypeCollection(definedTypeNames, qualifiedRefs, simpleRefs, rootRefs));
+		collection = new AdditionalTypeCollection(definedTypeNames, qualifiedRefs, simpleRefs, rootRefs, superTypeRefs);
+	}
+	if (this.referenceIndex != null) {
+		if (this.references.containsKey(typeLocator))
+			this.referenceIndex.addStaleEntries(ReferenceIndex.sizeOf(collection)); // assume the references did not change much
+		this.referenceIndex.add(typeLocator, collection);
+		discardStaleReferenceIndex();
+	}
+	this.references.put(typeLocator, collection);
+}
+
+void recordDependencies(String typeLocator, String[] typeNameDependencies) {
+	ReferenceCollection collection = getReferenceCollection(typeLocator);
+	if (collection == null) return;
+
+	int size = ReferenceIndex.sizeOf(collection);
+	collection.addDependencies(typeNameDependencies);
+	if (this.referenceIndex != null) {
+		this.referenceIndex.addStaleEntries(size);
+		this.referenceIndex.add(typeLocator, collection);
+		discardStaleReferenceIndex();
 	}
 }
 
+private void discardStaleReferenceIndex() {
+	if (this.referenceIndex.isStale())
+		this.referenceIndex = null; // rebuilt from the current references on demand
+}
+
+/*
+ * Records the given ABIs of the jars of the build path, ignoring those of the jars that are no longer on it.
+ */
+void recordJarAbis(Map<String, JarAbi> abis) {
+	Map<String, JarAbi> newAbis = new HashMap<>();
+	for (ClasspathLocation[] locations : new ClasspathLocation[][] {this.binaryLocations, this.testBinaryLocations}) {
+		for (int i = 0, l = locations.length; i < l; i++) {
+			if (locations[i] instanceof ClasspathJar) {
+				String zipFilename = ((ClasspathJar) locations[i]).zipFilename;
+				JarAbi abi = abis.get(zipFilename);
+				if (abi != null)
+					newAbis.put(zipFilename, abi);
+			}
+		}
+	}
+	this.jarAbis = newAbis.isEmpty() ? Collections.emptyMap() : newAbis;
+}
+
 void recordLocatorForType(String qualifiedTypeName, String typeLocator) {
 	this.knownPackageNames = null;
 	// in the common case, the qualifiedTypeName is a substring of the typeLocator so share the char[] by using String.substring()
@@ -209,7 +356,11 @@ void recordStructuralDependency(IProject prereqProject, State prereqState) {
 
 void removeLocator(String typeLocatorToRemove) {
 	this.knownPackageNames = null;
-	this.references.removeKey(typeLocatorToRemove);
+	Object removed = this.references.removeKey(typeLocatorToRemove);
+	if (this.referenceIndex != null && removed instanceof ReferenceCollection) {
+		this.referenceIndex.addStaleEntries(ReferenceIndex.sizeOf((ReferenceCollection) removed));
+		discardStaleReferenceIndex();
+	}
 	this.typeLocators.removeValue(typeLocatorToRemove);
 }
 
@@ -399,37 +550,21 @@ static State read(IProject project, DataInputStream in) throws IOException, Core
 	}
 	internedQualifiedNames = ReferenceCollection.internQualifiedNames(internedQualifiedNames, false);
 
+	// the reference collections are decoded on demand, see getReferenceCollection(String)
 	newState.references = new SimpleLookupTable(length = in.readInt());
 	for (int i = 0; i < length; i++) {
 		String typeLocator = internedTypeLocators[in.readInt()];
-		ReferenceCollection collection = null;
-		switch (in.readByte()) {
-			case 1 :
-				char[][] additionalTypeNames = readNames(in);
-				char[][][] qualifiedNames = new char[in.readInt()][][];
-				for (int j = 0, m = qualifiedNames.length; j < m; j++)
-					qualifiedNames[j] = internedQualifiedNames[in.readInt()];
-				char[][] simpleNames = new char[in.readInt()][];
-				for (int j = 0, m = simpleNames.length; j < m; j++)
-					simpleNames[j] = internedSimpleNames[in.readInt()];
-				char[][] rootNames = new char[in.readInt()][];
-				for (int j = 0, m = rootNames.length; j < m; j++)
-					rootNames[j] = internedRootNames[in.readInt()];
-				collection = new AdditionalTypeCollection(additionalTypeNames, qualifiedNames, simpleNames, rootNames);
-				break;
-			case 2 :
-				char[][][] qNames = new char[in.readInt()][][];
-				for (int j = 0, m = qNames.length; j < m; j++)
-					qNames[j] = internedQualifiedNames[in.readInt()];
-				char[][] sNames = new char[in.readInt()][];
-				for (int j = 0, m = sNames.length; j < m; j++)
-					sNames[j] = internedSimpleNames[in.readInt()];
-				char[][] rNames = new char[in.readInt()][];
-				for (int j = 0, m = rNames.length; j < m; j++)
-					rNames[j] = internedRootNames[in.readInt()];
-				collection = new ReferenceCollection(qNames, sNames, rNames);
-		}
-		newState.references.put(typeLocator, collection);
+		newState.references.put(typeLocator, new EncodedReferences.Entry(in.readInt(), in.readInt()));
+	}
+	byte[] encodedReferences = new byte[in.readInt()];
+	in.readFully(encodedReferences);
+	newState.encodedReferences = new EncodedReferences(internedRootNames, internedSimpleNames, internedQualifiedNames, encodedReferences);
+
+	length = in.readInt();
+	if (length > 0) {
+		newState.jarAbis = new HashMap<>(length);
+		for (int i = 0; i < length; i++)
+			newState.jarAbis.put(in.readUTF(), JarAbi.read(in));
 	}
 	if (JavaBuilder.DEBUG)
 		System.out.println("Successfully read state for " + newState.javaProjectName); //$NON-NLS-1$
@@ -768,13 +903,38 @@ void write(DataOutputStream out) throws IOException {
  * char[][]	Interned root names
  * char[][][]	Interned qualified names
  * char[][]	Interned simple names
+ *
+ * If most reference collections were not used since the state was read, the interned names of the read state
+ * keep their ids so that the encoding of these collections can be copied as is, and the names of the other
+ * collections are appended.
  */
+	valueTable = this.references.valueTable.clone(); // collections may be decoded concurrently in the original table
+	EncodedReferences encoded = this.encodedReferences;
+	if (encoded != null) {
+		int encodedCount = 0;
+		for (int i = 0, l = valueTable.length; i < l; i++)
+			if (valueTable[i] instanceof EncodedReferences.Entry)
+				encodedCount++;
+		if (encodedCount * 2 < this.references.elementSize) {
+			for (int i = 0, l = valueTable.length; i < l; i++)
+				if (valueTable[i] instanceof EncodedReferences.Entry)
+					valueTable[i] = encoded.decode((EncodedReferences.Entry) valueTable[i]);
+			encoded = null;
+		}
+	}
 	SimpleLookupTable internedRootNames = new SimpleLookupTable(3);
 	SimpleLookupTable internedQualifiedNames = new SimpleLookupTable(31);
 	SimpleLookupTable internedSimpleNames = new SimpleLookupTable(31);
-	valueTable = this.references.valueTable;
+	if (encoded != null) {
+		for (int i = 0, l = encoded.rootNames.length; i < l; i++)
+			internedRootNames.put(encoded.rootNames[i], Integer.valueOf(i));
+		for (int i = 0, l = encoded.simpleNames.length; i < l; i++)
+			internedSimpleNames.put(encoded.simpleNames[i], Integer.valueOf(i));
+		for (int i = 0, l = encoded.qualifiedNames.length; i < l; i++)
+			internedQualifiedNames.put(encoded.qualifiedNames[i], Integer.valueOf(i));
+	}
 	for (int i = 0, l = valueTable.length; i < l; i++) {
-		if (valueTable[i] != null) {
+		if (valueTable[i] instanceof ReferenceCollection) {
 			ReferenceCollection collection = (ReferenceCollection) valueTable[i];
 			char[][] rNames = collection.rootReferences;
 			for (int j = 0, m = rNames.length; j < m; j++) {
@@ -800,6 +960,14 @@ void write(DataOutputStream out) throws IOException {
 				if (!internedSimpleNames.containsKey(sName)) // remember the names have been interned
 					internedSimpleNames.put(sName, Integer.valueOf(internedSimpleNames.elementSize));
 			}
+			char[][] superNames = collection.superTypeReferences;
+			if (superNames != null) {
+				for (int j = 0, m = superNames.length; j < m; j++) {
+					char[] sName = superNames[j];
+					if (!internedSimpleNames.containsKey(sName)) // remember the names have been interned
+						internedSimpleNames.put(sName, Integer.valueOf(internedSimpleNames.elementSize));
+				}
+			}
 		}
 	}
 	char[][] internedArray = new char[internedRootNames.elementSize][];
@@ -847,8 +1015,11 @@ void write(DataOutputStream out) throws IOException {
 /*
  * References table
  * int		interned locator id
- * ReferenceCollection
+ * int		offset of the encoded ReferenceCollection
+ * int		length of the encoded ReferenceCollection
+ * byte[]	encoded ReferenceCollections (see EncodedReferences)
 */
+	ByteArrayOutputStream referenceBytes = new ByteArrayOutputStream();
 	out.writeInt(length = this.references.elementSize);
 	if (length > 0) {
 		keyTable = this.references.keyTable;
@@ -857,40 +1028,32 @@ void write(DataOutputStream out) throws IOException {
 				length--;
 				Integer index = (Integer) internedTypeLocators.get(keyTable[i]);
 				out.writeInt(index.intValue());
-				ReferenceCollection collection = (ReferenceCollection) valueTable[i];
-				if (collection instanceof AdditionalTypeCollection) {
-					out.writeByte(1);
-					AdditionalTypeCollection atc = (AdditionalTypeCollection) collection;
-					writeNames(atc.definedTypeNames, out);
-				} else {
-					out.writeByte(2);
-				}
-				char[][][] qNames = collection.qualifiedNameReferences;
-				int qLength = qNames.length;
-				out.writeInt(qLength);
-				for (int j = 0; j < qLength; j++) {
-					index = (Integer) internedQualifiedNames.get(qNames[j]);
-					out.writeInt(index.intValue());
-				}
-				char[][] sNames = collection.simpleNameReferences;
-				int sLength = sNames.length;
-				out.writeInt(sLength);
-				for (int j = 0; j < sLength; j++) {
-					index = (Integer) internedSimpleNames.get(sNames[j]);
-					out.writeInt(index.intValue());
-				}
-				char[][] rNames = collection.rootReferences;
-				int rLength = rNames.length;
-				out.writeInt(rLength);
-				for (int j = 0; j < rLength; j++) {
-					index = (Integer) internedRootNames.get(rNames[j]);
-					out.writeInt(index.intValue());
-				}
+				int offset = referenceBytes.size();
+				if (valueTable[i] instanceof EncodedReferences.Entry)
+					encoded.copy((EncodedReferences.Entry) valueTable[i], referenceBytes);
+				else
+					EncodedReferences.encode((ReferenceCollection) valueTable[i], internedQualifiedNames, internedSimpleNames, internedRootNames, referenceBytes);
+				out.writeInt(offset);
+				out.writeInt(referenceBytes.size() - offset);
 			}
 		}
 		if (JavaBuilder.DEBUG && length != 0)
 			System.out.println("references table is inconsistent"); //$NON-NLS-1$
 	}
+	out.writeInt(referenceBytes.size());
+	referenceBytes.writeTo(out);
+
+/*
+ * Jar ABIs
+ * int		number of jars
+ * String	jar file name
+ * JarAbi	ABI of the jar (see JarAbi.write(DataOutputStream))
+*/
+	out.writeInt(this.jarAbis.size());
+	for (Map.Entry<String, JarAbi> entry : this.jarAbis.entrySet()) {
+		out.writeUTF(entry.getKey());
+		entry.getValue().write(out);
+	}
 }
 
 private void writeName(char[] name, DataOutputStream out) throws IOException {
@@ -974,11 +1137,10 @@ void dump() {
 		System.out.print(" <empty>");
 	} else {
 		Object[] keyTable = references.keyTable;
-		Object[] valueTable = references.valueTable;
 		for (int i = 0, l = keyTable.length; i < l; i++) {
 			if (keyTable[i] != null) {
 				System.out.print("\n\t\t" + keyTable[i].toString());
-				ReferenceCollection c = (ReferenceCollection) valueTable[i];
+				ReferenceCollection c = getReferenceCollection(i); // decoded if the state was read
 				char[][][] qRefs = c.qualifiedNameReferences;
 				System.out.print("\n\t\t\tqualified:");
 				if (qRefs.length == 0)
@@ -2394,6 +2394,7 @@ public void findIndexMatches(Index index, IndexQueryRequestor requestor, SearchP
 		SearchPattern decodedResult = pattern.getBlankPattern();
 		String containerPath = index.containerPath;
 		char separator = index.separator;
+		boolean keepsRecords = requestor.keepsIndexRecords();
 		for (int i = 0, l = entries.length; i < l; i++) {
 			if (monitor != null && monitor.isCanceled()) throw new OperationCanceledException();
 
@@ -2404,6 +2405,8 @@ public void findIndexMatches(Index index, IndexQueryRequestor requestor, SearchP
 				String[] names = entry.getDocumentNames(index);
 				for (int j = 0, n = names.length; j < n; j++)
 					acceptMatch(names[j], containerPath, separator, decodedResult, requestor, participant, scope, monitor);
+				if (keepsRecords)
+					decodedResult = pattern.getBlankPattern();
 			}
 		}
 	} finally {
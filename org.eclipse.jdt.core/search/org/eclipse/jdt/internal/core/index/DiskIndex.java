@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -14,6 +14,10 @@
 package org.eclipse.jdt.internal.core.index;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
@@ -42,6 +46,10 @@ private String[][] cachedChunks; // decompressed chunks of document names
 private HashtableOfObject categoryTables; // category name -> HashtableOfObject(words -> int[] of document #'s) or offset if not read yet
 private char[] cachedCategoryName;
 
+private MappedByteBuffer mappedFile; // the index file, mapped by the first query
+private boolean cannotMapFile;
+private HashtableOfObject mappedWordOffsets; // category name -> int[] of the offsets of its words in the mapped file, in word order
+
 private static final int DEFAULT_BUFFER_SIZE = 2048;
 private static int BUFFER_READ_SIZE = DEFAULT_BUFFER_SIZE;
 private static final int BUFFER_WRITE_SIZE = DEFAULT_BUFFER_SIZE;
@@ -62,6 +70,15 @@ private static final int CHUNK_SIZE = 100;
 private static final SimpleSetOfCharArray INTERNED_CATEGORY_NAMES = new SimpleSetOfCharArray(20);
 private static final String TMP_EXT = ".tmp"; //$NON-NLS-1$
 
+/*
+ * Index files are never modified once written (a merge writes a new file), so queries can read them
+ * through a memory mapped buffer rather than loading category tables on the heap.
+ * On Windows, a mapped file cannot be deleted until its buffer is garbage collected, which would prevent
+ * merges from replacing the index file. Read when an index file is first queried.
+ */
+public static boolean MAP_INDEX_FILES = File.separatorChar == '/' && !"false".equals(System.getProperty("jdt.search.mapIndexFiles")); //$NON-NLS-1$ //$NON-NLS-2$
+private static final int LARGE_ARRAY_SIZE = 256;
+
 static class IntList {
 
 int size;
@@ -167,6 +184,15 @@ HashtableOfObject addQueryResults(char[][] categories, char[] key, int matchRule
 	// assumes sender has called startQuery() & will call stopQuery() when finished
 	if (this.categoryOffsets == null) return null; // file is empty
 
+	ByteBuffer mapped = getMappedFile();
+	if (mapped != null) {
+		try {
+			return addMappedQueryResults(mapped, categories, key, matchRule, memoryIndex);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Index file is corrupted " + this.indexLocation, e); //$NON-NLS-1$
+		}
+	}
+
 	HashtableOfObject results = null; // initialized if needed
 	
 	// No need to check the results table for duplicates while processing the
@@ -249,6 +275,46 @@ HashtableOfObject addQueryResults(char[][] categories, char[] key, int matchRule
 
 	return results;
 }
+/*
+ * Answers the same results as addQueryResults() from the mapped file: the words of the category tables
+ * are sorted, so exact and prefix matches binary search them, and the document numbers of the matching
+ * words are only decoded when the result asks for them.
+ */
+private HashtableOfObject addMappedQueryResults(ByteBuffer mapped, char[][] categories, char[] key, int matchRule, MemoryIndex memoryIndex) throws IOException {
+	HashtableOfObject results = null; // initialized if needed
+	boolean prevResults = false;
+	Pattern pattern = key != null && matchRule == SearchPattern.R_REGEXP_MATCH ? Pattern.compile(new String(key)) : null;
+	for (int i = 0, l = categories.length; i < l; i++) {
+		int[] wordOffsets = readMappedWordOffsets(mapped, categories[i]);
+		if (wordOffsets != null) {
+			if (key == null) {
+				for (int j = 0, m = wordOffsets.length; j < m; j++)
+					results = addQueryResult(results, readMappedChars(mapped, wordOffsets[j]), readMappedDocuments(mapped, wordOffsets[j]), memoryIndex, prevResults);
+			} else if (matchRule == (SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE)) {
+				int index = searchMappedWord(mapped, wordOffsets, key);
+				if (index >= 0)
+					results = addQueryResult(results, key, readMappedDocuments(mapped, wordOffsets[index]), memoryIndex, prevResults);
+			} else if (matchRule == (SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE)) {
+				int index = searchMappedWord(mapped, wordOffsets, key);
+				for (int j = index < 0 ? -(index + 1) : index, m = wordOffsets.length; j < m; j++) {
+					if (compareMappedWord(mapped, wordOffsets[j], key, true) != 0)
+						break;
+					results = addQueryResult(results, readMappedChars(mapped, wordOffsets[j]), readMappedDocuments(mapped, wordOffsets[j]), memoryIndex, prevResults);
+				}
+			} else {
+				for (int j = 0, m = wordOffsets.length; j < m; j++) {
+					char[] word = readMappedChars(mapped, wordOffsets[j]);
+					if (pattern != null ? pattern.matcher(new String(word)).matches() : Index.isMatch(key, word, matchRule))
+						results = addQueryResult(results, word, readMappedDocuments(mapped, wordOffsets[j]), memoryIndex, prevResults);
+				}
+			}
+		}
+		prevResults = results != null;
+	}
+	if (key == null && results != null && this.cachedChunks == null)
+		cacheDocumentNames();
+	return results;
+}
 private void cacheDocumentNames() throws IOException {
 	// will need all document names so get them now
 	this.cachedChunks = new String[this.numberOfChunks][];
@@ -274,6 +340,40 @@ private void cacheDocumentNames() throws IOException {
 		BUFFER_READ_SIZE = DEFAULT_BUFFER_SIZE;
 	}
 }
+/*
+ * Compares the word written at the given offset of the mapped file with the given key, or with the
+ * beginning of the word only when prefix is set.
+ */
+private static int compareMappedWord(ByteBuffer mapped, int offset, char[] key, boolean prefix) {
+	int length = mapped.getShort(offset) & 0xFFFF;
+	int keyLength = key.length;
+	int position = offset + 2;
+	for (int i = 0, max = length < keyLength ? length : keyLength; i < max; i++) {
+		int b = mapped.get(position) & 0xFF;
+		char c = readMappedChar(mapped, position);
+		if (c != key[i])
+			return c - key[i];
+		position += b < 0x80 ? 1 : b < 0xE0 ? 2 : 3;
+	}
+	if (prefix && length >= keyLength)
+		return 0;
+	return length - keyLength;
+}
+private static int compareMappedWords(ByteBuffer mapped, int offset1, int offset2) {
+	int length1 = mapped.getShort(offset1) & 0xFFFF;
+	int length2 = mapped.getShort(offset2) & 0xFFFF;
+	int position1 = offset1 + 2, position2 = offset2 + 2;
+	for (int i = 0, max = length1 < length2 ? length1 : length2; i < max; i++) {
+		char c1 = readMappedChar(mapped, position1);
+		char c2 = readMappedChar(mapped, position2);
+		if (c1 != c2)
+			return c1 - c2;
+		int b1 = mapped.get(position1) & 0xFF, b2 = mapped.get(position2) & 0xFF;
+		position1 += b1 < 0x80 ? 1 : b1 < 0xE0 ? 2 : 3;
+		position2 += b2 < 0x80 ? 1 : b2 < 0xE0 ? 2 : 3;
+	}
+	return length1 - length2;
+}
 private String[] computeDocumentNames(String[] onDiskNames, int[] positions, SimpleLookupTable indexedDocuments, MemoryIndex memoryIndex) {
 	int onDiskLength = onDiskNames.length;
 	Object[] docNames = memoryIndex.docsToReferences.keyTable;
@@ -392,6 +492,28 @@ private void copyQueryResults(HashtableOfObject categoryToWords, int newPosition
 		}
 	}
 }
+private synchronized ByteBuffer getMappedFile() {
+	if (this.mappedFile == null && !this.cannotMapFile) {
+		File file = MAP_INDEX_FILES && this.headerInfoOffset > 0 ? this.indexLocation.getIndexFile() : null;
+		if (file == null) {
+			this.cannotMapFile = true; // index in a jar file, or nothing to read
+		} else {
+			try (FileInputStream stream = new FileInputStream(file)) {
+				FileChannel channel = stream.getChannel();
+				long size = channel.size();
+				if (size <= this.headerInfoOffset || size > Integer.MAX_VALUE)
+					this.cannotMapFile = true;
+				else
+					this.mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} catch (IOException e) {
+				if (DEBUG)
+					System.out.println("Cannot map index file " + this.indexLocation + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+				this.cannotMapFile = true; // read the file through streams
+			}
+		}
+	}
+	return this.mappedFile;
+}
 void initialize(boolean reuseExistingFile) throws IOException {
 	if (this.indexLocation.exists()) {
 		if (reuseExistingFile) {
@@ -447,6 +569,11 @@ void initialize(boolean reuseExistingFile) throws IOException {
 		throw new IOException("Failed to create new index " + this.indexLocation); //$NON-NLS-1$
 	}
 }
+private static char[] internCategoryName(char[] categoryName) {
+	synchronized (INTERNED_CATEGORY_NAMES) { // shared by the indexes read or merged concurrently
+		return INTERNED_CATEGORY_NAMES.get(categoryName);
+	}
+}
 private void initializeFrom(DiskIndex diskIndex, File newIndexFile) throws IOException {
 	if (newIndexFile.exists() && !newIndexFile.delete()) { // delete the temporary index file
 		if (DEBUG)
@@ -691,7 +818,7 @@ private synchronized HashtableOfObject readCategoryTable(char[] categoryName, bo
 			System.err.println("--------------------   END   --------------------"); //$NON-NLS-1$
 			throw oom;
 		}
-		int largeArraySize = 256;
+		int largeArraySize = LARGE_ARRAY_SIZE;
 		for (int i = 0; i < size; i++) {
 			char[] word = readStreamChars(stream);
 			int arrayOffset = readStreamInt(stream);
@@ -715,7 +842,7 @@ private synchronized HashtableOfObject readCategoryTable(char[] categoryName, bo
 				categoryTable.putUnsafely(word, Integer.valueOf(arrayOffset)); // offset to array in the file
 			}
 		}
-		this.categoryTables.put(INTERNED_CATEGORY_NAMES.get(categoryName), categoryTable);
+		this.categoryTables.put(internCategoryName(categoryName), categoryTable);
 		// cache the table as long as its not too big
 		// in practice, some tables can be greater than 500K when they contain more than 10K elements
 		this.cachedCategoryName = categoryTable.elementSize < 20000 ? categoryName : null;
@@ -785,17 +912,24 @@ synchronized String readDocumentName(int docNumber) throws IOException {
 			throw new IllegalArgumentException();
 		this.streamBuffer = new byte[numberOfBytes];
 		this.bufferIndex = 0;
-		InputStream file = this.indexLocation.getInputStream();
-		try {
-			file.skip(start);
-			if (file.read(this.streamBuffer, 0, numberOfBytes) != numberOfBytes)
-				throw new IOException();
-		} catch (IOException ioe) {
-			this.streamBuffer = null;
-			throw ioe;
-		} finally {
-			file.close();
-			this.indexLocation.close();
+		ByteBuffer mapped = getMappedFile();
+		if (mapped != null) {
+			ByteBuffer chunkBytes = mapped.duplicate();
+			chunkBytes.position(start);
+			chunkBytes.get(this.streamBuffer, 0, numberOfBytes);
+		} else {
+			InputStream file = this.indexLocation.getInputStream();
+			try {
+				file.skip(start);
+				if (file.read(this.streamBuffer, 0, numberOfBytes) != numberOfBytes)
+					throw new IOException();
+			} catch (IOException ioe) {
+				this.streamBuffer = null;
+				throw ioe;
+			} finally {
+				file.close();
+				this.indexLocation.close();
+			}
 		}
 		int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
 		chunk = new String[numberOfNames];
@@ -815,6 +949,11 @@ synchronized int[] readDocumentNumbers(Object arrayOffset) throws IOException {
 	if (arrayOffset instanceof int[])
 		return (int[]) arrayOffset;
 
+	ByteBuffer mapped = getMappedFile();
+	if (mapped != null) {
+		int offset = ((Integer) arrayOffset).intValue();
+		return readMappedDocumentArray(mapped, offset + 4, mapped.getInt(offset));
+	}
 	InputStream stream = this.indexLocation.getInputStream();
 	try {
 		int offset = ((Integer) arrayOffset).intValue();
@@ -861,7 +1000,7 @@ private void readHeaderInfo(InputStream stream) throws IOException {
 	char[] previousCategory = null;
 	int offset = -1;
 	for (int i = 0; i < size; i++) {
-		char[] categoryName = INTERNED_CATEGORY_NAMES.get(readStreamChars(stream));
+		char[] categoryName = internCategoryName(readStreamChars(stream));
 		offset = readStreamInt(stream);
 		this.categoryOffsets.put(categoryName, offset); // cache offset to category table
 		if (previousCategory != null) {
@@ -874,6 +1013,101 @@ private void readHeaderInfo(InputStream stream) throws IOException {
 	}
 	this.categoryTables = new HashtableOfObject(3);
 }
+private static char[] readMappedChars(ByteBuffer mapped, int offset) {
+	int length = mapped.getShort(offset) & 0xFFFF;
+	char[] word = new char[length];
+	int position = offset + 2;
+	for (int i = 0; i < length; i++) {
+		int b = mapped.get(position) & 0xFF;
+		word[i] = readMappedChar(mapped, position);
+		position += b < 0x80 ? 1 : b < 0xE0 ? 2 : 3;
+	}
+	return word;
+}
+private static char readMappedChar(ByteBuffer mapped, int position) {
+	// same encoding as writeStreamChars()
+	int b = mapped.get(position) & 0xFF;
+	if (b < 0x80)
+		return (char) b;
+	if (b < 0xE0)
+		return (char) (((b & 0x1F) << 6) | (mapped.get(position + 1) & 0x3F));
+	return (char) (((b & 0x0F) << 12) | ((mapped.get(position + 1) & 0x3F) << 6) | (mapped.get(position + 2) & 0x3F));
+}
+private int[] readMappedDocumentArray(ByteBuffer mapped, int position, int arraySize) {
+	int[] indexes = new int[arraySize];
+	switch (this.documentReferenceSize) {
+		case 1 :
+			for (int i = 0; i < arraySize; i++)
+				indexes[i] = mapped.get(position + i) & 0xFF;
+			break;
+		case 2 :
+			for (int i = 0; i < arraySize; i++)
+				indexes[i] = mapped.getShort(position + 2 * i) & 0xFFFF;
+			break;
+		default :
+			for (int i = 0; i < arraySize; i++)
+				indexes[i] = mapped.getInt(position + 4 * i);
+			break;
+	}
+	return indexes;
+}
+/*
+ * Answers the document numbers of the word written at the given offset, as expected by readDocumentNumbers():
+ * the array itself if it has a single element, or the offset of its size otherwise.
+ */
+private Object readMappedDocuments(ByteBuffer mapped, int offset) {
+	int position = skipMappedWord(mapped, offset);
+	int arrayOffset = mapped.getInt(position);
+	if (arrayOffset <= 0)
+		return new int[] {-arrayOffset};
+	if (arrayOffset < LARGE_ARRAY_SIZE)
+		return Integer.valueOf(position); // in-lined array, preceded by its size
+	return Integer.valueOf(mapped.getInt(position + 4));
+}
+/*
+ * Answers the offsets of the words of the given category table in the mapped file, in word order,
+ * without reading the words nor their document numbers.
+ */
+private synchronized int[] readMappedWordOffsets(ByteBuffer mapped, char[] categoryName) {
+	int offset = this.categoryOffsets.get(categoryName);
+	if (offset == HashtableOfIntValues.NO_VALUE)
+		return null;
+	if (this.mappedWordOffsets == null) {
+		this.mappedWordOffsets = new HashtableOfObject(3);
+	} else {
+		int[] cached = (int[]) this.mappedWordOffsets.get(categoryName);
+		if (cached != null)
+			return cached;
+	}
+	int size = mapped.getInt(offset);
+	int referenceSize = this.documentReferenceSize == 1 || this.documentReferenceSize == 2 ? this.documentReferenceSize : 4;
+	int[] wordOffsets = new int[size];
+	boolean sorted = true;
+	int position = offset + 4;
+	for (int i = 0; i < size; i++) {
+		wordOffsets[i] = position;
+		if (sorted && i > 0 && compareMappedWords(mapped, wordOffsets[i - 1], position) > 0)
+			sorted = false;
+		position = skipMappedWord(mapped, position);
+		int arrayOffset = mapped.getInt(position);
+		position += 4;
+		if (arrayOffset >= LARGE_ARRAY_SIZE)
+			position += 4; // offset to the array
+		else if (arrayOffset > 0)
+			position += arrayOffset * referenceSize;
+	}
+	if (!sorted) {
+		// written before the words of category tables were sorted
+		Integer[] boxed = new Integer[size];
+		for (int i = 0; i < size; i++)
+			boxed[i] = Integer.valueOf(wordOffsets[i]);
+		Arrays.sort(boxed, (o1, o2) -> compareMappedWords(mapped, o1.intValue(), o2.intValue()));
+		for (int i = 0; i < size; i++)
+			wordOffsets[i] = boxed[i].intValue();
+	}
+	this.mappedWordOffsets.put(internCategoryName(categoryName), wordOffsets);
+	return wordOffsets;
+}
 synchronized void startQuery() {
 	this.cacheUserCount++;
 }
@@ -882,6 +1116,7 @@ synchronized void stopQuery() {
 		// clear cached items
 		this.cacheUserCount = -1;
 		this.cachedChunks = null;
+		this.mappedWordOffsets = null;
 		if (this.categoryTables != null) {
 			if (this.cachedCategoryName == null) {
 				this.categoryTables = null;
@@ -1036,6 +1271,33 @@ private int readStreamInt(InputStream stream) throws IOException {
 	val += (this.streamBuffer[this.bufferIndex++] & 0xFF) << 8;
 	return val + (this.streamBuffer[this.bufferIndex++] & 0xFF);
 }
+/*
+ * Answers the index of the given word in the given word offsets, or -(insertion point + 1) if it is not found.
+ */
+private static int searchMappedWord(ByteBuffer mapped, int[] wordOffsets, char[] key) {
+	int low = 0;
+	int high = wordOffsets.length - 1;
+	while (low <= high) {
+		int middle = (low + high) >>> 1;
+		int comparison = compareMappedWord(mapped, wordOffsets[middle], key, false);
+		if (comparison < 0)
+			low = middle + 1;
+		else if (comparison > 0)
+			high = middle - 1;
+		else
+			return middle;
+	}
+	return -(low + 1);
+}
+private static int skipMappedWord(ByteBuffer mapped, int offset) {
+	int length = mapped.getShort(offset) & 0xFFFF;
+	int position = offset + 2;
+	for (int i = 0; i < length; i++) {
+		int b = mapped.get(position) & 0xFF;
+		position += b < 0x80 ? 1 : b < 0xE0 ? 2 : 3;
+	}
+	return position;
+}
 private void writeAllDocumentNames(String[] sortedDocNames, FileOutputStream stream) throws IOException {
 	if (sortedDocNames.length == 0)
 		throw new IllegalArgumentException();
@@ -1119,39 +1381,50 @@ private void writeCategoryTable(char[] categoryName, HashtableOfObject wordsToDo
 	//		an int > 1 & < 256 for the size of the array if its > 1 & < 256, the document array follows immediately
 	//		256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the table)
 
-	int largeArraySize = 256;
+	// the words are written in order, so that queries can binary search a mapped table
+	// the large arrays are written in the same order, since readCategoryTable() reads them back in sequence
+	int largeArraySize = LARGE_ARRAY_SIZE;
+	char[][] words = wordsToDocs.keyTable;
 	Object[] values = wordsToDocs.valueTable;
+	char[][] sortedWords = new char[wordsToDocs.elementSize][];
+	int count = 0;
 	for (int i = 0, l = values.length; i < l; i++) {
 		Object o = values[i];
 		if (o != null) {
 			if (o instanceof IntList)
-				o = values[i] = ((IntList) values[i]).asArray();
-			int[] documentNumbers = (int[]) o;
-			if (documentNumbers.length >= largeArraySize) {
-				values[i] = Integer.valueOf(this.streamEnd);
-				writeDocumentNumbers(documentNumbers, stream);
-			}
+				values[i] = ((IntList) values[i]).asArray();
+			sortedWords[count++] = words[i];
+		}
+	}
+	if (count < sortedWords.length)
+		System.arraycopy(sortedWords, 0, sortedWords = new char[count][], 0, count);
+	Util.sort(sortedWords);
+	Object[] sortedValues = new Object[count];
+	for (int i = 0; i < count; i++) {
+		int[] documentNumbers = (int[]) wordsToDocs.get(sortedWords[i]);
+		if (documentNumbers.length >= largeArraySize) {
+			sortedValues[i] = Integer.valueOf(this.streamEnd);
+			writeDocumentNumbers(documentNumbers, stream);
+		} else {
+			sortedValues[i] = documentNumbers;
 		}
 	}
 
 	this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
 	this.categoryTables.put(categoryName, null); // flush cached table
-	writeStreamInt(stream, wordsToDocs.elementSize);
-	char[][] words = wordsToDocs.keyTable;
-	for (int i = 0, l = words.length; i < l; i++) {
-		Object o = values[i];
-		if (o != null) {
-			writeStreamChars(stream, words[i]);
-			if (o instanceof int[]) {
-				int[] documentNumbers = (int[]) o;
-				if (documentNumbers.length == 1)
-					writeStreamInt(stream, -documentNumbers[0]); // store an array of 1 element by negating the documentNumber (can be zero)
-				else
-					writeDocumentNumbers(documentNumbers, stream);
-			} else {
-				writeStreamInt(stream, largeArraySize); // mark to identify that an offset follows
-				writeStreamInt(stream, ((Integer) o).intValue()); // offset in the file of the array of document numbers
-			}
+	writeStreamInt(stream, count);
+	for (int i = 0; i < count; i++) {
+		Object o = sortedValues[i];
+		writeStreamChars(stream, sortedWords[i]);
+		if (o instanceof int[]) {
+			int[] documentNumbers = (int[]) o;
+			if (documentNumbers.length == 1)
+				writeStreamInt(stream, -documentNumbers[0]); // store an array of 1 element by negating the documentNumber (can be zero)
+			else
+				writeDocumentNumbers(documentNumbers, stream);
+		} else {
+			writeStreamInt(stream, largeArraySize); // mark to identify that an offset follows
+			writeStreamInt(stream, ((Integer) o).intValue()); // offset in the file of the array of document numbers
 		}
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015, 2016 Google, Inc and others.
+ * Copyright (c) 2015, 2019 Google, Inc and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -68,9 +68,10 @@ public class DatabaseRef<T extends NdNode> implements Supplier<T> {
 	}
 
 	/**
-	 * Acquires a read lock. Callers must invoke close() on the result when done.
+	 * Acquires an optimistic read lock, see {@link Nd#acquireOptimisticReadLock()}. Callers must invoke close() on
+	 * the result when done.
 	 */
 	public IReader lock() {
-		return this.nd.acquireReadLock();
+		return this.nd.acquireOptimisticReadLock();
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015, 2016 Google, Inc and others.
+ * Copyright (c) 2015, 2019 Google, Inc and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -98,6 +98,13 @@ public final class Nd {
 		}
 	};
 
+	private IReader fOptimisticReader = new IReader() {
+		@Override
+		public void close() {
+			releaseOptimisticReadLock();
+		}
+	};
+
 	/**
 	 * This long is incremented every time a change is written to the database. Can be used to determine if the database
 	 * has changed.
@@ -244,6 +251,11 @@ public final class Nd {
 	private final Object mutex = new Object();
 	private int lockCount;
 	private int waitingReaders;
+	/**
+	 * Number of threads holding or waiting for the write lock. Only modified while synchronized on {@link #mutex},
+	 * and read without synchronization by the optimistic readers, which must take the lock when it isn't 0.
+	 */
+	private volatile int pendingWriters;
 	private long lastWriteAccess= 0;
 	//private long lastReadAccess= 0;
 	private long timeWriteLockAcquired;
@@ -277,6 +289,36 @@ public final class Nd {
 		}
 	}
 
+	/**
+	 * Acquires a read lock like {@link #acquireReadLock()}, but without entering the lock monitor as long as no
+	 * writer holds or waits for the write lock. The reader is registered with the database first, then validates
+	 * that no writer is pending, in which case it reads the database right away. Otherwise, it withdraws and falls
+	 * back to {@link #acquireReadLock()}. Writers wait for the optimistic readers to leave before writing.
+	 * <p>
+	 * The lock must be released by closing the returned {@link IReader}, not with {@link #releaseReadLock()}, and
+	 * cannot be given up by {@link #acquireWriteLock(int, IProgressMonitor)}.
+	 */
+	public IReader acquireOptimisticReadLock() {
+		if (!sDEBUG_LOCKS) {
+			this.db.addOptimisticReader();
+			if (this.pendingWriters == 0) {
+				return this.fOptimisticReader;
+			}
+			releaseOptimisticReadLock();
+		}
+		return acquireReadLock();
+	}
+
+	void releaseOptimisticReadLock() {
+		this.db.removeOptimisticReader();
+		if (this.pendingWriters != 0) {
+			// Wake up the writer waiting for the optimistic readers to leave
+			synchronized (this.mutex) {
+				this.mutex.notifyAll();
+			}
+		}
+	}
+
 	public void releaseReadLock() {
 		synchronized (this.mutex) {
 			assert this.lockCount > 0: "No lock to release"; //$NON-NLS-1$
@@ -335,15 +377,26 @@ public final class Nd {
 				giveupReadLocks= 0;
 			}
 
-			// Let the readers go first
+			// Let the readers go first. Announce the writer before looking for optimistic readers, which either see
+			// it and take the lock, or are seen by the writer.
 			long start= sDEBUG_LOCKS ? System.currentTimeMillis() : 0;
-			while (this.lockCount > giveupReadLocks || this.waitingReaders > 0 || (this.lockCount < 0)) {
-				this.mutex.wait(CANCELLATION_CHECK_INTERVAL);
-				if (monitor != null && monitor.isCanceled()) {
-					throw new OperationCanceledException();
+			this.pendingWriters++;
+			boolean acquired = false;
+			try {
+				while (this.lockCount > giveupReadLocks || this.waitingReaders > 0 || (this.lockCount < 0)
+						|| this.db.hasOptimisticReaders()) {
+					this.mutex.wait(CANCELLATION_CHECK_INTERVAL);
+					if (monitor != null && monitor.isCanceled()) {
+						throw new OperationCanceledException();
+					}
+					if (sDEBUG_LOCKS) {
+						start = reportBlockedWriteLock(start, giveupReadLocks);
+					}
 				}
-				if (sDEBUG_LOCKS) {
-					start = reportBlockedWriteLock(start, giveupReadLocks);
+				acquired = true;
+			} finally {
+				if (!acquired) {
+					this.pendingWriters--;
 				}
 			}
 			this.lockCount= -1;
@@ -425,6 +478,8 @@ public final class Nd {
 			if (this.lockCount < 0) {
 				this.lockCount = initialReadLocks;
 			}
+			// Publishes the changes of this writer to the optimistic readers
+			this.pendingWriters--;
 			this.mutex.notifyAll();
 			this.db.setLocked(initialReadLocks != 0);
 		}
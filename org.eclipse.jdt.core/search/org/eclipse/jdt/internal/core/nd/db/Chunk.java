@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2016 QNX Software Systems and others.
+ * Copyright (c) 2005, 2019 QNX Software Systems and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -23,7 +23,12 @@ import java.nio.ByteBuffer;
  * Caches the content of a piece of the database.
  */
 final class Chunk {
-	final private byte[] fBuffer= new byte[Database.CHUNK_SIZE];
+	/**
+	 * The content of this chunk. As long as the chunk is clean, this may be a read-only slice of a region of the
+	 * database file mapped by the {@link Database}, which is replaced by a copy on the heap when the chunk is dirtied.
+	 * Otherwise, this is a heap buffer holding a copy of the content of the file.
+	 */
+	private ByteBuffer fBuffer;
 
 	final Database fDatabase;
 	/**
@@ -37,19 +42,29 @@ final class Chunk {
 	 */
 	boolean fDirty;
 	/**
-	 * True iff this {@link Chunk} was accessed since the last time it was tested for eviction in the
-	 * {@link ChunkCache}. Protected by synchronizing on the {@link ChunkCache} itself.
+	 * Number of times this {@link Chunk} was accessed since the last time it was tested for eviction in the
+	 * {@link ChunkCache}, up to a small maximum. Protected by the lock of the {@link ChunkCache} segment
+	 * holding this chunk.
 	 */
-	boolean fCacheHitFlag;
+	byte fCacheFrequency;
 	/**
-	 * Holds the index into the {@link ChunkCache}'s page table, or -1 if this {@link Chunk} isn't present in the page
-	 * table. Protected by synchronizing on the {@link ChunkCache} itself.
+	 * Holds the index into the page table of its {@link ChunkCache} segment, or -1 if this {@link Chunk} isn't
+	 * present in the page table. Protected by the lock of the {@link ChunkCache} segment holding this chunk.
 	 */
 	int fCacheIndex= -1;
 
 	Chunk(Database db, int sequenceNumber) {
+		this(db, sequenceNumber, ByteBuffer.allocate(Database.CHUNK_SIZE));
+	}
+
+	/**
+	 * Creates a chunk whose content is held by the given buffer, typically a read-only slice of a mapped region of
+	 * the database file.
+	 */
+	Chunk(Database db, int sequenceNumber, ByteBuffer buffer) {
 		this.fDatabase= db;
 		this.fSequenceNumber= sequenceNumber;
+		this.fBuffer= buffer;
 	}
 
 	public void makeDirty() {
@@ -70,6 +85,13 @@ final class Chunk {
 				throw new IllegalStateException("CHUNK " + this.fSequenceNumber //$NON-NLS-1$
 						+ " dirtied out of order: Only the most-recently-fetched chunk is allowed to be dirtied"); //$NON-NLS-1$
 			}
+			if (this.fBuffer.isReadOnly()) {
+				// Copy on write, the mapped file must only change when the chunk is flushed
+				ByteBuffer copy = ByteBuffer.allocate(Database.CHUNK_SIZE);
+				copy.put(this.fBuffer.duplicate());
+				copy.rewind();
+				this.fBuffer = copy;
+			}
 			this.fDirty = true;
 			this.fDatabase.chunkDirtied(this);
 		}
@@ -77,7 +99,7 @@ final class Chunk {
 
 	void read() throws IndexException {
 		try {
-			final ByteBuffer buf= ByteBuffer.wrap(this.fBuffer);
+			final ByteBuffer buf= this.fBuffer.duplicate();
 			this.fDatabase.read(buf, (long) this.fSequenceNumber * Database.CHUNK_SIZE);
 		} catch (IOException e) {
 			throw new IndexException(new DBStatus(e));
@@ -95,7 +117,7 @@ final class Chunk {
 		}
 		boolean wasCanceled = false;
 		try {
-			final ByteBuffer buf= ByteBuffer.wrap(this.fBuffer);
+			final ByteBuffer buf= this.fBuffer.duplicate();
 			wasCanceled = this.fDatabase.write(buf, (long) this.fSequenceNumber * Database.CHUNK_SIZE);
 		} catch (IOException e) {
 			throw new IndexException(new DBStatus(e));
@@ -111,39 +133,40 @@ final class Chunk {
 
 	public void putByte(final long offset, final byte value) {
 		makeDirty();
-		this.fBuffer[recPtrToIndex(offset)]= value;
+		this.fBuffer.put(recPtrToIndex(offset), value);
 		recordWrite(offset, 1);
 	}
 
 	public byte getByte(final long offset) {
-		return this.fBuffer[recPtrToIndex(offset)];
+		return this.fBuffer.get(recPtrToIndex(offset));
 	}
 
 	/**
 	 * Returns a copy of the entire chunk.
 	 */
 	public byte[] getBytes() {
-		final byte[] bytes = new byte[this.fBuffer.length];
-		System.arraycopy(this.fBuffer, 0, bytes, 0, this.fBuffer.length);
+		final byte[] bytes = new byte[Database.CHUNK_SIZE];
+		this.fBuffer.duplicate().get(bytes);
 		return bytes;
 	}
 
 	public byte[] getBytes(final long offset, final int length) {
 		final byte[] bytes = new byte[length];
-		System.arraycopy(this.fBuffer, recPtrToIndex(offset), bytes, 0, length);
+		get(offset, bytes, 0, length);
 		return bytes;
 	}
 
 	public void putBytes(final long offset, final byte[] bytes) {
 		makeDirty();
-		System.arraycopy(bytes, 0, this.fBuffer, recPtrToIndex(offset), bytes.length);
+		final ByteBuffer buf= this.fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.put(bytes);
 		recordWrite(offset, bytes.length);
 	}
 
 	public void putInt(final long offset, final int value) {
 		makeDirty();
-		int idx= recPtrToIndex(offset);
-		putInt(value, this.fBuffer, idx);
+		this.fBuffer.putInt(recPtrToIndex(offset), value);
 		recordWrite(offset, 4);
 	}
 
@@ -155,7 +178,7 @@ final class Chunk {
 	}
 
 	public int getInt(final long offset) {
-		return getInt(this.fBuffer, recPtrToIndex(offset));
+		return this.fBuffer.getInt(recPtrToIndex(offset));
 	}
 
 	static final int getInt(final byte[] buffer, int idx) {
@@ -210,7 +233,7 @@ final class Chunk {
 	public void putFreeRecPtr(final long offset, final long value) {
 		makeDirty();
 		int idx = recPtrToIndex(offset);
-		putInt(compressFreeRecPtr(value), this.fBuffer, idx);
+		this.fBuffer.putInt(idx, compressFreeRecPtr(value));
 		recordWrite(offset, 4);
 	}
 
@@ -221,31 +244,27 @@ final class Chunk {
 
 	public long getFreeRecPtr(final long offset) {
 		final int idx = recPtrToIndex(offset);
-		int value = getInt(this.fBuffer, idx);
+		int value = this.fBuffer.getInt(idx);
 		return expandToFreeRecPtr(value);
 	}
 
 	public void put3ByteUnsignedInt(final long offset, final int value) {
 		makeDirty();
 		int idx= recPtrToIndex(offset);
-		this.fBuffer[idx]= (byte) (value >> 16);
-		this.fBuffer[++idx]= (byte) (value >> 8);
-		this.fBuffer[++idx]= (byte) (value);
+		this.fBuffer.put(idx, (byte) (value >> 16));
+		this.fBuffer.putShort(++idx, (short) value);
 		recordWrite(offset, 3);
 	}
 
 	public int get3ByteUnsignedInt(final long offset) {
 		int idx= recPtrToIndex(offset);
-		return ((this.fBuffer[idx] & 0xff) << 16) |
-				((this.fBuffer[++idx] & 0xff) <<  8) |
-				((this.fBuffer[++idx] & 0xff) <<  0);
+		return ((this.fBuffer.get(idx) & 0xff) << 16) |
+				(this.fBuffer.getShort(++idx) & 0xffff);
 	}
 
 	public void putShort(final long offset, final short value) {
 		makeDirty();
-		int idx= recPtrToIndex(offset);
-		this.fBuffer[idx]= (byte) (value >> 8);
-		this.fBuffer[++idx]= (byte) (value);
+		this.fBuffer.putShort(recPtrToIndex(offset), value);
 		recordWrite(offset, 2);
 	}
 
@@ -254,20 +273,11 @@ final class Chunk {
 	}
 
 	public short getShort(final long offset) {
-		int idx= recPtrToIndex(offset);
-		return (short) (((this.fBuffer[idx] << 8) | (this.fBuffer[++idx] & 0xff)));
+		return this.fBuffer.getShort(recPtrToIndex(offset));
 	}
 
 	public long getLong(final long offset) {
-		int idx= recPtrToIndex(offset);
-		return ((((long) this.fBuffer[idx] & 0xff) << 56) |
-				(((long) this.fBuffer[++idx] & 0xff) << 48) |
-				(((long) this.fBuffer[++idx] & 0xff) << 40) |
-				(((long) this.fBuffer[++idx] & 0xff) << 32) |
-				(((long) this.fBuffer[++idx] & 0xff) << 24) |
-				(((long) this.fBuffer[++idx] & 0xff) << 16) |
-				(((long) this.fBuffer[++idx] & 0xff) <<  8) |
-				(((long) this.fBuffer[++idx] & 0xff) <<  0));
+		return this.fBuffer.getLong(recPtrToIndex(offset));
 	}
 
 	public double getDouble(long offset) {
@@ -280,46 +290,30 @@ final class Chunk {
 
 	public void putLong(final long offset, final long value) {
 		makeDirty();
-		int idx= recPtrToIndex(offset);
-
-		this.fBuffer[idx]=   (byte) (value >> 56);
-		this.fBuffer[++idx]= (byte) (value >> 48);
-		this.fBuffer[++idx]= (byte) (value >> 40);
-		this.fBuffer[++idx]= (byte) (value >> 32);
-		this.fBuffer[++idx]= (byte) (value >> 24);
-		this.fBuffer[++idx]= (byte) (value >> 16);
-		this.fBuffer[++idx]= (byte) (value >> 8);
-		this.fBuffer[++idx]= (byte) (value);
+		this.fBuffer.putLong(recPtrToIndex(offset), value);
 		recordWrite(offset, 8);
 	}
 
 	public void putChar(final long offset, final char value) {
 		makeDirty();
-		int idx= recPtrToIndex(offset);
-		this.fBuffer[idx]= (byte) (value >> 8);
-		this.fBuffer[++idx]= (byte) (value);
+		this.fBuffer.putChar(recPtrToIndex(offset), value);
 		recordWrite(offset, 2);
 	}
 
 	public void putChars(final long offset, char[] chars, int start, int len) {
 		makeDirty();
-		int idx= recPtrToIndex(offset)-1;
-		final int end= start + len;
-		for (int i = start; i < end; i++) {
-			char value= chars[i];
-			this.fBuffer[++idx]= (byte) (value >> 8);
-			this.fBuffer[++idx]= (byte) (value);
-		}
+		final ByteBuffer buf= this.fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.asCharBuffer().put(chars, start, len);
 		recordWrite(offset, len * 2);
 	}
 
 	public void putCharsAsBytes(final long offset, char[] chars, int start, int len) {
 		makeDirty();
-		int idx= recPtrToIndex(offset)-1;
+		int idx= recPtrToIndex(offset);
 		final int end= start + len;
 		for (int i = start; i < end; i++) {
-			char value= chars[i];
-			this.fBuffer[++idx]= (byte) (value);
+			this.fBuffer.put(idx++, (byte) chars[i]);
 		}
 		recordWrite(offset, len);
 	}
@@ -333,12 +327,11 @@ final class Chunk {
 	}
 
 	public char getChar(final long offset) {
-		int idx= recPtrToIndex(offset);
-		return (char) (((this.fBuffer[idx] << 8) | (this.fBuffer[++idx] & 0xff)));
+		return this.fBuffer.getChar(recPtrToIndex(offset));
 	}
 
 	public void getChars(final long offset, final char[] result, int start, int len) {
-		final ByteBuffer buf= ByteBuffer.wrap(this.fBuffer);
+		final ByteBuffer buf= this.fBuffer.duplicate();
 		buf.position(recPtrToIndex(offset));
 		buf.asCharBuffer().get(result, start, len);
 	}
@@ -346,7 +339,7 @@ final class Chunk {
 	public void getCharsFromBytes(final long offset, final char[] result, int start, int len) {
 		final int pos = recPtrToIndex(offset);
 		for (int i = 0; i < len; i++) {
-			result[start + i] =  (char) (this.fBuffer[pos + i] & 0xff);
+			result[start + i] =  (char) (this.fBuffer.get(pos + i) & 0xff);
 		}
 	}
 
@@ -354,12 +347,12 @@ final class Chunk {
 		makeDirty();
 		int idx = recPtrToIndex(offset);
 		final int end = idx + length;
-		if (end > this.fBuffer.length) {
+		if (end > Database.CHUNK_SIZE) {
 			throw new IndexException("Attempting to clear beyond end of chunk. Chunk = " + this.fSequenceNumber //$NON-NLS-1$
 					+ ", offset = " + offset + ", length = " + length); //$NON-NLS-1$//$NON-NLS-2$
 		}
 		for (; idx < end; idx++) {
-			this.fBuffer[idx] = 0;
+			this.fBuffer.put(idx, (byte) 0);
 		}
 		recordWrite(offset, length);
 	}
@@ -370,8 +363,9 @@ final class Chunk {
 
 	void put(final long offset, final byte[] data, int dataPos, final int len) {
 		makeDirty();
-		int idx = recPtrToIndex(offset);
-		System.arraycopy(data, dataPos, this.fBuffer, idx, len);
+		final ByteBuffer buf= this.fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.put(data, dataPos, len);
 		recordWrite(offset, len);
 	}
 
@@ -380,8 +374,9 @@ final class Chunk {
 	}
 
 	public void get(final long offset, byte[] data, int dataPos, int len) {
-		int idx = recPtrToIndex(offset);
-		System.arraycopy(this.fBuffer, idx, data, dataPos, len);
+		final ByteBuffer buf= this.fBuffer.duplicate();
+		buf.position(recPtrToIndex(offset));
+		buf.get(data, dataPos, len);
 	}
 
 	/**
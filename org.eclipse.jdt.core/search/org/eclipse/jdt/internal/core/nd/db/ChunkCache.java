@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2016 Wind River Systems, Inc. and others.
+ * Copyright (c) 2007, 2019 Wind River Systems, Inc. and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -20,9 +20,24 @@ import org.eclipse.jdt.core.JavaCore;
 public final class ChunkCache {
 	private static ChunkCache sSharedInstance;
 
-	private Chunk[] fPageTable;
-	private boolean fTableIsFull;
-	private int fPointer;
+	/**
+	 * The cache is split in segments, each one with its own page table and lock, so that threads fetching chunks
+	 * which belong to different segments don't contend. A chunk always belongs to the same segment (see
+	 * {@link #getLock(Database, int)}), whose lock protects the cache state of the chunk as well as its slot in
+	 * the chunk table of its {@link Database}.
+	 */
+	private final Segment[] fSegments;
+
+	/**
+	 * Largest value of {@link Chunk#fCacheFrequency}: a chunk which was accessed that many times since it was
+	 * last tested for eviction survives as many sweeps of the clock.
+	 */
+	private static final int MAX_FREQUENCY = 3;
+
+	/**
+	 * Smallest number of chunks held by a segment when the cache is created.
+	 */
+	private static final int MIN_SEGMENT_LENGTH = 64;
 
 	public static final String CHUNK_CACHE_SIZE_MB = "chunkCacheSizeMb"; //$NON-NLS-1$
 	public static final String CHUNK_CACHE_SIZE_PERCENT = "chunkCacheSizePercent"; //$NON-NLS-1$
@@ -42,6 +57,130 @@ public final class ChunkCache {
 		});
 	}
 
+	/**
+	 * A page table of the cache, using the generalized CLOCK algorithm to determine which chunk to evict.
+	 * All its fields are protected by synchronizing on the segment itself.
+	 */
+	private static final class Segment {
+		Chunk[] fPageTable;
+		boolean fTableIsFull;
+		int fPointer;
+
+		long fHits;
+		long fMisses;
+		long fEvictions;
+
+		Segment(int length) {
+			this.fPageTable= new Chunk[length];
+		}
+
+		void add(Chunk chunk) {
+			if (chunk.fCacheIndex >= 0) {
+				if (chunk.fCacheFrequency < MAX_FREQUENCY) {
+					chunk.fCacheFrequency++;
+				}
+				this.fHits++;
+				return;
+			}
+			this.fMisses++;
+			chunk.fCacheFrequency= 0;
+			if (this.fTableIsFull) {
+				evictChunk();
+			}
+			chunk.fCacheIndex= this.fPointer;
+			this.fPageTable[this.fPointer]= chunk;
+
+			this.fPointer++;
+			if (this.fPointer == this.fPageTable.length) {
+				this.fPointer= 0;
+				this.fTableIsFull= true;
+			}
+		}
+
+		/**
+		 * Evicts a chunk from the page table and the chunk table.
+		 * After this method returns, {@link #fPointer}  will contain
+		 * the index of the evicted chunk within the page table.
+		 */
+		private void evictChunk() {
+			/*
+			 * Use the generalized CLOCK algorithm to determine which chunk to evict.
+			 * i.e., if the chunk in the current slot of the page table has been
+			 * referenced since the last sweep (i.e. its frequency is positive),
+			 * decrement its frequency and move to the next slot. Otherwise, evict the
+			 * chunk in the current slot. Chunks which are accessed once, e.g. by a scan of
+			 * the database, are thus evicted before the ones which are accessed repeatedly.
+			 */
+			while (true) {
+				Chunk chunk = this.fPageTable[this.fPointer];
+				if (chunk.fCacheFrequency > 0) {
+					chunk.fCacheFrequency--;
+					this.fPointer = (this.fPointer + 1) % this.fPageTable.length;
+				} else {
+					chunk.fCacheIndex = -1;
+					chunk.fDatabase.checkIfChunkReleased(chunk);
+					this.fPageTable[this.fPointer] = null;
+					this.fEvictions++;
+					return;
+				}
+			}
+		}
+
+		void remove(Chunk chunk) {
+			final int idx= chunk.fCacheIndex;
+			if (idx >= 0) {
+				if (this.fTableIsFull) {
+					this.fPointer= this.fPageTable.length-1;
+					this.fTableIsFull= false;
+				} else {
+					this.fPointer--;
+				}
+				chunk.fCacheIndex= -1;
+				final Chunk move= this.fPageTable[this.fPointer];
+				this.fPageTable[idx]= move;
+				move.fCacheIndex= idx;
+				this.fPageTable[this.fPointer]= null;
+			}
+		}
+
+		void setLength(int newLength) {
+			final int oldLength= this.fTableIsFull ? this.fPageTable.length : this.fPointer;
+			if (newLength > oldLength) {
+				Chunk[] newTable= new Chunk[newLength];
+				System.arraycopy(this.fPageTable, 0, newTable, 0, oldLength);
+				this.fTableIsFull= false;
+				this.fPointer= oldLength;
+				this.fPageTable= newTable;
+			} else {
+				for (int i = newLength; i < oldLength; i++) {
+					Chunk chunk = this.fPageTable[i];
+					chunk.fCacheIndex = -1;
+					chunk.fDatabase.checkIfChunkReleased(chunk);
+					this.fEvictions++;
+				}
+				Chunk[] newTable= new Chunk[newLength];
+				System.arraycopy(this.fPageTable, 0, newTable, 0, newLength);
+				this.fTableIsFull= true;
+				this.fPointer= 0;
+				this.fPageTable= newTable;
+			}
+		}
+
+		void clear() {
+			for (int i = 0; i < this.fPageTable.length; i++) {
+				Chunk chunk = this.fPageTable[i];
+				if (chunk == null) {
+					continue;
+				}
+				chunk.fCacheIndex = -1;
+				chunk.fDatabase.checkIfChunkReleased(chunk);
+				this.fPageTable[i] = null;
+			}
+			this.fTableIsFull = false;
+			this.fPointer = 0;
+		}
+	}
+
 	private static long getChunkCacheSize(IEclipsePreferences node) {
 		double maxSizeMb = node.getDouble(CHUNK_CACHE_SIZE_MB, CHUNK_CACHE_SIZE_MB_DEFAULT);
 		double maxSizePercent = node.getDouble(CHUNK_CACHE_SIZE_PERCENT, CHUNK_CACHE_SIZE_PERCENT_DEFAULT);
@@ -62,79 +201,77 @@ public final class ChunkCache {
 	}
 
 	public ChunkCache(long maxSize) {
-		this.fPageTable= new Chunk[computeLength(maxSize)];
+		this(maxSize, Runtime.getRuntime().availableProcessors() * 4);
 	}
 
-	public synchronized void add(Chunk chunk) {
-		if (chunk.fCacheIndex >= 0) {
-			chunk.fCacheHitFlag= true;
-			return;
+	/**
+	 * Creates a cache holding chunks with a maximum total memory of <code>maxSize</code>, split in at most
+	 * <code>maxSegments</code> segments (rounded down to a power of two).
+	 */
+	public ChunkCache(long maxSize, int maxSegments) {
+		int length= computeLength(maxSize);
+		int segments= Integer.highestOneBit(Math.max(1, Math.min(maxSegments, length / MIN_SEGMENT_LENGTH)));
+		this.fSegments= new Segment[segments];
+		for (int i = 0; i < segments; i++) {
+			this.fSegments[i]= new Segment(segmentLength(length, i));
 		}
-		if (this.fTableIsFull) {
-			evictChunk();
-			chunk.fCacheIndex= this.fPointer;
-			this.fPageTable[this.fPointer]= chunk;
-		} else {
-			chunk.fCacheIndex= this.fPointer;
-			this.fPageTable[this.fPointer]= chunk;
+	}
 
-			this.fPointer++;
-			if (this.fPointer == this.fPageTable.length) {
-				this.fPointer= 0;
-				this.fTableIsFull= true;
-			}
-		}
+	/**
+	 * Returns the lock protecting the cache state of the given chunk of the given database, as well as its slot
+	 * in the chunk table of the database.
+	 */
+	Object getLock(Database database, int sequenceNumber) {
+		return getSegment(database, sequenceNumber);
+	}
+
+	private Segment getSegment(Database database, int sequenceNumber) {
+		int hash= (System.identityHashCode(database) + sequenceNumber) * 0x9E3779B9;
+		return this.fSegments[(hash ^ (hash >>> 16)) & (this.fSegments.length - 1)];
 	}
 
 	/**
-	 * Evicts a chunk from the page table and the chunk table.
-	 * After this method returns, {@link #fPointer}  will contain
-	 * the index of the evicted chunk within the page table.
+	 * Runs the given operation while holding the locks of all the segments.
 	 */
-	private void evictChunk() {
-		/*
-		 * Use the CLOCK algorithm to determine which chunk to evict.
-		 * i.e., if the chunk in the current slot of the page table has been
-		 * recently referenced (i.e. the reference flag is set), unset the
-		 * reference flag and move to the next slot.  Otherwise, evict the
-		 * chunk in the current slot.
-		 */
-		while (true) {
-			Chunk chunk = this.fPageTable[this.fPointer];
-			if (chunk.fCacheHitFlag) {
-				chunk.fCacheHitFlag = false;
-				this.fPointer = (this.fPointer + 1) % this.fPageTable.length;
-			} else {
-				chunk.fCacheIndex = -1;
-				chunk.fDatabase.checkIfChunkReleased(chunk);
-				this.fPageTable[this.fPointer] = null;
-				return;
+	void runWithAllLocks(Runnable runnable) {
+		runWithLocks(0, runnable);
+	}
+
+	private void runWithLocks(int index, Runnable runnable) {
+		if (index == this.fSegments.length) {
+			runnable.run();
+		} else {
+			synchronized (this.fSegments[index]) {
+				runWithLocks(index + 1, runnable);
 			}
 		}
 	}
 
-	public synchronized void remove(Chunk chunk) {
-		final int idx= chunk.fCacheIndex;
-		if (idx >= 0) {
-			if (this.fTableIsFull) {
-				this.fPointer= this.fPageTable.length-1;
-				this.fTableIsFull= false;
-			} else {
-				this.fPointer--;
-			}
-			chunk.fCacheIndex= -1;
-			final Chunk move= this.fPageTable[this.fPointer];
-			this.fPageTable[idx]= move;
-			move.fCacheIndex= idx;
-			this.fPageTable[this.fPointer]= null;
+	public void add(Chunk chunk) {
+		Segment segment= getSegment(chunk.fDatabase, chunk.fSequenceNumber);
+		synchronized (segment) {
+			segment.add(chunk);
+		}
+	}
+
+	public void remove(Chunk chunk) {
+		Segment segment= getSegment(chunk.fDatabase, chunk.fSequenceNumber);
+		synchronized (segment) {
+			segment.remove(chunk);
 		}
 	}
 
 	/**
 	 * Returns the maximum size of the chunk cache in bytes.
 	 */
-	public synchronized long getMaxSize() {
-		return (long) this.fPageTable.length * Database.CHUNK_SIZE;
+	public long getMaxSize() {
+		long length= 0;
+		for (Segment segment : this.fSegments) {
+			synchronized (segment) {
+				length+= segment.fPageTable.length;
+			}
+		}
+		return length * Database.CHUNK_SIZE;
 	}
 
 	/**
@@ -142,26 +279,13 @@ public final class ChunkCache {
 	 * maximum total memory of <code>maxSize</code>.
 	 * @param maxSize the total size of the chunks in bytes.
 	 */
-	public synchronized void setMaxSize(long maxSize) {
-		final int newLength= computeLength(maxSize);
-		final int oldLength= this.fTableIsFull ? this.fPageTable.length : this.fPointer;
-		if (newLength > oldLength) {
-			Chunk[] newTable= new Chunk[newLength];
-			System.arraycopy(this.fPageTable, 0, newTable, 0, oldLength);
-			this.fTableIsFull= false;
-			this.fPointer= oldLength;
-			this.fPageTable= newTable;
-		} else {
-			for (int i = newLength; i < oldLength; i++) {
-				Chunk chunk = this.fPageTable[i];
-				chunk.fCacheIndex = -1;
-				chunk.fDatabase.checkIfChunkReleased(chunk);
+	public void setMaxSize(long maxSize) {
+		final int length= computeLength(maxSize);
+		for (int i = 0; i < this.fSegments.length; i++) {
+			Segment segment= this.fSegments[i];
+			synchronized (segment) {
+				segment.setLength(segmentLength(length, i));
 			}
-			Chunk[] newTable= new Chunk[newLength];
-			System.arraycopy(this.fPageTable, 0, newTable, 0, newLength);
-			this.fTableIsFull= true;
-			this.fPointer= 0;
-			this.fPageTable= newTable;
 		}
 	}
 
@@ -170,17 +294,82 @@ public final class ChunkCache {
 		return Math.max(1, (int) maxLength);
 	}
 
-	public synchronized void clear() {
-		for (int i = 0; i < this.fPageTable.length; i++) {
-			Chunk chunk = this.fPageTable[i];
-			if (chunk == null) {
-				continue;
+	private int segmentLength(int length, int index) {
+		int segments= this.fSegments.length;
+		return Math.max(1, length / segments + (index < length % segments ? 1 : 0));
+	}
+
+	public void clear() {
+		for (Segment segment : this.fSegments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of segments of the cache.
+	 */
+	public int getSegmentCount() {
+		return this.fSegments.length;
+	}
+
+	/**
+	 * Returns the number of times a chunk was found in the cache since the last reset of the counters.
+	 */
+	public long getHitCount() {
+		long hits= 0;
+		for (Segment segment : this.fSegments) {
+			synchronized (segment) {
+				hits+= segment.fHits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Returns the number of times a chunk was added to the cache since the last reset of the counters.
+	 */
+	public long getMissCount() {
+		long misses= 0;
+		for (Segment segment : this.fSegments) {
+			synchronized (segment) {
+				misses+= segment.fMisses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Returns the number of chunks evicted from the cache since the last reset of the counters.
+	 */
+	public long getEvictionCount() {
+		long evictions= 0;
+		for (Segment segment : this.fSegments) {
+			synchronized (segment) {
+				evictions+= segment.fEvictions;
+			}
+		}
+		return evictions;
+	}
+
+	/**
+	 * Returns the ratio of the accesses which found their chunk in the cache since the last reset of the
+	 * counters, or 0 if there was no access.
+	 */
+	public double getHitRate() {
+		long hits= getHitCount();
+		long accesses= hits + getMissCount();
+		return accesses == 0 ? 0 : (double) hits / accesses;
+	}
+
+	public void resetCounters() {
+		for (Segment segment : this.fSegments) {
+			synchronized (segment) {
+				segment.fHits= 0;
+				segment.fMisses= 0;
+				segment.fEvictions= 0;
 			}
-			chunk.fCacheIndex = -1;
-			chunk.fDatabase.checkIfChunkReleased(chunk);
-			this.fPageTable[i] = null;
 		}
-		this.fTableIsFull = false;
-		this.fPointer = 0;
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2016 QNX Software Systems and others.
+ * Copyright (c) 2005, 2019 QNX Software Systems and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -23,6 +23,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
@@ -30,6 +31,8 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -161,12 +164,19 @@ public class Database {
 		}
 	}
 
+	private static final int WRITE_BUFFER_SIZE = CHUNK_SIZE * 32;
+
 	/**
-	 * For loops that scan through the chunks list, this imposes a maximum number of iterations before the loop must
-	 * release the chunk cache mutex.
+	 * True iff clean chunks should be read through memory mapped regions of the database file rather than copied
+	 * on the heap. Mapping is off on Windows, where a mapped file cannot be truncated or deleted until its buffer
+	 * is garbage collected, or when -Djdt.search.mapIndexDatabase=false. Read when a database is opened.
 	 */
-	private static final int MAX_ITERATIONS_PER_LOCK = 256;
-	private static final int WRITE_BUFFER_SIZE = CHUNK_SIZE * 32;
+	public static boolean MAP_DATABASE_FILE = File.separatorChar == '/' && !"false".equals(System.getProperty("jdt.search.mapIndexDatabase")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Number of chunks in each mapped region of the database file (64 MB).
+	 */
+	private static final int CHUNKS_PER_MAPPED_REGION = 16384;
 
 	/**
 	 * True iff large chunk self-diagnostics should be enabled.
@@ -178,15 +188,34 @@ public class Database {
 	private final File fLocation;
 	private final boolean fReadOnly;
 	private RandomAccessFile fFile;
+	/**
+	 * The read-only mapped regions of the database file, or null entries for the regions which were not mapped yet.
+	 * A region only covers the chunks which were on disk when it was mapped, and is mapped again when a chunk past
+	 * its end is read. Synchronize on {@link #fMappedRegionsLock} before accessing.
+	 */
+	private MappedByteBuffer[] fMappedRegions = new MappedByteBuffer[0];
+	private final Object fMappedRegionsLock = new Object();
+	private boolean fCannotMapFile = !MAP_DATABASE_FILE;
 	private boolean fExclusiveLock;	 // Necessary for any write operation.
 	private boolean fLocked;		 // Necessary for any operation.
+	/**
+	 * Counts the threads reading the database under an optimistic read lock of its Nd, which are not
+	 * reflected by {@link #fLocked}. A single atomic count, so that a writer reading 0 knows that no reader
+	 * is registered at that point.
+	 */
+	private final AtomicInteger fOptimisticReaders = new AtomicInteger();
+	/**
+	 * The number of optimistic read locks held by the current thread.
+	 */
+	private final ThreadLocal<int[]> fOptimisticReads = ThreadLocal.withInitial(() -> new int[1]);
 	private boolean fIsMarkedIncomplete;
 
 	private int fVersion;
 	private final Chunk fHeaderChunk;
 	/**
 	 * Stores the {@link Chunk} associated with each page number or null if the chunk isn't loaded. Synchronize on
-	 * {@link #fCache} before accessing.
+	 * the lock returned by {@link ChunkCache#getLock(Database, int)} for the page number before accessing.
+	 * The array itself is only replaced while holding the locks of all the segments of {@link #fCache}.
 	 */
 	Chunk[] fChunks;
 	private int fChunksUsed;
@@ -194,10 +223,11 @@ public class Database {
 
 	private long malloced;
 	private long freed;
-	private long cacheHits;
-	private long cacheMisses;
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder mappedReads = new LongAdder();
 	private long bytesWritten;
-	private long totalReadTimeMs;
+	private final LongAdder totalReadTimeMs = new LongAdder();
 
 	private MemoryStats memoryUsage;
 	public Chunk fMostRecentlyFetchedChunk;
@@ -381,6 +411,7 @@ public class Database {
 		this.fChunks = new Chunk[] {null};
 		this.dirtyChunkSet.clear();
 		this.fChunksUsed = this.fChunks.length;
+		unmapRegions();
 		try {
 			wasCanceled = this.fHeaderChunk.flush() || wasCanceled; // Zero out header chunk.
 			wasCanceled = performUninterruptableWrite(() -> {
@@ -412,21 +443,17 @@ public class Database {
 	}
 
 	private void removeChunksFromCache() {
-		int scanIndex = NUM_HEADER_CHUNKS;
-		while (scanIndex < this.fChunksUsed) {
-			synchronized (this.fCache) {
-				int countMax = Math.min(MAX_ITERATIONS_PER_LOCK, this.fChunksUsed - scanIndex);
-				for (int count = 0; count < countMax; count++) {
-					Chunk chunk = this.fChunks[scanIndex++];
-					if (chunk != null) {
-						this.fCache.remove(chunk);
-						if (DEBUG_PAGE_CACHE) {
-							System.out.println("CHUNK " + chunk.fSequenceNumber //$NON-NLS-1$
-									+ ": removing from vector in removeChunksFromCache - instance " //$NON-NLS-1$
-									+ System.identityHashCode(chunk));
-						}
-						this.fChunks[chunk.fSequenceNumber] = null;
+		for (int scanIndex = NUM_HEADER_CHUNKS; scanIndex < this.fChunksUsed; scanIndex++) {
+			synchronized (this.fCache.getLock(this, scanIndex)) {
+				Chunk chunk = this.fChunks[scanIndex];
+				if (chunk != null) {
+					this.fCache.remove(chunk);
+					if (DEBUG_PAGE_CACHE) {
+						System.out.println("CHUNK " + chunk.fSequenceNumber //$NON-NLS-1$
+								+ ": removing from vector in removeChunksFromCache - instance " //$NON-NLS-1$
+								+ System.identityHashCode(chunk));
 					}
+					this.fChunks[chunk.fSequenceNumber] = null;
 				}
 			}
 		}
@@ -448,34 +475,38 @@ public class Database {
 		assert long_index < Integer.MAX_VALUE;
 
 		final int index = (int) long_index;
+		final Object lock = this.fCache.getLock(this, index);
 		Chunk chunk;
-		synchronized (this.fCache) {
-			assert this.fLocked;
+		synchronized (lock) {
+			assert this.fLocked || isReadOptimistically();
 			if (index < 0 || index >= this.fChunks.length) {
 				databaseCorruptionDetected();
 			}
 			chunk = this.fChunks[index];
+			if (chunk != null) {
+				this.cacheHits.increment();
+				this.fCache.add(chunk);
+				this.fMostRecentlyFetchedChunk = chunk;
+				return chunk;
+			}
 		}
 
-		long readStartMs = 0;
-		long readEndMs = 0;
 		// Read the new chunk outside of any synchronized block (this allows parallel reads and prevents background
 		// threads from retaining a lock that blocks the UI while the background thread performs I/O).
-		boolean cacheMiss = (chunk == null);
-		if (cacheMiss) {
-			readStartMs = System.currentTimeMillis();
+		long readStartMs = System.currentTimeMillis();
+		ByteBuffer mapped = getMappedChunk(index);
+		if (mapped != null) {
+			chunk = new Chunk(this, index, mapped);
+			this.mappedReads.increment();
+		} else {
 			chunk = new Chunk(this, index);
 			chunk.read();
-			readEndMs = System.currentTimeMillis();
 		}
+		long readEndMs = System.currentTimeMillis();
+		this.cacheMisses.increment();
+		this.totalReadTimeMs.add(readEndMs - readStartMs);
 
-		synchronized (this.fCache) {
-			if (cacheMiss) {
-				this.cacheMisses++;
-				this.totalReadTimeMs += (readEndMs - readStartMs);
-			} else {
-				this.cacheHits++;
-			}
+		synchronized (lock) {
 			Chunk newChunk = this.fChunks[index];
 			if (newChunk != chunk && newChunk != null) {
 				// Another thread fetched this chunk in the meantime. In this case, we should use the chunk fetched
@@ -486,7 +517,7 @@ public class Database {
 							+ System.identityHashCode(chunk));
 				}
 				chunk = newChunk;
-			} else if (cacheMiss) {
+			} else {
 				if (DEBUG_PAGE_CACHE) {
 					System.out.println("CHUNK " + chunk.fSequenceNumber + ": inserted into vector - instance " //$NON-NLS-1$//$NON-NLS-2$
 							+ System.identityHashCode(chunk));
@@ -500,8 +531,68 @@ public class Database {
 		return chunk;
 	}
 
+	/**
+	 * Returns a read-only buffer on the content of the given chunk in a mapped region of the database file, or null
+	 * if the chunk must be read through the file channel: either mapping is disabled, or the chunk is not on disk
+	 * yet.
+	 */
+	private ByteBuffer getMappedChunk(int index) {
+		if (this.fCannotMapFile) {
+			return null;
+		}
+		int regionIndex = index / CHUNKS_PER_MAPPED_REGION;
+		int offset = (index % CHUNKS_PER_MAPPED_REGION) * CHUNK_SIZE;
+		ByteBuffer region;
+		synchronized (this.fMappedRegionsLock) {
+			if (this.fCannotMapFile) {
+				return null;
+			}
+			if (regionIndex >= this.fMappedRegions.length) {
+				MappedByteBuffer[] newRegions = new MappedByteBuffer[regionIndex + 1];
+				System.arraycopy(this.fMappedRegions, 0, newRegions, 0, this.fMappedRegions.length);
+				this.fMappedRegions = newRegions;
+			}
+			region = this.fMappedRegions[regionIndex];
+			if (region == null || region.capacity() < offset + CHUNK_SIZE) {
+				long regionStart = (long) regionIndex * CHUNKS_PER_MAPPED_REGION * CHUNK_SIZE;
+				try {
+					long regionSize = Math.min(this.fFile.length() - regionStart, (long) CHUNKS_PER_MAPPED_REGION * CHUNK_SIZE);
+					if (regionSize < offset + CHUNK_SIZE) {
+						return null;
+					}
+					MappedByteBuffer newRegion = this.fFile.getChannel().map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+					this.fMappedRegions[regionIndex] = newRegion;
+					region = newRegion;
+				} catch (ClosedChannelException e) {
+					// Let the file channel read reopen the file
+					return null;
+				} catch (IOException e) {
+					if (DEBUG_PAGE_CACHE) {
+						System.out.println("Cannot map database file " + this.fLocation + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					this.fCannotMapFile = true;
+					this.fMappedRegions = new MappedByteBuffer[0];
+					return null;
+				}
+			}
+		}
+		ByteBuffer buffer = region.duplicate();
+		buffer.position(offset);
+		buffer.limit(offset + CHUNK_SIZE);
+		return buffer.slice();
+	}
+
+	/**
+	 * Forgets the mapped regions of the database file, which must be done before truncating it.
+	 */
+	private void unmapRegions() {
+		synchronized (this.fMappedRegionsLock) {
+			this.fMappedRegions = new MappedByteBuffer[0];
+		}
+	}
+
 	public void assertLocked() {
-		if (!this.fLocked) {
+		if (!this.fLocked && !isReadOptimistically()) {
 			throw new IllegalStateException("Database not locked!"); //$NON-NLS-1$
 		}
 	}
@@ -1179,19 +1270,20 @@ public class Database {
 
 	private int createNewChunks(int numChunks) throws IndexException {
 		assert this.fExclusiveLock;
-		synchronized (this.fCache) {
-			final int firstChunkIndex = this.fChunksUsed;
-			final int lastChunkIndex = firstChunkIndex + numChunks - 1;
-
-			final Chunk lastChunk = new Chunk(this, lastChunkIndex);
-
-			if (lastChunkIndex >= this.fChunks.length) {
+		final int firstChunkIndex = this.fChunksUsed;
+		final int lastChunkIndex = firstChunkIndex + numChunks - 1;
+		if (lastChunkIndex >= this.fChunks.length) {
+			// hold all the locks, so that the chunks evicted by other threads while copying are released from the new array
+			this.fCache.runWithAllLocks(() -> {
 				int increment = Math.max(1024, this.fChunks.length / 20);
 				int newNumChunks = Math.max(lastChunkIndex + 1, this.fChunks.length + increment);
 				Chunk[] newChunks = new Chunk[newNumChunks];
 				System.arraycopy(this.fChunks, 0, newChunks, 0, this.fChunks.length);
 				this.fChunks = newChunks;
-			}
+			});
+		}
+		synchronized (this.fCache.getLock(this, lastChunkIndex)) {
+			final Chunk lastChunk = new Chunk(this, lastChunkIndex);
 
 			this.fChunksUsed = lastChunkIndex + 1;
 			if (DEBUG_PAGE_CACHE) {
@@ -1576,6 +1668,7 @@ public class Database {
 		this.dirtyChunkSet.clear();
 		this.fChunks= new Chunk[] { null };
 		this.fChunksUsed = this.fChunks.length;
+		unmapRegions();
 		try {
 			this.fFile.close();
 		} catch (IOException e) {
@@ -1591,7 +1684,7 @@ public class Database {
 	}
 
 	/**
-	 * Called from any thread via the cache, protected by {@link #fCache}.
+	 * Called from any thread via the cache, protected by the lock of the {@link #fCache} segment holding the chunk.
 	 */
 	void checkIfChunkReleased(final Chunk chunk) {
 		if (!chunk.fDirty && chunk.fCacheIndex < 0) {
@@ -1639,6 +1732,34 @@ public class Database {
 		this.fLocked= val;
 	}
 
+	/**
+	 * Registers a thread which reads the database without holding the lock of its Nd, after having
+	 * checked that no writer holds or waits for the write lock.
+	 */
+	public void addOptimisticReader() {
+		this.fOptimisticReads.get()[0]++;
+		this.fOptimisticReaders.incrementAndGet();
+	}
+
+	public void removeOptimisticReader() {
+		this.fOptimisticReaders.decrementAndGet();
+		this.fOptimisticReads.get()[0]--;
+	}
+
+	/**
+	 * Returns true iff any thread registered with {@link #addOptimisticReader()} is still reading the database.
+	 */
+	public boolean hasOptimisticReaders() {
+		return this.fOptimisticReaders.get() != 0;
+	}
+
+	/**
+	 * Returns true iff the current thread is registered with {@link #addOptimisticReader()}.
+	 */
+	private boolean isReadOptimistically() {
+		return this.fOptimisticReaders.get() != 0 && this.fOptimisticReads.get()[0] > 0;
+	}
+
 	public void giveUpExclusiveLock() {
 		this.fExclusiveLock = false;
 	}
@@ -1646,10 +1767,7 @@ public class Database {
 	public boolean flush() throws IndexException {
 		boolean wasInterrupted = false;
 		assert this.fLocked;
-		ArrayList<Chunk> dirtyChunks= new ArrayList<>();
-		synchronized (this.fCache) {
-			dirtyChunks.addAll(this.dirtyChunkSet);
-		}
+		ArrayList<Chunk> dirtyChunks= new ArrayList<>(this.dirtyChunkSet);
 		sortBySequenceNumber(dirtyChunks);
 
 		long startTime = System.currentTimeMillis();
@@ -1673,19 +1791,16 @@ public class Database {
 	 */
 	private boolean flushAndUnlockChunks(final ArrayList<Chunk> dirtyChunks, boolean isComplete) throws IndexException {
 		boolean wasInterrupted = false;
-		assert !Thread.holdsLock(this.fCache);
 		final boolean haveDirtyChunks = !dirtyChunks.isEmpty();
 		if (haveDirtyChunks || this.fHeaderChunk.fDirty) {
 			wasInterrupted = markFileIncomplete() || wasInterrupted;
 		}
 		if (haveDirtyChunks) {
 			double desiredWriteBytesPerMs = Database.MIN_BYTES_PER_MILLISECOND;
-			synchronized (this.fCache) {
-				if (this.cacheMisses > 100) {
-					double measuredReadBytesPerMs = getAverageReadBytesPerMs();
-					if (measuredReadBytesPerMs > 0) {
-						desiredWriteBytesPerMs = measuredReadBytesPerMs / 2;
-					}
+			if (this.cacheMisses.sum() > 100) {
+				double measuredReadBytesPerMs = getAverageReadBytesPerMs();
+				if (measuredReadBytesPerMs > 0) {
+					desiredWriteBytesPerMs = measuredReadBytesPerMs / 2;
 				}
 			}
 			desiredWriteBytesPerMs = Math.max(desiredWriteBytesPerMs, Database.MIN_BYTES_PER_MILLISECOND);
@@ -1699,7 +1814,7 @@ public class Database {
 									+ System.identityHashCode(chunk));
 						}
 						byte[] nextBytes;
-						synchronized (this.fCache) {
+						synchronized (this.fCache.getLock(this, chunk.fSequenceNumber)) {
 							nextBytes = chunk.getBytes();
 							chunk.fDirty = false;
 							chunkCleaned(chunk);
@@ -1710,10 +1825,8 @@ public class Database {
 					}
 				}
 				writer.flush();
-				synchronized (this.fCache) {
-					this.pageWritesBytes += writer.getBytesWritten();
-					this.totalWriteTimeMs += writer.getTotalWriteTimeMs();
-				}
+				this.pageWritesBytes += writer.getBytesWritten();
+				this.totalWriteTimeMs += writer.getTotalWriteTimeMs();
 			} catch (IOException e) {
 				throw new IndexException(new DBStatus(e));
 			}
@@ -1745,13 +1858,14 @@ public class Database {
 	}
 
 	public void resetCacheCounters() {
-		this.cacheHits = 0;
-		this.cacheMisses = 0;
+		this.cacheHits.reset();
+		this.cacheMisses.reset();
+		this.mappedReads.reset();
 		this.bytesWritten = 0;
 		this.totalFlushTime = 0;
 		this.pageWritesBytes = 0;
 		this.totalWriteTimeMs = 0;
-		this.totalReadTimeMs = 0;
+		this.totalReadTimeMs.reset();
 	}
 
 	public long getBytesWritten() {
@@ -1759,8 +1873,8 @@ public class Database {
 	}
 
 	public double getAverageReadBytesPerMs() {
-		long reads = this.cacheMisses;
-		long time = this.totalReadTimeMs;
+		long reads = this.cacheMisses.sum();
+		long time = this.totalReadTimeMs.sum();
 
 		if (time == 0) {
 			return 0;
@@ -1777,15 +1891,23 @@ public class Database {
 	}
 
 	public long getBytesRead() {
-		return this.cacheMisses * CHUNK_SIZE;
+		return this.cacheMisses.sum() * CHUNK_SIZE;
 	}
 
 	public long getCacheHits() {
-		return this.cacheHits;
+		return this.cacheHits.sum();
 	}
 
 	public long getCacheMisses() {
-		return this.cacheMisses;
+		return this.cacheMisses.sum();
+	}
+
+	/**
+	 * Returns the number of cache misses served by a mapped region of the database file rather than read through
+	 * the file channel.
+	 */
+	public long getMappedReads() {
+		return this.mappedReads.sum();
 	}
 
 	public long getCumulativeFlushTimeMs() {
@@ -1819,6 +1941,17 @@ public class Database {
 		return address != 0 ? (address + BLOCK_HEADER_SIZE) : address;
 	}
 
+	static void putRecPtr(final long value, ByteBuffer buffer, int idx) {
+		final int denseValue = value == 0 ? 0 : Chunk.compressFreeRecPtr(value - BLOCK_HEADER_SIZE);
+		buffer.putInt(idx, denseValue);
+	}
+
+	static long getRecPtr(ByteBuffer buffer, final int idx) {
+		int value = buffer.getInt(idx);
+		long address = Chunk.expandToFreeRecPtr(value);
+		return address != 0 ? (address + BLOCK_HEADER_SIZE) : address;
+	}
+
 	public MemoryStats getMemoryStats() {
 		return this.memoryUsage;
 	}
@@ -1861,7 +1994,8 @@ public class Database {
 	}
 
 	public ChunkStats getChunkStats() {
-		synchronized (this.fCache) {
+		ChunkStats[] stats = new ChunkStats[1];
+		this.fCache.runWithAllLocks(() -> {
 			int count = 0;
 			int dirtyChunks = 0;
 			int nonDirtyChunksNotInCache = 0;
@@ -1875,8 +2009,9 @@ public class Database {
 					}
 				}
 			}
-			return new ChunkStats(this.fChunks.length, count, dirtyChunks, nonDirtyChunksNotInCache);
-		}
+			stats[0] = new ChunkStats(this.fChunks.length, count, dirtyChunks, nonDirtyChunksNotInCache);
+		});
+		return stats[0];
 	}
 
 	public IndexExceptionBuilder describeProblem() {
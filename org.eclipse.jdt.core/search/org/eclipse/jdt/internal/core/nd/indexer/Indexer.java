@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016 Google, Inc and others.
+ * Copyright (c) 2016, 2019 Google, Inc and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -242,6 +242,7 @@ public final class Indexer {
 		SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
 		Database db = this.nd.getDB();
 		db.resetCacheCounters();
+		db.getChunkCache().resetCounters();
 		db.getLog().setBufferSize(DEBUG_LOG_SIZE_MB);
 
 		synchronized (this.automaticIndexingMutex) {
@@ -358,6 +359,10 @@ public final class Indexer {
 			double cacheMissPercent = totalReads == 0 ? 0 : (cacheMisses * 100.0) / totalReads;
 			System.out.println("  Cache misses = " + cacheMisses + " (" //$NON-NLS-1$//$NON-NLS-2$
 					+ percentFormat.format(cacheMissPercent) + "%)"); //$NON-NLS-1$
+			ChunkCache chunkCache = db.getChunkCache();
+			System.out.println("  Chunk cache hit rate = " + percentFormat.format(chunkCache.getHitRate() * 100.0) //$NON-NLS-1$
+					+ "%, evictions = " + chunkCache.getEvictionCount() + " (" + chunkCache.getSegmentCount() //$NON-NLS-1$ //$NON-NLS-2$
+					+ " segments)"); //$NON-NLS-1$
 
 			long bytesRead = db.getBytesRead();
 			long bytesWritten = db.getBytesWritten();
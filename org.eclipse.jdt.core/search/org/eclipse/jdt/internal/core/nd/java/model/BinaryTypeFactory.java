@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015, 2016 Google, Inc and others.
+ * Copyright (c) 2015, 2019 Google, Inc and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -217,7 +217,7 @@ public class BinaryTypeFactory {
 
 		if (descriptor.location != null) {
 			// Acquire a read lock on the index
-			try (IReader lock = nd.acquireReadLock()) {
+			try (IReader lock = nd.acquireOptimisticReadLock()) {
 				try {
 					TypeRef typeRef = TypeRef.create(nd, descriptor.location, fieldDescriptor);
 					NdType type = typeRef.get();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -25,4 +25,10 @@ public abstract class IndexQueryRequestor {
 	// answer false if requesting cancel
 	public abstract boolean acceptIndexMatch(String documentPath, SearchPattern indexRecord, SearchParticipant participant, AccessRuleSet access);
 
+	// answer true if the index records are kept after the matches are accepted, so that each matching index entry
+	// must be decoded in a new record rather than in the record of the previous entry
+	public boolean keepsIndexRecords() {
+		return false;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -135,7 +135,7 @@ private static int canSeeFocus(IJavaElement focus, JavaProject javaProject, char
 						int vLength = values.length;
 						for (int j=0; j<vLength; j++)  {
 							if (values[j] == null) continue;
-							ReferenceCollection references = (ReferenceCollection) values[j];
+							ReferenceCollection references = projectState.getReferenceCollection(j);
 							if (references.includes(focusQualifiedNames, null, null)) {
 								return PROJECT_CAN_SEE_FOCUS;
 							}
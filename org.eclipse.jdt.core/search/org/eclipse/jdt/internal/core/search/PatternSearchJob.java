@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -14,18 +14,30 @@
 package org.eclipse.jdt.internal.core.search;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.search.*;
+import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
+import org.eclipse.jdt.internal.compiler.util.SimpleSet;
 import org.eclipse.jdt.internal.core.JavaModelManager;
 import org.eclipse.jdt.internal.core.index.FileIndexLocation;
 import org.eclipse.jdt.internal.core.index.Index;
 import org.eclipse.jdt.internal.core.index.IndexLocation;
 import org.eclipse.jdt.internal.core.search.indexing.ReadWriteMonitor;
+import org.eclipse.jdt.internal.core.search.matching.IntersectingPattern;
 import org.eclipse.jdt.internal.core.search.matching.MatchLocator;
+import org.eclipse.jdt.internal.core.search.matching.OrPattern;
 import org.eclipse.jdt.internal.core.search.processing.IJob;
 import org.eclipse.jdt.internal.core.search.processing.JobManager;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -39,6 +51,125 @@ protected IndexQueryRequestor requestor;
 protected boolean areIndexesReady;
 protected long executionTime = 0;
 
+/*
+ * Number of threads that query indexes concurrently, 1 to query them one after the other.
+ * Tests compare the results of both modes by changing it between searches.
+ */
+public static int QUERY_THREADS = Math.max(1, Integer.getInteger("jdt.search.queryThreads", Math.min(4, Runtime.getRuntime().availableProcessors())).intValue()); //$NON-NLS-1$
+static final int MIN_PARALLEL_INDEXES = 4;
+static final int MATCH_BATCH_SIZE = 64;
+static final int MAX_PENDING_MATCHES = 16 * MATCH_BATCH_SIZE;
+private static ForkJoinPool QUERY_POOL;
+
+/*
+ * The query of one index by a pool thread. Its matches are handed over in batches to the thread executing
+ * the job, which passes them to the job's requestor in the order of the indexes: each matching index entry
+ * is decoded in its own record, so a record is still valid when the requestor sees it, and the requestor is
+ * never called concurrently.
+ */
+class IndexQuery extends IndexQueryRequestor implements Runnable {
+	final Index index;
+	final IProgressMonitor progressMonitor;
+	// the matches not delivered yet, as document path, index record, participant and access rule set
+	List<Object[]> matches = new ArrayList<>();
+	boolean started, done, cancelled, isComplete;
+	Throwable failure;
+	long time;
+
+	IndexQuery(Index index, IProgressMonitor progressMonitor) {
+		this.index = index;
+		this.progressMonitor = progressMonitor;
+	}
+	@Override
+	public synchronized boolean acceptIndexMatch(String path, SearchPattern record, SearchParticipant searchParticipant, AccessRuleSet accessRuleSet) {
+		try {
+			while (this.matches.size() >= MAX_PENDING_MATCHES && !this.cancelled)
+				wait();
+		} catch (InterruptedException e) {
+			this.cancelled = true;
+		}
+		if (this.cancelled)
+			throw new OperationCanceledException();
+		this.matches.add(new Object[] {path, record, searchParticipant, accessRuleSet});
+		if (this.matches.size() == MATCH_BATCH_SIZE)
+			notifyAll();
+		return true; // the requestor is asked when the match is delivered
+	}
+	@Override
+	public boolean keepsIndexRecords() {
+		return true;
+	}
+	synchronized void cancel() {
+		this.cancelled = true;
+		notifyAll();
+	}
+	/*
+	 * Passes the matches of this query to the job's requestor until the query is done.
+	 */
+	void deliverMatches() {
+		while (true) {
+			List<Object[]> batch;
+			synchronized (this) {
+				try {
+					while (this.matches.size() < MATCH_BATCH_SIZE && !this.done)
+						wait();
+				} catch (InterruptedException e) {
+					throw new OperationCanceledException();
+				}
+				batch = this.matches;
+				if (batch.isEmpty()) {
+					if (this.failure instanceof Error)
+						throw (Error) this.failure;
+					if (this.failure != null)
+						throw (RuntimeException) this.failure;
+					return;
+				}
+				this.matches = new ArrayList<>();
+				notifyAll();
+			}
+			for (int i = 0, length = batch.size(); i < length; i++) {
+				Object[] match = batch.get(i);
+				if (!PatternSearchJob.this.requestor.acceptIndexMatch((String) match[0], (SearchPattern) match[1], (SearchParticipant) match[2], (AccessRuleSet) match[3]))
+					throw new OperationCanceledException();
+			}
+		}
+	}
+	@Override
+	public void run() {
+		synchronized (this) {
+			if (this.cancelled) {
+				this.done = true;
+				notifyAll();
+				return;
+			}
+			this.started = true;
+		}
+		boolean complete = COMPLETE;
+		Throwable exception = null;
+		long start = System.currentTimeMillis();
+		try {
+			complete = search(this.index, this, this.progressMonitor);
+		} catch (RuntimeException | Error e) {
+			exception = e;
+		}
+		synchronized (this) {
+			this.time = System.currentTimeMillis() - start;
+			this.isComplete = complete;
+			this.failure = exception;
+			this.done = true;
+			notifyAll();
+		}
+	}
+	synchronized void waitUntilDone() {
+		try {
+			while (this.started && !this.done)
+				wait();
+		} catch (InterruptedException e) {
+			// the query was cancelled, its pool thread is about to release the index
+		}
+	}
+}
+
 public PatternSearchJob(SearchPattern pattern, SearchParticipant participant, IJavaSearchScope scope, IndexQueryRequestor requestor) {
 	this.pattern = pattern;
 	this.participant = participant;
@@ -68,8 +199,15 @@ public boolean execute(IProgressMonitor progressMonitor) {
 	try {
 		int max = indexes.length;
 		SubMonitor loopMonitor = subMonitor.split(2).setWorkRemaining(max);
-		for (int i = 0; i < max; i++) {
-			isComplete &= search(indexes[i], loopMonitor.split(1));
+		if (canSearchInParallel(indexes)) {
+			if (this.pattern instanceof IntersectingPattern)
+				isComplete = searchIntersectionInParallel((IntersectingPattern) this.pattern, indexes, progressMonitor, loopMonitor);
+			else
+				isComplete = searchInParallel(indexes, progressMonitor, loopMonitor);
+		} else {
+			for (int i = 0; i < max; i++) {
+				isComplete &= search(indexes[i], loopMonitor.split(1));
+			}
 		}
 		if (JobManager.VERBOSE)
 			Util.verbose("-> execution time: " + this.executionTime + "ms - " + this);//$NON-NLS-1$//$NON-NLS-2$
@@ -78,6 +216,37 @@ public boolean execute(IProgressMonitor progressMonitor) {
 		SubMonitor.done(progressMonitor);
 	}
 }
+/*
+ * Answers whether the given indexes can be queried concurrently: the pattern must not keep the state
+ * of its current query, unless it is an intersecting pattern whose queries are run one after the other
+ * on all the indexes, and the scope must answer whether it encloses a document from any thread.
+ * Subclasses which track the searched indexes answer false.
+ */
+protected boolean canSearchInParallel(Index[] indexes) {
+	if (QUERY_THREADS <= 1 || indexes.length < MIN_PARALLEL_INDEXES)
+		return false;
+	if (!(this.participant instanceof JavaSearchParticipant))
+		return false;
+	if (!(this.scope instanceof JavaSearchScope || this.scope instanceof JavaWorkspaceScope))
+		return false;
+	return this.pattern instanceof IntersectingPattern || canQueryConcurrently(this.pattern);
+}
+private static boolean canQueryConcurrently(SearchPattern searchPattern) {
+	if (searchPattern instanceof IntersectingPattern)
+		return false;
+	if (searchPattern instanceof OrPattern) {
+		SearchPattern[] patterns = ((OrPattern) searchPattern).getPatterns();
+		for (int i = 0, length = patterns.length; i < length; i++)
+			if (!canQueryConcurrently(patterns[i]))
+				return false;
+	}
+	return true;
+}
+private static synchronized ForkJoinPool getQUERY_POOL() {
+	if (QUERY_POOL == null)
+		QUERY_POOL = new ForkJoinPool(QUERY_THREADS);
+	return QUERY_POOL;
+}
 public Index[] getIndexes(IProgressMonitor progressMonitor) {
 	// acquire the in-memory indexes on the fly
 	IndexLocation[] indexLocations;
@@ -107,15 +276,21 @@ public String getJobFamily() {
 	return ""; //$NON-NLS-1$
 }
 public boolean search(Index index, IProgressMonitor progressMonitor) {
+	long start = System.currentTimeMillis();
+	try {
+		return search(index, this.requestor, progressMonitor);
+	} finally {
+		this.executionTime += System.currentTimeMillis() - start;
+	}
+}
+boolean search(Index index, IndexQueryRequestor queryRequestor, IProgressMonitor progressMonitor) {
 	if (index == null) return COMPLETE;
 	if (progressMonitor != null && progressMonitor.isCanceled()) throw new OperationCanceledException();
 	ReadWriteMonitor monitor = index.monitor;
 	if (monitor == null) return COMPLETE; // index got deleted since acquired
 	try {
 		monitor.enterRead(); // ask permission to read
-		long start = System.currentTimeMillis();
-		MatchLocator.findIndexMatches(this.pattern, index, this.requestor, this.participant, this.scope, progressMonitor);
-		this.executionTime += System.currentTimeMillis() - start;
+		MatchLocator.findIndexMatches(this.pattern, index, queryRequestor, this.participant, this.scope, progressMonitor);
 		return COMPLETE;
 	} catch (IOException e) {
 		if (e instanceof java.io.EOFException)
@@ -125,6 +300,154 @@ public boolean search(Index index, IProgressMonitor progressMonitor) {
 		monitor.exitRead(); // finished reading
 	}
 }
+/*
+ * Queries the given indexes on the query pool, and passes their matches to the requestor in the order
+ * of the indexes. Pool threads take the indexes in order, so the first index which is not done is always
+ * being queried, or is queried by the current thread when no pool thread is available.
+ */
+private boolean searchInParallel(Index[] indexes, IProgressMonitor progressMonitor, SubMonitor loopMonitor) {
+	int max = indexes.length;
+	IndexQuery[] queries = new IndexQuery[max];
+	for (int i = 0; i < max; i++)
+		queries[i] = new IndexQuery(indexes[i], progressMonitor);
+	AtomicInteger nextQuery = new AtomicInteger();
+	Runnable worker = () -> {
+		int i;
+		while ((i = nextQuery.getAndIncrement()) < max)
+			queries[i].run();
+	};
+	ForkJoinPool pool = getQUERY_POOL();
+	for (int i = 0, workers = Math.min(QUERY_THREADS, max); i < workers; i++)
+		pool.execute(worker);
+
+	boolean isComplete = COMPLETE;
+	try {
+		for (int i = 0; i < max; i++) {
+			SubMonitor indexMonitor = loopMonitor.split(1);
+			if (nextQuery.compareAndSet(i, i + 1)) {
+				// no pool thread took this index yet
+				long start = System.currentTimeMillis();
+				isComplete &= search(indexes[i], this.requestor, indexMonitor);
+				this.executionTime += System.currentTimeMillis() - start;
+			} else {
+				IndexQuery query = queries[i];
+				query.deliverMatches();
+				isComplete &= query.isComplete;
+				this.executionTime += query.time;
+			}
+		}
+	} finally {
+		nextQuery.set(max);
+		for (int i = 0; i < max; i++)
+			queries[i].cancel();
+		for (int i = 0; i < max; i++)
+			queries[i].waitUntilDone(); // release the read locks before answering
+	}
+	return isComplete;
+}
+/*
+ * Runs each query of the given intersecting pattern on all the given indexes at once, then passes the documents
+ * found in each index by all the queries to the requestor in the order of the indexes. The state of the pattern
+ * only changes between two queries, in the current thread.
+ */
+private boolean searchIntersectionInParallel(IntersectingPattern intersectingPattern, Index[] indexes, IProgressMonitor progressMonitor, SubMonitor loopMonitor) {
+	int max = indexes.length;
+	SimpleSet[] names = new SimpleSet[max];
+	boolean[] done = new boolean[max]; // no document left, or the index could not be read
+	boolean[] failed = new boolean[max];
+	long start = System.currentTimeMillis();
+	for (SearchPattern query = intersectingPattern.firstIndexQuery(); query != null; query = intersectingPattern.nextIndexQuery()) {
+		final SearchPattern currentQuery = query;
+		runOnQueryPool(max, i -> {
+			if (done[i]) return;
+			Index index = indexes[i];
+			ReadWriteMonitor monitor = index == null ? null : index.monitor;
+			if (monitor == null) { // index got deleted since acquired
+				done[i] = true;
+				return;
+			}
+			if (progressMonitor != null && progressMonitor.isCanceled()) throw new OperationCanceledException();
+			try {
+				monitor.enterRead(); // ask permission to read
+				index.startQuery();
+				try {
+					names[i] = intersectingPattern.findDocumentNames(currentQuery, index, names[i], progressMonitor);
+				} finally {
+					index.stopQuery();
+				}
+			} catch (IOException e) {
+				if (e instanceof java.io.EOFException)
+					e.printStackTrace();
+				names[i] = null;
+				failed[i] = true;
+			} finally {
+				monitor.exitRead(); // finished reading
+			}
+			if (names[i] == null)
+				done[i] = true;
+		});
+	}
+	boolean isComplete = COMPLETE;
+	for (int i = 0; i < max; i++) {
+		SubMonitor indexMonitor = loopMonitor.split(1);
+		if (failed[i])
+			isComplete = FAILED;
+		else if (!done[i])
+			intersectingPattern.acceptDocumentNames(names[i], indexes[i], this.requestor, this.participant, this.scope, indexMonitor);
+	}
+	this.executionTime += System.currentTimeMillis() - start;
+	return isComplete;
+}
+/*
+ * Runs the given task for each index from 0 to max - 1, on the query pool and in the current thread, and
+ * answers once all the tasks are done. The workers which did not start when the current thread is done are
+ * cancelled, so that a search started while the pool threads are busy cannot wait for them, but the tasks
+ * that they already started are waited for: a cancelled ForkJoinTask does not wait for its running code.
+ * The first exception thrown by a task, if any, is thrown again.
+ */
+private static void runOnQueryPool(int max, IntConsumer task) {
+	AtomicInteger nextIndex = new AtomicInteger();
+	CountDownLatch finished = new CountDownLatch(max);
+	AtomicReference<Throwable> failure = new AtomicReference<>();
+	Runnable worker = () -> {
+		int i;
+		while (failure.get() == null && (i = nextIndex.getAndIncrement()) < max) {
+			try {
+				task.accept(i);
+			} catch (RuntimeException | Error e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				finished.countDown();
+			}
+		}
+	};
+	ForkJoinPool pool = getQUERY_POOL();
+	ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[Math.min(QUERY_THREADS - 1, max - 1)];
+	for (int i = 0; i < tasks.length; i++)
+		tasks[i] = pool.submit(worker);
+	worker.run();
+	// no task can start anymore: count down the ones which were not started
+	for (int i = Math.min(nextIndex.getAndSet(max), max); i < max; i++)
+		finished.countDown();
+	for (int i = 0; i < tasks.length; i++)
+		tasks[i].cancel(false);
+	boolean interrupted = false;
+	while (true) {
+		try {
+			finished.await();
+			break;
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+	}
+	if (interrupted)
+		Thread.currentThread().interrupt();
+	Throwable exception = failure.get();
+	if (exception instanceof RuntimeException)
+		throw (RuntimeException) exception;
+	if (exception instanceof Error)
+		throw (Error) exception;
+}
 @Override
 public String toString() {
 	return "searching " + this.pattern.toString(); //$NON-NLS-1$
@@ -32,6 +32,10 @@ public void finished() {
 			((Index) values[i]).stopQuery();
 }
 @Override
+protected boolean canSearchInParallel(Index[] searchedIndexes) {
+	return false; // the indexes are remembered until the job's end
+}
+@Override
 public Index[] getIndexes(IProgressMonitor progressMonitor) {
 	if (this.indexes.elementSize == 0) {
 		return super.getIndexes(progressMonitor);
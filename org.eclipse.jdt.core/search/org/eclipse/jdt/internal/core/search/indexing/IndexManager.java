@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -283,6 +283,13 @@ public SourceElementParser getSourceElementParser(IJavaProject project, ISourceE
 
 	return parser;
 }
+/**
+ * Requests on different containers update different indexes, and can be executed concurrently.
+ */
+@Override
+protected Object getJobKey(IJob job) {
+	return job instanceof IndexRequest ? ((IndexRequest) job).containerPath : null;
+}
 /**
  * Returns the index for a given index location
  *
@@ -674,7 +681,7 @@ synchronized boolean addIndex(IPath containerPath, IndexLocation indexFile) {
 public void indexSourceFolder(JavaProject javaProject, IPath sourceFolder, char[][] inclusionPatterns, char[][] exclusionPatterns) {
 	IProject project = javaProject.getProject();
 	this.indexer.makeWorkspacePathDirty(sourceFolder);
-	if (this.jobEnd > this.jobStart) {
+	if (this.jobEnd >= this.jobStart) {
 		// skip it if a job to index the project is already in the queue
 		IndexRequest request = new IndexAllProject(project, this);
 		if (isJobWaiting(request)) return;
@@ -692,14 +699,14 @@ public synchronized void jobWasCancelled(IPath containerPath) {
 	updateIndexState(indexLocation, UNKNOWN_STATE);
 }
 /**
- * Advance to the next available job, once the current one has been completed.
+ * Remove the given job from the queue, once it has been completed.
  * Note: clients awaiting until the job count is zero are still waiting at this point.
  */
 @Override
-protected synchronized void moveToNextJob() {
+protected synchronized void moveToNextJob(IJob job) {
 	// remember that one job was executed, and we will need to save indexes at some point
 	this.needToSave = true;
-	super.moveToNextJob();
+	super.moveToNextJob(job);
 }
 /**
  * No more job awaiting.
@@ -905,7 +912,7 @@ public synchronized void removeIndexFamily(IPath path) {
 public void removeSourceFolderFromIndex(JavaProject javaProject, IPath sourceFolder, char[][] inclusionPatterns, char[][] exclusionPatterns) {
 	this.indexer.makeWorkspacePathDirty(sourceFolder);
 	IProject project = javaProject.getProject();
-	if (this.jobEnd > this.jobStart) {
+	if (this.jobEnd >= this.jobStart) {
 		// skip it if a job to index the project is already in the queue
 		IndexRequest request = new IndexAllProject(project, this);
 		if (isJobWaiting(request)) return;
@@ -983,12 +990,10 @@ public void saveIndex(Index index) throws IOException {
 	}
 	synchronized (this) {
 		IPath containerPath = new Path(index.containerPath);
-		if (this.jobEnd > this.jobStart) {
-			for (int i = this.jobEnd; i > this.jobStart; i--) { // skip the current job
-				IJob job = this.awaitingJobs[i];
-				if (job instanceof IndexRequest)
-					if (((IndexRequest) job).containerPath.equals(containerPath)) return;
-			}
+		for (int i = this.jobEnd; i >= this.jobStart; i--) {
+			IJob job = this.awaitingJobs[i];
+			if (job instanceof IndexRequest && !isExecuting(job)) // skip the current jobs
+				if (((IndexRequest) job).containerPath.equals(containerPath)) return;
 		}
 		IndexLocation indexLocation = computeIndexLocation(containerPath);
 		updateIndexState(indexLocation, SAVED_STATE);
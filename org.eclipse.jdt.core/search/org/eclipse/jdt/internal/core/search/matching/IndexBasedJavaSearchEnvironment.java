@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015, 2018 Google, Inc and others.
+ * Copyright (c) 2015, 2019 Google, Inc and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -130,7 +130,7 @@ public class IndexBasedJavaSearchEnvironment implements INameEnvironment, Suffix
 		char[] fieldDescriptor = JavaNames.binaryNameToFieldDescriptor(binaryName);
 		JavaIndex index = JavaIndex.getIndex();
 		Nd nd = index.getNd();
-		try (IReader lock = nd.acquireReadLock()) {
+		try (IReader lock = nd.acquireOptimisticReadLock()) {
 			NdTypeId typeId = index.findType(fieldDescriptor);
 
 			if (typeId != null) {
@@ -284,7 +284,7 @@ public class IndexBasedJavaSearchEnvironment implements INameEnvironment, Suffix
 		// the classpath of this project.
 		JavaIndex index = JavaIndex.getIndex();
 		Nd nd = index.getNd();
-		try (IReader lock = nd.acquireReadLock()) {
+		try (IReader lock = nd.acquireOptimisticReadLock()) {
 			return !index.visitFieldDescriptorsStartingWith(fieldDescriptorPrefix,
 					new FieldSearchIndex.Visitor<NdTypeId>() {
 						@Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -34,42 +34,65 @@ public IntersectingPattern(int patternKind, int matchRule) {
 public void findIndexMatches(Index index, IndexQueryRequestor requestor, SearchParticipant participant, IJavaSearchScope scope, IProgressMonitor progressMonitor) throws IOException {
 	if (progressMonitor != null && progressMonitor.isCanceled()) throw new OperationCanceledException();
 
-	resetQuery();
 	SimpleSet intersectedNames = null;
 	try {
 		index.startQuery();
-		do {
-			SearchPattern pattern = currentPattern();
-			EntryResult[] entries = pattern.queryIn(index);
-			if (entries == null) return;
-
-			SearchPattern decodedResult = pattern.getBlankPattern();
-			SimpleSet newIntersectedNames = new SimpleSet(3);
-			for (int i = 0, l = entries.length; i < l; i++) {
-				if (progressMonitor != null && progressMonitor.isCanceled()) throw new OperationCanceledException();
-
-				EntryResult entry = entries[i];
-				decodedResult.decodeIndexKey(entry.getWord());
-				if (pattern.matchesDecodedKey(decodedResult)) {
-					String[] names = entry.getDocumentNames(index);
-					if (intersectedNames != null) {
-						for (int j = 0, n = names.length; j < n; j++)
-							if (intersectedNames.includes(names[j]))
-								newIntersectedNames.add(names[j]);
-					} else {
-						for (int j = 0, n = names.length; j < n; j++)
-							newIntersectedNames.add(names[j]);
-					}
-				}
-			}
-
-			if (newIntersectedNames.elementSize == 0) return;
-			intersectedNames = newIntersectedNames;
-		} while (hasNextQuery());
+		for (SearchPattern pattern = firstIndexQuery(); pattern != null; pattern = nextIndexQuery()) {
+			intersectedNames = findDocumentNames(pattern, index, intersectedNames, progressMonitor);
+			if (intersectedNames == null) return;
+		}
 	} finally {
 		index.stopQuery();
 	}
+	acceptDocumentNames(intersectedNames, index, requestor, participant, scope, progressMonitor);
+}
+/**
+ * Resets the query and answers the pattern of its first query.
+ */
+public SearchPattern firstIndexQuery() {
+	resetQuery();
+	return currentPattern();
+}
+/**
+ * Answers the pattern of the next query, or <code>null</code> if all the queries were done.
+ */
+public SearchPattern nextIndexQuery() {
+	return hasNextQuery() ? currentPattern() : null;
+}
+/**
+ * Answers the names of the documents of the given index matching the given query, and included in the names
+ * matching the previous queries when given, or <code>null</code> if there are none.
+ * The state of this pattern is not modified, so that several indexes can be queried concurrently.
+ */
+public SimpleSet findDocumentNames(SearchPattern pattern, Index index, SimpleSet intersectedNames, IProgressMonitor progressMonitor) throws IOException {
+	EntryResult[] entries = pattern.queryIn(index);
+	if (entries == null) return null;
+
+	SearchPattern decodedResult = pattern.getBlankPattern();
+	SimpleSet newIntersectedNames = new SimpleSet(3);
+	for (int i = 0, l = entries.length; i < l; i++) {
+		if (progressMonitor != null && progressMonitor.isCanceled()) throw new OperationCanceledException();
 
+		EntryResult entry = entries[i];
+		decodedResult.decodeIndexKey(entry.getWord());
+		if (pattern.matchesDecodedKey(decodedResult)) {
+			String[] names = entry.getDocumentNames(index);
+			if (intersectedNames != null) {
+				for (int j = 0, n = names.length; j < n; j++)
+					if (intersectedNames.includes(names[j]))
+						newIntersectedNames.add(names[j]);
+			} else {
+				for (int j = 0, n = names.length; j < n; j++)
+					newIntersectedNames.add(names[j]);
+			}
+		}
+	}
+	return newIntersectedNames.elementSize == 0 ? null : newIntersectedNames;
+}
+/**
+ * Passes the documents of the given index found by all the queries to the given requestor.
+ */
+public void acceptDocumentNames(SimpleSet intersectedNames, Index index, IndexQueryRequestor requestor, SearchParticipant participant, IJavaSearchScope scope, IProgressMonitor progressMonitor) {
 	String containerPath = index.containerPath;
 	char separator = index.separator;
 	Object[] names = intersectedNames.values;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -25,6 +25,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.zip.ZipFile;
 
@@ -120,6 +122,13 @@ static {
 			break;
 	}
 }
+/*
+ * Number of threads locating the possible matches in parallel, each one with its own lookup environment.
+ * Disabled by default, as each thread resolves up to MAX_AT_ONCE units at once.
+ * Tests compare the results of both modes by changing it between searches.
+ */
+public static int LOCATE_THREADS = Math.max(1, Integer.getInteger("jdt.search.locateThreads", 1).intValue()); //$NON-NLS-1$
+private static ForkJoinPool LOCATE_POOL;
 
 // permanent state
 public SearchPattern pattern;
@@ -195,6 +204,29 @@ public static class WrappedCoreException extends RuntimeException {
 	}
 }
 
+/*
+ * A slice of the possible matches of a project, which is located with its own lookup environment
+ * (see locateMatches(JavaProject, PossibleMatchSet, int)). When the slices are located in parallel,
+ * the matches found in a slice are kept until they can be reported in the order of the slices.
+ */
+static class PossibleMatchSlice {
+	final JavaProject javaProject;
+	final PossibleMatch[] possibleMatches;
+	final int start;
+	final int length;
+	ArrayList<SearchMatch> matches = new ArrayList<>();
+	boolean claimed; // guarded by the array of slices
+	boolean done; // guarded by the array of slices
+	Throwable failure;
+
+	PossibleMatchSlice(JavaProject javaProject, PossibleMatch[] possibleMatches, int start, int length) {
+		this.javaProject = javaProject;
+		this.possibleMatches = possibleMatches;
+		this.start = start;
+		this.length = length;
+	}
+}
+
 public static SearchDocument[] addWorkingCopies(SearchPattern pattern, SearchDocument[] indexMatches, org.eclipse.jdt.core.ICompilationUnit[] copies, SearchParticipant participant) {
 	if (copies == null) return indexMatches;
 	// working copies take precedence over corresponding compilation units
@@ -1379,6 +1411,196 @@ protected void locateMatches(JavaProject javaProject, PossibleMatchSet matchSet,
 	}
 	this.patternLocator.clear();
 }
+/*
+ * Splits the possible matches of the given project in the slices locateMatches(JavaProject, PossibleMatchSet, int)
+ * would locate one after the other, so that they can be located in parallel.
+ */
+private void addPossibleMatchSlices(JavaProject javaProject, PossibleMatchSet matchSet, int expected, ArrayList<PossibleMatchSlice> slices) throws JavaModelException {
+	PossibleMatch[] possibleMatches = matchSet.getPossibleMatches(javaProject.getPackageFragmentRoots());
+	int length = possibleMatches.length;
+	// increase progress from duplicate matches not stored in matchSet while adding...
+	if (this.progressMonitor != null && expected>length) {
+		this.progressWorked += expected-length;
+		this.progressMonitor.worked( expected-length);
+	}
+	for (int index = 0; index < length;) {
+		int max = Math.min(MAX_AT_ONCE, length - index);
+		slices.add(new PossibleMatchSlice(javaProject, possibleMatches, index, max));
+		index += max;
+	}
+}
+/*
+ * Locates the given slices of possible matches, in parallel when there are several of them. The slices are claimed
+ * in order by the pool threads, and by this thread when it needs the matches of a slice no thread has started yet.
+ * The matches are reported by this thread, in the order of the slices, so that they are reported in the same order
+ * as when the slices are located one after the other.
+ */
+private void locateMatches(PossibleMatchSlice[] slices) throws CoreException {
+	int length = slices.length;
+	if (length < 2) {
+		for (int i = 0; i < length; i++) {
+			try {
+				locateMatches(slices[i].javaProject, slices[i].possibleMatches, slices[i].start, slices[i].length);
+			} catch (JavaModelException e) {
+				// problem with classpath in this project -> skip it
+			}
+			this.patternLocator.clear();
+		}
+		return;
+	}
+	IProgressMonitor parentMonitor = this.progressMonitor;
+	NullProgressMonitor sliceMonitor = new NullProgressMonitor() {
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || (parentMonitor != null && parentMonitor.isCanceled());
+		}
+	};
+	AtomicInteger nextSlice = new AtomicInteger();
+	Runnable worker = () -> {
+		if (sliceMonitor.isCanceled()) return; // all slices were located before this thread started
+		MatchLocator locator = newSliceLocator(sliceMonitor);
+		try {
+			int index;
+			while (!sliceMonitor.isCanceled() && (index = nextSlice.getAndIncrement()) < length) {
+				if (claimSlice(slices, index)) // otherwise located by the searching thread
+					locator.locateSlice(slices, index);
+			}
+		} finally {
+			locator.cleanUpSliceLocator();
+		}
+	};
+	ForkJoinPool pool = getLocatePool();
+	for (int i = 0, workers = Math.min(pool.getParallelism(), length); i < workers; i++)
+		pool.execute(worker);
+
+	MatchLocator inlineLocator = null;
+	try {
+		inlineLocator = newSliceLocator(sliceMonitor);
+		JavaProject failedProject = null;
+		for (int i = 0; i < length; i++) {
+			if (this.progressMonitor != null && this.progressMonitor.isCanceled())
+				throw new OperationCanceledException();
+			PossibleMatchSlice slice = slices[i];
+			if (claimSlice(slices, i)) {
+				inlineLocator.locateSlice(slices, i);
+			} else {
+				synchronized (slices) {
+					while (!slice.done) {
+						try {
+							slices.wait();
+						} catch (InterruptedException e) {
+							throw new OperationCanceledException();
+						}
+					}
+				}
+			}
+			if (slice.javaProject == failedProject)
+				continue; // the remaining slices of a project with a classpath problem are skipped
+			for (int j = 0, size = slice.matches.size(); j < size; j++)
+				this.requestor.acceptSearchMatch(slice.matches.get(j));
+			slice.matches = null;
+			if (slice.failure instanceof JavaModelException) {
+				// problem with classpath in this project -> skip it
+				failedProject = slice.javaProject;
+			} else if (slice.failure instanceof CoreException) {
+				throw (CoreException) slice.failure;
+			} else if (slice.failure instanceof RuntimeException) {
+				throw (RuntimeException) slice.failure;
+			} else if (slice.failure instanceof Error) {
+				throw (Error) slice.failure;
+			}
+			if (this.progressMonitor != null) {
+				int worked = this.progressWorked / this.progressStep;
+				this.progressWorked += slice.length;
+				worked = this.progressWorked / this.progressStep - worked;
+				if (worked > 0) this.progressMonitor.worked(worked * this.progressStep);
+			}
+		}
+	} finally {
+		// stop the pool threads, and wait until they leave the slices they are locating
+		sliceMonitor.setCanceled(true);
+		synchronized (slices) {
+			for (int i = 0; i < length; i++) {
+				if (slices[i].claimed) {
+					while (!slices[i].done) {
+						try {
+							slices.wait();
+						} catch (InterruptedException e) {
+							break;
+						}
+					}
+				} else {
+					slices[i].claimed = true;
+				}
+			}
+		}
+		if (inlineLocator != null)
+			inlineLocator.cleanUpSliceLocator();
+	}
+}
+private static boolean claimSlice(PossibleMatchSlice[] slices, int index) {
+	synchronized (slices) {
+		if (slices[index].claimed) return false;
+		slices[index].claimed = true;
+		return true;
+	}
+}
+/*
+ * Answers the pool locating the slices, sized from the current value of LOCATE_THREADS.
+ * A pool of another size is shut down once the slices given to it are located.
+ */
+private static synchronized ForkJoinPool getLocatePool() {
+	int threads = Math.max(1, LOCATE_THREADS);
+	if (LOCATE_POOL == null || LOCATE_POOL.getParallelism() != threads) {
+		if (LOCATE_POOL != null)
+			LOCATE_POOL.shutdown();
+		LOCATE_POOL = new ForkJoinPool(threads);
+	}
+	return LOCATE_POOL;
+}
+/*
+ * Creates a locator for the slices of possible matches, which shares the state of this locator
+ * that is not specific to a lookup environment.
+ */
+private MatchLocator newSliceLocator(IProgressMonitor monitor) {
+	MatchLocator locator = new MatchLocator(this.pattern, null, this.scope, monitor);
+	locator.workingCopies = this.workingCopies;
+	locator.handleFactory = new HandleFactory();
+	locator.bindings = new SimpleLookupTable();
+	locator.progressStep = Integer.MAX_VALUE; // progress is reported by the searching thread
+	locator.patternLocator.initializePolymorphicSearch(locator, this.patternLocator);
+	// optimize access to zip files for the thread using this locator
+	JavaModelManager.getJavaModelManager().cacheZipFiles(locator);
+	return locator;
+}
+private void cleanUpSliceLocator() {
+	if (this.nameEnvironment != null)
+		this.nameEnvironment.cleanup();
+	this.unitScope = null;
+	JavaModelManager.getJavaModelManager().flushZipFiles(this);
+	this.bindings = null;
+}
+private void locateSlice(PossibleMatchSlice[] slices, int index) {
+	PossibleMatchSlice slice = slices[index];
+	ArrayList<SearchMatch> matches = slice.matches;
+	this.requestor = new SearchRequestor() {
+		@Override
+		public void acceptSearchMatch(SearchMatch match) {
+			matches.add(match);
+		}
+	};
+	try {
+		locateMatches(slice.javaProject, slice.possibleMatches, slice.start, slice.length);
+	} catch (CoreException | RuntimeException | Error e) {
+		slice.failure = e;
+	} finally {
+		this.patternLocator.clear();
+		synchronized (slices) {
+			slice.done = true;
+			slices.notifyAll();
+		}
+	}
+}
 /**
  * Locate the matches in the given files and report them using the search requestor.
  */
@@ -1441,6 +1663,7 @@ public void locateMatches(SearchDocument[] searchDocuments) throws CoreException
 			}
 		});
 		int displayed = 0; // progress worked displayed
+		ArrayList<PossibleMatchSlice> slices = LOCATE_THREADS > 1 ? new ArrayList<>() : null;
 		String previousPath = null;
 		SearchParticipant searchParticipant = null;
 		for (int i = 0; i < docsLength; i++) {
@@ -1493,7 +1716,10 @@ public void locateMatches(SearchDocument[] searchDocuments) throws CoreException
 				// locate matches in previous project
 				if (previousJavaProject != null) {
 					try {
-						locateMatches(previousJavaProject, matchSet, i-displayed);
+						if (slices != null)
+							addPossibleMatchSlices(previousJavaProject, matchSet, i-displayed, slices);
+						else
+							locateMatches(previousJavaProject, matchSet, i-displayed);
 						displayed = i;
 					} catch (JavaModelException e) {
 						// problem with classpath in this project -> skip it
@@ -1516,11 +1742,16 @@ public void locateMatches(SearchDocument[] searchDocuments) throws CoreException
 		// last project
 		if (previousJavaProject != null) {
 			try {
-				locateMatches(previousJavaProject, matchSet, docsLength-displayed);
+				if (slices != null)
+					addPossibleMatchSlices(previousJavaProject, matchSet, docsLength-displayed, slices);
+				else
+					locateMatches(previousJavaProject, matchSet, docsLength-displayed);
 			} catch (JavaModelException e) {
 				// problem with classpath in last project -> ignore
 			}
 		}
+		if (slices != null)
+			locateMatches(slices.toArray(new PossibleMatchSlice[slices.size()]));
 
 		if (this.searchPackageDeclaration) {
 			locatePackageDeclarations(searchParticipant, javaModelProjects);
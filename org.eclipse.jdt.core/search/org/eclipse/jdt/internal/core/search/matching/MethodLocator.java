@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -135,6 +135,14 @@ public void initializePolymorphicSearch(MatchLocator locator) {
 		System.out.println("Time to initialize polymorphic search: "+(System.currentTimeMillis()-start)); //$NON-NLS-1$
 	}
 }
+@Override
+public void initializePolymorphicSearch(MatchLocator locator, PatternLocator initializedLocator) {
+	MethodLocator methodLocator = (MethodLocator) initializedLocator;
+	this.allSuperDeclaringTypeNames = methodLocator.allSuperDeclaringTypeNames;
+	this.samePkgSuperDeclaringTypeNames = methodLocator.samePkgSuperDeclaringTypeNames;
+	if (methodLocator.matchLocator != null)
+		this.matchLocator = locator;
+}
 /*
  * Return whether a type name is in pattern all super declaring types names.
  */
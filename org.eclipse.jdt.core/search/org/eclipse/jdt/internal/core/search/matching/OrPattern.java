@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -73,6 +73,10 @@ public class OrPattern extends SearchPattern implements IIndexConstants {
 		return null;
 	}
 
+	public SearchPattern[] getPatterns() {
+		return this.patterns;
+	}
+
 	boolean isErasureMatch() {
 		return (this.matchCompatibility & R_ERASURE_MATCH) != 0;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -184,6 +184,13 @@ protected TypeBinding getTypeNameBinding(int index) {
 public void initializePolymorphicSearch(MatchLocator locator) {
 	// default is to do nothing
 }
+/**
+ * Initializes the polymorphic search of a locator working on a part of the possible matches,
+ * reusing what the given locator of the same pattern computed in initializePolymorphicSearch(MatchLocator).
+ */
+public void initializePolymorphicSearch(MatchLocator locator, PatternLocator initializedLocator) {
+	// default is to do nothing
+}
 public int match(Annotation node, MatchingNodeSet nodeSet) {
 	// each subtype should override if needed
 	return IMPOSSIBLE_MATCH;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -13,6 +13,9 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.search.processing;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.internal.core.util.Messages;
@@ -26,10 +29,24 @@ public abstract class JobManager implements Runnable {
 	protected int jobEnd = -1;
 	protected boolean executing = false;
 
+	/* jobs being executed by the processing thread or the indexing threads, they stay in the queue until completed */
+	private ArrayList<IJob> executingJobs = new ArrayList<>();
+
 	/* background processing */
 	protected Thread processingThread;
 	protected Job progressJob;
 
+	/* threads executing jobs concurrently with the processing thread, see getJobKey(IJob)
+	    the number of threads, including the processing thread, is read when the job manager is reset */
+	protected Thread[] indexingThreads;
+	public static int INDEXING_THREADS = Math.max(1, Integer.getInteger("jdt.search.indexingThreads", Math.min(4, Runtime.getRuntime().availableProcessors() / 2)).intValue()); //$NON-NLS-1$
+
+	/* statistics */
+	private long completedJobs = 0;
+	private int maxAwaitingJobs = 0;
+	private long busyTime = 0; // in ns, while at least one job was executing
+	private long busyStart;
+
 	/* counter indicating whether job execution is enabled or not, disabled if <= 0
 	    it cannot go beyond 1 */
 	private int enableCount = 1;
@@ -62,6 +79,33 @@ public abstract class JobManager implements Runnable {
 			return this.awaitingJobs[this.jobStart];
 		return null;
 	}
+	/**
+	 * Answers the number of jobs executed since the job manager was started.
+	 */
+	public synchronized long completedJobsCount() {
+		return this.completedJobs;
+	}
+	/**
+	 * Answers the number of jobs being executed.
+	 */
+	public synchronized int executingJobsCount() {
+		return this.executingJobs.size();
+	}
+	/**
+	 * Answers the highest amount of awaiting jobs since the job manager was started.
+	 */
+	public synchronized int maxAwaitingJobsCount() {
+		return this.maxAwaitingJobs;
+	}
+	/**
+	 * Answers the average number of jobs completed per second while jobs were executing.
+	 */
+	public synchronized double jobsPerSecond() {
+		long time = this.busyTime;
+		if (!this.executingJobs.isEmpty())
+			time += System.nanoTime() - this.busyStart;
+		return time == 0 ? 0 : this.completedJobs * 1000000000.0 / time;
+	}
 	public synchronized void disable() {
 		this.enableCount--;
 		if (VERBOSE)
@@ -78,22 +122,26 @@ public abstract class JobManager implements Runnable {
 
 		try {
 			IJob currentJob;
-			// cancel current job if it belongs to the given family
+			IJob[] currentJobs;
+			// cancel current jobs if they belong to the given family
 			synchronized(this){
-				currentJob = currentJob();
+				currentJobs = this.executingJobs.toArray(new IJob[this.executingJobs.size()]);
 				disable();
 			}
-			if (currentJob != null && (jobFamily == null || currentJob.belongsTo(jobFamily))) {
-				currentJob.cancel();
+			for (int i = 0, length = currentJobs.length; i < length; i++) {
+				currentJob = currentJobs[i];
+				if (jobFamily == null || currentJob.belongsTo(jobFamily)) {
+					currentJob.cancel();
 
-				// wait until current active job has finished
-				while (this.processingThread != null && this.executing){
-					try {
-						if (VERBOSE)
-							Util.verbose("-> waiting end of current background job - " + currentJob); //$NON-NLS-1$
-						Thread.sleep(50);
-					} catch(InterruptedException e){
-						// ignore
+					// wait until current active job has finished
+					while (this.processingThread != null && isExecuting(currentJob)){
+						try {
+							if (VERBOSE)
+								Util.verbose("-> waiting end of current background job - " + currentJob); //$NON-NLS-1$
+							Thread.sleep(50);
+						} catch(InterruptedException e){
+							// ignore
+						}
 					}
 				}
 			}
@@ -129,25 +177,95 @@ public abstract class JobManager implements Runnable {
 			Util.verbose("ENABLING  background indexing"); //$NON-NLS-1$
 		notifyAll(); // wake up the background thread if it is waiting (context must be synchronized)
 	}
+	/**
+	 * Answers the key of the resource updated by the given job, or null if the job must be executed alone.
+	 * Jobs with different keys can be executed concurrently, while jobs with the same key are executed
+	 * in the order they were requested.
+	 */
+	protected Object getJobKey(IJob job) {
+		return null;
+	}
+	protected synchronized boolean isExecuting(IJob job) {
+		for (int i = this.executingJobs.size(); --i >= 0;)
+			if (this.executingJobs.get(i) == job) return true;
+		return false;
+	}
 	protected synchronized boolean isJobWaiting(IJob request) {
-		for (int i = this.jobEnd; i > this.jobStart; i--) // don't check job at jobStart, as it may have already started
-			if (request.equals(this.awaitingJobs[i])) return true;
+		for (int i = this.jobEnd; i >= this.jobStart; i--) {
+			IJob job = this.awaitingJobs[i];
+			if (request.equals(job) && !isExecuting(job)) return true; // don't check jobs which have already started
+		}
+		return false;
+	}
+	private boolean isIndexingThread(Thread thread) {
+		Thread[] threads = this.indexingThreads;
+		if (threads != null)
+			for (int i = 0, length = threads.length; i < length; i++)
+				if (threads[i] == thread) return true;
 		return false;
 	}
 	/**
-	 * Advance to the next available job, once the current one has been completed.
+	 * Remove the given job from the queue, once it has been completed.
 	 * Note: clients awaiting until the job count is zero are still waiting at this point.
 	 */
-	protected synchronized void moveToNextJob() {
-		//if (!enabled) return;
-
-		if (this.jobStart <= this.jobEnd) {
-			this.awaitingJobs[this.jobStart++] = null;
-			if (this.jobStart > this.jobEnd) {
-				this.jobStart = 0;
-				this.jobEnd = -1;
+	protected synchronized void moveToNextJob(IJob job) {
+		for (int i = this.executingJobs.size(); --i >= 0;) {
+			if (this.executingJobs.get(i) == job) {
+				this.executingJobs.remove(i);
+				this.completedJobs++;
+				if (this.executingJobs.isEmpty()) {
+					this.executing = false;
+					this.busyTime += System.nanoTime() - this.busyStart;
+				}
+				break;
 			}
 		}
+		for (int i = this.jobStart; i <= this.jobEnd; i++) {
+			if (this.awaitingJobs[i] == job) {
+				// shift the jobs before it, to keep the order of the remaining jobs
+				System.arraycopy(this.awaitingJobs, this.jobStart, this.awaitingJobs, this.jobStart + 1, i - this.jobStart);
+				this.awaitingJobs[this.jobStart++] = null;
+				if (this.jobStart > this.jobEnd) {
+					this.jobStart = 0;
+					this.jobEnd = -1;
+				}
+				break;
+			}
+		}
+		notifyAll(); // wake up the threads waiting for this job to be completed
+	}
+	/*
+	 * Answers the first awaiting job which can be executed now and marks it as executing, or null if none.
+	 * A job can start when no job before it updates the same resource, and when neither it nor any job
+	 * before it must be executed alone.
+	 */
+	private IJob nextJob() {
+		if (this.enableCount <= 0 || this.jobStart > this.jobEnd) return null;
+		IJob next = null;
+		if (this.executingJobs.isEmpty()) {
+			next = this.awaitingJobs[this.jobStart];
+			this.busyStart = System.nanoTime();
+		} else {
+			HashSet<Object> busyKeys = new HashSet<>();
+			Object previousKey = null;
+			for (int i = this.jobStart; i <= this.jobEnd; i++) {
+				IJob job = this.awaitingJobs[i];
+				Object key = getJobKey(job);
+				if (key == null) return null; // executed alone, or waits for the jobs before it
+				if (key != previousKey) { // consecutive jobs often update the same resource
+					if (!busyKeys.contains(key) && !isExecuting(job)) {
+						next = job;
+						break;
+					}
+					busyKeys.add(key);
+					previousKey = key;
+				}
+			}
+			if (next == null) return null;
+		}
+		this.executingJobs.add(next);
+		this.executing = true;
+		return next;
 	}
 	/**
 	 * When idle, give chance to do something
@@ -209,9 +327,13 @@ public abstract class JobManager implements Runnable {
 						// and bug 42760 NullPointerException in JobManager when searching)
 						Thread t = this.processingThread;
 						int originalPriority = t == null ? -1 : t.getPriority();
+						Thread[] threads = this.indexingThreads;
 						try {
 							if (t != null)
 								t.setPriority(Thread.currentThread().getPriority());
+							if (threads != null)
+								for (int i = 0, length = threads.length; i < length; i++)
+									threads[i].setPriority(Thread.currentThread().getPriority());
 							synchronized(this) {
 								this.awaitingClients++;
 							}
@@ -259,6 +381,10 @@ public abstract class JobManager implements Runnable {
 							}
 							if (t != null && originalPriority > -1 && t.isAlive())
 								t.setPriority(originalPriority);
+							if (threads != null && originalPriority > -1)
+								for (int i = 0, length = threads.length; i < length; i++)
+									if (threads[i].isAlive())
+										threads[i].setPriority(originalPriority);
 						}
 				}
 			}
@@ -291,6 +417,8 @@ public abstract class JobManager implements Runnable {
 			this.jobStart = 0;
 		}
 		this.awaitingJobs[this.jobEnd] = job;
+		if (this.jobEnd - this.jobStart + 1 > this.maxAwaitingJobs)
+			this.maxAwaitingJobs = this.jobEnd - this.jobStart + 1;
 		if (VERBOSE) {
 			Util.verbose("REQUEST   background job - " + job); //$NON-NLS-1$
 			Util.verbose("AWAITING JOBS count: " + awaitingJobsCount()); //$NON-NLS-1$
@@ -322,6 +450,22 @@ public abstract class JobManager implements Runnable {
 				// set the context loader to avoid leaking the current context loader
 				this.processingThread.setContextClassLoader(this.getClass().getClassLoader());
 				this.processingThread.start();
+
+				// the previous indexing threads, if any, stop by themselves since they are no longer referenced
+				this.indexingThreads = null;
+				int threadCount = INDEXING_THREADS;
+				if (threadCount > 1) {
+					Thread[] threads = new Thread[threadCount - 1];
+					for (int i = 0, length = threads.length; i < length; i++) {
+						threads[i] = new Thread(this::processConcurrentJobs, processName() + ' ' + (i + 2));
+						threads[i].setDaemon(true);
+						threads[i].setPriority(Thread.NORM_PRIORITY-1);
+						threads[i].setContextClassLoader(this.getClass().getClassLoader());
+					}
+					this.indexingThreads = threads;
+					for (int i = 0, length = threads.length; i < length; i++)
+						threads[i].start();
+				}
 			}
 		}
 	}
@@ -366,7 +510,11 @@ public abstract class JobManager implements Runnable {
 						if (this.processingThread == null) continue;
 
 						// must check for new job inside this sync block to avoid timing hole
-						if ((job = currentJob()) == null) {
+						if ((job = nextJob()) == null) {
+							if (currentJob() != null || !this.executingJobs.isEmpty()) {
+								this.wait(); // wait until the jobs being executed by the indexing threads are completed
+								continue;
+							}
 							if (this.progressJob != null) {
 								this.progressJob.cancel();
 								this.progressJob = null;
@@ -391,7 +539,6 @@ public abstract class JobManager implements Runnable {
 						Util.verbose("STARTING background job - " + job); //$NON-NLS-1$
 					}
 					try {
-						this.executing = true;
 						if (this.progressJob == null) {
 							this.progressJob = new ProgressJob(Messages.bind(Messages.jobmanager_indexing, "", "")); //$NON-NLS-1$ //$NON-NLS-2$
 							this.progressJob.setPriority(Job.LONG);
@@ -401,10 +548,9 @@ public abstract class JobManager implements Runnable {
 						/*boolean status = */job.execute(null);
 						//if (status == FAILED) request(job);
 					} finally {
-						this.executing = false;
 						if (VERBOSE)
 							Util.verbose("FINISHED background job - " + job); //$NON-NLS-1$
-						moveToNextJob();
+						moveToNextJob(job);
 						if (this.awaitingClients == 0 && job.waitNeeded()) {
 							if (VERBOSE) {
 								Util.verbose("WAITING after job - " + job); //$NON-NLS-1$
@@ -439,6 +585,39 @@ public abstract class JobManager implements Runnable {
 			throw e;
 		}
 	}
+	/*
+	 * Loop of the indexing threads, executing the jobs which can be executed concurrently
+	 * with the ones of the processing thread.
+	 */
+	void processConcurrentJobs() {
+		Thread thread = Thread.currentThread();
+		try {
+			while (true) {
+				IJob job;
+				synchronized (this) {
+					if (this.processingThread == null || !isIndexingThread(thread)) return; // shutting down, or replaced
+					if ((job = nextJob()) == null) {
+						this.wait(); // wait until a new job is posted, or a job is completed
+						continue;
+					}
+				}
+				if (VERBOSE)
+					Util.verbose("STARTING concurrent background job - " + job); //$NON-NLS-1$
+				try {
+					job.execute(null);
+				} catch (RuntimeException e) {
+					Util.log(e, "Background Indexer Crash Recovery"); //$NON-NLS-1$
+				} finally {
+					if (VERBOSE)
+						Util.verbose("FINISHED concurrent background job - " + job); //$NON-NLS-1$
+					moveToNextJob(job);
+				}
+				if (this.awaitingClients == 0 && job.waitNeeded())
+					Thread.sleep(5);
+			}
+		} catch (InterruptedException e) { // background indexing was interrupted
+		}
+	}
 	/**
 	 * Stop background processing, and wait until the current job is completed before returning
 	 */
@@ -459,6 +638,10 @@ public abstract class JobManager implements Runnable {
 				// in case processing thread is handling a job
 				thread.join();
 			}
+			Thread[] threads = this.indexingThreads;
+			if (threads != null)
+				for (int i = 0, length = threads.length; i < length; i++)
+					threads[i].join();
 			Job job = this.progressJob;
 			if (job != null) {
 				job.cancel();
@@ -474,6 +657,8 @@ public abstract class JobManager implements Runnable {
 		buffer.append("Enable count:").append(this.enableCount).append('\n'); //$NON-NLS-1$
 		int numJobs = this.jobEnd - this.jobStart + 1;
 		buffer.append("Jobs in queue:").append(numJobs).append('\n'); //$NON-NLS-1$
+		buffer.append("Jobs executing:").append(this.executingJobs.size()).append('\n'); //$NON-NLS-1$
+		buffer.append("Jobs completed:").append(this.completedJobs).append(" (max queued: ").append(this.maxAwaitingJobs).append(")\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		for (int i = 0; i < numJobs && i < 15; i++) {
 			buffer.append(i).append(" - job["+i+"]: ").append(this.awaitingJobs[this.jobStart+i]).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
 		}